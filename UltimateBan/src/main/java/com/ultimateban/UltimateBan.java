@@ -18,13 +18,19 @@ import com.ultimateban.commands.TempIpBanCommand;
 import com.ultimateban.commands.TempMuteCommand;
 import com.ultimateban.commands.AltsCommand;
 import com.ultimateban.commands.CheckCommand;
+import com.ultimateban.commands.CommandTimings;
 import com.ultimateban.database.DatabaseManager;
 import com.ultimateban.listeners.PlayerConnectionListener;
 import com.ultimateban.managers.ConfigManager;
+import com.ultimateban.managers.MuteManager;
 import com.ultimateban.util.MessageUtil;
 import com.ultimateban.util.IPUtil;
+import com.ultimateban.services.AccountLinkService;
 import com.ultimateban.services.AltDetectionService;
+import com.ultimateban.services.ChangeLogService;
+import com.ultimateban.services.DiscordWebhookService;
 import com.ultimateban.services.PunishmentEscalationService;
+import com.ultimateban.services.PunishmentExpiryService;
 import com.ultimateban.services.PunishmentTemplateService;
 import com.ultimateban.services.VPNDetectionService;
 import org.bukkit.command.CommandExecutor;
@@ -38,11 +44,17 @@ public class UltimateBan extends JavaPlugin {
 
     private ConfigManager configManager;
     private DatabaseManager databaseManager;
+    private MuteManager muteManager;
     private IPUtil ipUtil;
     private AltDetectionService altDetectionService;
+    private AccountLinkService accountLinkService;
     private VPNDetectionService vpnDetectionService;
     private PunishmentTemplateService templateService;
     private PunishmentEscalationService escalationService;
+    private PunishmentExpiryService expiryService;
+    private ChangeLogService changeLogService;
+    private DiscordWebhookService discordService;
+    private CommandTimings commandTimings;
 
     @Override
     public void onEnable() {
@@ -63,19 +75,28 @@ public class UltimateBan extends JavaPlugin {
             return;
         }
         
+        // Initialize mute cache
+        muteManager = new MuteManager(this);
+        muteManager.loadOnlinePlayers();
+        
         // Initialize IP utility
         ipUtil = new IPUtil(this);
         
         // Initialize services
         vpnDetectionService = new VPNDetectionService(this);
+        accountLinkService = new AccountLinkService(this);
+        expiryService = new PunishmentExpiryService(this);
         altDetectionService = new AltDetectionService(this);
         templateService = new PunishmentTemplateService(this);
         escalationService = new PunishmentEscalationService(this);
+        changeLogService = new ChangeLogService(this);
+        discordService = new DiscordWebhookService(this);
 
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerConnectionListener(this), this);
 
         // Register commands
+        commandTimings = new CommandTimings();
         registerCommands();
 
         // Log successful enable
@@ -88,6 +109,26 @@ public class UltimateBan extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // Stop expiring punishments
+        if (expiryService != null) {
+            expiryService.shutdown();
+        }
+
+        // Stop following other servers
+        if (changeLogService != null) {
+            changeLogService.shutdown();
+        }
+
+        // Keep unsent Discord messages for the next start
+        if (discordService != null) {
+            discordService.shutdown();
+        }
+
+        // Stop VPN lookups
+        if (vpnDetectionService != null) {
+            vpnDetectionService.shutdown();
+        }
+
         // Close database connection
         if (databaseManager != null) {
             databaseManager.closeConnection();
@@ -155,6 +196,15 @@ public class UltimateBan extends JavaPlugin {
         return databaseManager;
     }
 
+    /**
+     * Get the mute manager
+     *
+     * @return The mute manager
+     */
+    public MuteManager getMuteManager() {
+        return muteManager;
+    }
+
     /**
      * Get the IPUtil instance
      *
@@ -173,6 +223,51 @@ public class UltimateBan extends JavaPlugin {
         return altDetectionService;
     }
 
+    /**
+     * Get the AccountLinkService instance
+     *
+     * @return The AccountLinkService instance
+     */
+    public AccountLinkService getAccountLinkService() {
+        return accountLinkService;
+    }
+
+    /**
+     * Get the PunishmentExpiryService instance
+     *
+     * @return The PunishmentExpiryService instance
+     */
+    public PunishmentExpiryService getExpiryService() {
+        return expiryService;
+    }
+
+    /**
+     * Get the ChangeLogService instance
+     *
+     * @return The ChangeLogService instance
+     */
+    public ChangeLogService getChangeLogService() {
+        return changeLogService;
+    }
+
+    /**
+     * Get the DiscordWebhookService instance
+     *
+     * @return The DiscordWebhookService instance
+     */
+    public DiscordWebhookService getDiscordService() {
+        return discordService;
+    }
+
+    /**
+     * Get the CommandTimings instance
+     *
+     * @return The CommandTimings instance
+     */
+    public CommandTimings getCommandTimings() {
+        return commandTimings;
+    }
+
     /**
      * Get the VPNDetectionService instance
      *
@@ -1,8 +1,10 @@
 package com.ultimateban.commands;
 
 import com.ultimateban.UltimateBan;
-import com.ultimateban.models.Player;
+import com.ultimateban.services.AccountLinkService;
+import com.ultimateban.services.AccountLinkService.LinkedAccount;
 import com.ultimateban.util.MessageUtil;
+import com.ultimateban.util.TimeUtil;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -12,7 +14,6 @@ import org.bukkit.entity.HumanEntity;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -56,99 +57,92 @@ public class AltsCommand implements CommandExecutor, TabCompleter {
         // Get target player
         String targetName = args[0];
 
-        // Get target UUID (async)
-        CompletableFuture<UUID> targetUuidFuture = plugin.getDatabaseManager().getPlayerUuid(targetName);
-
-        targetUuidFuture.thenAccept(targetUuid -> {
-            if (targetUuid == null) {
-                // Player not found in database
-                sender.sendMessage(MessageUtil.color("&cPlayer not found: " + targetName));
-                return;
-            }
+        // Resolve and list the alts off the main thread, only the reply is sent from it
+        CommandPipeline.start(plugin, "alts", sender)
+                .resolve(ignored -> {
+                    UUID targetUuid = plugin.getDatabaseManager().lookupPlayerUuidSync(targetName);
+                    if (targetUuid == null) {
+                        // Player not found in database
+                        throw CommandPipeline.abort("&cPlayer not found: " + targetName);
+                    }
+                    return targetUuid;
+                })
+                .load(targetUuid -> listAlts(targetUuid, targetName))
+                .deliver(lines -> lines.forEach(sender::sendMessage));
 
-            // Get player name from database (in case of capitalization differences)
-            String storedName = plugin.getDatabaseManager().getPlayerName(targetUuid);
-            if (storedName != null) {
-                targetName = storedName;
-            }
+        return true;
+    }
 
-            // Get player's IP addresses
-            List<String> ips = plugin.getDatabaseManager().getPlayerIps(targetUuid);
-            if (ips.isEmpty()) {
-                sender.sendMessage(MessageUtil.color("&cNo IP history found for " + targetName));
-                return;
-            }
+    /**
+     * List the accounts linked to a player, on a database thread
+     *
+     * @param targetUuid The UUID of the player
+     * @param targetName The name the player was looked up by
+     * @return The lines to send
+     */
+    private List<String> listAlts(UUID targetUuid, String targetName) {
+        AccountLinkService linkService = plugin.getAccountLinkService();
+        if (linkService.isEnabled() && !linkService.isLoaded()) {
+            throw CommandPipeline.abort("&cAccount links are still loading, please try again shortly.");
+        }
 
-            // Get all accounts linked to these IPs
-            List<Player> allAccounts = new ArrayList<>();
-            for (String ip : ips) {
-                List<UUID> accountsOnIp = plugin.getDatabaseManager().getPlayersWithIp(ip);
-                for (UUID accountUuid : accountsOnIp) {
-                    // Skip the target player
-                    if (accountUuid.equals(targetUuid)) {
-                        continue;
-                    }
+        // Use the stored name in case of capitalization differences
+        String storedName = linkService.getName(targetUuid);
+        String displayName = storedName != null ? storedName : targetName;
 
-                    // Get player info
-                    String accountName = plugin.getDatabaseManager().getPlayerName(accountUuid);
-                    if (accountName != null) {
-                        Player altPlayer = new Player(accountUuid, accountName);
-                        
-                        // Check if banned
-                        if (plugin.getDatabaseManager().getActiveBan(accountUuid) != null) {
-                            altPlayer.setBanned(true);
-                        }
-                        
-                        // Check if muted
-                        if (plugin.getDatabaseManager().getActiveMute(accountUuid) != null) {
-                            altPlayer.setMuted(true);
-                        }
-                        
-                        // Only add if not already in the list
-                        if (!allAccounts.contains(altPlayer)) {
-                            allAccounts.add(altPlayer);
-                        }
-                    }
-                }
-            }
+        // Every account linked through shared IP addresses, with ban and mute flags
+        List<LinkedAccount> allAccounts = linkService.getLinkedAccounts(targetUuid);
+        if (allAccounts == null) {
+            throw CommandPipeline.abort("&cNo IP history found for " + displayName);
+        }
 
-            // Display results
-            if (allAccounts.isEmpty()) {
-                sender.sendMessage(MessageUtil.color("&aNo alt accounts found for &f" + targetName));
-                return;
-            }
+        // Display results
+        if (allAccounts.isEmpty()) {
+            throw CommandPipeline.abort("&aNo alt accounts found for &f" + displayName);
+        }
 
-            sender.sendMessage(MessageUtil.color("&6Alt accounts for &f" + targetName + " &6(" + allAccounts.size() + "):"));
-            
-            // Group accounts by banned status for better visibility
-            List<Player> bannedAlts = allAccounts.stream()
-                    .filter(Player::isBanned)
-                    .collect(Collectors.toList());
-            
-            List<Player> unbannedAlts = allAccounts.stream()
-                    .filter(p -> !p.isBanned())
-                    .collect(Collectors.toList());
-            
-            // Show banned alts first
-            if (!bannedAlts.isEmpty()) {
-                sender.sendMessage(MessageUtil.color("&c&lBanned accounts:"));
-                for (Player alt : bannedAlts) {
-                    sender.sendMessage(MessageUtil.color(" &8- &c" + alt.getName() + 
-                            (alt.isMuted() ? " &7(muted)" : "")));
-                }
+        List<String> lines = new ArrayList<>();
+        lines.add(MessageUtil.color("&6Alt accounts for &f" + displayName + " &6(" + allAccounts.size() + "):"));
+        
+        // Group accounts by banned status for better visibility
+        List<LinkedAccount> bannedAlts = allAccounts.stream()
+                .filter(LinkedAccount::isBanned)
+                .collect(Collectors.toList());
+        
+        List<LinkedAccount> unbannedAlts = allAccounts.stream()
+                .filter(p -> !p.isBanned())
+                .collect(Collectors.toList());
+        
+        // Show banned alts first
+        if (!bannedAlts.isEmpty()) {
+            lines.add(MessageUtil.color("&c&lBanned accounts:"));
+            for (LinkedAccount alt : bannedAlts) {
+                lines.add(MessageUtil.color(" &8- &c" + alt.getName() + describeLink(alt)));
             }
-            
-            // Then show unbanned alts
-            if (!unbannedAlts.isEmpty()) {
-                sender.sendMessage(MessageUtil.color("&a&lActive accounts:"));
-                for (Player alt : unbannedAlts) {
-                    sender.sendMessage(MessageUtil.color(" &8- &f" + alt.getName() + 
-                            (alt.isMuted() ? " &7(muted)" : "")));
-                }
+        }
+        
+        // Then show unbanned alts
+        if (!unbannedAlts.isEmpty()) {
+            lines.add(MessageUtil.color("&a&lActive accounts:"));
+            for (LinkedAccount alt : unbannedAlts) {
+                lines.add(MessageUtil.color(" &8- &f" + alt.getName() + describeLink(alt)));
             }
-        });
+        }
+        return lines;
+    }
 
-        return true;
+    /**
+     * Describe how an account is linked to the target
+     *
+     * @param alt The linked account
+     * @return The description, starting with a space
+     */
+    private String describeLink(LinkedAccount alt) {
+        String link = alt.getSharedIps() > 0
+                ? " &7(" + alt.getSharedIps() + " shared IP" + (alt.getSharedIps() == 1 ? "" : "s")
+                        + ", last " + TimeUtil.formatTimestamp(alt.getLastShared()) + ")"
+                : " &7(linked through other accounts)";
+        return alt.isMuted() ? link + " &7(muted)" : link;
     }
 
     /**
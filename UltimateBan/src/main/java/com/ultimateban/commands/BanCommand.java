@@ -21,7 +21,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * Command for banning players
@@ -116,161 +115,134 @@ public class BanCommand implements CommandExecutor, TabCompleter {
         String punisherName = sender instanceof Player ? sender.getName() : "Console";
         UUID punisherUuid = sender instanceof Player ? ((Player) sender).getUniqueId() : null;
         
-        // Get target UUID (async)
-        CompletableFuture<UUID> targetUuidFuture = plugin.getDatabaseManager().getPlayerUuid(targetName);
-        
-        targetUuidFuture.thenAccept(targetUuid -> {
-            if (targetUuid == null) {
-                // Player not found in database, try to resolve from Bukkit
-                Player targetPlayer = Bukkit.getPlayerExact(targetName);
-                if (targetPlayer != null) {
-                    targetUuid = targetPlayer.getUniqueId();
-                    targetName = targetPlayer.getName();
-                } else {
-                    // Player not found
-                    sender.sendMessage(MessageUtil.color("&cPlayer not found: " + targetName));
-                    return;
-                }
-            }
-            
-            // Check if player has permission to ban this target
-            if (sender instanceof Player) {
-                Player targetPlayer = Bukkit.getPlayer(targetUuid);
-                if (targetPlayer != null && !canBan((Player) sender, targetPlayer)) {
-                    sender.sendMessage(MessageUtil.color("&cYou don't have permission to ban this player."));
-                    return;
-                }
-            }
-            
-            // Handle ban based on template or escalation logic
-            handleBan(sender, targetUuid, targetName, reason, punisherName, punisherUuid, silent, templateName);
-        });
+        // Bukkit is only used here and in the final stage, the lookups and the ban run off the main thread
+        Player online = Bukkit.getPlayerExact(targetName);
+        if (online != null && sender instanceof Player && !canBan((Player) sender, online)) {
+            sender.sendMessage(MessageUtil.color("&cYou don't have permission to ban this player."));
+            return true;
+        }
+        UUID onlineUuid = online != null ? online.getUniqueId() : null;
+        String banName = online != null ? online.getName() : targetName;
+        String banReason = reason;
+        String banTemplate = templateName;
+        boolean banSilent = silent;
+
+        CommandPipeline.start(plugin, isTemporary ? "tempban" : "ban", sender)
+                .resolve(ignored -> {
+                    UUID targetUuid = onlineUuid != null ? onlineUuid : plugin.getDatabaseManager().lookupPlayerUuidSync(banName);
+                    if (targetUuid == null) {
+                        // Player not found
+                        throw CommandPipeline.abort("&cPlayer not found: " + banName);
+                    }
+                    return targetUuid;
+                })
+                .mutate(targetUuid -> handleBan(targetUuid, banName, banReason, punisherName, punisherUuid, banTemplate))
+                .deliver(punishment -> applyBan(sender, punishment, banSilent));
         
         return true;
     }
     
     /**
-     * Handle the ban process based on templates or escalation
+     * Work out and save the ban based on templates or escalation, on a database thread
      * 
-     * @param sender The command sender
      * @param targetUuid The target player UUID
      * @param targetName The target player name
      * @param reason The ban reason
      * @param punisherName The punisher name
      * @param punisherUuid The punisher UUID
-     * @param silent Whether the ban should be silent
      * @param templateName The optional template name
+     * @return The saved ban
      */
-    private void handleBan(CommandSender sender, UUID targetUuid, String targetName, String reason, 
-            String punisherName, UUID punisherUuid, boolean silent, String templateName) {
+    private Punishment handleBan(UUID targetUuid, String targetName, String reason,
+            String punisherName, UUID punisherUuid, String templateName) {
         
         // Check for active ban
         Punishment activeBan = plugin.getDatabaseManager().getActiveBan(targetUuid);
         if (activeBan != null) {
-            sender.sendMessage(MessageUtil.color("&cPlayer " + targetName + " is already banned."));
-            return;
+            throw CommandPipeline.abort("&cPlayer " + targetName + " is already banned.");
         }
         
         // Default punishment is permanent ban
         long duration = -1; // -1 for permanent
         boolean isPermanent = true;
-        String originalReason = reason;
         
-        try {
-            // If template is specified, use it
-            if (templateName != null) {
-                PunishmentTemplate template = plugin.getPunishmentTemplateService().getTemplate(templateName);
-                if (template == null) {
-                    sender.sendMessage(MessageUtil.color("&cTemplate not found: #" + templateName));
-                    return;
-                }
-                
-                // Use template settings
-                duration = template.getDuration();
+        // If template is specified, use it
+        if (templateName != null) {
+            PunishmentTemplate template = plugin.getPunishmentTemplateService().getTemplate(templateName);
+            if (template == null) {
+                throw CommandPipeline.abort("&cTemplate not found: #" + templateName);
+            }
+            
+            // Use template settings
+            duration = template.getDuration();
+            isPermanent = duration < 0;
+            
+            // If template has a reason, use it unless a specific reason was provided
+            if (template.getReason() != null && !template.getReason().isEmpty() && reason.equals("No reason specified")) {
+                reason = template.getReason();
+            }
+            
+            // Apply any metadata from template
+            Map<String, String> metadata = new LinkedHashMap<>();
+            if (template.getMetadata() != null) {
+                metadata.putAll(template.getMetadata());
+            }
+            
+            // Create punishment
+            return createBan(targetUuid, targetName, reason, punisherName, punisherUuid,
+                    duration, isPermanent, metadata);
+        }
+        
+        // If not using template, check for punishment escalation
+        if (plugin.getConfig().getBoolean("punishment-escalation.enabled", true)) {
+            // Get escalation service
+            PunishmentEscalationService escalationService = plugin.getPunishmentEscalationService();
+            
+            // Get previous punishments for the same category
+            List<Punishment> previousPunishments = plugin.getDatabaseManager().getPreviousPunishments(
+                    targetUuid, PunishmentType.BAN, PunishmentType.TEMP_BAN);
+            
+            // Determine escalated punishment
+            PunishmentEscalationService.EscalatedPunishment escalated = 
+                    escalationService.getEscalatedPunishment(previousPunishments, "ban");
+            
+            // Apply escalated duration if available
+            if (escalated != null) {
+                duration = escalated.getDuration();
                 isPermanent = duration < 0;
                 
-                // If template has a reason, use it unless a specific reason was provided
-                if (template.getReason() != null && !template.getReason().isEmpty() && reason.equals("No reason specified")) {
-                    reason = template.getReason();
-                }
-                
-                // Apply any metadata from template
+                // Create metadata with escalation info
                 Map<String, String> metadata = new LinkedHashMap<>();
-                if (template.getMetadata() != null) {
-                    metadata.putAll(template.getMetadata());
-                }
+                metadata.put("escalation_level", String.valueOf(escalated.getLevel()));
+                metadata.put("escalation_category", "ban");
                 
                 // Create punishment
-                createAndApplyBan(sender, targetUuid, targetName, reason, originalReason, punisherName, 
-                        punisherUuid, duration, isPermanent, silent, metadata);
-                return;
+                return createBan(targetUuid, targetName, reason, punisherName, punisherUuid,
+                        duration, isPermanent, metadata);
             }
-            
-            // If not using template, check for punishment escalation
-            if (plugin.getConfig().getBoolean("punishment-escalation.enabled", true)) {
-                // Get escalation service
-                PunishmentEscalationService escalationService = plugin.getPunishmentEscalationService();
-                
-                // Get previous punishments for the same category
-                List<Punishment> previousPunishments = plugin.getDatabaseManager().getPreviousPunishments(
-                        targetUuid, PunishmentType.BAN, PunishmentType.TEMP_BAN);
-                
-                // Determine escalated punishment
-                PunishmentEscalationService.EscalatedPunishment escalated = 
-                        escalationService.getEscalatedPunishment(previousPunishments, "ban");
-                
-                // Apply escalated duration if available
-                if (escalated != null) {
-                    duration = escalated.getDuration();
-                    isPermanent = duration < 0;
-                    
-                    // Create metadata with escalation info
-                    Map<String, String> metadata = new LinkedHashMap<>();
-                    metadata.put("escalation_level", String.valueOf(escalated.getLevel()));
-                    metadata.put("escalation_category", "ban");
-                    
-                    if (escalated.getLevel() > 1) {
-                        sender.sendMessage(MessageUtil.color("&6Applying escalated punishment (level " + 
-                                escalated.getLevel() + "): " + (isPermanent ? "Permanent ban" : 
-                                TimeUtil.formatDuration(duration) + " ban")));
-                    }
-                    
-                    // Create punishment
-                    createAndApplyBan(sender, targetUuid, targetName, reason, originalReason, punisherName, 
-                            punisherUuid, duration, isPermanent, silent, metadata);
-                    return;
-                }
-            }
-            
-            // If no template or escalation, apply default permanent ban
-            createAndApplyBan(sender, targetUuid, targetName, reason, originalReason, punisherName, 
-                    punisherUuid, duration, isPermanent, silent, null);
-            
-        } catch (Exception e) {
-            sender.sendMessage(MessageUtil.color("&cAn error occurred while processing the ban."));
-            plugin.getLogger().severe("Error in BanCommand: " + e.getMessage());
-            e.printStackTrace();
         }
+        
+        // If no template or escalation, apply default permanent ban
+        return createBan(targetUuid, targetName, reason, punisherName, punisherUuid,
+                duration, isPermanent, null);
     }
     
     /**
-     * Create and apply a ban
+     * Create and save a ban, on a database thread
      * 
-     * @param sender The command sender
      * @param targetUuid The target player UUID
      * @param targetName The target player name
      * @param reason The ban reason
-     * @param originalReason The original reason provided by the command
      * @param punisherName The punisher name
      * @param punisherUuid The punisher UUID
      * @param duration The ban duration
      * @param isPermanent Whether the ban is permanent
-     * @param silent Whether the ban should be silent
      * @param metadata Additional metadata for the ban
+     * @return The saved ban
      */
-    private void createAndApplyBan(CommandSender sender, UUID targetUuid, String targetName, String reason, 
-            String originalReason, String punisherName, UUID punisherUuid, long duration, boolean isPermanent, 
-            boolean silent, Map<String, String> metadata) {
+    private Punishment createBan(UUID targetUuid, String targetName, String reason,
+            String punisherName, UUID punisherUuid, long duration, boolean isPermanent,
+            Map<String, String> metadata) {
         
         // Create punishment
         Punishment punishment = new Punishment();
@@ -292,6 +264,30 @@ public class BanCommand implements CommandExecutor, TabCompleter {
         // Add to database
         long punishmentId = plugin.getDatabaseManager().addPunishment(punishment);
         punishment.setId(punishmentId);
+        return punishment;
+    }
+
+    /**
+     * Kick the banned player and announce the ban, on the main thread
+     * 
+     * @param sender The command sender
+     * @param punishment The saved ban
+     * @param silent Whether the ban should be silent
+     */
+    private void applyBan(CommandSender sender, Punishment punishment, boolean silent) {
+        UUID targetUuid = punishment.getPlayerUUID();
+        String targetName = punishment.getPlayerName();
+        String reason = punishment.getReason();
+        String punisherName = punishment.getPunisherName();
+        boolean isPermanent = punishment.isPermanent();
+        long duration = punishment.getDuration();
+
+        String level = punishment.getMetadata("escalation_level");
+        if (level != null && Integer.parseInt(level) > 1) {
+            sender.sendMessage(MessageUtil.color("&6Applied escalated punishment (level " + 
+                    level + "): " + (isPermanent ? "Permanent ban" : 
+                    TimeUtil.formatDuration(duration) + " ban")));
+        }
         
         // Kick player if online
         Player target = Bukkit.getPlayer(targetUuid);
@@ -1,7 +1,9 @@
 package com.ultimateban.commands;
 
 import com.ultimateban.UltimateBan;
+import com.ultimateban.models.PlayerStats;
 import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
 import com.ultimateban.util.MessageUtil;
 import com.ultimateban.util.TimeUtil;
 import org.bukkit.command.Command;
@@ -11,9 +13,9 @@ import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.HumanEntity;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -57,87 +59,123 @@ public class CheckCommand implements CommandExecutor, TabCompleter {
         // Get target player
         String targetName = args[0];
 
-        // Get target UUID (async)
-        CompletableFuture<UUID> targetUuidFuture = plugin.getDatabaseManager().getPlayerUuid(targetName);
+        // Look everything up off the main thread, only the reply is sent from it
+        CommandPipeline.start(plugin, "check", sender)
+                .resolve(ignored -> {
+                    UUID targetUuid = plugin.getDatabaseManager().lookupPlayerUuidSync(targetName);
+                    if (targetUuid == null) {
+                        // Player not found in database
+                        throw CommandPipeline.abort("&cPlayer not found: " + targetName);
+                    }
+                    return targetUuid;
+                })
+                .load(targetUuid -> buildReport(targetUuid, targetName))
+                .deliver(sender::sendMessage);
 
-        targetUuidFuture.thenAccept(targetUuid -> {
-            if (targetUuid == null) {
-                // Player not found in database
-                sender.sendMessage(MessageUtil.color("&cPlayer not found: " + targetName));
-                return;
-            }
-
-            // Get player name from database (in case of capitalization differences)
-            String storedName = plugin.getDatabaseManager().getPlayerName(targetUuid);
-            if (storedName != null) {
-                targetName = storedName;
-            }
+        return true;
+    }
 
-            // Check for active punishments
-            Punishment activeBan = plugin.getDatabaseManager().getActiveBan(targetUuid);
-            Punishment activeMute = plugin.getDatabaseManager().getActiveMute(targetUuid);
+    /**
+     * Build the check report for a player, on a database thread
+     *
+     * @param targetUuid The UUID of the player
+     * @param targetName The name the player was looked up by
+     * @return The report
+     */
+    private String buildReport(UUID targetUuid, String targetName) {
+        // Get player name from database (in case of capitalization differences)
+        String storedName = plugin.getDatabaseManager().getPlayerName(targetUuid);
+        String displayName = storedName != null ? storedName : targetName;
+
+        // Counts and active flags come from the player's summary row
+        PlayerStats stats = plugin.getDatabaseManager().getPlayerStats(targetUuid);
+        if (stats == null) {
+            throw CommandPipeline.abort("&cAn error occurred while checking " + displayName + ".");
+        }
 
-            // Get total counts
-            int totalBans = plugin.getDatabaseManager().getPunishmentCount(targetUuid, "ban");
-            int totalMutes = plugin.getDatabaseManager().getPunishmentCount(targetUuid, "mute");
-            int totalKicks = plugin.getDatabaseManager().getPunishmentCount(targetUuid, "kick");
-            int totalWarns = plugin.getDatabaseManager().getPunishmentCount(targetUuid, "warn");
+        // Only look up the details of punishments the summary says are active
+        List<PunishmentType> activeTypes = new ArrayList<>();
+        if (stats.hasActiveBan()) {
+            activeTypes.add(PunishmentType.BAN);
+            activeTypes.add(PunishmentType.TEMP_BAN);
+        }
+        if (stats.hasActiveMute()) {
+            activeTypes.add(PunishmentType.MUTE);
+            activeTypes.add(PunishmentType.TEMP_MUTE);
+        }
 
-            // Build the response
-            StringBuilder response = new StringBuilder();
-            response.append(MessageUtil.color("&6Punishment check for &f" + targetName + "&6:"));
-            
-            // Show ban status
-            if (activeBan != null) {
-                String banType = activeBan.isPermanent() ? "&4BANNED" : "&6TEMP-BANNED";
-                String expiry = activeBan.isPermanent() ? "Never" : 
-                        TimeUtil.formatTimeRemaining(activeBan.getEndTime() - System.currentTimeMillis());
-                
-                response.append(MessageUtil.color("\n&6Ban status: " + banType));
-                response.append(MessageUtil.color("\n &7Reason: &f" + activeBan.getReason()));
-                response.append(MessageUtil.color("\n &7Staff: &f" + activeBan.getPunisherName()));
-                response.append(MessageUtil.color("\n &7Date: &f" + TimeUtil.formatTimestamp(activeBan.getStartTime())));
-                
-                if (!activeBan.isPermanent()) {
-                    response.append(MessageUtil.color("\n &7Expires: &f" + expiry));
+        Punishment activeBan = null;
+        Punishment activeMute = null;
+        List<Punishment> active = activeTypes.isEmpty() ? Collections.emptyList()
+                : plugin.getDatabaseManager().getActivePunishments(Collections.singleton(targetUuid),
+                        activeTypes.toArray(new PunishmentType[0])).getOrDefault(targetUuid, Collections.emptyList());
+        for (Punishment punishment : active) {
+            if (punishment.getType() == PunishmentType.BAN || punishment.getType() == PunishmentType.TEMP_BAN) {
+                if (activeBan == null) {
+                    activeBan = punishment;
                 }
-            } else {
-                response.append(MessageUtil.color("\n&6Ban status: &aNOT BANNED"));
+            } else if (activeMute == null) {
+                activeMute = punishment;
             }
+        }
+
+        // Get total counts
+        int totalBans = stats.getBanCount();
+        int totalMutes = stats.getMuteCount();
+        int totalKicks = stats.getCount(PunishmentType.KICK);
+        int totalWarns = stats.getCount(PunishmentType.WARN);
+
+        // Build the response
+        StringBuilder response = new StringBuilder();
+        response.append(MessageUtil.color("&6Punishment check for &f" + displayName + "&6:"));
+        
+        // Show ban status
+        if (activeBan != null) {
+            String banType = activeBan.isPermanent() ? "&4BANNED" : "&6TEMP-BANNED";
+            String expiry = activeBan.isPermanent() ? "Never" : 
+                    TimeUtil.formatTimeRemaining(activeBan.getEndTime() - System.currentTimeMillis());
             
-            // Show mute status
-            if (activeMute != null) {
-                String muteType = activeMute.isPermanent() ? "&4MUTED" : "&6TEMP-MUTED";
-                String expiry = activeMute.isPermanent() ? "Never" : 
-                        TimeUtil.formatTimeRemaining(activeMute.getEndTime() - System.currentTimeMillis());
-                
-                response.append(MessageUtil.color("\n&6Mute status: " + muteType));
-                response.append(MessageUtil.color("\n &7Reason: &f" + activeMute.getReason()));
-                response.append(MessageUtil.color("\n &7Staff: &f" + activeMute.getPunisherName()));
-                response.append(MessageUtil.color("\n &7Date: &f" + TimeUtil.formatTimestamp(activeMute.getStartTime())));
-                
-                if (!activeMute.isPermanent()) {
-                    response.append(MessageUtil.color("\n &7Expires: &f" + expiry));
-                }
-            } else {
-                response.append(MessageUtil.color("\n&6Mute status: &aNOT MUTED"));
-            }
+            response.append(MessageUtil.color("\n&6Ban status: " + banType));
+            response.append(MessageUtil.color("\n &7Reason: &f" + activeBan.getReason()));
+            response.append(MessageUtil.color("\n &7Staff: &f" + activeBan.getPunisherName()));
+            response.append(MessageUtil.color("\n &7Date: &f" + TimeUtil.formatTimestamp(activeBan.getStartTime())));
             
-            // Show punishment counts
-            response.append(MessageUtil.color("\n&6Punishment history:"));
-            response.append(MessageUtil.color("\n &7Bans: &f" + totalBans));
-            response.append(MessageUtil.color("\n &7Mutes: &f" + totalMutes));
-            response.append(MessageUtil.color("\n &7Kicks: &f" + totalKicks));
-            response.append(MessageUtil.color("\n &7Warns: &f" + totalWarns));
+            if (!activeBan.isPermanent()) {
+                response.append(MessageUtil.color("\n &7Expires: &f" + expiry));
+            }
+        } else {
+            response.append(MessageUtil.color("\n&6Ban status: &aNOT BANNED"));
+        }
+        
+        // Show mute status
+        if (activeMute != null) {
+            String muteType = activeMute.isPermanent() ? "&4MUTED" : "&6TEMP-MUTED";
+            String expiry = activeMute.isPermanent() ? "Never" : 
+                    TimeUtil.formatTimeRemaining(activeMute.getEndTime() - System.currentTimeMillis());
             
-            // Add a message about how to view full history
-            response.append(MessageUtil.color("\n&6Use &f/history " + targetName + " &6to view full punishment history."));
+            response.append(MessageUtil.color("\n&6Mute status: " + muteType));
+            response.append(MessageUtil.color("\n &7Reason: &f" + activeMute.getReason()));
+            response.append(MessageUtil.color("\n &7Staff: &f" + activeMute.getPunisherName()));
+            response.append(MessageUtil.color("\n &7Date: &f" + TimeUtil.formatTimestamp(activeMute.getStartTime())));
             
-            // Send the message
-            sender.sendMessage(response.toString());
-        });
-
-        return true;
+            if (!activeMute.isPermanent()) {
+                response.append(MessageUtil.color("\n &7Expires: &f" + expiry));
+            }
+        } else {
+            response.append(MessageUtil.color("\n&6Mute status: &aNOT MUTED"));
+        }
+        
+        // Show punishment counts
+        response.append(MessageUtil.color("\n&6Punishment history:"));
+        response.append(MessageUtil.color("\n &7Bans: &f" + totalBans));
+        response.append(MessageUtil.color("\n &7Mutes: &f" + totalMutes));
+        response.append(MessageUtil.color("\n &7Kicks: &f" + totalKicks));
+        response.append(MessageUtil.color("\n &7Warns: &f" + totalWarns));
+        
+        // Add a message about how to view full history
+        response.append(MessageUtil.color("\n&6Use &f/history " + displayName + " &6to view full punishment history."));
+        
+        return response.toString();
     }
 
     /**
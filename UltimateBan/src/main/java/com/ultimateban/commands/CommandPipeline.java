@@ -0,0 +1,185 @@
+package com.ultimateban.commands;
+
+import com.ultimateban.UltimateBan;
+import com.ultimateban.util.MessageUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Runs a command as a chain of stages so the main thread never waits on the database.
+ * Resolve, load and mutate stages run on the database executor, sync stages and the final
+ * delivery run on the main thread, where Bukkit may be used. Each stage is timed under the command name.
+ * A stage ends the command early by throwing {@link #abort(String)}, whose message is sent to the sender.
+ *
+ * @param <T> The type of value the last stage produced
+ */
+public class CommandPipeline<T> {
+
+    private final UltimateBan plugin;
+    private final String command;
+    private final CommandSender sender;
+    private final CompletableFuture<T> future;
+    private final long startNanos;
+
+    private CommandPipeline(UltimateBan plugin, String command, CommandSender sender, CompletableFuture<T> future, long startNanos) {
+        this.plugin = plugin;
+        this.command = command;
+        this.sender = sender;
+        this.future = future;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Start a pipeline
+     *
+     * @param plugin  The UltimateBan plugin instance
+     * @param command The command name, used for timings and error messages
+     * @param sender  The sender of the command, who receives abort and error messages
+     * @return An empty pipeline
+     */
+    public static CommandPipeline<Void> start(UltimateBan plugin, String command, CommandSender sender) {
+        return new CommandPipeline<>(plugin, command, sender, CompletableFuture.completedFuture(null), System.nanoTime());
+    }
+
+    /**
+     * End the command with a message to the sender, thrown from a stage
+     *
+     * @param message The message, with color codes
+     * @return The exception to throw
+     */
+    public static Abort abort(String message) {
+        return new Abort(message);
+    }
+
+    /**
+     * Find what the command acts on, typically a player UUID, off the main thread
+     *
+     * @param stage The stage
+     * @param <R>   The result type
+     * @return The pipeline continuing with the result
+     */
+    public <R> CommandPipeline<R> resolve(Function<T, R> stage) {
+        return async("resolve", stage);
+    }
+
+    /**
+     * Read what the command needs from the database, off the main thread
+     *
+     * @param stage The stage
+     * @param <R>   The result type
+     * @return The pipeline continuing with the result
+     */
+    public <R> CommandPipeline<R> load(Function<T, R> stage) {
+        return async("load", stage);
+    }
+
+    /**
+     * Write the change the command makes, off the main thread
+     *
+     * @param stage The stage
+     * @param <R>   The result type
+     * @return The pipeline continuing with the result
+     */
+    public <R> CommandPipeline<R> mutate(Function<T, R> stage) {
+        return async("mutate", stage);
+    }
+
+    /**
+     * Run a stage on the main thread, for Bukkit calls whose result later stages need
+     *
+     * @param stage The stage
+     * @param <R>   The result type
+     * @return The pipeline continuing with the result
+     */
+    public <R> CommandPipeline<R> sync(Function<T, R> stage) {
+        return next(future.thenCompose(value -> onMainThread(() -> timed("sync", stage, value))));
+    }
+
+    /**
+     * Finish on the main thread with the result, or tell the sender why the command stopped
+     *
+     * @param stage The final stage
+     */
+    public void deliver(Consumer<T> stage) {
+        future.thenCompose(value -> onMainThread(() -> timed("deliver", result -> {
+            stage.accept(result);
+            return null;
+        }, value))).whenComplete((ignored, error) -> {
+            plugin.getCommandTimings().record(command, "total", System.nanoTime() - startNanos);
+            if (error != null) {
+                onMainThread(() -> {
+                    fail(error);
+                    return null;
+                });
+            }
+        });
+    }
+
+    private <R> CommandPipeline<R> async(String name, Function<T, R> stage) {
+        return next(future.thenCompose(value ->
+                plugin.getDatabaseManager().getExecutor().supply(() -> timed(name, stage, value))));
+    }
+
+    private <R> CommandPipeline<R> next(CompletableFuture<R> next) {
+        return new CommandPipeline<>(plugin, command, sender, next, startNanos);
+    }
+
+    private <R> R timed(String name, Function<T, R> stage, T value) {
+        long start = System.nanoTime();
+        try {
+            return stage.apply(value);
+        } finally {
+            plugin.getCommandTimings().record(command, name, System.nanoTime() - start);
+        }
+    }
+
+    private <R> CompletableFuture<R> onMainThread(Supplier<R> task) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Runnable runnable = () -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        };
+
+        if (Bukkit.isPrimaryThread()) {
+            runnable.run();
+        } else if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, runnable);
+        } else {
+            result.completeExceptionally(new IllegalStateException("Plugin disabled before /" + command + " finished"));
+        }
+        return result;
+    }
+
+    private void fail(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof Abort) {
+            sender.sendMessage(MessageUtil.color(cause.getMessage()));
+            return;
+        }
+
+        plugin.getLogger().log(Level.SEVERE, "Error running /" + command + ": " + cause.getMessage(), cause);
+        sender.sendMessage(MessageUtil.color("&cAn error occurred while running /" + command + "."));
+    }
+
+    /**
+     * Ends a pipeline early with a message for the sender
+     */
+    public static class Abort extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Abort(String message) {
+            // Aborts are expected outcomes, not errors, so the stack trace is not needed
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ultimateban.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects how long each stage of each command takes, for /ultimateban stats
+ */
+public class CommandTimings {
+
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+
+    /**
+     * Record one run of a stage
+     *
+     * @param command The command name
+     * @param stage   The stage name
+     * @param nanos   How long the stage ran
+     */
+    public void record(String command, String stage, long nanos) {
+        timings.computeIfAbsent(command + " " + stage, Timing::new).record(nanos);
+    }
+
+    /**
+     * Get the timings recorded so far, sorted by command and stage
+     *
+     * @return The timings
+     */
+    public List<Timing> getTimings() {
+        List<Timing> sorted = new ArrayList<>(timings.values());
+        sorted.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return sorted;
+    }
+
+    /**
+     * The recorded runs of one stage of one command
+     */
+    public static class Timing {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Timing(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * Get the average run time
+         *
+         * @return The average in milliseconds
+         */
+        public double getAverageMillis() {
+            long runs = count.get();
+            return runs == 0 ? 0 : totalNanos.get() / (double) runs / 1_000_000;
+        }
+
+        /**
+         * Get the longest run time
+         *
+         * @return The maximum in milliseconds
+         */
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+}
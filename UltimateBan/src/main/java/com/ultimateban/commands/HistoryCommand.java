@@ -1,6 +1,8 @@
 package com.ultimateban.commands;
 
 import com.ultimateban.UltimateBan;
+import com.ultimateban.models.HistoryCursor;
+import com.ultimateban.models.PlayerStats;
 import com.ultimateban.models.Punishment;
 import com.ultimateban.util.MessageUtil;
 import org.bukkit.Bukkit;
@@ -10,11 +12,25 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class HistoryCommand implements CommandExecutor, TabCompleter {
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_TRACKED_VIEWS = 100;
+
     private final UltimateBan plugin;
+    // The page positions found so far for each sender's current target, so paging on resumes from a known position
+    private final Map<String, HistoryView> views = Collections.synchronizedMap(
+            new LinkedHashMap<String, HistoryView>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, HistoryView> eldest) {
+                    return size() > MAX_TRACKED_VIEWS;
+                }
+            });
 
     public HistoryCommand(UltimateBan plugin) {
         this.plugin = plugin;
@@ -28,30 +44,75 @@ public class HistoryCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length < 1) {
-            sender.sendMessage(MessageUtil.color("&cUsage: /history <player>"));
+            sender.sendMessage(MessageUtil.color("&cUsage: /history <player> [page]"));
             return true;
         }
 
+        int page = 1;
+        if (args.length > 1) {
+            try {
+                page = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1) {
+                sender.sendMessage(MessageUtil.color("&cInvalid page: " + args[1]));
+                return true;
+            }
+        }
+
         String targetName = args[0];
-        UUID targetUUID = plugin.getDatabaseManager().getPlayerUUID(targetName);
-        
-        if (targetUUID == null) {
-            sender.sendMessage(MessageUtil.color("&cPlayer not found!"));
-            return true;
+        int requestedPage = page;
+        CommandPipeline.start(plugin, "history", sender)
+                .resolve(ignored -> {
+                    UUID targetUUID = plugin.getDatabaseManager().lookupPlayerUuidSync(targetName);
+                    if (targetUUID == null) {
+                        throw CommandPipeline.abort("&cPlayer not found!");
+                    }
+                    return targetUUID;
+                })
+                .load(targetUUID -> loadPage(sender.getName(), targetUUID, targetName, requestedPage))
+                .deliver(lines -> lines.forEach(sender::sendMessage));
+        return true;
+    }
+
+    /**
+     * Load one page of history, on a database thread
+     *
+     * @return The lines to send
+     */
+    private List<String> loadPage(String viewer, UUID targetUUID, String targetName, int page) {
+        PlayerStats stats = plugin.getDatabaseManager().getPlayerStats(targetUUID);
+        if (stats == null) {
+            throw CommandPipeline.abort("&cAn error occurred while loading the history of " + targetName + ".");
         }
 
-        List<Punishment> punishments = plugin.getDatabaseManager().getPlayerPunishments(targetUUID);
-        if (punishments.isEmpty()) {
-            sender.sendMessage(MessageUtil.color("&cNo punishment history found for " + targetName));
-            return true;
+        int total = stats.getTotalCount();
+        if (total == 0) {
+            throw CommandPipeline.abort("&cNo punishment history found for " + targetName);
         }
 
-        sender.sendMessage(MessageUtil.color("&6=== Punishment History for " + targetName + " ==="));
+        int pages = (total + PAGE_SIZE - 1) / PAGE_SIZE;
+        if (page > pages) {
+            throw CommandPipeline.abort("&c" + targetName + " only has " + pages + " page(s) of history.");
+        }
+
+        HistoryCursor cursor = findPage(viewer, targetUUID, page);
+        List<Punishment> punishments = cursor != null
+                ? plugin.getDatabaseManager().getPunishmentPage(targetUUID, cursor, PAGE_SIZE)
+                : null;
+        if (punishments == null || punishments.isEmpty()) {
+            throw CommandPipeline.abort("&cNo punishments found on page " + page + ".");
+        }
+        remember(viewer, targetUUID, page + 1, HistoryCursor.after(punishments.get(punishments.size() - 1)));
+
+        List<String> lines = new ArrayList<>();
+        lines.add(MessageUtil.color("&6=== Punishment History for " + targetName + " (page " + page + "/" + pages + ") ==="));
         for (Punishment punishment : punishments) {
             String status = punishment.isActive() ? "&cActive" : "&aExpired";
-            String duration = punishment.isPermanent() ? "Permanent" : 
+            String duration = punishment.isPermanent() ? "Permanent" :
                 formatDuration(punishment.getDuration());
-            sender.sendMessage(MessageUtil.color(String.format(
+            lines.add(MessageUtil.color(String.format(
                 "&7Type: &f%s &7| %s &7| Duration: &f%s &7| Reason: &f%s",
                 punishment.getType().name(),
                 status,
@@ -59,7 +120,54 @@ public class HistoryCommand implements CommandExecutor, TabCompleter {
                 punishment.getReason()
             )));
         }
-        return true;
+        if (page < pages) {
+            lines.add(MessageUtil.color("&7Use &f/history " + targetName + " " + (page + 1) + " &7for the next page."));
+        }
+        return lines;
+    }
+
+    /**
+     * Find the position a page starts at, skipping forward from the closest page already seen
+     *
+     * @return The position, or null if the history is shorter than the page
+     */
+    private HistoryCursor findPage(String viewer, UUID targetUUID, int page) {
+        // Opening the first page starts over, so punishments added since are picked up
+        HistoryView view = views.get(viewer);
+        if (view == null || !view.target.equals(targetUUID) || page == 1) {
+            view = new HistoryView(targetUUID);
+            views.put(viewer, view);
+        }
+
+        int knownPage;
+        HistoryCursor cursor;
+        synchronized (view) {
+            knownPage = Math.min(page, view.pageStarts.size());
+            cursor = view.pageStarts.get(knownPage - 1);
+        }
+        if (knownPage == page) {
+            return cursor;
+        }
+
+        cursor = plugin.getDatabaseManager().skipPunishments(targetUUID, cursor, (page - knownPage) * PAGE_SIZE);
+        if (cursor != null) {
+            remember(viewer, targetUUID, page, cursor);
+        }
+        return cursor;
+    }
+
+    private void remember(String viewer, UUID targetUUID, int page, HistoryCursor cursor) {
+        HistoryView view = views.get(viewer);
+        if (view == null || !view.target.equals(targetUUID)) {
+            return;
+        }
+
+        synchronized (view) {
+            // Only consecutive pages are kept, a jump ahead is found again by skipping
+            if (page - 1 == view.pageStarts.size()) {
+                view.pageStarts.add(cursor);
+            }
+        }
     }
 
     @Override
@@ -73,7 +181,7 @@ public class HistoryCommand implements CommandExecutor, TabCompleter {
 
     private String formatDuration(long duration) {
         if (duration < 0) return "Permanent";
-        
+
         long seconds = duration / 1000;
         long minutes = seconds / 60;
         long hours = minutes / 60;
@@ -88,4 +196,17 @@ public class HistoryCommand implements CommandExecutor, TabCompleter {
         if (minutes > 0) return minutes + "m";
         return seconds + "s";
     }
+
+    /**
+     * The start positions of the pages of one target's history a sender has seen, page 1 first
+     */
+    private static class HistoryView {
+        private final UUID target;
+        private final List<HistoryCursor> pageStarts = new ArrayList<>();
+
+        HistoryView(UUID target) {
+            this.target = target;
+            pageStarts.add(HistoryCursor.START);
+        }
+    }
 } 
\ No newline at end of file
@@ -52,32 +52,27 @@ public class IpBanCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length < (isTemporary ? 3 : 2)) {
-            sender.sendMessage(MessageUtil.color("&c&l⚠ &cUsage: /" + command.getName() + " <ip|player> " +
+            sender.sendMessage(MessageUtil.color("&c&l⚠ &cUsage: /" + command.getName() + " <ip|range|player> " +
                     (isTemporary ? "<duration> " : "") + "<reason>"));
             return true;
         }
 
         String targetIpOrPlayer = args[0];
-        String ipAddress;
+        String knownIp = null;
+        boolean isSubnet = false;
         
-        // Check if input is an IP address or a player name
+        // Check if input is an IP address, a CIDR range or a player name
         if (IPUtil.isValidIp(targetIpOrPlayer)) {
-            ipAddress = targetIpOrPlayer;
+            knownIp = targetIpOrPlayer;
+        } else if (IPUtil.isValidCidr(targetIpOrPlayer)) {
+            // Store ranges with the host bits cleared so /ipunban can find them again
+            knownIp = IPUtil.normalizeCidr(targetIpOrPlayer);
+            isSubnet = true;
         } else {
-            // Try to find player online
+            // Try to find player online, offline players are looked up in the database below
             Player target = Bukkit.getPlayer(targetIpOrPlayer);
-            
             if (target != null) {
-                ipAddress = target.getAddress().getAddress().getHostAddress();
-            } else {
-                // Try to get last IP from database
-                List<String> ips = plugin.getDatabaseManager().getPlayerIps(plugin.getDatabaseManager().getPlayerUUID(targetIpOrPlayer));
-                if (ips.isEmpty()) {
-                    sender.sendMessage(MessageUtil.color("&c&l⚠ &cCouldn't find IP address for player " + targetIpOrPlayer));
-                    return true;
-                }
-                
-                ipAddress = ips.get(0); // Get the most recent IP
+                knownIp = target.getAddress().getAddress().getHostAddress();
             }
         }
         
@@ -109,90 +104,111 @@ public class IpBanCommand implements CommandExecutor, TabCompleter {
         for (int i = reasonStartIndex; i < args.length; i++) {
             reason.append(args[i]).append(" ");
         }
+        String reasonText = reason.toString().trim();
+        String resolvedIp = knownIp;
+        boolean subnet = isSubnet;
+        long banEnd = endTime;
+        UUID punisherUUID = sender instanceof Player ? ((Player) sender).getUniqueId() : UUID.randomUUID();
 
-        // Check if there's an active ban for this IP already
-        if (plugin.getDatabaseManager().getActiveIpBan(ipAddress) != null) {
-            sender.sendMessage(MessageUtil.color("&c&l⚠ &cIP address " + ipAddress + " is already banned!"));
-            return true;
-        }
+        CommandPipeline.start(plugin, command.getName(), sender)
+                .resolve(ignored -> {
+                    if (resolvedIp != null) {
+                        return resolvedIp;
+                    }
 
-        // Create the IP ban
-        boolean isSubnet = false; // Default, allow for subnet bans with a different command
-        
-        IpBan ipBan = new IpBan(
-                ipAddress,
-                sender instanceof Player ? ((Player) sender).getUniqueId() : UUID.randomUUID(),
-                sender.getName(),
-                reason.toString().trim(),
-                System.currentTimeMillis(),
-                endTime,
-                isSubnet
-        );
+                    // Try to get last IP from database
+                    UUID targetUUID = plugin.getDatabaseManager().lookupPlayerUuidSync(targetIpOrPlayer);
+                    List<String> ips = targetUUID != null ? plugin.getDatabaseManager().getPlayerIps(targetUUID) : null;
+                    if (ips == null || ips.isEmpty()) {
+                        throw CommandPipeline.abort("&c&l⚠ &cCouldn't find IP address for player " + targetIpOrPlayer);
+                    }
+                    return ips.get(0); // Get the most recent IP
+                })
+                .mutate(ipAddress -> {
+                    // Check if there's an active ban for this IP already
+                    if (plugin.getDatabaseManager().getActiveIpBan(ipAddress) != null) {
+                        throw CommandPipeline.abort("&c&l⚠ &cIP address " + ipAddress + " is already banned!");
+                    }
+
+                    // Create the IP ban
+                    IpBan ipBan = new IpBan(
+                            ipAddress,
+                            punisherUUID,
+                            sender.getName(),
+                            reasonText,
+                            System.currentTimeMillis(),
+                            banEnd,
+                            subnet
+                    );
 
-        // Save the ban
-        if (plugin.getDatabaseManager().saveIpBan(ipBan)) {
-            // Success message to sender
-            String successMsg = plugin.getConfigManager().getConfig().getString(
-                    "messages.ipban.success",
-                    "&a&l✓ &aYou have banned IP &f" + ipAddress + (isTemporary ? " &afor &f%duration%" : " &apermanently")
-            );
+                    // Save the ban
+                    if (!plugin.getDatabaseManager().saveIpBan(ipBan)) {
+                        throw CommandPipeline.abort("&c&l⚠ &cFailed to ban IP " + ipAddress);
+                    }
+                    return ipAddress;
+                })
+                .deliver(ipAddress -> {
+                    // Success message to sender
+                    String successMsg = plugin.getConfigManager().getConfig().getString(
+                            "messages.ipban.success",
+                            "&a&l✓ &aYou have banned IP &f" + ipAddress + (isTemporary ? " &afor &f%duration%" : " &apermanently")
+                    );
             
-            successMsg = successMsg
-                    .replace("%ip%", ipAddress)
-                    .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "permanently");
+                    successMsg = successMsg
+                            .replace("%ip%", ipAddress)
+                            .replace("%duration%", isTemporary ? TimeUtil.formatDuration(banEnd - System.currentTimeMillis()) : "permanently");
             
-            sender.sendMessage(MessageUtil.color(successMsg));
+                    sender.sendMessage(MessageUtil.color(successMsg));
             
-            // Broadcast if enabled
-            boolean shouldBroadcast = plugin.getConfigManager().getConfig().getBoolean("broadcast.ipban", true);
-            if (shouldBroadcast) {
-                String broadcastMsg = plugin.getConfigManager().getConfig().getString(
-                        "messages.ipban.broadcast",
-                        "&c&l⚠ &fIP &c" + ipAddress + " &7has been &" + (isTemporary ? "6" : "c") + "&l" +
-                                (isTemporary ? "TEMPORARILY " : "") + "BANNED &7by &c" + sender.getName() +
-                                (isTemporary ? " &7for &f%duration%" : "") + "&7:\n&f" + reason
-                );
+                    // Broadcast if enabled
+                    boolean shouldBroadcast = plugin.getConfigManager().getConfig().getBoolean("broadcast.ipban", true);
+                    if (shouldBroadcast) {
+                        String broadcastMsg = plugin.getConfigManager().getConfig().getString(
+                                "messages.ipban.broadcast",
+                                "&c&l⚠ &fIP &c" + ipAddress + " &7has been &" + (isTemporary ? "6" : "c") + "&l" +
+                                        (isTemporary ? "TEMPORARILY " : "") + "BANNED &7by &c" + sender.getName() +
+                                        (isTemporary ? " &7for &f%duration%" : "") + "&7:\n&f" + reasonText
+                        );
                 
-                broadcastMsg = broadcastMsg
-                        .replace("%ip%", ipAddress)
-                        .replace("%staff%", sender.getName())
-                        .replace("%reason%", reason.toString().trim())
-                        .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "");
+                        broadcastMsg = broadcastMsg
+                                .replace("%ip%", ipAddress)
+                                .replace("%staff%", sender.getName())
+                                .replace("%reason%", reasonText)
+                                .replace("%duration%", isTemporary ? TimeUtil.formatDuration(banEnd - System.currentTimeMillis()) : "");
                 
-                Bukkit.broadcastMessage(MessageUtil.color(broadcastMsg));
-            }
-            
-            // Kick all players with this IP if they're online
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                if (player.getAddress().getAddress().getHostAddress().equals(ipAddress)) {
-                    // Skip players with bypass permission
-                    if (player.hasPermission("ultimateban.bypass.ipban")) {
-                        continue;
+                        Bukkit.broadcastMessage(MessageUtil.color(broadcastMsg));
                     }
+            
+                    // Kick all players with this IP if they're online
+                    for (Player player : Bukkit.getOnlinePlayers()) {
+                        String playerIp = player.getAddress().getAddress().getHostAddress();
+                        if (subnet ? IPUtil.cidrContains(ipAddress, playerIp) : playerIp.equals(ipAddress)) {
+                            // Skip players with bypass permission
+                            if (player.hasPermission("ultimateban.bypass.ipban")) {
+                                continue;
+                            }
                     
-                    // Format kick message
-                    String kickMsg = plugin.getConfigManager().getConfig().getString(
-                            "messages.ipban.player-message",
-                            "&c&l⚠ &4&lYOUR IP IS BANNED &c&l⚠\n\n" +
-                                    "&r&7Reason: &c" + reason.toString().trim() + "\n" +
-                                    "&7Banned by: &c" + sender.getName() + "\n" +
-                                    (isTemporary ? "&7Expires: &c" + TimeUtil.formatTimestamp(endTime) + "\n" : "") +
-                                    "&7Date: &c" + TimeUtil.formatTimestamp(System.currentTimeMillis()) + "\n\n" +
-                                    "&7Appeal at: &b&nminecraft.example.com/appeal"
-                    );
+                            // Format kick message
+                            String kickMsg = plugin.getConfigManager().getConfig().getString(
+                                    "messages.ipban.player-message",
+                                    "&c&l⚠ &4&lYOUR IP IS BANNED &c&l⚠\n\n" +
+                                            "&r&7Reason: &c" + reasonText + "\n" +
+                                            "&7Banned by: &c" + sender.getName() + "\n" +
+                                            (isTemporary ? "&7Expires: &c" + TimeUtil.formatTimestamp(banEnd) + "\n" : "") +
+                                            "&7Date: &c" + TimeUtil.formatTimestamp(System.currentTimeMillis()) + "\n\n" +
+                                            "&7Appeal at: &b&nminecraft.example.com/appeal"
+                            );
                     
-                    kickMsg = kickMsg
-                            .replace("%reason%", reason.toString().trim())
-                            .replace("%staff%", sender.getName())
-                            .replace("%expires%", isTemporary ? TimeUtil.formatTimestamp(endTime) : "Never")
-                            .replace("%date%", TimeUtil.formatTimestamp(System.currentTimeMillis()));
+                            kickMsg = kickMsg
+                                    .replace("%reason%", reasonText)
+                                    .replace("%staff%", sender.getName())
+                                    .replace("%expires%", isTemporary ? TimeUtil.formatTimestamp(banEnd) : "Never")
+                                    .replace("%date%", TimeUtil.formatTimestamp(System.currentTimeMillis()));
                     
-                    player.kickPlayer(MessageUtil.color(kickMsg));
-                }
-            }
-        } else {
-            sender.sendMessage(MessageUtil.color("&c&l⚠ &cFailed to ban IP " + ipAddress));
-        }
+                            player.kickPlayer(MessageUtil.color(kickMsg));
+                        }
+                    }
+                });
         
         return true;
     }
@@ -13,6 +13,7 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Command for unbanning IP addresses
@@ -37,58 +38,63 @@ public class IpUnbanCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length < 1) {
-            sender.sendMessage(MessageUtil.color("&c&l⚠ &cUsage: /ipunban <ip|player>"));
+            sender.sendMessage(MessageUtil.color("&c&l⚠ &cUsage: /ipunban <ip|range|player>"));
             return true;
         }
 
         String targetIpOrPlayer = args[0];
-        String ipAddress;
         
-        // Check if input is an IP address or a player name
-        if (IPUtil.isValidIp(targetIpOrPlayer)) {
-            ipAddress = targetIpOrPlayer;
-        } else {
-            // Try to get last IP from database
-            List<String> ips = plugin.getDatabaseManager().getPlayerIps(plugin.getDatabaseManager().getPlayerUUID(targetIpOrPlayer));
-            if (ips.isEmpty()) {
-                sender.sendMessage(MessageUtil.color("&c&l⚠ &cCouldn't find IP address for player " + targetIpOrPlayer));
-                return true;
-            }
-            
-            ipAddress = ips.get(0); // Get the most recent IP
-        }
+        CommandPipeline.start(plugin, "ipunban", sender)
+                .resolve(ignored -> {
+                    // Check if input is an IP address, a CIDR range or a player name
+                    if (IPUtil.isValidIp(targetIpOrPlayer)) {
+                        return targetIpOrPlayer;
+                    } else if (IPUtil.isValidCidr(targetIpOrPlayer)) {
+                        return IPUtil.normalizeCidr(targetIpOrPlayer);
+                    }
 
-        // Check if the IP is actually banned
-        IpBan ipBan = plugin.getDatabaseManager().getActiveIpBan(ipAddress);
-        if (ipBan == null) {
-            sender.sendMessage(MessageUtil.color("&c&l⚠ &cIP address " + ipAddress + " is not banned!"));
-            return true;
-        }
+                    // Try to get last IP from database
+                    UUID targetUUID = plugin.getDatabaseManager().lookupPlayerUuidSync(targetIpOrPlayer);
+                    List<String> ips = targetUUID != null ? plugin.getDatabaseManager().getPlayerIps(targetUUID) : null;
+                    if (ips == null || ips.isEmpty()) {
+                        throw CommandPipeline.abort("&c&l⚠ &cCouldn't find IP address for player " + targetIpOrPlayer);
+                    }
+                    return ips.get(0); // Get the most recent IP
+                })
+                .mutate(ipAddress -> {
+                    // Check if the IP is actually banned
+                    IpBan ipBan = plugin.getDatabaseManager().getActiveIpBan(ipAddress);
+                    if (ipBan == null) {
+                        throw CommandPipeline.abort("&c&l⚠ &cIP address " + ipAddress + " is not banned!");
+                    }
 
-        // Deactivate the ban
-        if (plugin.getDatabaseManager().deactivateIpBan(ipBan.getId())) {
-            // Success message to sender
-            String successMsg = plugin.getConfigManager().getConfig().getString(
-                    "messages.ipunban.success",
-                    "&a&l✓ &aYou have unbanned IP &f" + ipAddress
-            ).replace("%ip%", ipAddress);
+                    // Deactivate the ban
+                    if (!plugin.getDatabaseManager().deactivateIpBan(ipBan.getId())) {
+                        throw CommandPipeline.abort("&c&l⚠ &cFailed to unban IP " + ipAddress);
+                    }
+                    return ipAddress;
+                })
+                .deliver(ipAddress -> {
+                    // Success message to sender
+                    String successMsg = plugin.getConfigManager().getConfig().getString(
+                            "messages.ipunban.success",
+                            "&a&l✓ &aYou have unbanned IP &f" + ipAddress
+                    ).replace("%ip%", ipAddress);
             
-            sender.sendMessage(MessageUtil.color(successMsg));
+                    sender.sendMessage(MessageUtil.color(successMsg));
             
-            // Broadcast if enabled
-            boolean shouldBroadcast = plugin.getConfigManager().getConfig().getBoolean("broadcast.ipunban", true);
-            if (shouldBroadcast) {
-                String broadcastMsg = plugin.getConfigManager().getConfig().getString(
-                        "messages.ipunban.broadcast",
-                        "&a&l✓ &fIP &c" + ipAddress + " &7has been &a&lUNBANNED &7by &c" + sender.getName()
-                ).replace("%ip%", ipAddress)
-                 .replace("%staff%", sender.getName());
+                    // Broadcast if enabled
+                    boolean shouldBroadcast = plugin.getConfigManager().getConfig().getBoolean("broadcast.ipunban", true);
+                    if (shouldBroadcast) {
+                        String broadcastMsg = plugin.getConfigManager().getConfig().getString(
+                                "messages.ipunban.broadcast",
+                                "&a&l✓ &fIP &c" + ipAddress + " &7has been &a&lUNBANNED &7by &c" + sender.getName()
+                        ).replace("%ip%", ipAddress)
+                         .replace("%staff%", sender.getName());
                 
-                Bukkit.broadcastMessage(MessageUtil.color(broadcastMsg));
-            }
-        } else {
-            sender.sendMessage(MessageUtil.color("&c&l⚠ &cFailed to unban IP " + ipAddress));
-        }
+                        Bukkit.broadcastMessage(MessageUtil.color(broadcastMsg));
+                    }
+                });
         
         return true;
     }
@@ -43,16 +43,10 @@ public class MuteCommand implements CommandExecutor, TabCompleter {
         }
 
         String targetName = args[0];
-        Player target = Bukkit.getPlayer(targetName);
-        UUID targetUUID = target != null ? target.getUniqueId() : plugin.getDatabaseManager().getPlayerUUID(targetName);
-        
-        if (targetUUID == null) {
-            sender.sendMessage(MessageUtil.color("&cPlayer not found!"));
-            return true;
-        }
+        Player online = Bukkit.getPlayer(targetName);
 
         // Check if player has bypass permission
-        if (target != null && target.hasPermission("ultimateban.bypass.mute")) {
+        if (online != null && online.hasPermission("ultimateban.bypass.mute")) {
             sender.sendMessage(MessageUtil.color("&cThis player cannot be muted!"));
             return true;
         }
@@ -67,71 +61,87 @@ public class MuteCommand implements CommandExecutor, TabCompleter {
         for (int i = isTemporary ? 2 : 1; i < args.length; i++) {
             reason.append(args[i]).append(" ");
         }
+        String reasonText = reason.toString().trim();
+        UUID onlineUUID = online != null ? online.getUniqueId() : null;
+        UUID punisherUUID = sender instanceof Player ? ((Player) sender).getUniqueId() : UUID.randomUUID();
 
-        Punishment punishment = new Punishment(
-            targetUUID,
-            targetName,
-            sender instanceof Player ? ((Player) sender).getUniqueId() : UUID.randomUUID(),
-            sender.getName(),
-            isTemporary ? PunishmentType.TEMP_MUTE : PunishmentType.MUTE,
-            reason.toString().trim(),
-            System.currentTimeMillis(),
-            endTime
-        );
-
-        if (plugin.getDatabaseManager().savePunishment(punishment)) {
-            // Success message to sender
-            String successMsg = plugin.getConfigManager().getConfig().getString(
-                "messages." + (isTemporary ? "tempmute" : "mute") + ".success", 
-                "&a&l✓ &aYou have muted &f%player% " + (isTemporary ? "for &f%duration%" : "permanently")
-            );
+        CommandPipeline.start(plugin, command.getName(), sender)
+                .resolve(ignored -> {
+                    UUID targetUUID = onlineUUID != null ? onlineUUID : plugin.getDatabaseManager().lookupPlayerUuidSync(targetName);
+                    if (targetUUID == null) {
+                        throw CommandPipeline.abort("&cPlayer not found!");
+                    }
+                    return targetUUID;
+                })
+                .mutate(targetUUID -> {
+                    Punishment punishment = new Punishment(
+                        targetUUID,
+                        targetName,
+                        punisherUUID,
+                        sender.getName(),
+                        isTemporary ? PunishmentType.TEMP_MUTE : PunishmentType.MUTE,
+                        reasonText,
+                        System.currentTimeMillis(),
+                        endTime
+                    );
+                    // The mute manager caches the new mute as soon as it is saved
+                    if (!plugin.getDatabaseManager().savePunishment(punishment)) {
+                        throw CommandPipeline.abort("&c&l⚠ &cFailed to mute " + targetName);
+                    }
+                    return targetUUID;
+                })
+                .deliver(targetUUID -> {
+                    // Success message to sender
+                    String successMsg = plugin.getConfigManager().getConfig().getString(
+                        "messages." + (isTemporary ? "tempmute" : "mute") + ".success", 
+                        "&a&l✓ &aYou have muted &f%player% " + (isTemporary ? "for &f%duration%" : "permanently")
+                    );
             
-            successMsg = successMsg
-                .replace("%player%", targetName)
-                .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "permanently");
+                    successMsg = successMsg
+                        .replace("%player%", targetName)
+                        .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "permanently");
             
-            sender.sendMessage(MessageUtil.color(successMsg));
+                    sender.sendMessage(MessageUtil.color(successMsg));
             
-            // Message to the muted player
-            if (target != null) {
-                String playerMsg = plugin.getConfigManager().getConfig().getString(
-                    "messages." + (isTemporary ? "tempmute" : "mute") + ".player_message",
-                    "&c&l⚠ &" + (isTemporary ? "6" : "4") + "&lYOU HAVE BEEN " + (isTemporary ? "TEMPORARILY " : "") + "MUTED &c&l⚠\n" +
-                    "&r&7Reason: &c%reason%\n" +
-                    "&7Muted by: &c%staff%" + 
-                    (isTemporary ? "\n&7Duration: &c%duration%\n&7Expires: &c%expires%" : "")
-                );
+                    // Message to the muted player, who may have logged off while the mute was saved
+                    Player target = Bukkit.getPlayer(targetUUID);
+                    if (target != null) {
+                        String playerMsg = plugin.getConfigManager().getConfig().getString(
+                            "messages." + (isTemporary ? "tempmute" : "mute") + ".player_message",
+                            "&c&l⚠ &" + (isTemporary ? "6" : "4") + "&lYOU HAVE BEEN " + (isTemporary ? "TEMPORARILY " : "") + "MUTED &c&l⚠\n" +
+                            "&r&7Reason: &c%reason%\n" +
+                            "&7Muted by: &c%staff%" + 
+                            (isTemporary ? "\n&7Duration: &c%duration%\n&7Expires: &c%expires%" : "")
+                        );
                 
-                playerMsg = playerMsg
-                    .replace("%reason%", reason.toString().trim())
-                    .replace("%staff%", sender.getName())
-                    .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "")
-                    .replace("%expires%", isTemporary ? TimeUtil.formatTimestamp(endTime) : "")
-                    .replace("%date%", TimeUtil.formatTimestamp(System.currentTimeMillis()));
+                        playerMsg = playerMsg
+                            .replace("%reason%", reasonText)
+                            .replace("%staff%", sender.getName())
+                            .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "")
+                            .replace("%expires%", isTemporary ? TimeUtil.formatTimestamp(endTime) : "")
+                            .replace("%date%", TimeUtil.formatTimestamp(System.currentTimeMillis()));
                 
-                target.sendMessage(MessageUtil.color(playerMsg));
-            }
+                        target.sendMessage(MessageUtil.color(playerMsg));
+                    }
             
-            // Broadcast to all players if enabled in config
-            boolean shouldBroadcast = plugin.getConfigManager().getConfig().getBoolean("broadcast." + (isTemporary ? "tempmute" : "mute"), true);
-            if (shouldBroadcast) {
-                String broadcastMsg = plugin.getConfigManager().getConfig().getString(
-                    "messages." + (isTemporary ? "tempmute" : "mute") + ".broadcast",
-                    "&c&l⚠ &f%player% &7has been &" + (isTemporary ? "6" : "c") + "&l" + (isTemporary ? "TEMPORARILY " : "") + "MUTED &7by &c%staff%" + 
-                    (isTemporary ? " &7for &f%duration%" : "") + "&7:\n&f%reason%"
-                );
+                    // Broadcast to all players if enabled in config
+                    boolean shouldBroadcast = plugin.getConfigManager().getConfig().getBoolean("broadcast." + (isTemporary ? "tempmute" : "mute"), true);
+                    if (shouldBroadcast) {
+                        String broadcastMsg = plugin.getConfigManager().getConfig().getString(
+                            "messages." + (isTemporary ? "tempmute" : "mute") + ".broadcast",
+                            "&c&l⚠ &f%player% &7has been &" + (isTemporary ? "6" : "c") + "&l" + (isTemporary ? "TEMPORARILY " : "") + "MUTED &7by &c%staff%" + 
+                            (isTemporary ? " &7for &f%duration%" : "") + "&7:\n&f%reason%"
+                        );
                 
-                broadcastMsg = broadcastMsg
-                    .replace("%player%", targetName)
-                    .replace("%staff%", sender.getName())
-                    .replace("%reason%", reason.toString().trim())
-                    .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "");
+                        broadcastMsg = broadcastMsg
+                            .replace("%player%", targetName)
+                            .replace("%staff%", sender.getName())
+                            .replace("%reason%", reasonText)
+                            .replace("%duration%", isTemporary ? TimeUtil.formatDuration(endTime - System.currentTimeMillis()) : "");
                 
-                Bukkit.broadcastMessage(MessageUtil.color(broadcastMsg));
-            }
-        } else {
-            sender.sendMessage(MessageUtil.color("&c&l⚠ &cFailed to mute " + targetName));
-        }
+                        Bukkit.broadcastMessage(MessageUtil.color(broadcastMsg));
+                    }
+                });
         return true;
     }
 
@@ -1,6 +1,16 @@
 package com.ultimateban.commands;
 
 import com.ultimateban.UltimateBan;
+import com.ultimateban.database.ActiveBanIndex;
+import com.ultimateban.database.ConnectionPool;
+import com.ultimateban.database.LoginBanFilter;
+import com.ultimateban.database.PlayerIpWriteBuffer;
+import com.ultimateban.database.PlayerNameCache;
+import com.ultimateban.database.SqliteWriter;
+import com.ultimateban.services.ChangeLogService;
+import com.ultimateban.services.WebhookDispatcher;
+import com.ultimateban.services.VPNVerdictCache;
+import com.ultimateban.util.BoundedExecutor;
 import com.ultimateban.util.MessageUtil;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -41,6 +51,9 @@ public class UltimateBanCommand implements CommandExecutor, TabCompleter {
             case "version":
                 sender.sendMessage(MessageUtil.color("&6UltimateBan &fversion &a" + plugin.getDescription().getVersion()));
                 break;
+            case "stats":
+                sendStats(sender);
+                break;
             default:
                 sendHelp(sender);
                 break;
@@ -52,6 +65,87 @@ public class UltimateBanCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(MessageUtil.color("&6=== UltimateBan Help ==="));
         sender.sendMessage(MessageUtil.color("&f/ultimateban reload &7- Reload the plugin configuration"));
         sender.sendMessage(MessageUtil.color("&f/ultimateban version &7- Show plugin version"));
+        sender.sendMessage(MessageUtil.color("&f/ultimateban stats &7- Show database, executor and command statistics"));
+    }
+
+    private void sendStats(CommandSender sender) {
+        sender.sendMessage(MessageUtil.color("&6=== UltimateBan Stats ==="));
+
+        ConnectionPool pool = plugin.getDatabaseManager().getConnectionPool();
+        if (pool != null) {
+            sender.sendMessage(MessageUtil.color("&fConnections: &a" + pool.getActiveConnections() + " active&7, &a"
+                    + pool.getIdleConnections() + " idle&7, &f" + pool.getMaximumPoolSize() + " max"));
+            sendExecutorStats(sender, plugin.getDatabaseManager().getExecutor());
+
+            SqliteWriter writer = plugin.getDatabaseManager().getSqliteWriter();
+            if (writer != null) {
+                sender.sendMessage(MessageUtil.color("&fSQLite writer: &a" + writer.getQueuedCount() + " queued&7, writes &f"
+                        + writer.getWriteCount() + "&7 in &f" + writer.getTransactionCount() + " transactions&7, largest group &f"
+                        + writer.getLargestBatch()));
+            }
+
+            PlayerIpWriteBuffer ipBuffer = plugin.getDatabaseManager().getPlayerIpBuffer();
+            sender.sendMessage(MessageUtil.color("&fIP write buffer: &a" + ipBuffer.getPendingCount() + " pending&7, recorded &f"
+                    + ipBuffer.getRecordedCount() + "&7, written &f" + ipBuffer.getWrittenCount()));
+
+            PlayerNameCache nameCache = plugin.getDatabaseManager().getNameCache();
+            sender.sendMessage(MessageUtil.color("&fName cache: &a" + nameCache.getSize() + "/" + nameCache.getMaximumSize()
+                    + " players&7, hits &f" + nameCache.getHits() + "&7, unknown-name hits &f" + nameCache.getNegativeHits()
+                    + "&7, misses &f" + nameCache.getMisses() + "&7, evicted &f" + nameCache.getEvictions()));
+
+            LoginBanFilter banFilter = plugin.getDatabaseManager().getBanFilter();
+            if (banFilter.isLoaded()) {
+                sender.sendMessage(MessageUtil.color("&fLogin filter: &a" + banFilter.getPlayerCount() + " banned players&7, &f"
+                        + banFilter.getKeyCount() + " keys&7, cleared &a" + banFilter.getClearedCount()
+                        + "&7, sent to database &f" + banFilter.getPassedOnCount()));
+            }
+
+            ActiveBanIndex banIndex = plugin.getDatabaseManager().getBanIndex();
+            if (banIndex.isLoaded()) {
+                sender.sendMessage(MessageUtil.color("&fBan index: &a" + banIndex.getSize() + " active bans&7, about &f"
+                        + banIndex.getEstimatedBytes() / 1024 + " KiB"));
+            }
+
+            ChangeLogService changeLog = plugin.getChangeLogService();
+            if (changeLog != null && changeLog.isRunning()) {
+                sender.sendMessage(MessageUtil.color("&fChange log: &aread up to #" + changeLog.getPosition()
+                        + "&7, applied &f" + changeLog.getAppliedCount() + " &7changes from other servers"));
+            }
+
+            WebhookDispatcher discord = plugin.getDiscordService() != null ? plugin.getDiscordService().getDispatcher() : null;
+            if (discord != null) {
+                sender.sendMessage(MessageUtil.color("&fDiscord: &a" + discord.getEmbedsSent() + " embeds in "
+                        + discord.getMessagesSent() + " messages&7, rate limited &f" + discord.getRateLimitedCount()
+                        + "&7, spooled &f" + discord.getSpooledCount() + "&7, dropped &c" + discord.getEmbedsDropped()));
+            }
+        } else {
+            sender.sendMessage(MessageUtil.color("&cDatabase is not connected"));
+        }
+
+        sendExecutorStats(sender, plugin.getVpnDetectionService().getExecutor());
+
+        VPNVerdictCache vpnCache = plugin.getVpnDetectionService().getVerdictCache();
+        sender.sendMessage(MessageUtil.color("&fVPN cache: &a" + vpnCache.getSize() + "/" + vpnCache.getMaximumSize()
+                + " addresses&7, hits &f" + vpnCache.getHits() + "&7, misses &f" + vpnCache.getMisses()
+                + "&7, expired &f" + vpnCache.getExpirations() + "&7, evicted &f" + vpnCache.getEvictions()));
+
+        List<CommandTimings.Timing> timings = plugin.getCommandTimings().getTimings();
+        if (!timings.isEmpty()) {
+            sender.sendMessage(MessageUtil.color("&6Command stages:"));
+            for (CommandTimings.Timing timing : timings) {
+                sender.sendMessage(MessageUtil.color(String.format("&f/%s: &a%d runs&7, avg &f%.2fms&7, max &f%.2fms",
+                        timing.getName(), timing.getCount(), timing.getAverageMillis(), timing.getMaxMillis())));
+            }
+        }
+    }
+
+    private void sendExecutorStats(CommandSender sender, BoundedExecutor executor) {
+        sender.sendMessage(MessageUtil.color("&f" + executor.getName() + ": &a" + executor.getActiveThreads() + "/"
+                + executor.getThreads() + " busy&7, queue &a" + executor.getQueueSize() + "/" + executor.getQueueCapacity()
+                + " &7(peak " + executor.getPeakQueueSize() + ")"));
+        sender.sendMessage(MessageUtil.color("&7  submitted &f" + executor.getSubmittedTasks() + "&7, completed &f"
+                + executor.getCompletedTasks() + "&7, rejected &c" + executor.getRejectedTasks()
+                + "&7, caller-runs &e" + executor.getCallerRunsTasks()));
     }
 
     @Override
@@ -61,7 +155,7 @@ public class UltimateBanCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length == 1) {
-            return Arrays.asList("reload", "version");
+            return Arrays.asList("reload", "version", "stats");
         }
         return new ArrayList<>();
     }
@@ -31,15 +31,19 @@ public class UnbanCommand implements CommandExecutor, TabCompleter {
         }
 
         String targetName = args[0];
-        if (plugin.getDatabaseManager().unbanPlayer(targetName)) {
-            sender.sendMessage(MessageUtil.color("&aSuccessfully unbanned " + targetName));
-            // Broadcast to all players if enabled in config
-            if (plugin.getConfigManager().getConfig().getBoolean("broadcast.unban", true)) {
-                Bukkit.broadcastMessage(MessageUtil.color("&a" + targetName + " has been unbanned by " + sender.getName()));
-            }
-        } else {
-            sender.sendMessage(MessageUtil.color("&cFailed to unban " + targetName + ". Player might not be banned."));
-        }
+        CommandPipeline.start(plugin, "unban", sender)
+                .mutate(ignored -> plugin.getDatabaseManager().unbanPlayer(targetName))
+                .deliver(unbanned -> {
+                    if (unbanned) {
+                        sender.sendMessage(MessageUtil.color("&aSuccessfully unbanned " + targetName));
+                        // Broadcast to all players if enabled in config
+                        if (plugin.getConfigManager().getConfig().getBoolean("broadcast.unban", true)) {
+                            Bukkit.broadcastMessage(MessageUtil.color("&a" + targetName + " has been unbanned by " + sender.getName()));
+                        }
+                    } else {
+                        sender.sendMessage(MessageUtil.color("&cFailed to unban " + targetName + ". Player might not be banned."));
+                    }
+                });
         return true;
     }
 
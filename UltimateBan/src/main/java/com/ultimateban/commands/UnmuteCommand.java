@@ -32,22 +32,31 @@ public class UnmuteCommand implements CommandExecutor, TabCompleter {
         }
 
         String targetName = args[0];
-        UUID targetUUID = plugin.getDatabaseManager().getPlayerUUID(targetName);
-        
-        if (targetUUID == null) {
-            sender.sendMessage(MessageUtil.color("&cPlayer not found!"));
-            return true;
-        }
-
-        if (plugin.getDatabaseManager().deactivatePunishment(targetUUID, "MUTE")) {
-            sender.sendMessage(MessageUtil.color("&aSuccessfully unmuted " + targetName));
-            // Broadcast to all players if enabled in config
-            if (plugin.getConfigManager().getConfig().getBoolean("broadcast.unmute", true)) {
-                Bukkit.broadcastMessage(MessageUtil.color("&a" + targetName + " has been unmuted by " + sender.getName()));
-            }
-        } else {
-            sender.sendMessage(MessageUtil.color("&cFailed to unmute " + targetName + ". Player might not be muted."));
-        }
+        CommandPipeline.start(plugin, "unmute", sender)
+                .resolve(ignored -> {
+                    UUID targetUUID = plugin.getDatabaseManager().lookupPlayerUuidSync(targetName);
+                    if (targetUUID == null) {
+                        throw CommandPipeline.abort("&cPlayer not found!");
+                    }
+                    return targetUUID;
+                })
+                .mutate(targetUUID -> {
+                    // Lift both permanent and temporary mutes so the cache and the database agree
+                    boolean unmuted = plugin.getDatabaseManager().deactivatePunishment(targetUUID, "MUTE");
+                    unmuted |= plugin.getDatabaseManager().deactivatePunishment(targetUUID, "TEMP_MUTE");
+                    if (!unmuted) {
+                        throw CommandPipeline.abort("&cFailed to unmute " + targetName + ". Player might not be muted.");
+                    }
+                    plugin.getMuteManager().removeMute(targetUUID);
+                    return targetUUID;
+                })
+                .deliver(targetUUID -> {
+                    sender.sendMessage(MessageUtil.color("&aSuccessfully unmuted " + targetName));
+                    // Broadcast to all players if enabled in config
+                    if (plugin.getConfigManager().getConfig().getBoolean("broadcast.unmute", true)) {
+                        Bukkit.broadcastMessage(MessageUtil.color("&a" + targetName + " has been unmuted by " + sender.getName()));
+                    }
+                });
         return true;
     }
 
@@ -36,12 +36,6 @@ public class WarnCommand implements CommandExecutor, TabCompleter {
 
         String targetName = args[0];
         Player target = Bukkit.getPlayer(targetName);
-        UUID targetUUID = target != null ? target.getUniqueId() : plugin.getDatabaseManager().getPlayerUUID(targetName);
-        
-        if (targetUUID == null) {
-            sender.sendMessage(MessageUtil.color("&cPlayer not found!"));
-            return true;
-        }
 
         // Check if player has bypass permission
         if (target != null && target.hasPermission("ultimateban.bypass.warn")) {
@@ -53,30 +47,45 @@ public class WarnCommand implements CommandExecutor, TabCompleter {
         for (int i = 1; i < args.length; i++) {
             reason.append(args[i]).append(" ");
         }
+        UUID onlineUUID = target != null ? target.getUniqueId() : null;
+        UUID punisherUUID = sender instanceof Player ? ((Player) sender).getUniqueId() : UUID.randomUUID();
 
-        Punishment punishment = new Punishment(
-            targetUUID,
-            targetName,
-            sender instanceof Player ? ((Player) sender).getUniqueId() : UUID.randomUUID(),
-            sender.getName(),
-            PunishmentType.WARN,
-            reason.toString().trim(),
-            System.currentTimeMillis(),
-            System.currentTimeMillis() // Warnings don't expire
-        );
-
-        if (plugin.getDatabaseManager().savePunishment(punishment)) {
-            sender.sendMessage(MessageUtil.color("&aSuccessfully warned " + targetName));
-            if (target != null) {
-                target.sendMessage(MessageUtil.color("&cYou have been warned by " + sender.getName()));
-            }
-            // Broadcast to all players if enabled in config
-            if (plugin.getConfigManager().getConfig().getBoolean("broadcast.warn", true)) {
-                Bukkit.broadcastMessage(MessageUtil.color("&c" + targetName + " has been warned by " + sender.getName()));
-            }
-        } else {
-            sender.sendMessage(MessageUtil.color("&cFailed to warn " + targetName));
-        }
+        CommandPipeline.start(plugin, "warn", sender)
+                .resolve(ignored -> {
+                    UUID targetUUID = onlineUUID != null ? onlineUUID : plugin.getDatabaseManager().lookupPlayerUuidSync(targetName);
+                    if (targetUUID == null) {
+                        throw CommandPipeline.abort("&cPlayer not found!");
+                    }
+                    return targetUUID;
+                })
+                .mutate(targetUUID -> {
+                    Punishment punishment = new Punishment(
+                        targetUUID,
+                        targetName,
+                        punisherUUID,
+                        sender.getName(),
+                        PunishmentType.WARN,
+                        reason.toString().trim(),
+                        System.currentTimeMillis(),
+                        System.currentTimeMillis() // Warnings don't expire
+                    );
+                    if (!plugin.getDatabaseManager().savePunishment(punishment)) {
+                        throw CommandPipeline.abort("&cFailed to warn " + targetName);
+                    }
+                    return targetUUID;
+                })
+                .deliver(targetUUID -> {
+                    sender.sendMessage(MessageUtil.color("&aSuccessfully warned " + targetName));
+                    // The player may have logged off while the warning was saved
+                    Player warned = Bukkit.getPlayer(targetUUID);
+                    if (warned != null) {
+                        warned.sendMessage(MessageUtil.color("&cYou have been warned by " + sender.getName()));
+                    }
+                    // Broadcast to all players if enabled in config
+                    if (plugin.getConfigManager().getConfig().getBoolean("broadcast.warn", true)) {
+                        Bukkit.broadcastMessage(MessageUtil.color("&c" + targetName + " has been warned by " + sender.getName()));
+                    }
+                });
         return true;
     }
 
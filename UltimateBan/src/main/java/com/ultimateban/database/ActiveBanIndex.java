@@ -0,0 +1,324 @@
+package com.ultimateban.database;
+
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+import com.ultimateban.util.UuidIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Every active ban held in memory in columns of primitives, one row per banned player.
+ * Players are found through a {@link UuidIntMap}, player names, punishers and reasons are stored once and
+ * referred to by number, so a ban costs 65 to 85 bytes and no objects. {@link Punishment} objects are only
+ * built when a ban is looked up. A player with several active bans keeps the one that lasts longest.
+ * Built bans carry no metadata, and the player name is the one recorded on the ban.
+ */
+public class ActiveBanIndex {
+
+    private static final PunishmentType[] TYPES = PunishmentType.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    private UuidIntMap rows = new UuidIntMap(0);
+    private int[] ids = new int[0];
+    private byte[] types = new byte[0];
+    private long[] startTimes = new long[0];
+    private long[] endTimes = new long[0];
+    private int[] names = new int[0];
+    private int[] punishers = new int[0];
+    private int[] reasons = new int[0];
+    private int rowCount;
+    // Rows freed by removals, reused before the columns grow
+    private int[] freeRows = new int[0];
+    private int freeCount;
+
+    private final Dictionary playerNames = new Dictionary();
+    private final Dictionary punisherNames = new Dictionary();
+    private final Dictionary reasonTexts = new Dictionary();
+    // Punisher UUIDs by punisher number, punishers are stored as "uuid name" in the dictionary
+    private final List<UUID> punisherUuids = new ArrayList<>();
+
+    /**
+     * Start filling the index from scratch. Lookups are not answered from the index until {@link #finishLoad()}.
+     *
+     * @param expectedBans The number of bans about to be added
+     */
+    public void startLoad(int expectedBans) {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            rows = new UuidIntMap(expectedBans);
+            int capacity = Math.max(16, expectedBans);
+            ids = new int[capacity];
+            types = new byte[capacity];
+            startTimes = new long[capacity];
+            endTimes = new long[capacity];
+            names = new int[capacity];
+            punishers = new int[capacity];
+            reasons = new int[capacity];
+            rowCount = 0;
+            freeCount = 0;
+            playerNames.clear();
+            punisherNames.clear();
+            reasonTexts.clear();
+            punisherUuids.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add an active ban while loading, keeping the longer one if the player already has a ban
+     *
+     * @param playerUUID   The banned player
+     * @param playerName   The name recorded on the ban
+     * @param id           The punishment ID
+     * @param type         BAN or TEMP_BAN
+     * @param startTime    When the ban started
+     * @param endTime      When the ban ends, -1 for permanent
+     * @param punisherUUID The UUID of the staff member
+     * @param punisherName The name of the staff member
+     * @param reason       The reason
+     */
+    public void add(UUID playerUUID, String playerName, int id, PunishmentType type, long startTime, long endTime,
+                    UUID punisherUUID, String punisherName, String reason) {
+        lock.writeLock().lock();
+        try {
+            addLocked(playerUUID, playerName, id, type, startTime, endTime, punisherUUID, punisherName, reason);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start answering lookups from the index
+     */
+    public void finishLoad() {
+        loaded = true;
+    }
+
+    /**
+     * Stop answering lookups from the index, for when it may have missed a change
+     */
+    public void invalidate() {
+        loaded = false;
+    }
+
+    /**
+     * Check if lookups can be answered from the index
+     *
+     * @return true if the index is complete
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Replace the bans of a player with what the database holds now
+     *
+     * @param playerUUID The player
+     * @param activeBans Every active ban of the player, empty if the player is not banned
+     */
+    public void replace(UUID playerUUID, List<Punishment> activeBans) {
+        lock.writeLock().lock();
+        try {
+            int row = rows.remove(playerUUID);
+            if (row >= 0) {
+                freeRow(row);
+            }
+            for (Punishment ban : activeBans) {
+                addLocked(playerUUID, ban.getPlayerName(), ban.getId(), ban.getType(), ban.getStartTime(), ban.getEndTime(),
+                        ban.getPunisherUUID(), ban.getPunisherName(), ban.getReason());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the ban of a player, expired or not
+     *
+     * @param playerUUID The player
+     * @return A new punishment built from the index, or null if the player has no active ban
+     */
+    public Punishment getBan(UUID playerUUID) {
+        String playerName;
+        UUID punisherUUID;
+        String punisherName;
+        String reason;
+        int id;
+        PunishmentType type;
+        long startTime;
+        long endTime;
+
+        lock.readLock().lock();
+        try {
+            int row = rows.get(playerUUID);
+            if (row < 0) {
+                return null;
+            }
+            id = ids[row];
+            type = TYPES[types[row]];
+            startTime = startTimes[row];
+            endTime = endTimes[row];
+            playerName = playerNames.get(names[row]);
+            punisherUUID = punisherUuids.get(punishers[row]);
+            String punisher = punisherNames.get(punishers[row]);
+            punisherName = punisher.substring(punisher.indexOf(' ') + 1);
+            reason = reasonTexts.get(reasons[row]);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Punishment punishment = new Punishment(playerUUID, playerName, punisherUUID, punisherName,
+                type, reason, startTime, endTime);
+        punishment.setId(id);
+        punishment.setActive(true);
+        return punishment;
+    }
+
+    /**
+     * Get the number of banned players in the index
+     *
+     * @return The number of bans
+     */
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimate the memory held by the index, leaving out the punisher and reason strings
+     *
+     * @return The estimate in bytes
+     */
+    public long getEstimatedBytes() {
+        lock.readLock().lock();
+        try {
+            // Map slots hold two longs and an int, rows hold four ints, two longs and a byte
+            return rows.capacity() * 20L + ids.length * 33L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addLocked(UUID playerUUID, String playerName, int id, PunishmentType type, long startTime, long endTime,
+                           UUID punisherUUID, String punisherName, String reason) {
+        int existing = rows.get(playerUUID);
+        if (existing >= 0) {
+            // Permanent bans outlast everything, otherwise the later end wins
+            long current = endTimes[existing];
+            if (current == -1 || (endTime != -1 && endTime <= current)) {
+                return;
+            }
+            freeRow(existing);
+        }
+
+        int row = allocateRow();
+        ids[row] = id;
+        types[row] = (byte) type.ordinal();
+        startTimes[row] = startTime;
+        endTimes[row] = endTime;
+        names[row] = playerNames.acquire(playerName != null ? playerName : playerUUID.toString());
+        punishers[row] = punisherNames.acquire(punisherUUID + " " + punisherName);
+        if (punishers[row] == punisherUuids.size()) {
+            punisherUuids.add(punisherUUID);
+        } else {
+            punisherUuids.set(punishers[row], punisherUUID);
+        }
+        reasons[row] = reasonTexts.acquire(reason != null ? reason : "");
+        rows.put(playerUUID, row);
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rowCount == ids.length) {
+            int capacity = Math.max(16, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            types = Arrays.copyOf(types, capacity);
+            startTimes = Arrays.copyOf(startTimes, capacity);
+            endTimes = Arrays.copyOf(endTimes, capacity);
+            names = Arrays.copyOf(names, capacity);
+            punishers = Arrays.copyOf(punishers, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+        }
+        return rowCount++;
+    }
+
+    private void freeRow(int row) {
+        playerNames.release(names[row]);
+        punisherNames.release(punishers[row]);
+        reasonTexts.release(reasons[row]);
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, Math.max(16, freeRows.length * 2));
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    /**
+     * Strings stored once and referred to by number, numbers are reused once nothing refers to them
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> numbers = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] references = new int[16];
+        private int[] freeNumbers = new int[16];
+        private int freeCount;
+
+        private int acquire(String value) {
+            Integer number = numbers.get(value);
+            if (number == null) {
+                if (freeCount > 0) {
+                    number = freeNumbers[--freeCount];
+                    values.set(number, value);
+                } else {
+                    number = values.size();
+                    values.add(value);
+                    if (number == references.length) {
+                        references = Arrays.copyOf(references, references.length * 2);
+                    }
+                }
+                numbers.put(value, number);
+            }
+            references[number]++;
+            return number;
+        }
+
+        private void release(int number) {
+            if (--references[number] > 0) {
+                return;
+            }
+            numbers.remove(values.get(number));
+            values.set(number, null);
+            if (freeCount == freeNumbers.length) {
+                freeNumbers = Arrays.copyOf(freeNumbers, freeNumbers.length * 2);
+            }
+            freeNumbers[freeCount++] = number;
+        }
+
+        private String get(int number) {
+            return values.get(number);
+        }
+
+        private void clear() {
+            numbers.clear();
+            values.clear();
+            references = new int[16];
+            freeCount = 0;
+        }
+    }
+}
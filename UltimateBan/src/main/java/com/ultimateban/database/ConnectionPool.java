@@ -0,0 +1,421 @@
+package com.ultimateban.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded JDBC connection pool.
+ * Connections handed out by {@link #getConnection()} are proxies that return the physical
+ * connection to the pool when closed, so callers use the usual try-with-resources pattern.
+ */
+public class ConnectionPool {
+
+    /**
+     * Connections that were returned more recently than this are handed out without validation
+     */
+    private static final long VALIDATION_BYPASS_MILLIS = 500L;
+
+    private final Logger logger;
+    private final String name;
+    private final String url;
+    private final Properties properties;
+    private final int maximumPoolSize;
+    private final int minimumIdle;
+    private final long connectionTimeout;
+    private final int validationTimeoutSeconds;
+    private final long idleTimeout;
+    private final long maxLifetime;
+    private final long leakDetectionThreshold;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Constructor
+     *
+     * @param logger The logger used for pool warnings
+     * @param name The pool name, used for thread names and log messages
+     * @param url The JDBC url
+     * @param properties The driver properties (user, password and driver specific tuning)
+     * @param settings The pool sizing and timeout settings
+     */
+    public ConnectionPool(Logger logger, String name, String url, Properties properties, Settings settings) {
+        this.logger = logger;
+        this.name = name;
+        this.url = url;
+        this.properties = properties;
+        this.maximumPoolSize = Math.max(1, settings.maximumPoolSize);
+        this.minimumIdle = Math.max(0, Math.min(settings.minimumIdle, maximumPoolSize));
+        this.connectionTimeout = settings.connectionTimeout;
+        this.validationTimeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(settings.validationTimeout));
+        this.idleTimeout = settings.idleTimeout;
+        this.maxLifetime = settings.maxLifetime;
+        this.leakDetectionThreshold = settings.leakDetectionThreshold;
+        this.permits = new Semaphore(maximumPoolSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-Housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open the minimum number of idle connections and start the housekeeping task.
+     * Fails fast if the database cannot be reached.
+     *
+     * @throws SQLException if a connection cannot be opened
+     */
+    public void start() throws SQLException {
+        // Always open one connection so configuration errors surface on startup
+        idleConnections.offerFirst(openConnection());
+        while (totalConnections.get() < minimumIdle) {
+            idleConnections.offerFirst(openConnection());
+        }
+
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, 5, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Borrow a connection from the pool, waiting up to the connection timeout for one to be free
+     *
+     * @return A pooled connection, which must be closed to return it to the pool
+     * @throws SQLException if the pool is closed, exhausted or a connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException(name + " is closed");
+        }
+
+        try {
+            if (!permits.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException(name + " - connection is not available, request timed out after "
+                        + connectionTimeout + "ms (active=" + borrowedConnections.size()
+                        + ", idle=" + idleConnections.size() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(name + " - interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowTrace = leakDetectionThreshold > 0 ? new Exception("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowedConnections.add(pooled);
+            return pooled.createProxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the pool and every idle connection. Borrowed connections are closed when returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+
+        if (!borrowedConnections.isEmpty()) {
+            logger.warning(name + " closed while " + borrowedConnections.size() + " connection(s) were still in use");
+        }
+    }
+
+    /**
+     * Get the number of connections currently borrowed
+     *
+     * @return The number of active connections
+     */
+    public int getActiveConnections() {
+        return borrowedConnections.size();
+    }
+
+    /**
+     * Get the number of idle connections
+     *
+     * @return The number of idle connections
+     */
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Get the maximum number of connections this pool will open
+     *
+     * @return The maximum pool size
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * Take the most recently used idle connection that is still healthy
+     *
+     * @return An idle connection, or null if none is available
+     */
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (maxLifetime > 0 && now - pooled.createdAt > maxLifetime) {
+                closeQuietly(pooled);
+                continue;
+            }
+
+            if (now - pooled.lastReturnedAt > VALIDATION_BYPASS_MILLIS && !isValid(pooled)) {
+                logger.fine(name + " - discarding broken connection");
+                closeQuietly(pooled);
+                continue;
+            }
+
+            return pooled;
+        }
+        return null;
+    }
+
+    /**
+     * Return a connection to the pool, resetting any transaction state left behind
+     *
+     * @param pooled The connection being returned
+     */
+    private void release(PooledConnection pooled) {
+        borrowedConnections.remove(pooled);
+
+        try {
+            boolean healthy = true;
+            try {
+                if (!pooled.connection.getAutoCommit()) {
+                    pooled.connection.rollback();
+                    pooled.connection.setAutoCommit(true);
+                }
+                if (pooled.connection.isReadOnly() != pooled.readOnly) {
+                    pooled.connection.setReadOnly(pooled.readOnly);
+                }
+            } catch (SQLException e) {
+                healthy = false;
+            }
+
+            if (closed || !healthy) {
+                closeQuietly(pooled);
+            } else {
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                idleConnections.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Retire idle connections past their idle timeout or lifetime, replace them up to the
+     * minimum idle count and report leaked connections
+     */
+    private void houseKeep() {
+        long now = System.currentTimeMillis();
+
+        for (PooledConnection pooled : idleConnections) {
+            boolean expired = maxLifetime > 0 && now - pooled.createdAt > maxLifetime;
+            boolean idleTooLong = idleTimeout > 0 && now - pooled.lastReturnedAt > idleTimeout
+                    && totalConnections.get() > minimumIdle;
+            if ((expired || idleTooLong) && idleConnections.remove(pooled)) {
+                closeQuietly(pooled);
+            }
+        }
+
+        fillIdleConnections();
+
+        if (leakDetectionThreshold > 0) {
+            for (PooledConnection pooled : borrowedConnections) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionThreshold) {
+                    pooled.leakReported = true;
+                    logger.log(Level.WARNING, name + " - connection leak detection triggered, connection held for "
+                            + (now - pooled.borrowedAt) + "ms", pooled.borrowTrace);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open connections until the pool holds the minimum idle count again, for example after
+     * connections were retired for their lifetime or discarded as broken
+     */
+    private void fillIdleConnections() {
+        while (!closed && totalConnections.get() < minimumIdle) {
+            try {
+                // Least recently used end, so connections that are already warm keep being handed out first
+                idleConnections.offerLast(openConnection());
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, name + " - could not open a connection to refill the pool: " + e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, properties);
+        totalConnections.incrementAndGet();
+        return new PooledConnection(connection);
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            logger.log(Level.FINE, name + " - error closing connection: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sizing and timeout settings for a pool
+     */
+    public static class Settings {
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+        private long connectionTimeout = 5000L;
+        private long validationTimeout = 3000L;
+        private long idleTimeout = 600000L;
+        private long maxLifetime = 1800000L;
+        private long leakDetectionThreshold = 0L;
+
+        public Settings maximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+            return this;
+        }
+
+        public Settings minimumIdle(int minimumIdle) {
+            this.minimumIdle = minimumIdle;
+            return this;
+        }
+
+        public Settings connectionTimeout(long connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+            return this;
+        }
+
+        public Settings validationTimeout(long validationTimeout) {
+            this.validationTimeout = validationTimeout;
+            return this;
+        }
+
+        public Settings idleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Settings maxLifetime(long maxLifetime) {
+            this.maxLifetime = maxLifetime;
+            return this;
+        }
+
+        public Settings leakDetectionThreshold(long leakDetectionThreshold) {
+            this.leakDetectionThreshold = leakDetectionThreshold;
+            return this;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private class PooledConnection {
+        private final Connection connection;
+        private final long createdAt;
+        private final boolean readOnly;
+        private volatile long lastReturnedAt;
+        private volatile long borrowedAt;
+        private volatile Exception borrowTrace;
+        private volatile boolean leakReported;
+
+        PooledConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.createdAt = System.currentTimeMillis();
+            this.readOnly = connection.isReadOnly();
+            this.lastReturnedAt = createdAt;
+        }
+
+        /**
+         * Create the proxy handed to callers. Closing it returns the connection to the pool once.
+         *
+         * @return The connection proxy
+         */
+        Connection createProxy() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean proxyClosed;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!proxyClosed) {
+                                proxyClosed = true;
+                                release(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return proxyClosed || connection.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return name + " connection wrapper for " + connection;
+                        default:
+                            break;
+                    }
+
+                    if (proxyClosed) {
+                        throw new SQLException("Connection is closed");
+                    }
+
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+    }
+}
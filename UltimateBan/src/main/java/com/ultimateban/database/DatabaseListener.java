@@ -0,0 +1,73 @@
+package com.ultimateban.database;
+
+import com.ultimateban.models.Appeal;
+import com.ultimateban.models.IpBan;
+import com.ultimateban.models.PlayerIp;
+import com.ultimateban.models.Punishment;
+
+import java.util.UUID;
+
+/**
+ * Receives changes made through the {@link DatabaseManager}, so in-memory state can follow the database
+ * without polling it. Callbacks run on the thread that made the change, after it has been written.
+ * Changes other servers make are passed on too, once they have been read from the change log.
+ */
+public interface DatabaseListener {
+
+    /**
+     * Check if the listener wants changes other servers sharing the database made
+     *
+     * @return true to receive them, false to only hear about changes made on this server
+     */
+    default boolean followsOtherServers() {
+        return true;
+    }
+
+    /**
+     * Called when a new punishment has been saved
+     *
+     * @param punishment The saved punishment, with its ID set
+     */
+    default void onPunishmentSaved(Punishment punishment) {
+    }
+
+    /**
+     * Called when some of a player's punishments have been deactivated or updated
+     *
+     * @param playerUUID The player's UUID
+     */
+    default void onPunishmentsChanged(UUID playerUUID) {
+    }
+
+    /**
+     * Called when a new IP ban has been saved
+     *
+     * @param ipBan The saved IP ban, with its ID set
+     */
+    default void onIpBanSaved(IpBan ipBan) {
+    }
+
+    /**
+     * Called when a player's use of an IP address has been recorded
+     *
+     * @param playerIp The recorded address
+     */
+    default void onPlayerIpSaved(PlayerIp playerIp) {
+    }
+
+    /**
+     * Called when a new appeal has been saved
+     *
+     * @param appeal The saved appeal, with its ID set
+     */
+    default void onAppealSaved(Appeal appeal) {
+    }
+
+    /**
+     * Called when an appeal has been answered or otherwise updated
+     *
+     * @param appeal The updated appeal
+     */
+    default void onAppealUpdated(Appeal appeal) {
+    }
+}
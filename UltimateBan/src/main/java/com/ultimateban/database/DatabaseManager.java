@@ -1,32 +1,120 @@
 package com.ultimateban.database;
 
 import com.ultimateban.UltimateBan;
+import com.ultimateban.database.migration.MigrationRunner;
+import com.ultimateban.database.migration.SqlDialect;
 import com.ultimateban.models.Appeal;
+import com.ultimateban.models.HistoryCursor;
 import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentEvent;
 import com.ultimateban.models.PunishmentType;
 import com.ultimateban.models.IpBan;
+import com.ultimateban.models.LoginVerdict;
+import com.ultimateban.models.OffenseCount;
+import com.ultimateban.models.PlayerIp;
+import com.ultimateban.models.PlayerStats;
+import com.ultimateban.models.VpnVerdict;
+import com.ultimateban.util.BoundedExecutor;
+import com.ultimateban.util.CidrTrie;
+import com.ultimateban.util.IPUtil;
 
 import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Handles database operations for the plugin
  */
 public class DatabaseManager {
 
+    // Keeps IN lists well below the bind parameter limits of both drivers
+    private static final int IN_CHUNK_SIZE = 500;
+    // Rows per multi-row player_ips upsert, 5 parameters each
+    private static final int PLAYER_IP_CHUNK_SIZE = 100;
+    private static final String INSERT_EVENT_SQL = "INSERT INTO punishment_events "
+            + "(entity, action, entity_id, player_uuid, server_id, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Lookups on the login, chat and command paths, package-private so their plans can be checked against the schema
+    static final String ACTIVE_PUNISHMENT_SQL = "SELECT * FROM punishments WHERE player_uuid = ? AND active = 1 AND (type = ? OR type = ?)";
+    static final String PLAYER_STATS_SQL = "SELECT * FROM player_stats WHERE player_uuid = ?";
+    // The start_time range lets the index seek straight to the position, the id breaks ties
+    static final String PUNISHMENT_PAGE_SQL = "SELECT * FROM punishments WHERE player_uuid = ? AND start_time <= ? "
+            + "AND (start_time < ? OR id < ?) ORDER BY start_time DESC, id DESC LIMIT ?";
+    static final String PUNISHMENT_SKIP_SQL = "SELECT start_time, id FROM punishments WHERE player_uuid = ? AND start_time <= ? "
+            + "AND (start_time < ? OR id < ?) ORDER BY start_time DESC, id DESC LIMIT 1 OFFSET ?";
+    static final String RECENT_PUNISHMENTS_SQL = "SELECT * FROM punishments WHERE player_uuid = ? AND start_time > ? ORDER BY start_time DESC";
+    static final String OFFENSE_COUNTS_SQL = "SELECT category, COUNT(*) AS offenses, MIN(start_time) AS first_offense FROM punishments "
+            + "WHERE player_uuid = ? AND category IS NOT NULL AND start_time > ? GROUP BY category";
+    static final String EXPIRING_PUNISHMENTS_SQL = "SELECT * FROM punishments WHERE active = 1 AND type IN (?, ?, ?, ?) "
+            + "AND end_time > 0 AND end_time < ?";
+    static final String LOGIN_PUNISHMENTS_SQL = "SELECT * FROM punishments WHERE active = 1 AND (type = ? OR type = ?) "
+            + "AND (player_uuid = ? OR player_uuid IN (SELECT player_uuid FROM player_ips WHERE ip_bin = ?))";
+    static final String LINKED_PLAYERS_SQL = "SELECT DISTINCT player_uuid FROM player_ips WHERE ip_bin = ?";
+    static final String IP_BAN_SQL = "SELECT * FROM ip_bans WHERE active = 1 AND ip_bin = ?";
+    static final String IP_BANS_COVERING_SQL = "SELECT * FROM ip_bans WHERE active = 1 AND range_start <= ? AND range_end >= ? "
+            + "ORDER BY is_subnet, range_start DESC";
+    static final String SUBNET_BAN_SQL = "SELECT * FROM ip_bans WHERE active = 1 AND is_subnet = 1 AND range_start = ? AND range_end = ?";
+    static final String SUBNET_BANS_COVERING_SQL = "SELECT * FROM ip_bans WHERE active = 1 AND is_subnet = 1 "
+            + "AND range_start <= ? AND range_end >= ? ORDER BY range_start DESC";
+    static final String PLAYER_ADDRESSES_SQL = "SELECT ip_address FROM player_ips WHERE player_uuid = ?";
+    static final String PLAYER_NAME_SQL = "SELECT name, last_seen FROM players WHERE uuid = ?";
+    static final String PLAYER_UUID_SQL = "SELECT uuid, name, last_seen FROM players WHERE name_lower = ? ORDER BY last_seen DESC LIMIT 1";
+    // Summary columns of player_stats, bound after the player UUID in this order
+    private static final String[] STATS_COUNT_COLUMNS = new String[PunishmentType.values().length];
+    private static final String[] STATS_FLAG_COLUMNS = {"last_punishment", "active_ban", "active_mute"};
+
+    static {
+        for (PunishmentType type : PunishmentType.values()) {
+            STATS_COUNT_COLUMNS[type.ordinal()] = type.name().toLowerCase(Locale.ROOT) + "_count";
+        }
+    }
+
     private final UltimateBan plugin;
-    private Connection connection;
+    private ConnectionPool pool;
+    // SQLite in WAL mode only, null otherwise
+    private ConnectionPool readPool;
+    private SqliteWriter sqliteWriter;
+    private BoundedExecutor executor;
+    private PlayerIpWriteBuffer playerIpBuffer;
+    private final PlayerNameCache nameCache;
+    private final LoginBanFilter banFilter;
+    private final ActiveBanIndex banIndex;
+    // Index refreshes read and apply one at a time, so the index always ends on the latest committed state
+    private final Object banIndexRefreshLock = new Object();
+    // Active subnet bans, indexed by range so logins never scan the table
+    private volatile CidrTrie<Integer> subnetTrie = new CidrTrie<>();
+    private volatile Map<Integer, IpBan> subnetBans = new ConcurrentHashMap<>();
+    private volatile boolean subnetBansLoaded;
+    private final List<DatabaseListener> listeners = new CopyOnWriteArrayList<>();
+    // Marks the changes this server writes to the change log, so it does not apply them a second time
+    private final String serverId = UUID.randomUUID().toString();
+    private volatile boolean changeLogEnabled;
+    private long changeLogStart;
     private String databaseType;
     private String host;
     private int port;
@@ -44,6 +132,13 @@ public class DatabaseManager {
     public DatabaseManager(UltimateBan plugin) {
         this.plugin = plugin;
         loadConfig();
+        this.nameCache = new PlayerNameCache(
+                plugin.getConfigManager().getInt("database.name-cache.size", 10000),
+                plugin.getConfigManager().getInt("database.name-cache.unknown-name-ttl", 60000));
+        this.banFilter = new LoginBanFilter(
+                plugin.getConfigManager().getInt("database.login-filter.expected-keys", 100000),
+                plugin.getConfigManager().getDouble("database.login-filter.false-positive-rate", 0.01));
+        this.banIndex = new ActiveBanIndex();
     }
 
     /**
@@ -66,14 +161,188 @@ public class DatabaseManager {
      * @return true if successful, false otherwise
      */
     public boolean initialize() {
+        boolean success;
         if (databaseType.equalsIgnoreCase("MySQL")) {
-            return setupMySQL();
+            success = setupMySQL();
         } else if (databaseType.equalsIgnoreCase("SQLite")) {
-            return setupSQLite();
+            success = setupSQLite();
         } else {
             plugin.getLogger().warning("Unknown database type: " + databaseType + ". Falling back to SQLite.");
-            return setupSQLite();
+            success = setupSQLite();
+        }
+
+        if (success) {
+            setupExecutor();
+            setupPlayerIpBuffer();
+            setupChangeLog();
+            // Bans other servers write to a shared database would never reach in-memory copies without the change log
+            if (seesAllChanges()) {
+                loadSubnetBans();
+                if (plugin.getConfigManager().getBoolean("database.login-filter.enabled", true)) {
+                    loadBanFilter();
+                }
+                if (plugin.getConfigManager().getBoolean("database.ban-index.enabled", true)) {
+                    loadBanIndex();
+                }
+            } else {
+                plugin.getLogger().info("Logins are checked against the database, enable database.change-log to keep bans in memory");
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Turn on the change log when servers can share the database, and note where it stands before the
+     * in-memory state is loaded, so changes other servers make while it loads are not missed
+     */
+    private void setupChangeLog() {
+        changeLogEnabled = databaseType.equalsIgnoreCase("MySQL")
+                && plugin.getConfigManager().getBoolean("database.change-log.enabled", true);
+        if (!changeLogEnabled) {
+            return;
+        }
+
+        try {
+            changeLogStart = getLatestEventSeq();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error reading the change log, changes from other servers will not be followed: "
+                    + e.getMessage(), e);
+            changeLogEnabled = false;
+        }
+    }
+
+    /**
+     * Load every active subnet ban into the in-memory range index.
+     * If this fails the index stays unused and subnet bans are looked up in the database.
+     */
+    private void loadSubnetBans() {
+        CidrTrie<Integer> trie = new CidrTrie<>();
+        Map<Integer, IpBan> bans = new ConcurrentHashMap<>();
+        String sql = "SELECT * FROM ip_bans WHERE is_subnet = 1 AND active = 1";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                IpBan ipBan = extractIpBanFromResultSet(resultSet);
+                if (trie.put(ipBan.getIpAddress(), ipBan.getId())) {
+                    bans.put(ipBan.getId(), ipBan);
+                } else {
+                    plugin.getLogger().warning("Ignoring subnet ban #" + ipBan.getId() + " with invalid range " + ipBan.getIpAddress());
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading subnet bans: " + e.getMessage(), e);
+            return;
+        }
+
+        subnetTrie = trie;
+        subnetBans = bans;
+        subnetBansLoaded = true;
+    }
+
+    /**
+     * Fill the login ban filter with every banned player, the addresses they have used, and every exact IP ban.
+     * If this fails the filter stays unused and every login is checked against the database.
+     */
+    private void loadBanFilter() {
+        long start = System.currentTimeMillis();
+        Map<UUID, List<byte[]>> bannedPlayers = new HashMap<>();
+        Map<Integer, byte[]> exactIpBans = new HashMap<>();
+        String bannedSql = "SELECT DISTINCT player_uuid FROM punishments WHERE active = 1 AND type IN ('BAN', 'TEMP_BAN')";
+        String addressSql = "SELECT player_uuid, ip_bin FROM player_ips WHERE player_uuid IN (" + bannedSql + ")";
+        String ipBanSql = "SELECT id, ip_bin FROM ip_bans WHERE active = 1 AND is_subnet = 0 AND ip_bin IS NOT NULL";
+
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery(bannedSql)) {
+                while (resultSet.next()) {
+                    bannedPlayers.put(UUID.fromString(resultSet.getString("player_uuid")), new ArrayList<>());
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery(addressSql)) {
+                while (resultSet.next()) {
+                    List<byte[]> addresses = bannedPlayers.get(UUID.fromString(resultSet.getString("player_uuid")));
+                    if (addresses != null) {
+                        addresses.add(resultSet.getBytes("ip_bin"));
+                    }
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery(ipBanSql)) {
+                while (resultSet.next()) {
+                    exactIpBans.put(resultSet.getInt("id"), resultSet.getBytes("ip_bin"));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading the login ban filter: " + e.getMessage(), e);
+            return;
+        }
+
+        banFilter.load(bannedPlayers, exactIpBans);
+        plugin.getLogger().info("Loaded " + bannedPlayers.size() + " banned players and " + exactIpBans.size()
+                + " IP bans into the login filter in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Fill the active ban index, streaming the rows so no punishment objects are built.
+     * If this fails the index stays unused and bans are looked up in the database.
+     */
+    private void loadBanIndex() {
+        long start = System.currentTimeMillis();
+        String condition = " FROM punishments WHERE active = 1 AND type IN ('BAN', 'TEMP_BAN')";
+
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            int expected;
+            try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*)" + condition)) {
+                expected = resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+
+            banIndex.startLoad(expected);
+            try (ResultSet resultSet = statement.executeQuery("SELECT id, player_uuid, player_name, punisher_uuid, punisher_name, "
+                    + "type, reason, start_time, end_time" + condition)) {
+                while (resultSet.next()) {
+                    String punisherUUID = resultSet.getString("punisher_uuid");
+                    banIndex.add(UUID.fromString(resultSet.getString("player_uuid")), resultSet.getString("player_name"),
+                            resultSet.getInt("id"), PunishmentType.valueOf(resultSet.getString("type")),
+                            resultSet.getLong("start_time"), resultSet.getLong("end_time"),
+                            punisherUUID != null ? UUID.fromString(punisherUUID) : null,
+                            resultSet.getString("punisher_name"), resultSet.getString("reason"));
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading the active ban index: " + e.getMessage(), e);
+            banIndex.invalidate();
+            return;
         }
+
+        banIndex.finishLoad();
+        plugin.getLogger().info("Indexed " + banIndex.getSize() + " active bans in about "
+                + banIndex.getEstimatedBytes() / 1024 + " KiB in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Set up the executor that runs database work off the main thread.
+     * SQLite only allows one writer at a time, so it gets a single thread by default,
+     * unless writes go through the single writer and readers no longer block each other.
+     */
+    private void setupExecutor() {
+        int threads = databaseType.equalsIgnoreCase("MySQL")
+                ? plugin.getConfigManager().getInt("database.executor.threads.mysql", pool.getMaximumPoolSize())
+                : plugin.getConfigManager().getInt("database.executor.threads.sqlite", sqliteWriter != null ? 4 : 1);
+        int queueSize = plugin.getConfigManager().getInt("database.executor.queue-size", 1000);
+
+        executor = new BoundedExecutor(plugin.getLogger(), "UltimateBan-DB", threads, queueSize);
+    }
+
+    /**
+     * Set up the buffer that writes player addresses in the background
+     */
+    private void setupPlayerIpBuffer() {
+        long flushInterval = plugin.getConfigManager().getInt("database.ip-write-buffer.flush-interval", 5000);
+        int maxPending = plugin.getConfigManager().getInt("database.ip-write-buffer.max-pending", 500);
+
+        playerIpBuffer = new PlayerIpWriteBuffer(this, plugin.getLogger(), flushInterval, maxPending);
     }
 
     /**
@@ -86,12 +355,24 @@ public class DatabaseManager {
             Class.forName("com.mysql.cj.jdbc.Driver");
 
             String url = "jdbc:mysql://" + host + ":" + port + "/" + database;
+
+            Properties properties = new Properties();
+            properties.setProperty("user", username);
+            properties.setProperty("password", password);
             if (!useSSL) {
-                url += "?useSSL=false&allowPublicKeyRetrieval=true";
+                properties.setProperty("useSSL", "false");
+                properties.setProperty("allowPublicKeyRetrieval", "true");
             }
+            // Let the driver cache prepared statements per connection, now that connections are reused
+            properties.setProperty("cachePrepStmts", "true");
+            properties.setProperty("prepStmtCacheSize", "250");
+            properties.setProperty("prepStmtCacheSqlLimit", "2048");
+            properties.setProperty("useServerPrepStmts", "true");
+            properties.setProperty("rewriteBatchedStatements", "true");
 
-            connection = DriverManager.getConnection(url, username, password);
-            createTables();
+            ConnectionPool.Settings settings = loadPoolSettings()
+                    .maximumPoolSize(plugin.getConfigManager().getInt("database.pool.maximum-pool-size", 10));
+            startPool(url, properties, settings);
             plugin.getLogger().info("Connected to MySQL database!");
             return true;
         } catch (ClassNotFoundException | SQLException e) {
@@ -117,9 +398,25 @@ public class DatabaseManager {
             File dbFile = new File(dataFolder, sqliteFile);
             String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
 
-            connection = DriverManager.getConnection(url);
-            createTables();
-            plugin.getLogger().info("Connected to SQLite database!");
+            // SQLite allows a single writer, so keep the pool small and let writers wait for the lock
+            Properties properties = new Properties();
+            properties.setProperty("busy_timeout", "5000");
+            boolean wal = plugin.getConfigManager().getBoolean("sqlite.wal.enabled", true);
+            if (wal) {
+                // Readers see the last commit while a write is in progress, and commits only sync the log
+                properties.setProperty("journal_mode", "WAL");
+                properties.setProperty("synchronous", plugin.getConfigManager().getString("sqlite.wal.synchronous", "NORMAL"));
+                properties.setProperty("cache_size", String.valueOf(-plugin.getConfigManager().getInt("sqlite.wal.cache-size-kib", 8192)));
+                properties.setProperty("temp_store", "MEMORY");
+            }
+
+            ConnectionPool.Settings settings = loadPoolSettings()
+                    .maximumPoolSize(plugin.getConfigManager().getInt("sqlite.pool-size", 4));
+            startPool(url, properties, settings);
+            if (wal) {
+                startSqliteWriter(url, properties);
+            }
+            plugin.getLogger().info("Connected to SQLite database" + (wal ? " in WAL mode!" : "!"));
             return true;
         } catch (ClassNotFoundException | SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to connect to SQLite database: " + e.getMessage(), e);
@@ -128,100 +425,115 @@ public class DatabaseManager {
     }
 
     /**
-     * Create necessary tables
-     */
-    private void createTables() throws SQLException {
-        try (Statement statement = connection.createStatement()) {
-            // Create punishments table
-            statement.execute("CREATE TABLE IF NOT EXISTS punishments ("
-                    + "id INTEGER PRIMARY KEY " + (databaseType.equalsIgnoreCase("MySQL") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + ", "
-                    + "player_uuid VARCHAR(36) NOT NULL, "
-                    + "player_name VARCHAR(16) NOT NULL, "
-                    + "punisher_uuid VARCHAR(36) NOT NULL, "
-                    + "punisher_name VARCHAR(16) NOT NULL, "
-                    + "type VARCHAR(16) NOT NULL, "
-                    + "reason TEXT NOT NULL, "
-                    + "start_time BIGINT NOT NULL, "
-                    + "end_time BIGINT NOT NULL, "
-                    + "active BOOLEAN NOT NULL DEFAULT 1, "
-                    + "ip_address VARCHAR(45)"
-                    + ")");
-
-            // Create appeals table
-            statement.execute("CREATE TABLE IF NOT EXISTS appeals ("
-                    + "id INTEGER PRIMARY KEY " + (databaseType.equalsIgnoreCase("MySQL") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + ", "
-                    + "punishment_id INTEGER NOT NULL, "
-                    + "player_uuid VARCHAR(36) NOT NULL, "
-                    + "player_name VARCHAR(16) NOT NULL, "
-                    + "reason TEXT NOT NULL, "
-                    + "submission_time BIGINT NOT NULL, "
-                    + "status VARCHAR(16) NOT NULL DEFAULT 'PENDING', "
-                    + "responder_uuid VARCHAR(36), "
-                    + "responder_name VARCHAR(16), "
-                    + "response TEXT, "
-                    + "response_time BIGINT"
-                    + ")");
-                    
-            // Create IP bans table
-            statement.execute("CREATE TABLE IF NOT EXISTS ip_bans ("
-                    + "id INTEGER PRIMARY KEY " + (databaseType.equalsIgnoreCase("MySQL") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + ", "
-                    + "ip_address VARCHAR(45) NOT NULL, "
-                    + "punisher_uuid VARCHAR(36) NOT NULL, "
-                    + "punisher_name VARCHAR(16) NOT NULL, "
-                    + "reason TEXT NOT NULL, "
-                    + "start_time BIGINT NOT NULL, "
-                    + "end_time BIGINT NOT NULL, "
-                    + "active BOOLEAN NOT NULL DEFAULT 1, "
-                    + "is_subnet BOOLEAN NOT NULL DEFAULT 0"
-                    + ")");
-                    
-            // Create player IPs table to track alternative accounts
-            statement.execute("CREATE TABLE IF NOT EXISTS player_ips ("
-                    + "id INTEGER PRIMARY KEY " + (databaseType.equalsIgnoreCase("MySQL") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + ", "
-                    + "player_uuid VARCHAR(36) NOT NULL, "
-                    + "player_name VARCHAR(16) NOT NULL, "
-                    + "ip_address VARCHAR(45) NOT NULL, "
-                    + "last_seen BIGINT NOT NULL, "
-                    + "UNIQUE(player_uuid, ip_address)"
-                    + ")");
-
-            // Create punishment templates table
-            statement.execute("CREATE TABLE IF NOT EXISTS punishment_templates ("
-                    + "id INTEGER PRIMARY KEY " + (databaseType.equalsIgnoreCase("MySQL") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + ", "
-                    + "name VARCHAR(32) NOT NULL UNIQUE, "
-                    + "type VARCHAR(16) NOT NULL, "
-                    + "reason TEXT NOT NULL, "
-                    + "duration BIGINT NOT NULL"
-                    + ")");
-
-            // Create indexes for performance
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_punishments_player_uuid ON punishments (player_uuid)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_punishments_active ON punishments (active)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_punishments_ip_address ON punishments (ip_address)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_appeals_punishment_id ON appeals (punishment_id)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_appeals_player_uuid ON appeals (player_uuid)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_appeals_status ON appeals (status)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_ip_bans_ip_address ON ip_bans (ip_address)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_ip_bans_active ON ip_bans (active)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_player_ips_ip_address ON player_ips (ip_address)");
-            statement.execute("CREATE INDEX IF NOT EXISTS idx_player_ips_player_uuid ON player_ips (player_uuid)");
+     * Start the writer that runs and groups writes, and the read-only connections for ban and mute lookups.
+     * The database has already been switched to WAL by the main pool.
+     *
+     * @param url The JDBC url
+     * @param properties The driver properties of the main pool
+     * @throws SQLException if a connection cannot be opened
+     */
+    private void startSqliteWriter(String url, Properties properties) throws SQLException {
+        Properties readProperties = new Properties();
+        readProperties.putAll(properties);
+        // Read-only connections cannot change the journal mode, they pick WAL up from the file
+        readProperties.remove("journal_mode");
+        readProperties.setProperty("open_mode", "1");
+
+        ConnectionPool.Settings readSettings = loadPoolSettings()
+                .maximumPoolSize(plugin.getConfigManager().getInt("sqlite.wal.read-pool-size", 4));
+        try {
+            readPool = new ConnectionPool(plugin.getLogger(), "UltimateBan-ReadPool", url, readProperties, readSettings);
+            readPool.start();
+            sqliteWriter = new SqliteWriter(plugin.getLogger(), url, properties,
+                    plugin.getConfigManager().getInt("sqlite.wal.max-batch", 64));
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error creating tables: " + e.getMessage());
+            if (readPool != null) {
+                readPool.close();
+                readPool = null;
+            }
+            pool.close();
+            pool = null;
             throw e;
         }
     }
 
     /**
-     * Close the database connection
+     * Read the shared pool settings from config
+     *
+     * @return The pool settings
      */
-    public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                plugin.getLogger().info("Database connection closed");
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Error closing database connection: " + e.getMessage(), e);
+    private ConnectionPool.Settings loadPoolSettings() {
+        return new ConnectionPool.Settings()
+                .minimumIdle(plugin.getConfigManager().getInt("database.pool.minimum-idle", 2))
+                .connectionTimeout(plugin.getConfigManager().getInt("database.pool.connection-timeout", 5000))
+                .validationTimeout(plugin.getConfigManager().getInt("database.pool.validation-timeout", 3000))
+                .idleTimeout(plugin.getConfigManager().getInt("database.pool.idle-timeout", 600000))
+                .maxLifetime(plugin.getConfigManager().getInt("database.pool.max-lifetime", 1800000))
+                .leakDetectionThreshold(plugin.getConfigManager().getInt("database.pool.leak-detection-threshold", 0));
+    }
+
+    /**
+     * Start the connection pool and create the tables
+     *
+     * @param url The JDBC url
+     * @param properties The driver properties
+     * @param settings The pool settings
+     * @throws SQLException if the database cannot be reached
+     */
+    private void startPool(String url, Properties properties, ConnectionPool.Settings settings) throws SQLException {
+        pool = new ConnectionPool(plugin.getLogger(), "UltimateBan-Pool", url, properties, settings);
+        try {
+            pool.start();
+            try (Connection connection = pool.getConnection()) {
+                new MigrationRunner(plugin.getLogger(), SqlDialect.of(databaseType)).migrate(connection);
             }
+        } catch (SQLException e) {
+            pool.close();
+            pool = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Get the binary key used to look up an address
+     *
+     * @param ipAddress The IP address
+     * @return The 16 address bytes, or an empty array that matches nothing if the address cannot be parsed
+     */
+    private static byte[] addressKey(String ipAddress) {
+        byte[] address = IPUtil.toAddressBytes(ipAddress);
+        return address != null ? address : new byte[0];
+    }
+
+    /**
+     * Close the database connection pool
+     */
+    public void closeConnection() {
+        // Let queued writes finish before the connections go away
+        if (executor != null) {
+            executor.shutdown(10000L);
+            executor = null;
+        }
+
+        if (playerIpBuffer != null) {
+            playerIpBuffer.close();
+            playerIpBuffer = null;
+        }
+
+        if (sqliteWriter != null) {
+            sqliteWriter.close();
+            sqliteWriter = null;
+        }
+
+        if (readPool != null) {
+            readPool.close();
+            readPool = null;
+        }
+
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            plugin.getLogger().info("Database connection closed");
         }
     }
 
@@ -232,297 +544,1645 @@ public class DatabaseManager {
      * @return true if successful, false otherwise
      */
     public boolean savePunishment(Punishment punishment) {
-        String sql = "INSERT INTO punishments (player_uuid, player_name, punisher_uuid, punisher_name, type, reason, start_time, end_time, active) "
-                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setString(1, punishment.getPlayerUUID().toString());
-            statement.setString(2, punishment.getPlayerName());
-            statement.setString(3, punishment.getPunisherUUID().toString());
-            statement.setString(4, punishment.getPunisherName());
-            statement.setString(5, punishment.getType().name());
-            statement.setString(6, punishment.getReason());
-            statement.setLong(7, punishment.getStartTime());
-            statement.setLong(8, punishment.getEndTime());
-            statement.setBoolean(9, punishment.isActive());
-
-            int affectedRows = statement.executeUpdate();
-            if (affectedRows == 0) {
-                return false;
-            }
+        String sql = "INSERT INTO punishments (player_uuid, player_name, punisher_uuid, punisher_name, type, reason, start_time, end_time, active, "
+                + "category, metadata) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        boolean ban = punishment.getType() == PunishmentType.BAN || punishment.getType() == PunishmentType.TEMP_BAN;
+        LoginBanFilter.Changes banChanges = new LoginBanFilter.Changes();
 
-            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return true;
-                } else {
-                    return false;
+        try {
+            boolean saved = write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    statement.setString(1, punishment.getPlayerUUID().toString());
+                    statement.setString(2, punishment.getPlayerName());
+                    statement.setString(3, punishment.getPunisherUUID().toString());
+                    statement.setString(4, punishment.getPunisherName());
+                    statement.setString(5, punishment.getType().name());
+                    statement.setString(6, punishment.getReason());
+                    statement.setLong(7, punishment.getStartTime());
+                    statement.setLong(8, punishment.getEndTime());
+                    statement.setBoolean(9, punishment.isActive());
+                    statement.setString(10, punishment.getCategory());
+                    statement.setString(11, encodeMetadata(punishment.getAllMetadata()));
+
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("No ID was generated for the punishment");
+                        }
+                        punishment.setId(generatedKeys.getInt(1));
+                    }
+                }
+
+                // The summary changes in the same transaction, so it never disagrees with the punishments
+                addToPlayerStats(connection, punishment);
+                recordEvents(connection, PunishmentEvent.Entity.PUNISHMENT, PunishmentEvent.Action.CREATED,
+                        Collections.singletonMap(punishment.getId(), punishment.getPlayerUUID()));
+                if (ban) {
+                    readBanChanges(connection, Collections.singleton(punishment.getPlayerUUID()), banChanges);
                 }
+                return true;
+            });
+            if (!saved) {
+                return false;
             }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Error saving punishment: " + e.getMessage(), e);
             return false;
         }
+
+        banFilter.apply(banChanges);
+        refreshBanIndex(ban ? Collections.singleton(punishment.getPlayerUUID()) : Collections.<UUID>emptySet());
+        notifyListeners(listener -> listener.onPunishmentSaved(punishment));
+        return true;
     }
 
     /**
-     * Update a punishment in the database
+     * Count a new punishment in the summary of its player
      *
-     * @param punishment The punishment to update
-     * @return true if successful, false otherwise
+     * @param connection The connection to use
+     * @param punishment The punishment
+     * @throws SQLException if a database error occurs
      */
-    public boolean updatePunishment(Punishment punishment) {
-        String sql = "UPDATE punishments SET active = ?, end_time = ? WHERE id = ?";
+    private void addToPlayerStats(Connection connection, Punishment punishment) throws SQLException {
+        String sql = SqlDialect.of(databaseType).upsertAccumulating("player_stats", "player_uuid",
+                STATS_COUNT_COLUMNS, STATS_FLAG_COLUMNS);
+        PunishmentType type = punishment.getType();
 
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setBoolean(1, punishment.isActive());
-            statement.setLong(2, punishment.getEndTime());
-            statement.setInt(3, punishment.getId());
-
-            return statement.executeUpdate() > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating punishment: " + e.getMessage(), e);
-            return false;
+            int index = 1;
+            statement.setString(index++, punishment.getPlayerUUID().toString());
+            for (PunishmentType countType : PunishmentType.values()) {
+                statement.setInt(index++, countType == type ? 1 : 0);
+            }
+            statement.setLong(index++, punishment.getStartTime());
+            statement.setBoolean(index++, punishment.isActive() && (type == PunishmentType.BAN || type == PunishmentType.TEMP_BAN));
+            statement.setBoolean(index, punishment.isActive() && (type == PunishmentType.MUTE || type == PunishmentType.TEMP_MUTE));
+            statement.executeUpdate();
         }
     }
 
     /**
-     * Get active punishments for a player
+     * Recompute the active ban and mute flags in the summaries of players whose punishments were deactivated
      *
-     * @param playerUUID The UUID of the player
-     * @return A list of active punishments
+     * @param connection  The connection to use
+     * @param playerUUIDs The players
+     * @throws SQLException if a database error occurs
      */
-    public List<Punishment> getActivePunishments(UUID playerUUID) {
-        List<Punishment> punishments = new ArrayList<>();
-        String sql = "SELECT * FROM punishments WHERE player_uuid = ? AND active = 1";
+    private void refreshPlayerStats(Connection connection, Collection<UUID> playerUUIDs) throws SQLException {
+        String sql = "UPDATE player_stats SET "
+                + "active_ban = CASE WHEN EXISTS (SELECT 1 FROM punishments WHERE player_uuid = ? AND active = 1 "
+                + "AND type IN ('BAN', 'TEMP_BAN')) THEN 1 ELSE 0 END, "
+                + "active_mute = CASE WHEN EXISTS (SELECT 1 FROM punishments WHERE player_uuid = ? AND active = 1 "
+                + "AND type IN ('MUTE', 'TEMP_MUTE')) THEN 1 ELSE 0 END "
+                + "WHERE player_uuid = ?";
 
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, playerUUID.toString());
+            for (UUID playerUUID : playerUUIDs) {
+                statement.setString(1, playerUUID.toString());
+                statement.setString(2, playerUUID.toString());
+                statement.setString(3, playerUUID.toString());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
 
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    punishments.add(extractPunishment(resultSet));
+    /**
+     * Read whether players still have an active ban, in the transaction that changed their punishments.
+     * Must run after their summaries were updated. The result is applied to the login ban filter after the commit.
+     * Changes made by other servers have already committed and are read on any connection.
+     *
+     * @param connection  The connection to use
+     * @param playerUUIDs The players
+     * @param changes     Receives the ban state of each player
+     * @throws SQLException if a database error occurs
+     */
+    private void readBanChanges(Connection connection, Collection<UUID> playerUUIDs, LoginBanFilter.Changes changes)
+            throws SQLException {
+        if (!banFilter.isLoaded()) {
+            return;
+        }
+
+        try (PreparedStatement banned = connection.prepareStatement("SELECT active_ban FROM player_stats WHERE player_uuid = ?");
+             PreparedStatement addresses = connection.prepareStatement("SELECT ip_bin FROM player_ips WHERE player_uuid = ?")) {
+            for (UUID playerUUID : playerUUIDs) {
+                // Read before the check, so a ban added after it keeps the player in the filter
+                long stamp = banFilter.getStamp(playerUUID);
+                banned.setString(1, playerUUID.toString());
+                boolean activeBan;
+                try (ResultSet resultSet = banned.executeQuery()) {
+                    activeBan = resultSet.next() && resultSet.getBoolean("active_ban");
                 }
+                if (!activeBan) {
+                    changes.cleared(playerUUID, stamp);
+                    continue;
+                }
+
+                // A player already in the filter has its addresses added as they are recorded
+                List<byte[]> known = new ArrayList<>();
+                if (stamp == 0) {
+                    addresses.setString(1, playerUUID.toString());
+                    try (ResultSet resultSet = addresses.executeQuery()) {
+                        while (resultSet.next()) {
+                            known.add(resultSet.getBytes("ip_bin"));
+                        }
+                    }
+                }
+                changes.banned(playerUUID, known);
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting active punishments: " + e.getMessage(), e);
         }
-
-        return punishments;
     }
 
     /**
-     * Get a player's UUID from their name
-     * 
-     * @param playerName The player's name
-     * @return A CompletableFuture that resolves to the player's UUID, or null if not found
+     * Reload the indexed bans of players from the database, after a write that changed them has committed.
+     * If the database cannot be read the index is no longer used, rather than answer from stale bans.
+     *
+     * @param playerUUIDs The players
      */
-    public CompletableFuture<UUID> getPlayerUuid(String playerName) {
-        CompletableFuture<UUID> future = new CompletableFuture<>();
-        
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT uuid FROM players WHERE name = ? COLLATE NOCASE")) {
-                
-                stmt.setString(1, playerName);
-                ResultSet rs = stmt.executeQuery();
-                
-                if (rs.next()) {
-                    UUID uuid = UUID.fromString(rs.getString("uuid"));
-                    future.complete(uuid);
-                } else {
-                    future.complete(null);
+    private void refreshBanIndex(Collection<UUID> playerUUIDs) {
+        if (!banIndex.isLoaded() || playerUUIDs.isEmpty()) {
+            return;
+        }
+
+        List<UUID> uuids = new ArrayList<>(playerUUIDs);
+        synchronized (banIndexRefreshLock) {
+            Map<UUID, List<Punishment>> bans = new HashMap<>();
+            try (Connection connection = getReadConnection()) {
+                for (int from = 0; from < uuids.size(); from += IN_CHUNK_SIZE) {
+                    List<UUID> chunk = uuids.subList(from, Math.min(from + IN_CHUNK_SIZE, uuids.size()));
+                    String sql = "SELECT * FROM punishments WHERE active = 1 AND type IN ('BAN', 'TEMP_BAN') "
+                            + "AND player_uuid IN (" + placeholders(chunk.size()) + ")";
+
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            statement.setString(i + 1, chunk.get(i).toString());
+                        }
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                Punishment ban = extractPunishmentFromResultSet(resultSet);
+                                bans.computeIfAbsent(ban.getPlayerUUID(), uuid -> new ArrayList<>()).add(ban);
+                            }
+                        }
+                    }
                 }
-            } catch (Exception e) {
-                plugin.getLogger().severe("Error getting player UUID: " + e.getMessage());
-                future.completeExceptionally(e);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Error refreshing the active ban index, bans will be read from the database: "
+                        + e.getMessage(), e);
+                banIndex.invalidate();
+                return;
             }
-        });
-        
-        return future;
+
+            for (UUID playerUUID : uuids) {
+                banIndex.replace(playerUUID, bans.getOrDefault(playerUUID, Collections.emptyList()));
+            }
+        }
     }
 
     /**
-     * Extract a punishment from a ResultSet
+     * Append changes to the change log, in the transaction that made them
      *
-     * @param resultSet The ResultSet to extract from
-     * @return The extracted punishment
-     * @throws SQLException If there is an error extracting data
+     * @param connection The connection of the transaction
+     * @param entity     What kind of rows were changed
+     * @param action     How they were changed
+     * @param rows       The player each changed row belongs to by row ID, null for IP bans
+     * @throws SQLException if a database error occurs
      */
-    private Punishment extractPunishment(ResultSet resultSet) throws SQLException {
-        int id = resultSet.getInt("id");
-        UUID playerUUID = UUID.fromString(resultSet.getString("player_uuid"));
-        String playerName = resultSet.getString("player_name");
-        UUID punisherUUID = UUID.fromString(resultSet.getString("punisher_uuid"));
-        String punisherName = resultSet.getString("punisher_name");
-        PunishmentType type = PunishmentType.valueOf(resultSet.getString("type"));
-        String reason = resultSet.getString("reason");
-        long startTime = resultSet.getLong("start_time");
-        long endTime = resultSet.getLong("end_time");
-        boolean active = resultSet.getBoolean("active");
+    private void recordEvents(Connection connection, PunishmentEvent.Entity entity, PunishmentEvent.Action action,
+                              Map<Integer, UUID> rows) throws SQLException {
+        if (!changeLogEnabled || rows.isEmpty()) {
+            return;
+        }
 
-        Punishment punishment = new Punishment(playerUUID, playerName, punisherUUID, punisherName, 
-                type, reason, startTime, endTime);
-        punishment.setId(id);
-        punishment.setActive(active);
-        return punishment;
+        long now = System.currentTimeMillis();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_EVENT_SQL)) {
+            for (Map.Entry<Integer, UUID> row : rows.entrySet()) {
+                addEvent(statement, entity, action, row.getKey(), row.getValue(), now);
+            }
+            statement.executeBatch();
+        }
     }
 
     /**
-     * Get a connection to the database
+     * Append one change log entry for each player in a batch of address sightings, in the transaction that
+     * wrote them. Other servers read the player's addresses back, so the entry does not say which changed.
      *
-     * @return The database connection
-     * @throws SQLException if the connection is closed
+     * @param connection The connection of the transaction
+     * @param playerIps  The sightings that were written
+     * @throws SQLException if a database error occurs
      */
-    public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            initialize();
+    private void recordSightings(Connection connection, List<PlayerIp> playerIps) throws SQLException {
+        if (!changeLogEnabled || playerIps.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> players = new LinkedHashSet<>();
+        for (PlayerIp playerIp : playerIps) {
+            players.add(playerIp.getPlayerUUID());
         }
-        return connection;
+        long now = System.currentTimeMillis();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_EVENT_SQL)) {
+            for (UUID playerUUID : players) {
+                addEvent(statement, PunishmentEvent.Entity.PLAYER_IP, PunishmentEvent.Action.UPDATED, 0, playerUUID, now);
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void addEvent(PreparedStatement statement, PunishmentEvent.Entity entity, PunishmentEvent.Action action,
+                          int entityId, UUID playerUUID, long now) throws SQLException {
+        statement.setString(1, entity.name());
+        statement.setString(2, action.name());
+        statement.setInt(3, entityId);
+        statement.setString(4, playerUUID != null ? playerUUID.toString() : null);
+        statement.setString(5, serverId);
+        statement.setLong(6, now);
+        statement.addBatch();
     }
 
     /**
-     * Get a punishment by ID
+     * Read the IDs of a player's active punishments of one type, before they are deactivated together
      *
-     * @param id The punishment ID
-     * @return The punishment, or null if not found
+     * @param connection The connection of the transaction
+     * @param playerUUID The player
+     * @param type       The punishment type
+     * @return The player by punishment ID, empty when the change log is off
+     * @throws SQLException if a database error occurs
      */
-    public Punishment getPunishment(int id) {
-        String sql = "SELECT * FROM punishments WHERE id = ?";
-        
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            statement.setInt(1, id);
-            
+    private Map<Integer, UUID> readActiveIds(Connection connection, UUID playerUUID, String type) throws SQLException {
+        Map<Integer, UUID> rows = new LinkedHashMap<>();
+        if (!changeLogEnabled) {
+            return rows;
+        }
+
+        String sql = "SELECT id FROM punishments WHERE player_uuid = ? AND type = ? AND active = 1";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            statement.setString(2, type);
             try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    return extractPunishmentFromResultSet(resultSet);
+                while (resultSet.next()) {
+                    rows.put(resultSet.getInt("id"), playerUUID);
                 }
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting punishment: " + e.getMessage(), e);
         }
-        
-        return null;
+        return rows;
     }
 
     /**
-     * Get the active ban for a player
+     * Get the punishment summary of a player, a single primary key read
      *
      * @param playerUUID The player's UUID
-     * @return The active ban, or null if the player is not banned
+     * @return The summary, empty if the player was never punished, or null if the query failed
      */
-    public Punishment getActiveBan(UUID playerUUID) {
-        String sql = "SELECT * FROM punishments WHERE player_uuid = ? AND active = 1 AND (type = ? OR type = ?)";
-        
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
+    public PlayerStats getPlayerStats(UUID playerUUID) {
+        String sql = PLAYER_STATS_SQL;
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, playerUUID.toString());
-            statement.setString(2, PunishmentType.BAN.name());
-            statement.setString(3, PunishmentType.TEMP_BAN.name());
-            
+
             try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    Punishment punishment = extractPunishmentFromResultSet(resultSet);
-                    
-                    // Check if temporary ban has expired
-                    if (!punishment.isPermanent() && punishment.hasExpired()) {
-                        deactivatePunishment(punishment.getId());
+                Map<PunishmentType, Integer> counts = new EnumMap<>(PunishmentType.class);
+                if (!resultSet.next()) {
+                    return new PlayerStats(counts, 0L, false, false);
+                }
+
+                for (PunishmentType type : PunishmentType.values()) {
+                    counts.put(type, resultSet.getInt(STATS_COUNT_COLUMNS[type.ordinal()]));
+                }
+                return new PlayerStats(counts, resultSet.getLong("last_punishment"),
+                        resultSet.getBoolean("active_ban"), resultSet.getBoolean("active_mute"));
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting player stats: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Update a punishment in the database
+     *
+     * @param punishment The punishment to update
+     * @return true if successful, false otherwise
+     */
+    public boolean updatePunishment(Punishment punishment) {
+        String sql = "UPDATE punishments SET active = ?, end_time = ? WHERE id = ?";
+        LoginBanFilter.Changes banChanges = new LoginBanFilter.Changes();
+
+        try {
+            boolean updated = write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setBoolean(1, punishment.isActive());
+                    statement.setLong(2, punishment.getEndTime());
+                    statement.setInt(3, punishment.getId());
+
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                refreshPlayerStats(connection, Collections.singleton(punishment.getPlayerUUID()));
+                recordEvents(connection, PunishmentEvent.Entity.PUNISHMENT, PunishmentEvent.Action.UPDATED,
+                        Collections.singletonMap(punishment.getId(), punishment.getPlayerUUID()));
+                readBanChanges(connection, Collections.singleton(punishment.getPlayerUUID()), banChanges);
+                return true;
+            });
+            if (!updated) {
+                return false;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error updating punishment: " + e.getMessage(), e);
+            return false;
+        }
+
+        banFilter.apply(banChanges);
+        refreshBanIndex(Collections.singleton(punishment.getPlayerUUID()));
+        notifyListeners(listener -> listener.onPunishmentsChanged(punishment.getPlayerUUID()));
+        return true;
+    }
+
+    /**
+     * Get active punishments for a player
+     *
+     * @param playerUUID The UUID of the player
+     * @return A list of active punishments
+     */
+    public List<Punishment> getActivePunishments(UUID playerUUID) {
+        List<Punishment> punishments = new ArrayList<>();
+        String sql = "SELECT * FROM punishments WHERE player_uuid = ? AND active = 1";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    punishments.add(extractPunishment(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting active punishments: " + e.getMessage(), e);
+        }
+
+        return punishments;
+    }
+
+    /**
+     * Get every active punishment of the given types
+     *
+     * @param types The punishment types
+     * @return A list of active punishments
+     */
+    public List<Punishment> getAllActivePunishments(PunishmentType... types) {
+        List<Punishment> punishments = new ArrayList<>();
+        if (types.length == 0) {
+            return punishments;
+        }
+
+        String sql = "SELECT * FROM punishments WHERE active = 1 AND type IN (" + placeholders(types.length) + ")";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < types.length; i++) {
+                statement.setString(i + 1, types[i].name());
+            }
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    punishments.add(extractPunishment(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting active punishments: " + e.getMessage(), e);
+        }
+
+        return punishments;
+    }
+
+    /**
+     * Get the active punishments of several players in as few queries as possible.
+     * Expired temporary punishments are left out, the expiry service deactivates them.
+     *
+     * @param playerUUIDs The UUIDs of the players
+     * @param types       The punishment types
+     * @return Active punishments by player UUID, players without any are left out
+     */
+    public Map<UUID, List<Punishment>> getActivePunishments(Collection<UUID> playerUUIDs, PunishmentType... types) {
+        Map<UUID, List<Punishment>> punishments = new HashMap<>();
+        if (playerUUIDs.isEmpty() || types.length == 0) {
+            return punishments;
+        }
+
+        List<UUID> uuids = new ArrayList<>(playerUUIDs);
+        try (Connection connection = getConnection()) {
+            for (int from = 0; from < uuids.size(); from += IN_CHUNK_SIZE) {
+                List<UUID> chunk = uuids.subList(from, Math.min(from + IN_CHUNK_SIZE, uuids.size()));
+                String sql = "SELECT * FROM punishments WHERE active = 1 AND type IN (" + placeholders(types.length) + ") "
+                        + "AND player_uuid IN (" + placeholders(chunk.size()) + ")";
+
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (PunishmentType type : types) {
+                        statement.setString(index++, type.name());
+                    }
+                    for (UUID uuid : chunk) {
+                        statement.setString(index++, uuid.toString());
+                    }
+
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            Punishment punishment = extractPunishmentFromResultSet(resultSet);
+                            if (punishment.isPermanent() || !punishment.hasExpired()) {
+                                punishments.computeIfAbsent(punishment.getPlayerUUID(), uuid -> new ArrayList<>()).add(punishment);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting active punishments: " + e.getMessage(), e);
+        }
+
+        return punishments;
+    }
+
+    /**
+     * Get the active bans of several players
+     *
+     * @param playerUUIDs The UUIDs of the players
+     * @return Active bans by player UUID, players who are not banned are left out
+     */
+    public Map<UUID, Punishment> getActiveBans(Collection<UUID> playerUUIDs) {
+        return firstByPlayer(getActivePunishments(playerUUIDs, PunishmentType.BAN, PunishmentType.TEMP_BAN));
+    }
+
+    /**
+     * Get the active mutes of several players
+     *
+     * @param playerUUIDs The UUIDs of the players
+     * @return Active mutes by player UUID, players who are not muted are left out
+     */
+    public Map<UUID, Punishment> getActiveMutes(Collection<UUID> playerUUIDs) {
+        return firstByPlayer(getActivePunishments(playerUUIDs, PunishmentType.MUTE, PunishmentType.TEMP_MUTE));
+    }
+
+    private static Map<UUID, Punishment> firstByPlayer(Map<UUID, List<Punishment>> punishments) {
+        Map<UUID, Punishment> first = new HashMap<>();
+        for (Map.Entry<UUID, List<Punishment>> entry : punishments.entrySet()) {
+            first.put(entry.getKey(), entry.getValue().get(0));
+        }
+        return first;
+    }
+
+    /**
+     * Build a list of bind parameters for an IN clause
+     *
+     * @param count The number of parameters
+     * @return The parameters, for example "?, ?, ?"
+     */
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ", ?");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get a player's UUID from their name
+     * 
+     * @param playerName The player's name
+     * @return A CompletableFuture that resolves to the player's UUID, or null if not found
+     */
+    public CompletableFuture<UUID> getPlayerUuid(String playerName) {
+        // Known names are answered without a trip to the database thread
+        PlayerNameCache.Entry cached = nameCache.lookup(playerName);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.getUuid());
+        }
+
+        return getExecutor().supply(() -> {
+            try {
+                return lookupPlayerUuid(playerName);
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Error getting player UUID: " + e.getMessage());
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Get a player's UUID from their name on the calling thread.
+     * Blocks on the database, call it from async tasks only.
+     *
+     * @param playerName The player's name
+     * @return The player's UUID, or null if not found or the lookup failed
+     */
+    public UUID lookupPlayerUuidSync(String playerName) {
+        try {
+            return lookupPlayerUuid(playerName);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting player UUID: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Look up a player's UUID from their name on the calling thread, from the name cache if possible.
+     * Names can move between accounts, the player who used it last wins.
+     *
+     * @param playerName The player's name
+     * @return The player's UUID, or null if not found
+     * @throws SQLException if a database error occurs
+     */
+    private UUID lookupPlayerUuid(String playerName) throws SQLException {
+        PlayerNameCache.Entry cached = nameCache.lookup(playerName);
+        if (cached != null) {
+            return cached.getUuid();
+        }
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PLAYER_UUID_SQL)) {
+            
+            stmt.setString(1, playerName.toLowerCase(Locale.ROOT));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    nameCache.recordMissing(playerName);
+                    return null;
+                }
+
+                UUID uuid = UUID.fromString(rs.getString("uuid"));
+                nameCache.record(uuid, rs.getString("name"), rs.getLong("last_seen"));
+                return uuid;
+            }
+        }
+    }
+
+    /**
+     * Get the executor used for database work.
+     * Callers should submit blocking queries here instead of using the Bukkit scheduler or the common pool.
+     *
+     * @return The database executor
+     */
+    public BoundedExecutor getExecutor() {
+        BoundedExecutor currentExecutor = executor;
+        if (currentExecutor == null) {
+            throw new IllegalStateException("Database executor is not initialized");
+        }
+        return currentExecutor;
+    }
+
+    /**
+     * Get the connection pool
+     *
+     * @return The connection pool, or null if the database is not connected
+     */
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * Get the buffer that writes player addresses in the background
+     *
+     * @return The player address write buffer, or null if the database is not connected
+     */
+    public PlayerIpWriteBuffer getPlayerIpBuffer() {
+        return playerIpBuffer;
+    }
+
+    /**
+     * Get the cache of player names and UUIDs
+     *
+     * @return The name cache
+     */
+    public PlayerNameCache getNameCache() {
+        return nameCache;
+    }
+
+    /**
+     * Get the in-memory index of active bans
+     *
+     * @return The active ban index
+     */
+    public ActiveBanIndex getBanIndex() {
+        return banIndex;
+    }
+
+    /**
+     * Get the filter that lets clean logins skip the database
+     *
+     * @return The login ban filter
+     */
+    public LoginBanFilter getBanFilter() {
+        return banFilter;
+    }
+
+    /**
+     * Register a listener for changes made through this manager
+     *
+     * @param listener The listener
+     */
+    public void addListener(DatabaseListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener
+     *
+     * @param listener The listener
+     */
+    public void removeListener(DatabaseListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notify every listener, a failing listener never fails the database operation
+     *
+     * @param event The callback to run on each listener
+     */
+    private void notifyListeners(Consumer<DatabaseListener> event) {
+        notifyListeners(event, false);
+    }
+
+    /**
+     * Notify listeners of a change made here or read from the change log
+     *
+     * @param event  The callback to run on each listener
+     * @param remote Whether another server made the change
+     */
+    private void notifyListeners(Consumer<DatabaseListener> event, boolean remote) {
+        for (DatabaseListener listener : listeners) {
+            if (remote && !listener.followsOtherServers()) {
+                continue;
+            }
+            try {
+                event.accept(listener);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Error in database listener: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Extract a punishment from a ResultSet
+     *
+     * @param resultSet The ResultSet to extract from
+     * @return The extracted punishment
+     * @throws SQLException If there is an error extracting data
+     */
+    private Punishment extractPunishment(ResultSet resultSet) throws SQLException {
+        int id = resultSet.getInt("id");
+        UUID playerUUID = UUID.fromString(resultSet.getString("player_uuid"));
+        String playerName = resultSet.getString("player_name");
+        String punisherUUIDString = resultSet.getString("punisher_uuid");
+        UUID punisherUUID = punisherUUIDString != null ? UUID.fromString(punisherUUIDString) : null;
+        String punisherName = resultSet.getString("punisher_name");
+        PunishmentType type = PunishmentType.valueOf(resultSet.getString("type"));
+        String reason = resultSet.getString("reason");
+        long startTime = resultSet.getLong("start_time");
+        long endTime = resultSet.getLong("end_time");
+        boolean active = resultSet.getBoolean("active");
+
+        Punishment punishment = new Punishment(playerUUID, playerName, punisherUUID, punisherName, 
+                type, reason, startTime, endTime);
+        punishment.setId(id);
+        punishment.setActive(active);
+        punishment.setAllMetadata(decodeMetadata(resultSet.getString("metadata")));
+        return punishment;
+    }
+
+    /**
+     * Encode punishment metadata for the metadata column as URL encoded key=value pairs
+     *
+     * @param metadata The metadata
+     * @return The encoded metadata, or null if there is none
+     */
+    private static String encodeMetadata(Map<String, String> metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder encoded = new StringBuilder();
+        try {
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                if (encoded.length() > 0) {
+                    encoded.append('&');
+                }
+                encoded.append(URLEncoder.encode(entry.getKey(), "UTF-8"))
+                        .append('=')
+                        .append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return encoded.length() > 0 ? encoded.toString() : null;
+    }
+
+    /**
+     * Decode the metadata column of a punishment
+     *
+     * @param encoded The encoded metadata, may be null
+     * @return The metadata
+     */
+    private static Map<String, String> decodeMetadata(String encoded) {
+        Map<String, String> metadata = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return metadata;
+        }
+
+        try {
+            for (String pair : encoded.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    metadata.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return metadata;
+    }
+
+    /**
+     * Borrow a connection from the pool. The connection must be closed to return it to the pool.
+     *
+     * @return The database connection
+     * @throws SQLException if the pool is closed or no connection became available in time
+     */
+    public Connection getConnection() throws SQLException {
+        ConnectionPool currentPool = pool;
+        if (currentPool == null) {
+            throw new SQLException("Database connection pool is not initialized");
+        }
+        return currentPool.getConnection();
+    }
+
+    /**
+     * Borrow a connection for a lookup that does not write. With SQLite in WAL mode this comes from the
+     * read-only pool, so lookups never queue behind connections held for writes.
+     *
+     * @return The database connection, which must be closed to return it to its pool
+     * @throws SQLException if the pool is closed or no connection became available in time
+     */
+    private Connection getReadConnection() throws SQLException {
+        ConnectionPool currentPool = readPool;
+        return currentPool != null ? currentPool.getConnection() : getConnection();
+    }
+
+    /**
+     * Run a write in a transaction and wait for it to commit. With SQLite in WAL mode the write is
+     * queued for the single writer, which commits it together with other queued writes.
+     *
+     * @param work The write
+     * @param <T> The type of the result
+     * @return The result of the write
+     * @throws SQLException if the write failed, nothing it changed is kept
+     */
+    private <T> T write(SqlWork<T> work) throws SQLException {
+        SqliteWriter writer = sqliteWriter;
+        if (writer != null) {
+            return writer.execute(work);
+        }
+
+        try (Connection connection = getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Get the single SQLite writer
+     *
+     * @return The writer, or null unless the database is SQLite in WAL mode
+     */
+    public SqliteWriter getSqliteWriter() {
+        return sqliteWriter;
+    }
+
+    /**
+     * Get a punishment by ID
+     *
+     * @param id The punishment ID
+     * @return The punishment, or null if not found
+     */
+    public Punishment getPunishment(int id) {
+        String sql = "SELECT * FROM punishments WHERE id = ?";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, id);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return extractPunishmentFromResultSet(resultSet);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting punishment: " + e.getMessage(), e);
+        }
+        
+        return null;
+    }
+
+    /**
+     * Get the active ban for a player, from the active ban index when it is loaded.
+     * Bans from the index carry no metadata. The index is only kept when this server sees every change to the database.
+     *
+     * @param playerUUID The player's UUID
+     * @return The active ban, or null if the player is not banned
+     */
+    public Punishment getActiveBan(UUID playerUUID) {
+        String sql = ACTIVE_PUNISHMENT_SQL;
+        
+        if (banIndex.isLoaded()) {
+            Punishment punishment = banIndex.getBan(playerUUID);
+            return punishment != null && punishment.hasExpired() ? null : punishment;
+        }
+        
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            statement.setString(2, PunishmentType.BAN.name());
+            statement.setString(3, PunishmentType.TEMP_BAN.name());
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // Expired rows stay active until the expiry service deactivates them, so skip past them
+                while (resultSet.next()) {
+                    Punishment candidate = extractPunishmentFromResultSet(resultSet);
+                    if (!candidate.hasExpired()) {
+                        return candidate;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting active ban: " + e.getMessage(), e);
+        }
+        
+        return null;
+    }
+
+    /**
+     * Get the active mute for a player
+     *
+     * @param playerUUID The player's UUID
+     * @return The active mute, or null if the player is not muted
+     */
+    public Punishment getActiveMute(UUID playerUUID) {
+        String sql = ACTIVE_PUNISHMENT_SQL;
+        
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            statement.setString(2, PunishmentType.MUTE.name());
+            statement.setString(3, PunishmentType.TEMP_MUTE.name());
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // Expired rows stay active until the expiry service deactivates them, so skip past them
+                while (resultSet.next()) {
+                    Punishment candidate = extractPunishmentFromResultSet(resultSet);
+                    if (!candidate.hasExpired()) {
+                        return candidate;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting active mute: " + e.getMessage(), e);
+        }
+        
+        return null;
+    }
+
+    /**
+     * Deactivate a punishment
+     *
+     * @param id The punishment ID
+     * @return true if successful, false otherwise
+     */
+    public boolean deactivatePunishment(int id) {
+        String sql = "UPDATE punishments SET active = 0 WHERE id = ?";
+        LoginBanFilter.Changes banChanges = new LoginBanFilter.Changes();
+        UUID changed;
+        
+        try {
+            // The player whose punishment was deactivated, or null if there was no such punishment
+            changed = write(connection -> {
+                // The summary and listeners of the player need to know
+                UUID playerUUID = null;
+                try (PreparedStatement statement = connection.prepareStatement("SELECT player_uuid FROM punishments WHERE id = ?")) {
+                    statement.setInt(1, id);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        if (resultSet.next()) {
+                            playerUUID = UUID.fromString(resultSet.getString("player_uuid"));
+                        }
+                    }
+                }
+                
+                if (playerUUID == null) {
+                    return null;
+                }
+                
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setInt(1, id);
+                    if (statement.executeUpdate() == 0) {
                         return null;
                     }
-                    
-                    return punishment;
+                }
+                refreshPlayerStats(connection, Collections.singleton(playerUUID));
+                recordEvents(connection, PunishmentEvent.Entity.PUNISHMENT, PunishmentEvent.Action.DEACTIVATED,
+                        Collections.singletonMap(id, playerUUID));
+                readBanChanges(connection, Collections.singleton(playerUUID), banChanges);
+                return playerUUID;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error deactivating punishment: " + e.getMessage(), e);
+            return false;
+        }
+        
+        if (changed == null) {
+            return false;
+        }
+        banFilter.apply(banChanges);
+        refreshBanIndex(Collections.singleton(changed));
+        notifyListeners(listener -> listener.onPunishmentsChanged(changed));
+        return true;
+    }
+
+    /**
+     * Deactivate all active punishments of a specific type for a player
+     *
+     * @param playerUUID The UUID of the player
+     * @param type The type of punishment to deactivate
+     * @return true if successful, false otherwise
+     */
+    public boolean deactivatePunishment(UUID playerUUID, String type) {
+        String sql = "UPDATE punishments SET active = 0 WHERE player_uuid = ? AND type = ? AND active = 1";
+        LoginBanFilter.Changes banChanges = new LoginBanFilter.Changes();
+        try {
+            boolean deactivated = write(connection -> {
+                Map<Integer, UUID> rows = readActiveIds(connection, playerUUID, type);
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, playerUUID.toString());
+                    statement.setString(2, type);
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                refreshPlayerStats(connection, Collections.singleton(playerUUID));
+                recordEvents(connection, PunishmentEvent.Entity.PUNISHMENT, PunishmentEvent.Action.DEACTIVATED, rows);
+                readBanChanges(connection, Collections.singleton(playerUUID), banChanges);
+                return true;
+            });
+            if (!deactivated) {
+                return false;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error deactivating punishment: " + e.getMessage(), e);
+            return false;
+        }
+        
+        banFilter.apply(banChanges);
+        refreshBanIndex(Collections.singleton(playerUUID));
+        notifyListeners(listener -> listener.onPunishmentsChanged(playerUUID));
+        return true;
+    }
+
+    /**
+     * Get all punishments for a player
+     *
+     * @param playerUUID The UUID of the player
+     * @return List of punishments
+     */
+    public List<Punishment> getPlayerPunishments(UUID playerUUID) {
+        List<Punishment> punishments = new ArrayList<>();
+        String sql = "SELECT * FROM punishments WHERE player_uuid = ? ORDER BY start_time DESC";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    punishments.add(extractPunishmentFromResultSet(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting player punishments: " + e.getMessage(), e);
+        }
+        
+        return punishments;
+    }
+
+    /**
+     * Get one page of a player's punishments, newest first.
+     * Pages are found by position rather than offset, so a late page costs the same as the first.
+     *
+     * @param playerUUID The UUID of the player
+     * @param after      The position to read from, {@link HistoryCursor#START} for the newest punishment
+     * @param limit      The maximum number of punishments
+     * @return The punishments, or null if the query failed
+     */
+    public List<Punishment> getPunishmentPage(UUID playerUUID, HistoryCursor after, int limit) {
+        List<Punishment> punishments = new ArrayList<>();
+        String sql = PUNISHMENT_PAGE_SQL;
+
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            statement.setLong(2, after.getStartTime());
+            statement.setLong(3, after.getStartTime());
+            statement.setInt(4, after.getId());
+            statement.setInt(5, limit);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    punishments.add(extractPunishment(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting punishment page: " + e.getMessage(), e);
+            return null;
+        }
+        return punishments;
+    }
+
+    /**
+     * Move a history position forward past a number of punishments without reading them.
+     * Only the index is read, which is how a page is reached without loading the pages before it.
+     *
+     * @param playerUUID The UUID of the player
+     * @param after      The position to move from
+     * @param count      The number of punishments to skip, at least 1
+     * @return The position after the skipped punishments, or null if there are fewer or the query failed
+     */
+    public HistoryCursor skipPunishments(UUID playerUUID, HistoryCursor after, int count) {
+        String sql = PUNISHMENT_SKIP_SQL;
+
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            statement.setLong(2, after.getStartTime());
+            statement.setLong(3, after.getStartTime());
+            statement.setInt(4, after.getId());
+            statement.setInt(5, count - 1);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? new HistoryCursor(resultSet.getLong("start_time"), resultSet.getInt("id")) : null;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error skipping punishments: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Save an appeal to the database
+     *
+     * @param appeal The appeal to save
+     * @return The ID of the saved appeal
+     */
+    public int saveAppeal(Appeal appeal) {
+        String sql = "INSERT INTO appeals (punishment_id, player_uuid, player_name, reason, submission_time, status) " +
+                     "VALUES (?, ?, ?, ?, ?, ?)";
+        
+        try {
+            int id = write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    statement.setInt(1, appeal.getPunishmentId());
+                    statement.setString(2, appeal.getPlayerUUID().toString());
+                    statement.setString(3, appeal.getPlayerName());
+                    statement.setString(4, appeal.getReason());
+                    statement.setLong(5, appeal.getSubmissionTime());
+                    statement.setString(6, appeal.getStatus().name());
+                    
+                    statement.executeUpdate();
+                    
+                    // Get the generated ID
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        if (!generatedKeys.next()) {
+                            return -1;
+                        }
+                        appeal.setId(generatedKeys.getInt(1));
+                    }
+                }
+                recordEvents(connection, PunishmentEvent.Entity.APPEAL, PunishmentEvent.Action.CREATED,
+                        Collections.singletonMap(appeal.getId(), appeal.getPlayerUUID()));
+                return appeal.getId();
+            });
+            if (id > 0) {
+                notifyListeners(listener -> listener.onAppealSaved(appeal));
+            }
+            return id;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error saving appeal: " + e.getMessage(), e);
+        }
+        
+        return -1;
+    }
+
+    /**
+     * Update an appeal in the database
+     *
+     * @param appeal The appeal to update
+     * @return true if successful, false otherwise
+     */
+    public boolean updateAppeal(Appeal appeal) {
+        String sql = "UPDATE appeals SET status = ?, responder_uuid = ?, responder_name = ?, response = ?, response_time = ? " +
+                     "WHERE id = ?";
+        
+        try {
+            boolean updated = write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, appeal.getStatus().name());
+                    statement.setString(2, appeal.getResponderUUID() != null ? appeal.getResponderUUID().toString() : null);
+                    statement.setString(3, appeal.getResponderName());
+                    statement.setString(4, appeal.getResponse());
+                    statement.setLong(5, appeal.getResponseTime());
+                    statement.setInt(6, appeal.getId());
+                    
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                recordEvents(connection, PunishmentEvent.Entity.APPEAL, PunishmentEvent.Action.UPDATED,
+                        Collections.singletonMap(appeal.getId(), appeal.getPlayerUUID()));
+                return true;
+            });
+            if (updated) {
+                notifyListeners(listener -> listener.onAppealUpdated(appeal));
+            }
+            return updated;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error updating appeal: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Get an appeal by ID
+     *
+     * @param id The appeal ID
+     * @return The appeal, or null if not found
+     */
+    public Appeal getAppeal(int id) {
+        String sql = "SELECT * FROM appeals WHERE id = ?";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, id);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return extractAppealFromResultSet(resultSet);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting appeal: " + e.getMessage(), e);
+        }
+        
+        return null;
+    }
+
+    /**
+     * Get all pending appeals
+     *
+     * @return A list of pending appeals
+     */
+    public List<Appeal> getPendingAppeals() {
+        List<Appeal> appeals = new ArrayList<>();
+        String sql = "SELECT * FROM appeals WHERE status = ?";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, Appeal.Status.PENDING.name());
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    appeals.add(extractAppealFromResultSet(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting pending appeals: " + e.getMessage(), e);
+        }
+        
+        return appeals;
+    }
+
+    /**
+     * Get all appeals for a player
+     *
+     * @param playerUUID The player's UUID a
+     * @return A list of appeals
+     */
+    public List<Appeal> getPlayerAppeals(UUID playerUUID) {
+        List<Appeal> appeals = new ArrayList<>();
+        String sql = "SELECT * FROM appeals WHERE player_uuid = ?";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    appeals.add(extractAppealFromResultSet(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting player appeals: " + e.getMessage(), e);
+        }
+        
+        return appeals;
+    }
+
+    /**
+     * Extract a punishment from a ResultSet
+     *
+     * @param resultSet The ResultSet containing punishment data
+     * @return The extracted Punishment
+     * @throws SQLException if extraction fails
+     */
+    private Punishment extractPunishmentFromResultSet(ResultSet resultSet) throws SQLException {
+        return extractPunishment(resultSet);
+    }
+
+    /**
+     * Extract an appeal from a ResultSet
+     *
+     * @param resultSet The ResultSet containing appeal data
+     * @return The extracted Appeal
+     * @throws SQLException if extraction fails
+     */
+    private Appeal extractAppealFromResultSet(ResultSet resultSet) throws SQLException {
+        int id = resultSet.getInt("id");
+        int punishmentId = resultSet.getInt("punishment_id");
+        UUID playerUUID = UUID.fromString(resultSet.getString("player_uuid"));
+        String playerName = resultSet.getString("player_name");
+        String reason = resultSet.getString("reason");
+        long submissionTime = resultSet.getLong("submission_time");
+        Appeal.Status status = Appeal.Status.valueOf(resultSet.getString("status"));
+        
+        String responderUUIDString = resultSet.getString("responder_uuid");
+        UUID responderUUID = responderUUIDString != null ? UUID.fromString(responderUUIDString) : null;
+        
+        String responderName = resultSet.getString("responder_name");
+        String response = resultSet.getString("response");
+        long responseTime = resultSet.getLong("response_time");
+        
+        return new Appeal(id, punishmentId, playerUUID, playerName, reason, submissionTime, status, responderUUID, responderName, response, responseTime);
+    }
+
+    /**
+     * Unban a player by deactivating their active ban punishment
+     *
+     * @param playerName The name of the player to unban
+     * @return true if successful, false otherwise
+     */
+    public boolean unbanPlayer(String playerName) {
+        // Look the player up on the calling thread, joining a database task here could
+        // deadlock when this is already running on the database executor
+        UUID playerUUID;
+        try {
+            playerUUID = lookupPlayerUuid(playerName);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting player UUID: " + e.getMessage(), e);
+            return false;
+        }
+        if (playerUUID == null) {
+            return false;
+        }
+
+        String sql = "UPDATE punishments SET active = 0 WHERE player_uuid = ? AND type = 'BAN' AND active = 1";
+        LoginBanFilter.Changes banChanges = new LoginBanFilter.Changes();
+        try {
+            boolean unbanned = write(connection -> {
+                Map<Integer, UUID> rows = readActiveIds(connection, playerUUID, PunishmentType.BAN.name());
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, playerUUID.toString());
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                refreshPlayerStats(connection, Collections.singleton(playerUUID));
+                recordEvents(connection, PunishmentEvent.Entity.PUNISHMENT, PunishmentEvent.Action.DEACTIVATED, rows);
+                readBanChanges(connection, Collections.singleton(playerUUID), banChanges);
+                return true;
+            });
+            if (!unbanned) {
+                return false;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error unbanning player: " + e.getMessage(), e);
+            return false;
+        }
+
+        banFilter.apply(banChanges);
+        refreshBanIndex(Collections.singleton(playerUUID));
+        notifyListeners(listener -> listener.onPunishmentsChanged(playerUUID));
+        return true;
+    }
+
+    /**
+     * Get a list of currently banned players
+     *
+     * @return List of banned player names
+     */
+    public List<String> getBannedPlayers() {
+        List<String> bannedPlayers = new ArrayList<>();
+        String sql = "SELECT DISTINCT player_name FROM punishments WHERE type = 'BAN' AND active = 1";
+        
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            
+            while (resultSet.next()) {
+                bannedPlayers.add(resultSet.getString("player_name"));
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting banned players: " + e.getMessage(), e);
+        }
+        
+        return bannedPlayers;
+    }
+
+    /**
+     * Save an IP ban to the database
+     *
+     * @param ipBan The IP ban to save
+     * @return true if successful, false otherwise
+     */
+    public boolean saveIpBan(IpBan ipBan) {
+        String sql = "INSERT INTO ip_bans (ip_address, punisher_uuid, punisher_name, reason, start_time, end_time, active, is_subnet, "
+                + "ip_bin, range_start, range_end) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        byte[][] range = IPUtil.toAddressRange(ipBan.getIpAddress());
+
+        try {
+            boolean saved = write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    statement.setString(1, ipBan.getIpAddress());
+                    statement.setString(2, ipBan.getPunisherUUID().toString());
+                    statement.setString(3, ipBan.getPunisherName());
+                    statement.setString(4, ipBan.getReason());
+                    statement.setLong(5, ipBan.getStartTime());
+                    statement.setLong(6, ipBan.getEndTime());
+                    statement.setBoolean(7, ipBan.isActive());
+                    statement.setBoolean(8, ipBan.isSubnet());
+                    statement.setBytes(9, range != null && !ipBan.isSubnet() ? range[0] : null);
+                    statement.setBytes(10, range != null ? range[0] : null);
+                    statement.setBytes(11, range != null ? range[1] : null);
+                    
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                    
+                    // Get the generated ID
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("No ID was generated for the IP ban");
+                        }
+                        ipBan.setId(generatedKeys.getInt(1));
+                    }
+                }
+                recordEvents(connection, PunishmentEvent.Entity.IP_BAN, PunishmentEvent.Action.CREATED,
+                        Collections.singletonMap(ipBan.getId(), null));
+                return true;
+            });
+            if (!saved) {
+                return false;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error saving IP ban: " + e.getMessage(), e);
+            return false;
+        }
+        
+        if (ipBan.isSubnet() && ipBan.isActive() && subnetTrie.put(ipBan.getIpAddress(), ipBan.getId())) {
+            subnetBans.put(ipBan.getId(), ipBan);
+        }
+        if (!ipBan.isSubnet() && ipBan.isActive() && range != null) {
+            banFilter.addIpBan(ipBan.getId(), range[0]);
+        }
+        notifyListeners(listener -> listener.onIpBanSaved(ipBan));
+        return true;
+    }
+    
+    /**
+     * Get an active IP ban for an IP address or CIDR range.
+     * Uses an index range scan on the binary range columns, logins use {@link #getLoginVerdict(UUID, String)} instead.
+     *
+     * @param ipAddress The IP address or CIDR range to check
+     * @return The IP ban or null if not found
+     */
+    public IpBan getActiveIpBan(String ipAddress) {
+        byte[][] range = IPUtil.toAddressRange(ipAddress);
+        if (range == null) {
+            return null;
+        }
+        
+        // An address matches its own ban and any range containing it, a CIDR range only matches the same range.
+        // Exact bans sort first, then the narrowest range.
+        String sql = IPUtil.isValidIp(ipAddress) ? IP_BANS_COVERING_SQL : SUBNET_BAN_SQL;
+        
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setBytes(1, range[0]);
+            statement.setBytes(2, range[1]);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // Expired bans are skipped and left for the expiry service to deactivate
+                while (resultSet.next()) {
+                    IpBan ipBan = extractIpBanFromResultSet(resultSet);
+                    if (!ipBan.hasExpired()) {
+                        return ipBan;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting active IP ban: " + e.getMessage(), e);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Resolve every ban that applies to a player logging in, using a single connection.
+     * Covers the player's own ban, exact IP bans, and bans of other accounts that have used
+     * the same address. Subnet bans are matched against the in-memory range index, and player bans
+     * against the active ban index, each when it is loaded. Expired rows are skipped and left for the punishment expiry service to deactivate.
+     *
+     * @param playerUUID The UUID of the player logging in
+     * @param ipAddress  The address the player is connecting from
+     * @return The login verdict
+     * @throws SQLException if the database could not be queried
+     */
+    public LoginVerdict getLoginVerdict(UUID playerUUID, String ipAddress) throws SQLException {
+        byte[] address = addressKey(ipAddress);
+        
+        // Nearly every login is clean, and the filter proves most of them clean without a query
+        if (!banFilter.mightBeBanned(playerUUID, address)) {
+            return new LoginVerdict(null, findSubnetBan(ipAddress), null);
+        }
+        
+        Punishment playerBan = null;
+        Punishment linkedBan = null;
+        IpBan ipBan = null;
+        
+        try (Connection connection = getReadConnection()) {
+            if (banIndex.isLoaded()) {
+                // Bans come from the index, only the accounts sharing the address are queried
+                playerBan = unexpired(banIndex.getBan(playerUUID));
+                try (PreparedStatement statement = connection.prepareStatement(LINKED_PLAYERS_SQL)) {
+                    statement.setBytes(1, address);
+                    
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (linkedBan == null && resultSet.next()) {
+                            UUID linkedUUID = UUID.fromString(resultSet.getString("player_uuid"));
+                            if (!linkedUUID.equals(playerUUID)) {
+                                linkedBan = unexpired(banIndex.getBan(linkedUUID));
+                            }
+                        }
+                    }
+                }
+            } else {
+                try (PreparedStatement statement = connection.prepareStatement(LOGIN_PUNISHMENTS_SQL)) {
+                    statement.setString(1, PunishmentType.BAN.name());
+                    statement.setString(2, PunishmentType.TEMP_BAN.name());
+                    statement.setString(3, playerUUID.toString());
+                    statement.setBytes(4, address);
+                
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            Punishment punishment = extractPunishmentFromResultSet(resultSet);
+                            if (!punishment.isPermanent() && punishment.hasExpired()) {
+                                continue;
+                            }
+                            if (punishment.getPlayerUUID().equals(playerUUID)) {
+                                playerBan = punishment;
+                            } else if (linkedBan == null) {
+                                linkedBan = punishment;
+                            }
+                        }
+                    }
+                }
+            }
+            
+            try (PreparedStatement statement = connection.prepareStatement(IP_BAN_SQL)) {
+                statement.setBytes(1, address);
+                
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        IpBan exactBan = extractIpBanFromResultSet(resultSet);
+                        if (!exactBan.hasExpired()) {
+                            ipBan = exactBan;
+                        }
+                    }
                 }
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting active ban: " + e.getMessage(), e);
         }
         
-        return null;
+        // Subnet bans come from the range index, or from the database while it is not loaded
+        if (ipBan == null) {
+            ipBan = findSubnetBan(ipAddress);
+        }
+        
+        return new LoginVerdict(playerBan, ipBan, linkedBan);
     }
-
+    
+    private static Punishment unexpired(Punishment punishment) {
+        return punishment != null && !punishment.hasExpired() ? punishment : null;
+    }
+    
     /**
-     * Get the active mute for a player
+     * Get an IP ban by ID
      *
-     * @param playerUUID The player's UUID
-     * @return The active mute, or null if the player is not muted
+     * @param id The IP ban ID
+     * @return The IP ban, or null if not found
      */
-    public Punishment getActiveMute(UUID playerUUID) {
-        String sql = "SELECT * FROM punishments WHERE player_uuid = ? AND active = 1 AND (type = ? OR type = ?)";
+    public IpBan getIpBan(int id) {
+        String sql = "SELECT * FROM ip_bans WHERE id = ?";
         
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            statement.setString(1, playerUUID.toString());
-            statement.setString(2, PunishmentType.MUTE.name());
-            statement.setString(3, PunishmentType.TEMP_MUTE.name());
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, id);
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    Punishment punishment = extractPunishmentFromResultSet(resultSet);
-                    
-                    // Check if temporary mute has expired
-                    if (!punishment.isPermanent() && punishment.hasExpired()) {
-                        deactivatePunishment(punishment.getId());
-                        return null;
-                    }
-                    
-                    return punishment;
+                    return extractIpBanFromResultSet(resultSet);
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting active mute: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error getting IP ban: " + e.getMessage(), e);
         }
         
         return null;
     }
-
+    
     /**
-     * Deactivate a punishment
+     * Deactivate an IP ban
      *
-     * @param id The punishment ID
+     * @param id The IP ban ID
      * @return true if successful, false otherwise
      */
-    public boolean deactivatePunishment(int id) {
-        String sql = "UPDATE punishments SET active = 0 WHERE id = ?";
+    public boolean deactivateIpBan(int id) {
+        String sql = "UPDATE ip_bans SET active = 0 WHERE id = ?";
         
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            statement.setInt(1, id);
-            
-            return statement.executeUpdate() > 0;
+        try {
+            boolean deactivated = write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setInt(1, id);
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                recordEvents(connection, PunishmentEvent.Entity.IP_BAN, PunishmentEvent.Action.DEACTIVATED,
+                        Collections.singletonMap(id, null));
+                return true;
+            });
+            if (!deactivated) {
+                return false;
+            }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error deactivating punishment: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error deactivating IP ban: " + e.getMessage(), e);
             return false;
         }
-    }
-
-    /**
-     * Deactivate all active punishments of a specific type for a player
-     *
-     * @param playerUUID The UUID of the player
-     * @param type The type of punishment to deactivate
-     * @return true if successful, false otherwise
-     */
-    public boolean deactivatePunishment(UUID playerUUID, String type) {
-        String sql = "UPDATE punishments SET active = 0 WHERE player_uuid = ? AND type = ? AND active = 1";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, playerUUID.toString());
-            statement.setString(2, type);
-            return statement.executeUpdate() > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error deactivating punishment: " + e.getMessage(), e);
-            return false;
+        
+        banFilter.removeIpBan(id);
+        IpBan subnetBan = subnetBans.remove(id);
+        if (subnetBan != null) {
+            subnetTrie.remove(subnetBan.getIpAddress(), id);
         }
+        return true;
     }
-
+    
     /**
-     * Get all punishments for a player
+     * Get every active ban and mute that has an end time
      *
-     * @param playerUUID The UUID of the player
-     * @return List of punishments
+     * @return The active temporary bans and mutes
      */
-    public List<Punishment> getPlayerPunishments(UUID playerUUID) {
+    public List<Punishment> getExpiringPunishments() {
         List<Punishment> punishments = new ArrayList<>();
-        String sql = "SELECT * FROM punishments WHERE player_uuid = ? ORDER BY start_time DESC";
+        String sql = EXPIRING_PUNISHMENTS_SQL;
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, playerUUID.toString());
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, PunishmentType.BAN.name());
+            statement.setString(2, PunishmentType.TEMP_BAN.name());
+            statement.setString(3, PunishmentType.MUTE.name());
+            statement.setString(4, PunishmentType.TEMP_MUTE.name());
+            // Some permanent punishments are stored with the largest end time rather than -1
+            statement.setLong(5, Long.MAX_VALUE);
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
@@ -530,355 +2190,474 @@ public class DatabaseManager {
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting player punishments: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error getting expiring punishments: " + e.getMessage(), e);
         }
         
         return punishments;
     }
-
+    
     /**
-     * Save an appeal to the database
+     * Get every active IP ban that has an end time
      *
-     * @param appeal The appeal to save
-     * @return The ID of the saved appeal
+     * @return The active temporary IP bans
      */
-    public int saveAppeal(Appeal appeal) {
-        String sql = "INSERT INTO appeals (punishment_id, player_uuid, player_name, reason, submission_time, status) " +
-                     "VALUES (?, ?, ?, ?, ?, ?)";
+    public List<IpBan> getExpiringIpBans() {
+        List<IpBan> ipBans = new ArrayList<>();
+        String sql = "SELECT * FROM ip_bans WHERE active = 1 AND end_time < ?";
         
-        try (PreparedStatement statement = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setInt(1, appeal.getPunishmentId());
-            statement.setString(2, appeal.getPlayerUUID().toString());
-            statement.setString(3, appeal.getPlayerName());
-            statement.setString(4, appeal.getReason());
-            statement.setLong(5, appeal.getSubmissionTime());
-            statement.setString(6, appeal.getStatus().name());
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, Long.MAX_VALUE);
             
-            statement.executeUpdate();
-            
-            // Get the generated ID
-            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    appeal.setId(generatedKeys.getInt(1));
-                    return appeal.getId();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ipBans.add(extractIpBanFromResultSet(resultSet));
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error saving appeal: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error getting expiring IP bans: " + e.getMessage(), e);
         }
         
-        return -1;
+        return ipBans;
     }
-
+    
     /**
-     * Update an appeal in the database
+     * Deactivate punishments that have reached their end time, in batches.
+     * Punishments that are no longer active or whose end time has moved into the future are left alone.
      *
-     * @param appeal The appeal to update
-     * @return true if successful, false otherwise
+     * @param ids The punishment IDs
+     * @return The number of punishments deactivated, or -1 if the database could not be updated
      */
-    public boolean updateAppeal(Appeal appeal) {
-        String sql = "UPDATE appeals SET status = ?, responder_uuid = ?, responder_name = ?, response = ?, response_time = ? " +
-                     "WHERE id = ?";
+    public int deactivateExpiredPunishments(Collection<Integer> ids) {
+        long now = System.currentTimeMillis();
+        Set<UUID> changed = new HashSet<>();
+        Map<Integer, UUID> expired = new LinkedHashMap<>();
+        LoginBanFilter.Changes banChanges = new LoginBanFilter.Changes();
+        int deactivated;
+        List<Integer> idList = new ArrayList<>(ids);
         
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            statement.setString(1, appeal.getStatus().name());
-            statement.setString(2, appeal.getResponderUUID() != null ? appeal.getResponderUUID().toString() : null);
-            statement.setString(3, appeal.getResponderName());
-            statement.setString(4, appeal.getResponse());
-            statement.setLong(5, appeal.getResponseTime());
-            statement.setInt(6, appeal.getId());
-            
-            return statement.executeUpdate() > 0;
+        try {
+            deactivated = write(connection -> {
+                int count = 0;
+                for (int from = 0; from < idList.size(); from += IN_CHUNK_SIZE) {
+                    List<Integer> chunk = idList.subList(from, Math.min(from + IN_CHUNK_SIZE, idList.size()));
+                    String condition = " WHERE active = 1 AND end_time > 0 AND end_time <= ? AND id IN (" + placeholders(chunk.size()) + ")";
+                    
+                    // Listeners are told whose punishments changed
+                    try (PreparedStatement statement = connection.prepareStatement("SELECT id, player_uuid FROM punishments" + condition)) {
+                        bindExpiredIds(statement, now, chunk);
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                UUID playerUUID = UUID.fromString(resultSet.getString("player_uuid"));
+                                expired.put(resultSet.getInt("id"), playerUUID);
+                                changed.add(playerUUID);
+                            }
+                        }
+                    }
+                    
+                    try (PreparedStatement statement = connection.prepareStatement("UPDATE punishments SET active = 0" + condition)) {
+                        bindExpiredIds(statement, now, chunk);
+                        count += statement.executeUpdate();
+                    }
+                }
+                refreshPlayerStats(connection, changed);
+                recordEvents(connection, PunishmentEvent.Entity.PUNISHMENT, PunishmentEvent.Action.DEACTIVATED, expired);
+                readBanChanges(connection, changed, banChanges);
+                return count;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating appeal: " + e.getMessage(), e);
-            return false;
+            plugin.getLogger().log(Level.SEVERE, "Error deactivating expired punishments: " + e.getMessage(), e);
+            return -1;
+        }
+        
+        banFilter.apply(banChanges);
+        refreshBanIndex(changed);
+        for (UUID playerUUID : changed) {
+            notifyListeners(listener -> listener.onPunishmentsChanged(playerUUID));
         }
+        return deactivated;
     }
-
+    
     /**
-     * Get an appeal by ID
+     * Deactivate IP bans that have reached their end time, in batches
      *
-     * @param id The appeal ID
-     * @return The appeal, or null if not found
+     * @param ids The IP ban IDs
+     * @return The number of IP bans deactivated, or -1 if the database could not be updated
      */
-    public Appeal getAppeal(int id) {
-        String sql = "SELECT * FROM appeals WHERE id = ?";
+    public int deactivateExpiredIpBans(Collection<Integer> ids) {
+        long now = System.currentTimeMillis();
+        int deactivated;
+        List<Integer> idList = new ArrayList<>(ids);
+        Map<Integer, UUID> deactivatedIds = new LinkedHashMap<>();
         
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            statement.setInt(1, id);
-            
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    return extractAppealFromResultSet(resultSet);
+        try {
+            deactivated = write(connection -> {
+                int count = 0;
+                for (int from = 0; from < idList.size(); from += IN_CHUNK_SIZE) {
+                    List<Integer> chunk = idList.subList(from, Math.min(from + IN_CHUNK_SIZE, idList.size()));
+                    String condition = " WHERE active = 1 AND end_time > 0 AND end_time <= ? AND id IN (" + placeholders(chunk.size()) + ")";
+                    
+                    // The login filter and the change log get exactly the bans that are deactivated
+                    try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM ip_bans" + condition)) {
+                        bindExpiredIds(statement, now, chunk);
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                deactivatedIds.put(resultSet.getInt("id"), null);
+                            }
+                        }
+                    }
+                    
+                    try (PreparedStatement statement = connection.prepareStatement("UPDATE ip_bans SET active = 0" + condition)) {
+                        bindExpiredIds(statement, now, chunk);
+                        count += statement.executeUpdate();
+                    }
                 }
-            }
+                recordEvents(connection, PunishmentEvent.Entity.IP_BAN, PunishmentEvent.Action.DEACTIVATED, deactivatedIds);
+                return count;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting appeal: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error deactivating expired IP bans: " + e.getMessage(), e);
+            return -1;
         }
         
-        return null;
+        for (int id : deactivatedIds.keySet()) {
+            banFilter.removeIpBan(id);
+        }
+        for (int id : idList) {
+            IpBan subnetBan = subnetBans.get(id);
+            if (subnetBan != null && subnetBan.hasExpired() && subnetBans.remove(id, subnetBan)) {
+                subnetTrie.remove(subnetBan.getIpAddress(), id);
+            }
+        }
+        return deactivated;
     }
-
+    
+    private static void bindExpiredIds(PreparedStatement statement, long now, List<Integer> ids) throws SQLException {
+        statement.setLong(1, now);
+        for (int i = 0; i < ids.size(); i++) {
+            statement.setInt(i + 2, ids.get(i));
+        }
+    }
+    
     /**
-     * Get all pending appeals
+     * Check if changes are written to the change log and can be followed from other servers
      *
-     * @return A list of pending appeals
+     * @return true when the database is MySQL and the change log is enabled
      */
-    public List<Appeal> getPendingAppeals() {
-        List<Appeal> appeals = new ArrayList<>();
-        String sql = "SELECT * FROM appeals WHERE status = ?";
-        
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            statement.setString(1, Appeal.Status.PENDING.name());
-            
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    appeals.add(extractAppealFromResultSet(resultSet));
-                }
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting pending appeals: " + e.getMessage(), e);
-        }
-        
-        return appeals;
+    public boolean isChangeLogEnabled() {
+        return changeLogEnabled;
     }
 
     /**
-     * Get all appeals for a player
+     * Check if every change to the database reaches this server, either because the database is a local
+     * SQLite file or because the change log of a shared MySQL database is followed.
+     * In-memory copies of database state are only complete when this is true.
      *
-     * @param playerUUID The player's UUID a
-     * @return A list of appeals
+     * @return true if changes made by other servers are seen
      */
-    public List<Appeal> getPlayerAppeals(UUID playerUUID) {
-        List<Appeal> appeals = new ArrayList<>();
-        String sql = "SELECT * FROM appeals WHERE player_uuid = ?";
-        
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            statement.setString(1, playerUUID.toString());
-            
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    appeals.add(extractAppealFromResultSet(resultSet));
-                }
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting player appeals: " + e.getMessage(), e);
-        }
-        
-        return appeals;
+    public boolean seesAllChanges() {
+        return !databaseType.equalsIgnoreCase("MySQL") || changeLogEnabled;
     }
 
     /**
-     * Extract a punishment from a ResultSet
+     * Get the ID this server writes to the change log
      *
-     * @param resultSet The ResultSet containing punishment data
-     * @return The extracted Punishment
-     * @throws SQLException if extraction fails
+     * @return The server ID, new on every start
      */
-    private Punishment extractPunishmentFromResultSet(ResultSet resultSet) throws SQLException {
-        int id = resultSet.getInt("id");
-        UUID playerUUID = UUID.fromString(resultSet.getString("player_uuid"));
-        String playerName = resultSet.getString("player_name");
-        UUID punisherUUID = UUID.fromString(resultSet.getString("punisher_uuid"));
-        String punisherName = resultSet.getString("punisher_name");
-        PunishmentType type = PunishmentType.valueOf(resultSet.getString("type"));
-        String reason = resultSet.getString("reason");
-        long startTime = resultSet.getLong("start_time");
-        long endTime = resultSet.getLong("end_time");
-        boolean active = resultSet.getBoolean("active");
-        
-        Punishment punishment = new Punishment(playerUUID, playerName, punisherUUID, punisherName, 
-                type, reason, startTime, endTime);
-        punishment.setId(id);
-        punishment.setActive(active);
-        return punishment;
+    public String getServerId() {
+        return serverId;
     }
 
     /**
-     * Extract an appeal from a ResultSet
+     * Get the last change log entry that was written before the in-memory state was loaded
      *
-     * @param resultSet The ResultSet containing appeal data
-     * @return The extracted Appeal
-     * @throws SQLException if extraction fails
+     * @return The sequence number, events after it have to be applied
      */
-    private Appeal extractAppealFromResultSet(ResultSet resultSet) throws SQLException {
-        int id = resultSet.getInt("id");
-        int punishmentId = resultSet.getInt("punishment_id");
-        UUID playerUUID = UUID.fromString(resultSet.getString("player_uuid"));
-        String playerName = resultSet.getString("player_name");
-        String reason = resultSet.getString("reason");
-        long submissionTime = resultSet.getLong("submission_time");
-        Appeal.Status status = Appeal.Status.valueOf(resultSet.getString("status"));
-        
-        String responderUUIDString = resultSet.getString("responder_uuid");
-        UUID responderUUID = responderUUIDString != null ? UUID.fromString(responderUUIDString) : null;
-        
-        String responderName = resultSet.getString("responder_name");
-        String response = resultSet.getString("response");
-        long responseTime = resultSet.getLong("response_time");
-        
-        return new Appeal(id, punishmentId, playerUUID, playerName, reason, submissionTime, status, responderUUID, responderName, response, responseTime);
+    public long getChangeLogStart() {
+        return changeLogStart;
     }
 
     /**
-     * Unban a player by deactivating their active ban punishment
+     * Get the sequence number of the newest change log entry
      *
-     * @param playerName The name of the player to unban
-     * @return true if successful, false otherwise
+     * @return The sequence number, or 0 if the log is empty
+     * @throws SQLException if a database error occurs
      */
-    public boolean unbanPlayer(String playerName) {
-        // Use the new asynchronous method but join to make this synchronous 
-        // for compatibility with existing code
-        UUID playerUUID = getPlayerUuid(playerName).join();
-        if (playerUUID == null) {
-            return false;
+    public long getLatestEventSeq() throws SQLException {
+        try (Connection connection = getReadConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MAX(seq) AS seq FROM punishment_events")) {
+            return resultSet.next() ? resultSet.getLong("seq") : 0L;
         }
+    }
 
-        String sql = "UPDATE punishments SET active = 0 WHERE player_uuid = ? AND type = 'BAN' AND active = 1";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, playerUUID.toString());
-            return statement.executeUpdate() > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error unbanning player: " + e.getMessage(), e);
-            return false;
+    /**
+     * Get the change log entries after a sequence number, in order
+     *
+     * @param seq   The last sequence number already read
+     * @param limit The maximum number of entries
+     * @return The entries
+     * @throws SQLException if a database error occurs
+     */
+    public List<PunishmentEvent> getEventsAfter(long seq, int limit) throws SQLException {
+        List<PunishmentEvent> events = new ArrayList<>();
+        String sql = "SELECT * FROM punishment_events WHERE seq > ? ORDER BY seq LIMIT ?";
+
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, seq);
+            statement.setInt(2, limit);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String playerUUID = resultSet.getString("player_uuid");
+                    events.add(new PunishmentEvent(
+                            resultSet.getLong("seq"),
+                            PunishmentEvent.Entity.valueOf(resultSet.getString("entity")),
+                            PunishmentEvent.Action.valueOf(resultSet.getString("action")),
+                            resultSet.getInt("entity_id"),
+                            playerUUID != null ? UUID.fromString(playerUUID) : null,
+                            resultSet.getString("server_id"),
+                            resultSet.getLong("created_at")));
+                }
+            }
         }
+        return events;
     }
 
     /**
-     * Get a list of currently banned players
+     * Delete change log entries every server has long since read
      *
-     * @return List of banned player names
+     * @param time Entries written before this time are deleted
+     * @return The number of entries deleted, or -1 if the query failed
      */
-    public List<String> getBannedPlayers() {
-        List<String> bannedPlayers = new ArrayList<>();
-        String sql = "SELECT DISTINCT player_name FROM punishments WHERE type = 'BAN' AND active = 1";
-        
-        try (Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(sql)) {
-            
-            while (resultSet.next()) {
-                bannedPlayers.add(resultSet.getString("player_name"));
-            }
+    public int deleteEventsBefore(long time) {
+        String sql = "DELETE FROM punishment_events WHERE created_at < ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, time);
+            return statement.executeUpdate();
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting banned players: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error deleting old change log entries: " + e.getMessage(), e);
+            return -1;
         }
-        
-        return bannedPlayers;
     }
 
     /**
-     * Save an IP ban to the database
+     * Bring in-memory state up to date with changes another server made, and tell listeners about them
+     * as if they had been made here. Players and IP bans are read back from the database rather than
+     * patched, so applying the same events twice does no harm.
      *
-     * @param ipBan The IP ban to save
-     * @return true if successful, false otherwise
+     * @param events Change log entries written by other servers, in order
+     * @throws SQLException if the database could not be read, the events should be applied again later
      */
-    public boolean saveIpBan(IpBan ipBan) {
-        String sql = "INSERT INTO ip_bans (ip_address, punisher_uuid, punisher_name, reason, start_time, end_time, active, is_subnet) "
-                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setString(1, ipBan.getIpAddress());
-            statement.setString(2, ipBan.getPunisherUUID().toString());
-            statement.setString(3, ipBan.getPunisherName());
-            statement.setString(4, ipBan.getReason());
-            statement.setLong(5, ipBan.getStartTime());
-            statement.setLong(6, ipBan.getEndTime());
-            statement.setBoolean(7, ipBan.isActive());
-            statement.setBoolean(8, ipBan.isSubnet());
-            
-            int affectedRows = statement.executeUpdate();
-            if (affectedRows == 0) {
-                return false;
+    public void applyRemoteEvents(List<PunishmentEvent> events) throws SQLException {
+        Set<UUID> players = new LinkedHashSet<>();
+        Set<UUID> changedPlayers = new LinkedHashSet<>();
+        List<Punishment> savedPunishments = new ArrayList<>();
+        List<IpBan> savedIpBans = new ArrayList<>();
+        List<Integer> deactivatedIpBans = new ArrayList<>();
+        Set<UUID> sightedPlayers = new LinkedHashSet<>();
+        List<PlayerIp> sightings = new ArrayList<>();
+        LoginBanFilter.Changes banChanges = new LoginBanFilter.Changes();
+
+        try (Connection connection = getReadConnection();
+             PreparedStatement punishmentStatement = connection.prepareStatement("SELECT * FROM punishments WHERE id = ?");
+             PreparedStatement ipBanStatement = connection.prepareStatement("SELECT * FROM ip_bans WHERE id = ?");
+             PreparedStatement playerIpStatement = connection.prepareStatement(
+                     "SELECT player_uuid, player_name, ip_address, last_seen FROM player_ips WHERE player_uuid = ?")) {
+            for (PunishmentEvent event : events) {
+                if (event.getEntity() == PunishmentEvent.Entity.PUNISHMENT && event.getPlayerUUID() != null) {
+                    players.add(event.getPlayerUUID());
+                    if (event.getAction() != PunishmentEvent.Action.CREATED) {
+                        changedPlayers.add(event.getPlayerUUID());
+                        continue;
+                    }
+
+                    punishmentStatement.setInt(1, event.getEntityId());
+                    try (ResultSet resultSet = punishmentStatement.executeQuery()) {
+                        if (resultSet.next()) {
+                            savedPunishments.add(extractPunishmentFromResultSet(resultSet));
+                        }
+                    }
+                } else if (event.getEntity() == PunishmentEvent.Entity.IP_BAN) {
+                    if (event.getAction() == PunishmentEvent.Action.DEACTIVATED) {
+                        deactivatedIpBans.add(event.getEntityId());
+                        continue;
+                    }
+
+                    // A ban lifted since it was saved has its own deactivation event
+                    ipBanStatement.setInt(1, event.getEntityId());
+                    try (ResultSet resultSet = ipBanStatement.executeQuery()) {
+                        if (resultSet.next()) {
+                            IpBan ipBan = extractIpBanFromResultSet(resultSet);
+                            if (ipBan.isActive()) {
+                                savedIpBans.add(ipBan);
+                            }
+                        }
+                    }
+                } else if (event.getEntity() == PunishmentEvent.Entity.PLAYER_IP && event.getPlayerUUID() != null) {
+                    sightedPlayers.add(event.getPlayerUUID());
+                }
+                // Nothing keeps appeals in memory
             }
-            
-            // Get the generated ID
-            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    ipBan.setId(generatedKeys.getInt(1));
-                    return true;
+            for (UUID playerUUID : sightedPlayers) {
+                playerIpStatement.setString(1, playerUUID.toString());
+                try (ResultSet resultSet = playerIpStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        sightings.add(new PlayerIp(playerUUID, resultSet.getString("player_name"),
+                                resultSet.getString("ip_address"), resultSet.getLong("last_seen")));
+                    }
                 }
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error saving IP ban: " + e.getMessage(), e);
+            readBanChanges(connection, players, banChanges);
+        }
+
+        banFilter.apply(banChanges);
+        refreshBanIndex(players);
+        for (IpBan ipBan : savedIpBans) {
+            if (ipBan.isSubnet() && subnetTrie.put(ipBan.getIpAddress(), ipBan.getId())) {
+                subnetBans.put(ipBan.getId(), ipBan);
+            }
+            byte[][] range = IPUtil.toAddressRange(ipBan.getIpAddress());
+            if (!ipBan.isSubnet() && range != null) {
+                banFilter.addIpBan(ipBan.getId(), range[0]);
+            }
+        }
+        for (int id : deactivatedIpBans) {
+            banFilter.removeIpBan(id);
+            IpBan subnetBan = subnetBans.remove(id);
+            if (subnetBan != null) {
+                subnetTrie.remove(subnetBan.getIpAddress(), id);
+            }
+        }
+
+        for (Punishment punishment : savedPunishments) {
+            notifyListeners(listener -> listener.onPunishmentSaved(punishment), true);
+        }
+        for (UUID playerUUID : changedPlayers) {
+            notifyListeners(listener -> listener.onPunishmentsChanged(playerUUID), true);
+        }
+        for (IpBan ipBan : savedIpBans) {
+            notifyListeners(listener -> listener.onIpBanSaved(ipBan), true);
+        }
+        // Re-reading addresses that were already known is harmless, every consumer keeps the latest sighting
+        for (PlayerIp playerIp : sightings) {
+            nameCache.record(playerIp.getPlayerUUID(), playerIp.getPlayerName(), playerIp.getLastSeen());
+            banFilter.addAddress(playerIp.getPlayerUUID(), IPUtil.toAddressBytes(playerIp.getIpAddress()));
+            notifyListeners(listener -> listener.onPlayerIpSaved(playerIp), true);
         }
-        
-        return false;
     }
-    
+
     /**
-     * Get an active IP ban for an IP address
+     * Find the most specific active subnet ban containing an address, in the range index when it is loaded
      *
-     * @param ipAddress The IP address to check
-     * @return The IP ban or null if not found
+     * @param ipAddress The IP address
+     * @return The subnet ban, or null if the address is not in a banned range
+     * @throws SQLException if the database could not be queried
      */
-    public IpBan getActiveIpBan(String ipAddress) {
-        // Check for exact IP ban
-        String sql = "SELECT * FROM ip_bans WHERE ip_address = ? AND active = 1";
-        
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, ipAddress);
-            
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    IpBan ipBan = extractIpBanFromResultSet(resultSet);
-                    
-                    // Check if temporary ban has expired
-                    if (ipBan.hasExpired()) {
-                        deactivateIpBan(ipBan.getId());
-                        return null;
-                    }
-                    
+    private IpBan findSubnetBan(String ipAddress) throws SQLException {
+        if (subnetBansLoaded) {
+            for (int id : subnetTrie.findAll(ipAddress)) {
+                IpBan ipBan = subnetBans.get(id);
+                if (ipBan != null && !ipBan.hasExpired()) {
                     return ipBan;
                 }
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting active IP ban: " + e.getMessage(), e);
+            return null;
         }
-        
-        // Check for subnet ban (if no exact match)
-        sql = "SELECT * FROM ip_bans WHERE is_subnet = 1 AND active = 1";
-        
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+
+        byte[] address = addressKey(ipAddress);
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(SUBNET_BANS_COVERING_SQL)) {
+            statement.setBytes(1, address);
+            statement.setBytes(2, address);
+
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
                     IpBan ipBan = extractIpBanFromResultSet(resultSet);
-                    
-                    // Check if temporary ban has expired
-                    if (ipBan.hasExpired()) {
-                        deactivateIpBan(ipBan.getId());
-                        continue;
-                    }
-                    
-                    // Check if the IP is in this subnet
-                    if (isIpInSubnet(ipAddress, ipBan.getIpAddress())) {
+                    if (!ipBan.hasExpired()) {
                         return ipBan;
                     }
                 }
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting active subnet ban: " + e.getMessage(), e);
         }
-        
         return null;
     }
     
     /**
-     * Deactivate an IP ban
+     * Record that a player is connecting from an IP address.
+     * Listeners are told straight away, the row itself is written in the background by the {@link PlayerIpWriteBuffer}.
      *
-     * @param id The IP ban ID
+     * @param playerUUID The player's UUID
+     * @param playerName The player's name
+     * @param ipAddress  The player's IP address
+     */
+    public void recordPlayerIp(UUID playerUUID, String playerName, String ipAddress) {
+        PlayerIp playerIp = new PlayerIp(playerUUID, playerName, ipAddress, System.currentTimeMillis());
+        // The name is usable straight away, before the buffered row reaches the players table
+        nameCache.record(playerUUID, playerName, playerIp.getLastSeen());
+        if (playerIpBuffer != null) {
+            playerIpBuffer.add(playerIp);
+        }
+        banFilter.addAddress(playerUUID, IPUtil.toAddressBytes(ipAddress));
+        notifyListeners(listener -> listener.onPlayerIpSaved(playerIp));
+    }
+    
+    /**
+     * Write several player addresses with multi-row upserts, 100 rows per statement, in one transaction.
+     * Listeners are not notified, this is the write half of {@link #recordPlayerIp(UUID, String, String)}.
+     * The players table is updated in the same transaction.
+     *
+     * @param playerIps The addresses to write
      * @return true if successful, false otherwise
      */
-    public boolean deactivateIpBan(int id) {
-        String sql = "UPDATE ip_bans SET active = 0 WHERE id = ?";
+    public boolean savePlayerIps(List<PlayerIp> playerIps) {
+        if (playerIps.isEmpty()) {
+            return true;
+        }
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, id);
-            
-            return statement.executeUpdate() > 0;
+        boolean mysql = databaseType.equalsIgnoreCase("MySQL");
+        try {
+            write(connection -> {
+                for (int from = 0; from < playerIps.size(); from += PLAYER_IP_CHUNK_SIZE) {
+                    List<PlayerIp> chunk = playerIps.subList(from, Math.min(from + PLAYER_IP_CHUNK_SIZE, playerIps.size()));
+                    StringBuilder sql = new StringBuilder(mysql ? "INSERT INTO" : "INSERT OR REPLACE INTO")
+                            .append(" player_ips (player_uuid, player_name, ip_address, last_seen, ip_bin) VALUES ");
+                    for (int i = 0; i < chunk.size(); i++) {
+                        sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+                    }
+                    if (mysql) {
+                        sql.append(" ON DUPLICATE KEY UPDATE player_name = VALUES(player_name), last_seen = VALUES(last_seen)");
+                    }
+                    
+                    try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                        int index = 1;
+                        for (PlayerIp playerIp : chunk) {
+                            statement.setString(index++, playerIp.getPlayerUUID().toString());
+                            statement.setString(index++, playerIp.getPlayerName());
+                            statement.setString(index++, playerIp.getIpAddress());
+                            statement.setLong(index++, playerIp.getLastSeen());
+                            statement.setBytes(index++, IPUtil.toAddressBytes(playerIp.getIpAddress()));
+                        }
+                        statement.executeUpdate();
+                    }
+                }
+                savePlayers(connection, playerIps);
+                recordSightings(connection, playerIps);
+                return null;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error deactivating IP ban: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error saving player IPs: " + e.getMessage(), e);
             return false;
         }
+        
+        // A player banned while these rows were buffered did not find them when the ban was saved
+        for (PlayerIp playerIp : playerIps) {
+            banFilter.addAddress(playerIp.getPlayerUUID(), IPUtil.toAddressBytes(playerIp.getIpAddress()));
+        }
+        return true;
     }
     
     /**
@@ -890,32 +2669,116 @@ public class DatabaseManager {
      * @return true if successful, false otherwise
      */
     public boolean savePlayerIp(UUID playerUUID, String playerName, String ipAddress) {
-        String sql = "INSERT OR REPLACE INTO player_ips (player_uuid, player_name, ip_address, last_seen) "
-                + "VALUES (?, ?, ?, ?)";
+        String sql = "INSERT OR REPLACE INTO player_ips (player_uuid, player_name, ip_address, last_seen, ip_bin) "
+                + "VALUES (?, ?, ?, ?, ?)";
                 
         // For MySQL, use different syntax
         if (databaseType.equalsIgnoreCase("MySQL")) {
-            sql = "INSERT INTO player_ips (player_uuid, player_name, ip_address, last_seen) "
-                + "VALUES (?, ?, ?, ?) "
+            sql = "INSERT INTO player_ips (player_uuid, player_name, ip_address, last_seen, ip_bin) "
+                + "VALUES (?, ?, ?, ?, ?) "
                 + "ON DUPLICATE KEY UPDATE player_name = ?, last_seen = ?";
         }
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, playerUUID.toString());
-            statement.setString(2, playerName);
-            statement.setString(3, ipAddress);
-            statement.setLong(4, System.currentTimeMillis());
-            
-            if (databaseType.equalsIgnoreCase("MySQL")) {
-                statement.setString(5, playerName);
-                statement.setLong(6, System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        PlayerIp playerIp = new PlayerIp(playerUUID, playerName, ipAddress, now);
+        String upsert = sql;
+        try {
+            boolean saved = write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(upsert)) {
+                    statement.setString(1, playerUUID.toString());
+                    statement.setString(2, playerName);
+                    statement.setString(3, ipAddress);
+                    statement.setLong(4, now);
+                    statement.setBytes(5, IPUtil.toAddressBytes(ipAddress));
+                    
+                    if (databaseType.equalsIgnoreCase("MySQL")) {
+                        statement.setString(6, playerName);
+                        statement.setLong(7, now);
+                    }
+                    
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                savePlayers(connection, Collections.singletonList(playerIp));
+                recordSightings(connection, Collections.singletonList(playerIp));
+                return true;
+            });
+            if (!saved) {
+                return false;
             }
-            
-            return statement.executeUpdate() > 0;
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Error saving player IP: " + e.getMessage(), e);
             return false;
         }
+        
+        banFilter.addAddress(playerUUID, IPUtil.toAddressBytes(ipAddress));
+        notifyListeners(listener -> listener.onPlayerIpSaved(playerIp));
+        return true;
+    }
+    
+    /**
+     * Record the latest name of each player in a list of sightings
+     *
+     * @param connection The connection to use
+     * @param playerIps  The sightings
+     * @throws SQLException if a database error occurs
+     */
+    private void savePlayers(Connection connection, List<PlayerIp> playerIps) throws SQLException {
+        Map<UUID, PlayerIp> latest = new LinkedHashMap<>();
+        for (PlayerIp playerIp : playerIps) {
+            latest.merge(playerIp.getPlayerUUID(), playerIp, (a, b) -> b.getLastSeen() >= a.getLastSeen() ? b : a);
+        }
+
+        List<PlayerIp> players = new ArrayList<>(latest.values());
+        for (PlayerIp player : players) {
+            nameCache.record(player.getPlayerUUID(), player.getPlayerName(), player.getLastSeen());
+        }
+        SqlDialect dialect = SqlDialect.of(databaseType);
+        for (int from = 0; from < players.size(); from += PLAYER_IP_CHUNK_SIZE) {
+            List<PlayerIp> chunk = players.subList(from, Math.min(from + PLAYER_IP_CHUNK_SIZE, players.size()));
+            try (PreparedStatement statement = connection.prepareStatement(dialect.upsertPlayers(chunk.size()))) {
+                int index = 1;
+                for (PlayerIp playerIp : chunk) {
+                    statement.setString(index++, playerIp.getPlayerUUID().toString());
+                    statement.setString(index++, playerIp.getPlayerName());
+                    statement.setString(index++, playerIp.getPlayerName().toLowerCase(Locale.ROOT));
+                    statement.setLong(index++, playerIp.getLastSeen());
+                }
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Stream every recorded player address, oldest first, without loading them all into memory.
+     * The connection is held until the last row has been handed over, so the consumer must not use the database.
+     *
+     * @param consumer Receives each address
+     * @return true if every row was read, false otherwise
+     */
+    public boolean forEachPlayerIp(Consumer<PlayerIp> consumer) {
+        String sql = "SELECT player_uuid, player_name, ip_address, last_seen FROM player_ips ORDER BY last_seen";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            // Connector/J only streams rows with this fetch size, otherwise it buffers the whole result
+            statement.setFetchSize(databaseType.equalsIgnoreCase("MySQL") ? Integer.MIN_VALUE : 1000);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(new PlayerIp(
+                            UUID.fromString(resultSet.getString("player_uuid")),
+                            resultSet.getString("player_name"),
+                            resultSet.getString("ip_address"),
+                            resultSet.getLong("last_seen")));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error reading player IPs: " + e.getMessage(), e);
+            return false;
+        }
     }
     
     /**
@@ -926,10 +2789,11 @@ public class DatabaseManager {
      */
     public List<UUID> getPlayersWithIp(String ipAddress) {
         List<UUID> players = new ArrayList<>();
-        String sql = "SELECT player_uuid FROM player_ips WHERE ip_address = ?";
+        String sql = "SELECT player_uuid FROM player_ips WHERE ip_bin = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, ipAddress);
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setBytes(1, addressKey(ipAddress));
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
@@ -944,89 +2808,63 @@ public class DatabaseManager {
     }
     
     /**
-     * Get all IP addresses a player has used
+     * Get every address another player shared with a player, one row per other player and address.
+     * The last seen time of each row is when both players were last seen on the address.
      *
      * @param playerUUID The player's UUID
-     * @return A list of IP addresses
+     * @return The other players' uses of the player's addresses
      */
-    public List<String> getPlayerIps(UUID playerUUID) {
-        List<String> ips = new ArrayList<>();
-        String sql = "SELECT ip_address FROM player_ips WHERE player_uuid = ?";
+    public List<PlayerIp> getSharedPlayerIps(UUID playerUUID) {
+        List<PlayerIp> shared = new ArrayList<>();
+        String sql = "SELECT other.player_uuid, other.player_name, other.ip_address, "
+                + "CASE WHEN other.last_seen < own.last_seen THEN other.last_seen ELSE own.last_seen END AS last_seen "
+                + "FROM player_ips own JOIN player_ips other ON other.ip_bin = own.ip_bin "
+                + "WHERE own.player_uuid = ? AND other.player_uuid <> own.player_uuid";
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, playerUUID.toString());
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
-                    ips.add(resultSet.getString("ip_address"));
+                    shared.add(new PlayerIp(
+                            UUID.fromString(resultSet.getString("player_uuid")),
+                            resultSet.getString("player_name"),
+                            resultSet.getString("ip_address"),
+                            resultSet.getLong("last_seen")));
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting player IPs: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "Error getting shared player IPs: " + e.getMessage(), e);
         }
         
-        return ips;
+        return shared;
     }
     
     /**
-     * Check if an IP address is within a subnet
+     * Get all IP addresses a player has used
      *
-     * @param ip     The IP address to check
-     * @param subnet The subnet to check (in CIDR notation)
-     * @return true if the IP is in the subnet, false otherwise
+     * @param playerUUID The player's UUID
+     * @return A list of IP addresses
      */
-    private boolean isIpInSubnet(String ip, String subnet) {
-        if (ip == null || subnet == null) {
-            return false;
-        }
+    public List<String> getPlayerIps(UUID playerUUID) {
+        List<String> ips = new ArrayList<>();
+        String sql = PLAYER_ADDRESSES_SQL;
         
-        try {
-            // Very simple CIDR check - just check if the first three octets match
-            // A more robust implementation would use a proper CIDR library
-            String[] ipParts = ip.split("\\.");
-            if (ipParts.length != 4) {
-                return false;
-            }
-            
-            // Parse the subnet parts
-            String[] subnetParts = subnet.split("/");
-            if (subnetParts.length != 2) {
-                return false;
-            }
-            
-            String[] subnetIpParts = subnetParts[0].split("\\.");
-            if (subnetIpParts.length != 4) {
-                return false;
-            }
-            
-            // Check the network part based on the mask
-            int mask = Integer.parseInt(subnetParts[1]);
-            int fullOctets = mask / 8;
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
             
-            // Check full octets
-            for (int i = 0; i < fullOctets; i++) {
-                if (!ipParts[i].equals(subnetIpParts[i])) {
-                    return false;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ips.add(resultSet.getString("ip_address"));
                 }
             }
-            
-            // If mask is a multiple of 8, we're done
-            if (mask % 8 == 0) {
-                return true;
-            }
-            
-            // Check partial octet
-            int partialOctet = fullOctets;
-            int partialMask = 0xFF << (8 - (mask % 8));
-            
-            int ipOctet = Integer.parseInt(ipParts[partialOctet]);
-            int subnetOctet = Integer.parseInt(subnetIpParts[partialOctet]);
-            
-            return (ipOctet & partialMask) == (subnetOctet & partialMask);
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Error checking if IP is in subnet: " + e.getMessage(), e);
-            return false;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting player IPs: " + e.getMessage(), e);
         }
+        
+        return ips;
     }
     
     /**
@@ -1057,14 +2895,22 @@ public class DatabaseManager {
      * @return The player's name or null if not found
      */
     public String getPlayerName(UUID playerUUID) {
-        String sql = "SELECT player_name FROM player_ips WHERE player_uuid = ? ORDER BY last_seen DESC LIMIT 1";
+        String cached = nameCache.getName(playerUUID);
+        if (cached != null) {
+            return cached;
+        }
+
+        String sql = PLAYER_NAME_SQL;
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, playerUUID.toString());
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return resultSet.getString("player_name");
+                    String name = resultSet.getString("name");
+                    nameCache.record(playerUUID, name, resultSet.getLong("last_seen"));
+                    return name;
                 }
             }
         } catch (SQLException e) {
@@ -1074,6 +2920,130 @@ public class DatabaseManager {
         return null;
     }
     
+    /**
+     * Get the names of several players from their UUIDs
+     *
+     * @param playerUUIDs The UUIDs of the players
+     * @return The most recent name of each player, players without a recorded name are left out
+     */
+    public Map<UUID, String> getPlayerNames(Collection<UUID> playerUUIDs) {
+        Map<UUID, String> names = new HashMap<>();
+        List<UUID> uuids = new ArrayList<>();
+        for (UUID uuid : playerUUIDs) {
+            String cached = nameCache.getName(uuid);
+            if (cached != null) {
+                names.put(uuid, cached);
+            } else {
+                uuids.add(uuid);
+            }
+        }
+        if (uuids.isEmpty()) {
+            return names;
+        }
+        
+        try (Connection connection = getConnection()) {
+            for (int from = 0; from < uuids.size(); from += IN_CHUNK_SIZE) {
+                List<UUID> chunk = uuids.subList(from, Math.min(from + IN_CHUNK_SIZE, uuids.size()));
+                String sql = "SELECT uuid, name, last_seen FROM players WHERE uuid IN ("
+                        + placeholders(chunk.size()) + ")";
+                
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setString(i + 1, chunk.get(i).toString());
+                    }
+                    
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            UUID uuid = UUID.fromString(resultSet.getString("uuid"));
+                            String name = resultSet.getString("name");
+                            nameCache.record(uuid, name, resultSet.getLong("last_seen"));
+                            names.put(uuid, name);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting player names: " + e.getMessage(), e);
+        }
+        
+        return names;
+    }
+    
+    /**
+     * Save a VPN lookup result, replacing the previous result for the address
+     *
+     * @param verdict The result
+     * @return true if successful, false otherwise
+     */
+    public boolean saveVpnVerdict(VpnVerdict verdict) {
+        String sql = "REPLACE INTO vpn_verdicts (ip_address, vpn, checked_at, expires_at) VALUES (?, ?, ?, ?)";
+        
+        try {
+            return write(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, verdict.getIpAddress());
+                    statement.setBoolean(2, verdict.isVpn());
+                    statement.setLong(3, verdict.getCheckedAt());
+                    statement.setLong(4, verdict.getExpiresAt());
+                    return statement.executeUpdate() > 0;
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error saving VPN verdict: " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Get the saved VPN lookup results that have not expired, those valid for longest first
+     *
+     * @param limit The maximum number of results
+     * @return The results, or an empty list on error
+     */
+    public List<VpnVerdict> getVpnVerdicts(int limit) {
+        List<VpnVerdict> verdicts = new ArrayList<>();
+        String sql = "SELECT ip_address, vpn, checked_at, expires_at FROM vpn_verdicts WHERE expires_at > ? "
+                + "ORDER BY expires_at DESC LIMIT ?";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, System.currentTimeMillis());
+            statement.setInt(2, limit);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    verdicts.add(new VpnVerdict(
+                            resultSet.getString("ip_address"),
+                            resultSet.getBoolean("vpn"),
+                            resultSet.getLong("checked_at"),
+                            resultSet.getLong("expires_at")));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading VPN verdicts: " + e.getMessage(), e);
+        }
+        
+        return verdicts;
+    }
+    
+    /**
+     * Delete the saved VPN lookup results that have expired
+     *
+     * @return The number of results deleted, or -1 on error
+     */
+    public int deleteExpiredVpnVerdicts() {
+        String sql = "DELETE FROM vpn_verdicts WHERE expires_at <= ?";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, System.currentTimeMillis());
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error deleting expired VPN verdicts: " + e.getMessage(), e);
+            return -1;
+        }
+    }
+    
     /**
      * Check if a player has a specific permission
      * This is a simple implementation that just checks if the player is an operator
@@ -1089,6 +3059,35 @@ public class DatabaseManager {
         return false;
     }
 
+    /**
+     * Count a player's offenses per escalation category since a point in time
+     *
+     * @param playerUUID The player's UUID
+     * @param since      Only punishments started after this time are counted
+     * @return The counts by category, with the earliest counted start time of each, or null if the query failed
+     */
+    public Map<String, OffenseCount> getOffenseCounts(UUID playerUUID, long since) {
+        String sql = OFFENSE_COUNTS_SQL;
+
+        Map<String, OffenseCount> counts = new HashMap<>();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, playerUUID.toString());
+            statement.setLong(2, since);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    counts.put(resultSet.getString("category"),
+                            new OffenseCount(resultSet.getInt("offenses"), resultSet.getLong("first_offense")));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error counting player offenses: " + e.getMessage(), e);
+            return null;
+        }
+        return counts;
+    }
+
     /**
      * Get player punishments after a specific timestamp
      *
@@ -1098,9 +3097,10 @@ public class DatabaseManager {
      */
     public List<Punishment> getPlayerPunishmentsAfter(UUID playerUUID, long timestamp) {
         List<Punishment> punishments = new ArrayList<>();
-        String sql = "SELECT * FROM punishments WHERE player_uuid = ? AND start_time > ? ORDER BY start_time DESC";
+        String sql = RECENT_PUNISHMENTS_SQL;
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, playerUUID.toString());
             statement.setLong(2, timestamp);
             
@@ -1125,10 +3125,11 @@ public class DatabaseManager {
      */
     public List<UUID> getPlayersByIp(String ip) {
         List<UUID> players = new ArrayList<>();
-        String sql = "SELECT player_uuid FROM player_ips WHERE ip_address = ?";
+        String sql = "SELECT player_uuid FROM player_ips WHERE ip_bin = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, ip);
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setBytes(1, addressKey(ip));
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
@@ -1153,7 +3154,8 @@ public class DatabaseManager {
         long timestamp = System.currentTimeMillis() - (days * 24 * 60 * 60 * 1000L);
         String sql = "SELECT DISTINCT player_uuid FROM player_ips WHERE last_seen > ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setLong(1, timestamp);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -1177,7 +3179,8 @@ public class DatabaseManager {
         List<String> names = new ArrayList<>();
         String sql = "SELECT DISTINCT player_name FROM player_ips ORDER BY player_name";
         
-        try (PreparedStatement statement = connection.prepareStatement(sql);
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
              ResultSet resultSet = statement.executeQuery()) {
             while (resultSet.next()) {
                 names.add(resultSet.getString("player_name"));
@@ -1189,6 +3192,28 @@ public class DatabaseManager {
         return names;
     }
     
+    /**
+     * Get every name each player has been seen with, used to build the name similarity index
+     *
+     * @return Player UUIDs by name, when a name was used by several players the most recent one wins
+     */
+    public Map<String, UUID> getKnownPlayerNames() {
+        Map<String, UUID> names = new LinkedHashMap<>();
+        String sql = "SELECT player_uuid, player_name FROM player_ips ORDER BY last_seen";
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                names.put(resultSet.getString("player_name"), UUID.fromString(resultSet.getString("player_uuid")));
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error getting known player names: " + e.getMessage(), e);
+        }
+        
+        return names;
+    }
+    
     /**
      * Get suspicious join patterns that might indicate alt accounts
      * This is a placeholder implementation - a real implementation would be more sophisticated
@@ -1220,10 +3245,10 @@ public class DatabaseManager {
     public int getPunishmentCount(UUID playerId, String type) {
         try (Connection conn = getConnection();
              PreparedStatement stmt = conn.prepareStatement(
-                 "SELECT COUNT(*) as count FROM punishments WHERE player_id = ? AND type LIKE ?")) {
+                 "SELECT COUNT(*) as count FROM punishments WHERE player_uuid = ? AND type LIKE ?")) {
             
             stmt.setString(1, playerId.toString());
-            stmt.setString(2, "%" + type + "%");
+            stmt.setString(2, "%" + type.toUpperCase(Locale.ROOT) + "%");
             ResultSet rs = stmt.executeQuery();
             
             if (rs.next()) {
@@ -1252,7 +3277,7 @@ public class DatabaseManager {
         
         try (Connection conn = getConnection()) {
             StringBuilder sb = new StringBuilder();
-            sb.append("SELECT * FROM punishments WHERE player_id = ? AND type IN (");
+            sb.append("SELECT * FROM punishments WHERE player_uuid = ? AND type IN (");
             
             for (int i = 0; i < types.length; i++) {
                 sb.append("?");
@@ -0,0 +1,353 @@
+package com.ultimateban.database;
+
+import com.ultimateban.util.CountingBloomFilter;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tells logins that cannot match any ban apart from the rest, without touching the database.
+ * A counting Bloom filter holds every player with an active ban, every address those players have used,
+ * which is what a linked ban matches on, and every address with an exact IP ban. A login whose player
+ * and address are both missing from the filter has no player, IP or linked ban. Subnet bans are not
+ * covered, they have their own in-memory index.
+ * The filter is built at startup and follows the database as bans are saved and lifted. To undo exactly
+ * what was added, the banned players and exact IP bans in the filter are remembered, clean players never are.
+ * Until the filter has been loaded, every login is sent to the database.
+ */
+public class LoginBanFilter {
+
+    private static final byte PLAYER = 1;
+    private static final byte ADDRESS = 2;
+
+    private final int expectedKeys;
+    private final double falsePositiveRate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private CountingBloomFilter filter;
+    // Addresses are wrapped in ByteBuffers, which compare by content
+    private final Map<UUID, BannedPlayer> players = new HashMap<>();
+    private final Map<Integer, ByteBuffer> ipBans = new HashMap<>();
+    private long lastStamp;
+    private volatile boolean loaded;
+
+    private final AtomicLong cleared = new AtomicLong();
+    private final AtomicLong passedOn = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param expectedKeys      The number of banned players, their addresses and IP bans the filter is sized for
+     * @param falsePositiveRate The share of clean logins sent to the database anyway at that size
+     */
+    public LoginBanFilter(int expectedKeys, double falsePositiveRate) {
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new CountingBloomFilter(expectedKeys, falsePositiveRate);
+    }
+
+    /**
+     * Replace the contents of the filter
+     *
+     * @param bannedPlayers The players with an active ban and the addresses each has used
+     * @param exactIpBans   The address of each active IP ban that is not a subnet, by ban ID
+     */
+    public void load(Map<UUID, ? extends Collection<byte[]>> bannedPlayers, Map<Integer, byte[]> exactIpBans) {
+        lock.writeLock().lock();
+        try {
+            filter = new CountingBloomFilter(expectedKeys, falsePositiveRate);
+            players.clear();
+            ipBans.clear();
+            for (Map.Entry<UUID, ? extends Collection<byte[]>> entry : bannedPlayers.entrySet()) {
+                addPlayerLocked(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<Integer, byte[]> entry : exactIpBans.entrySet()) {
+                addIpBanLocked(entry.getKey(), entry.getValue());
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check if a login may match a player, IP or linked ban
+     *
+     * @param playerUUID The UUID of the player logging in
+     * @param address    The address bytes of the login, empty if the address could not be parsed
+     * @return false if the login certainly matches none of them
+     */
+    public boolean mightBeBanned(UUID playerUUID, byte[] address) {
+        if (!loaded) {
+            return true;
+        }
+
+        boolean maybe;
+        lock.readLock().lock();
+        try {
+            maybe = filter.mightContain(playerKey(playerUUID))
+                    || (address.length > 0 && filter.mightContain(addressKey(address)));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        (maybe ? passedOn : cleared).incrementAndGet();
+        return maybe;
+    }
+
+    /**
+     * Check if the filter has been loaded
+     *
+     * @return true if the filter is in use
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Get the version of a player's entry, read before checking whether the player is still banned.
+     * {@link #apply(Changes)} only removes the player if no ban was added in the meantime.
+     *
+     * @param playerUUID The player's UUID
+     * @return The version, or 0 if the player is not in the filter
+     */
+    public long getStamp(UUID playerUUID) {
+        lock.readLock().lock();
+        try {
+            BannedPlayer player = players.get(playerUUID);
+            return player != null ? player.stamp : 0L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record an address used by a player, which only matters if the player is banned
+     *
+     * @param playerUUID The player's UUID
+     * @param address    The address bytes
+     */
+    public void addAddress(UUID playerUUID, byte[] address) {
+        if (address == null || address.length == 0) {
+            return;
+        }
+
+        // Almost every player is clean, so check without the write lock first
+        lock.readLock().lock();
+        try {
+            BannedPlayer player = players.get(playerUUID);
+            if (player == null || player.addresses.contains(ByteBuffer.wrap(address))) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            BannedPlayer player = players.get(playerUUID);
+            if (player != null && player.addresses.add(ByteBuffer.wrap(address.clone()))) {
+                filter.add(addressKey(address));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add an IP ban, subnet bans and bans without a parsed address are ignored
+     *
+     * @param id      The IP ban ID
+     * @param address The address bytes of an exact IP ban
+     */
+    public void addIpBan(int id, byte[] address) {
+        if (address == null || address.length == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            addIpBanLocked(id, address);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an IP ban that was deactivated, IP bans the filter does not hold are ignored
+     *
+     * @param id The IP ban ID
+     */
+    public void removeIpBan(int id) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer address = ipBans.remove(id);
+            if (address != null) {
+                filter.remove(addressKey(address.array()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the ban state of players read in the transaction that changed their punishments, once it has committed
+     *
+     * @param changes The players that are banned and the players that are not
+     */
+    public void apply(Changes changes) {
+        if (changes.banned.isEmpty() && changes.cleared.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<UUID, Collection<byte[]>> entry : changes.banned.entrySet()) {
+                addPlayerLocked(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<UUID, Long> entry : changes.cleared.entrySet()) {
+                BannedPlayer player = players.get(entry.getKey());
+                // A player banned again since the check stays in
+                if (player == null || player.stamp != entry.getValue()) {
+                    continue;
+                }
+
+                players.remove(entry.getKey());
+                filter.remove(playerKey(entry.getKey()));
+                for (ByteBuffer address : player.addresses) {
+                    filter.remove(addressKey(address.array()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addPlayerLocked(UUID playerUUID, Collection<byte[]> addresses) {
+        BannedPlayer player = players.get(playerUUID);
+        if (player == null) {
+            player = new BannedPlayer();
+            players.put(playerUUID, player);
+            filter.add(playerKey(playerUUID));
+        }
+        player.stamp = ++lastStamp;
+
+        for (byte[] address : addresses) {
+            if (address != null && address.length > 0 && player.addresses.add(ByteBuffer.wrap(address.clone()))) {
+                filter.add(addressKey(address));
+            }
+        }
+    }
+
+    private void addIpBanLocked(int id, byte[] address) {
+        if (ipBans.putIfAbsent(id, ByteBuffer.wrap(address.clone())) == null) {
+            filter.add(addressKey(address));
+        }
+    }
+
+    private static byte[] playerKey(UUID playerUUID) {
+        return ByteBuffer.allocate(17).put(PLAYER)
+                .putLong(playerUUID.getMostSignificantBits())
+                .putLong(playerUUID.getLeastSignificantBits())
+                .array();
+    }
+
+    private static byte[] addressKey(byte[] address) {
+        byte[] key = new byte[address.length + 1];
+        key[0] = ADDRESS;
+        System.arraycopy(address, 0, key, 1, address.length);
+        return key;
+    }
+
+    /**
+     * Get the number of banned players in the filter
+     *
+     * @return The number of players
+     */
+    public int getPlayerCount() {
+        lock.readLock().lock();
+        try {
+            return players.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of players, addresses and IP bans in the filter
+     *
+     * @return The number of keys
+     */
+    public int getKeyCount() {
+        lock.readLock().lock();
+        try {
+            return filter.getSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of logins admitted without a query since startup
+     *
+     * @return The number of logins
+     */
+    public long getClearedCount() {
+        return cleared.get();
+    }
+
+    /**
+     * Get the number of logins sent on to the database since startup
+     *
+     * @return The number of logins
+     */
+    public long getPassedOnCount() {
+        return passedOn.get();
+    }
+
+    /**
+     * The addresses added for a banned player, and the version of its entry
+     */
+    private static class BannedPlayer {
+        private final Set<ByteBuffer> addresses = new HashSet<>();
+        private long stamp;
+    }
+
+    /**
+     * Which players are banned and which are not after a write, applied once the write has committed
+     */
+    public static class Changes {
+        private final Map<UUID, Collection<byte[]>> banned = new LinkedHashMap<>();
+        private final Map<UUID, Long> cleared = new LinkedHashMap<>();
+
+        /**
+         * Record a player that has an active ban
+         *
+         * @param playerUUID The player's UUID
+         * @param addresses  The addresses the player has used, may be empty if the player is already in the filter
+         */
+        public void banned(UUID playerUUID, Collection<byte[]> addresses) {
+            cleared.remove(playerUUID);
+            banned.put(playerUUID, addresses);
+        }
+
+        /**
+         * Record a player that has no active ban
+         *
+         * @param playerUUID The player's UUID
+         * @param stamp      The version of the player's entry, read before the check
+         */
+        public void cleared(UUID playerUUID, long stamp) {
+            banned.remove(playerUUID);
+            cleared.put(playerUUID, stamp);
+        }
+    }
+}
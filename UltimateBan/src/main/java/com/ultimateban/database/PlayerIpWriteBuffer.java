@@ -0,0 +1,151 @@
+package com.ultimateban.database;
+
+import com.ultimateban.models.PlayerIp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects player address sightings in memory and writes them to player_ips in batches.
+ * Repeated sightings of the same player on the same address are merged into one row write,
+ * so logins never wait for the upsert. Pending rows are written on a timer, when too many are
+ * waiting, and when the buffer is closed.
+ */
+public class PlayerIpWriteBuffer {
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final int maxPending;
+    private final ScheduledExecutorService writer;
+    private final Map<String, PlayerIp> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param databaseManager     The database manager that writes the rows
+     * @param logger              The logger used for errors
+     * @param flushIntervalMillis How often pending rows are written
+     * @param maxPending          The number of pending rows that triggers an early write
+     */
+    public PlayerIpWriteBuffer(DatabaseManager databaseManager, Logger logger, long flushIntervalMillis, int maxPending) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.maxPending = Math.max(1, maxPending);
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "UltimateBan-IpWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100L, flushIntervalMillis);
+        writer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a sighting of a player on an address, replacing any pending sighting of the same pair
+     *
+     * @param playerIp The sighting
+     */
+    public void add(PlayerIp playerIp) {
+        recorded.incrementAndGet();
+        pending.merge(playerIp.getPlayerUUID() + "/" + playerIp.getIpAddress(), playerIp, PlayerIpWriteBuffer::latest);
+
+        if (pending.size() >= maxPending && !writer.isShutdown() && flushRequested.compareAndSet(false, true)) {
+            writer.execute(this::flush);
+        }
+    }
+
+    /**
+     * Write every pending row, rows that fail to write are queued again
+     */
+    public void flush() {
+        flushRequested.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Only take rows that were not replaced while draining, a newer sighting stays queued
+        List<String> keys = new ArrayList<>(pending.keySet());
+        List<PlayerIp> batch = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            PlayerIp playerIp = pending.get(key);
+            if (playerIp != null && pending.remove(key, playerIp)) {
+                batch.add(playerIp);
+            }
+        }
+
+        try {
+            if (databaseManager.savePlayerIps(batch)) {
+                written.addAndGet(batch.size());
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Error writing player IPs: " + e.getMessage(), e);
+        }
+
+        for (PlayerIp playerIp : batch) {
+            pending.merge(playerIp.getPlayerUUID() + "/" + playerIp.getIpAddress(), playerIp, PlayerIpWriteBuffer::latest);
+        }
+    }
+
+    /**
+     * Stop the timer and write whatever is still pending on the calling thread
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        if (!pending.isEmpty()) {
+            logger.warning(pending.size() + " player IP record(s) could not be written on shutdown");
+        }
+    }
+
+    /**
+     * Get the number of rows waiting to be written
+     *
+     * @return The number of pending rows
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Get the number of sightings queued since startup
+     *
+     * @return The number of sightings
+     */
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    /**
+     * Get the number of rows written since startup, lower than the number of sightings when they were merged
+     *
+     * @return The number of rows written
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    private static PlayerIp latest(PlayerIp a, PlayerIp b) {
+        return b.getLastSeen() >= a.getLastSeen() ? b : a;
+    }
+}
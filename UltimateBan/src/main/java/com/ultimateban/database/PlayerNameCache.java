@@ -0,0 +1,199 @@
+package com.ultimateban.database;
+
+import com.ultimateban.util.ClockCache;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which UUID goes with which player name in both directions, so commands do not query
+ * the database for every name they are given. Names are matched case-insensitively, and a name can
+ * move between accounts, in which case the most recent sighting wins. Names the database does not
+ * know are remembered for a short time too, so a mistyped name costs one query rather than one per attempt.
+ * Lookups never take a lock, since every command and login resolves names through here. The price is that
+ * a full cache drops a name or player that was not used recently rather than strictly the least recently used one.
+ */
+public class PlayerNameCache {
+
+    private final long negativeTtlMillis;
+    private final ClockCache<String, Entry> byName;
+    private final ClockCache<UUID, Entry> byUuid;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize       The number of players kept
+     * @param negativeTtlMillis How long an unknown name is remembered as unknown
+     */
+    public PlayerNameCache(int maximumSize, long negativeTtlMillis) {
+        this.byName = new ClockCache<>(Math.max(16, maximumSize));
+        this.byUuid = new ClockCache<>(Math.max(16, maximumSize));
+        this.negativeTtlMillis = Math.max(0L, negativeTtlMillis);
+    }
+
+    /**
+     * Look up a name
+     *
+     * @param name The player name, in any case
+     * @return The cached entry, whose UUID is null if the name is known not to exist, or null if the name is not cached
+     */
+    public Entry lookup(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Entry entry = byName.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (entry.uuid == null) {
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                byName.remove(key, entry);
+                misses.incrementAndGet();
+                return null;
+            }
+            negativeHits.incrementAndGet();
+            return entry;
+        }
+
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Get the latest known name of a player
+     *
+     * @param uuid The player's UUID
+     * @return The name, or null if the player is not cached
+     */
+    public String getName(UUID uuid) {
+        Entry entry = byUuid.get(uuid);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.name;
+    }
+
+    /**
+     * Record that a player was seen with a name. An older sighting than the one cached is ignored.
+     *
+     * @param uuid     The player's UUID
+     * @param name     The player's name
+     * @param lastSeen When the player was seen with the name
+     */
+    public void record(UUID uuid, String name, long lastSeen) {
+        Entry entry = new Entry(uuid, name, lastSeen, Long.MAX_VALUE);
+
+        Entry[] replaced = new Entry[1];
+        Entry current = byUuid.compute(uuid, (key, old) -> {
+            if (old != null && old.lastSeen > lastSeen) {
+                return old;
+            }
+            replaced[0] = old;
+            return entry;
+        });
+        if (current != entry) {
+            return;
+        }
+
+        // The player changed names, the old name no longer leads to them
+        Entry old = replaced[0];
+        if (old != null && !old.key.equals(entry.key)) {
+            byName.remove(old.key, old);
+        }
+        // An unknown name becomes known, and a name taken over by another account follows the newest owner
+        byName.merge(entry.key, entry, (existing, added) ->
+                existing.uuid != null && existing.lastSeen > added.lastSeen ? existing : added);
+    }
+
+    /**
+     * Record that the database has no player with a name
+     *
+     * @param name The player name, in any case
+     */
+    public void recordMissing(String name) {
+        if (negativeTtlMillis == 0) {
+            return;
+        }
+
+        Entry entry = new Entry(null, name, 0, System.currentTimeMillis() + negativeTtlMillis);
+        // A player recorded in the meantime is not hidden again
+        byName.merge(entry.key, entry, (existing, added) -> existing.uuid != null ? existing : added);
+    }
+
+    /**
+     * Forget everything
+     */
+    public void clear() {
+        byName.clear();
+        byUuid.clear();
+    }
+
+    public int getSize() {
+        return byUuid.size();
+    }
+
+    public int getMaximumSize() {
+        return byUuid.getMaximumSize();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return byName.getEvictions() + byUuid.getEvictions();
+    }
+
+    /**
+     * What the cache knows about a name
+     */
+    public static class Entry {
+        private final String key;
+        private final UUID uuid;
+        private final String name;
+        private final long lastSeen;
+        private final long expiresAt;
+
+        private Entry(UUID uuid, String name, long lastSeen, long expiresAt) {
+            this.key = name.toLowerCase(Locale.ROOT);
+            this.uuid = uuid;
+            this.name = name;
+            this.lastSeen = lastSeen;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Get the UUID of the player with the name
+         *
+         * @return The UUID, or null if no player has the name
+         */
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        /**
+         * Get the name with its recorded capitalization
+         *
+         * @return The name
+         */
+        public String getName() {
+            return name;
+        }
+    }
+}
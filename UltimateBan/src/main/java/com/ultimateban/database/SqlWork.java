@@ -0,0 +1,22 @@
+package com.ultimateban.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Database work run with a connection the caller does not own
+ *
+ * @param <T> The type of the result
+ */
+@FunctionalInterface
+public interface SqlWork<T> {
+
+    /**
+     * Run the work. The connection must not be closed, committed or rolled back.
+     *
+     * @param connection The connection to use
+     * @return The result
+     * @throws SQLException if a database error occurs
+     */
+    T run(Connection connection) throws SQLException;
+}
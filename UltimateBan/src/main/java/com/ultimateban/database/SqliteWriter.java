@@ -0,0 +1,263 @@
+package com.ultimateban.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs every write to a SQLite database on one thread with one connection, so writers never
+ * wait on each other for the database lock. Writes queued while a transaction is committing are
+ * run together in the next transaction, which costs one sync to disk for the whole group.
+ * Each write runs inside its own savepoint, so a failing write is undone without affecting the
+ * others in its group. The result of a write is only handed back once its group has been committed.
+ */
+public class SqliteWriter {
+
+    private final Logger logger;
+    private final Connection connection;
+    private final int maxBatch;
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param logger     The logger used for errors
+     * @param url        The JDBC url
+     * @param properties The driver properties
+     * @param maxBatch   The most writes committed in one transaction
+     * @throws SQLException if the connection cannot be opened
+     */
+    public SqliteWriter(Logger logger, String url, Properties properties, int maxBatch) throws SQLException {
+        this.logger = logger;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.connection = DriverManager.getConnection(url, properties);
+        this.connection.setAutoCommit(false);
+
+        this.thread = new Thread(this::run, "UltimateBan-SQLiteWriter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue a write. Work submitted from inside another write runs straight away as part of it.
+     *
+     * @param work The write
+     * @param <T>  The type of the result
+     * @return A future completed once the write has been committed
+     */
+    public <T> CompletableFuture<T> submit(SqlWork<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (Thread.currentThread() == thread) {
+            try {
+                future.complete(work.run(connection));
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        if (closed || !queue.offer(new Task<>(work, future))) {
+            future.completeExceptionally(new SQLException("SQLite writer is closed"));
+        }
+        return future;
+    }
+
+    /**
+     * Run a write and wait for it to be committed
+     *
+     * @param work The write
+     * @param <T>  The type of the result
+     * @return The result of the write
+     * @throws SQLException if the write or its commit failed
+     */
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        try {
+            return submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Stop accepting writes, commit the ones already queued and close the connection
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Task<?> task;
+        while ((task = queue.poll()) != null) {
+            task.future.completeExceptionally(new SQLException("SQLite writer is closed"));
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Error closing the SQLite writer connection: " + e.getMessage(), e);
+        }
+    }
+
+    private void run() {
+        List<Task<?>> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                // Once closed, whatever is still queued is committed before the thread ends
+                Task<?> first = closed ? queue.poll() : queue.take();
+                if (first == null) {
+                    return;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            queue.drainTo(batch, maxBatch - batch.size());
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Task<?>> batch) {
+        List<Task<?>> succeeded = new ArrayList<>(batch.size());
+        for (Task<?> task : batch) {
+            if (task.runInSavepoint()) {
+                succeeded.add(task);
+            }
+        }
+
+        try {
+            connection.commit();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error committing " + succeeded.size() + " write(s): " + e.getMessage(), e);
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            for (Task<?> task : succeeded) {
+                task.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        transactions.incrementAndGet();
+        writes.addAndGet(batch.size());
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        for (Task<?> task : succeeded) {
+            task.complete();
+        }
+    }
+
+    /**
+     * Get the number of transactions committed since startup
+     *
+     * @return The number of transactions
+     */
+    public long getTransactionCount() {
+        return transactions.get();
+    }
+
+    /**
+     * Get the number of writes run since startup, higher than the number of transactions when writes were grouped
+     *
+     * @return The number of writes
+     */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    /**
+     * Get the most writes committed together
+     *
+     * @return The largest group
+     */
+    public long getLargestBatch() {
+        return largestBatch.get();
+    }
+
+    /**
+     * Get the number of writes waiting for the writer
+     *
+     * @return The number of queued writes
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * A queued write and the future waiting for it
+     */
+    private class Task<T> {
+        private final SqlWork<T> work;
+        private final CompletableFuture<T> future;
+        private T result;
+
+        private Task(SqlWork<T> work, CompletableFuture<T> future) {
+            this.work = work;
+            this.future = future;
+        }
+
+        /**
+         * Run the write, undoing only its own changes if it fails
+         *
+         * @return true if the write succeeded
+         */
+        private boolean runInSavepoint() {
+            Savepoint savepoint = null;
+            try {
+                savepoint = connection.setSavepoint();
+                result = work.run(connection);
+                connection.releaseSavepoint(savepoint);
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                if (savepoint != null) {
+                    try {
+                        connection.rollback(savepoint);
+                        connection.releaseSavepoint(savepoint);
+                    } catch (SQLException rollbackError) {
+                        e.addSuppressed(rollbackError);
+                    }
+                }
+                future.completeExceptionally(e);
+                return false;
+            }
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.ultimateban.database.migration;
+
+import com.ultimateban.util.IPUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Packed binary address columns on ip_bans and player_ips.
+ * Addresses are stored as 16 bytes with IPv4 mapped to ::ffff:a.b.c.d, ranges as their first and last address.
+ */
+class AddBinaryAddresses extends Migration {
+
+    AddBinaryAddresses() {
+        super(2, "Add binary address columns");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        addColumnIfMissing(connection, "ip_bans", "ip_bin", dialect.binaryType());
+        addColumnIfMissing(connection, "ip_bans", "range_start", dialect.binaryType());
+        addColumnIfMissing(connection, "ip_bans", "range_end", dialect.binaryType());
+        addColumnIfMissing(connection, "player_ips", "ip_bin", dialect.binaryType());
+
+        backfill(connection,
+                "SELECT id, ip_address FROM ip_bans WHERE id > ? AND range_start IS NULL ORDER BY id LIMIT " + BACKFILL_BATCH_SIZE,
+                "UPDATE ip_bans SET ip_bin = ?, range_start = ?, range_end = ? WHERE id = ?",
+                (row, update) -> {
+                    String ipAddress = row.getString("ip_address");
+                    byte[][] range = IPUtil.toAddressRange(ipAddress);
+                    if (range == null) {
+                        // Not an address we understand, leave it for the string columns
+                        return false;
+                    }
+                    update.setBytes(1, IPUtil.isValidIp(ipAddress) ? range[0] : null);
+                    update.setBytes(2, range[0]);
+                    update.setBytes(3, range[1]);
+                    update.setInt(4, row.getInt("id"));
+                    return true;
+                });
+
+        backfill(connection,
+                "SELECT id, ip_address FROM player_ips WHERE id > ? AND ip_bin IS NULL ORDER BY id LIMIT " + BACKFILL_BATCH_SIZE,
+                "UPDATE player_ips SET ip_bin = ? WHERE id = ?",
+                (row, update) -> {
+                    byte[] address = IPUtil.toAddressBytes(row.getString("ip_address"));
+                    if (address == null) {
+                        return false;
+                    }
+                    update.setBytes(1, address);
+                    update.setInt(2, row.getInt("id"));
+                    return true;
+                });
+    }
+}
@@ -0,0 +1,27 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Stores punishment metadata, with the offense category in its own indexed column so escalation
+ * can count offenses per category without reading the punishments themselves
+ */
+class AddPunishmentCategory extends Migration {
+
+    AddPunishmentCategory() {
+        super(5, "Add punishment category and metadata");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        addColumnIfMissing(connection, "punishments", "category", "VARCHAR(32)");
+        addColumnIfMissing(connection, "punishments", "metadata", "TEXT");
+
+        // player_uuid = ? AND category IS NOT NULL AND start_time > ? GROUP BY category, the offense counts.
+        // Most punishments have no category, SQLite leaves those out of the index entirely
+        boolean partial = dialect.supportsPartialIndexes();
+        createIndexIfMissing(connection, "punishments", "idx_punishments_player_category",
+                "player_uuid, category, start_time", partial ? "category IS NOT NULL" : null);
+    }
+}
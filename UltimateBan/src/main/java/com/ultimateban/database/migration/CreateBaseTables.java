@@ -0,0 +1,76 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The original tables. Databases created before versioning already have them, so every statement
+ * only creates what is missing.
+ */
+class CreateBaseTables extends Migration {
+
+    CreateBaseTables() {
+        super(1, "Create base tables");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        execute(connection, "CREATE TABLE IF NOT EXISTS punishments ("
+                + "id " + dialect.autoIncrementKey() + ", "
+                + "player_uuid VARCHAR(36) NOT NULL, "
+                + "player_name VARCHAR(16) NOT NULL, "
+                + "punisher_uuid VARCHAR(36) NOT NULL, "
+                + "punisher_name VARCHAR(16) NOT NULL, "
+                + "type VARCHAR(16) NOT NULL, "
+                + "reason TEXT NOT NULL, "
+                + "start_time BIGINT NOT NULL, "
+                + "end_time BIGINT NOT NULL, "
+                + "active BOOLEAN NOT NULL DEFAULT 1, "
+                + "ip_address VARCHAR(45)"
+                + ")");
+
+        execute(connection, "CREATE TABLE IF NOT EXISTS appeals ("
+                + "id " + dialect.autoIncrementKey() + ", "
+                + "punishment_id INTEGER NOT NULL, "
+                + "player_uuid VARCHAR(36) NOT NULL, "
+                + "player_name VARCHAR(16) NOT NULL, "
+                + "reason TEXT NOT NULL, "
+                + "submission_time BIGINT NOT NULL, "
+                + "status VARCHAR(16) NOT NULL DEFAULT 'PENDING', "
+                + "responder_uuid VARCHAR(36), "
+                + "responder_name VARCHAR(16), "
+                + "response TEXT, "
+                + "response_time BIGINT"
+                + ")");
+
+        execute(connection, "CREATE TABLE IF NOT EXISTS ip_bans ("
+                + "id " + dialect.autoIncrementKey() + ", "
+                + "ip_address VARCHAR(45) NOT NULL, "
+                + "punisher_uuid VARCHAR(36) NOT NULL, "
+                + "punisher_name VARCHAR(16) NOT NULL, "
+                + "reason TEXT NOT NULL, "
+                + "start_time BIGINT NOT NULL, "
+                + "end_time BIGINT NOT NULL, "
+                + "active BOOLEAN NOT NULL DEFAULT 1, "
+                + "is_subnet BOOLEAN NOT NULL DEFAULT 0"
+                + ")");
+
+        // Tracks the addresses of every player to find alternative accounts
+        execute(connection, "CREATE TABLE IF NOT EXISTS player_ips ("
+                + "id " + dialect.autoIncrementKey() + ", "
+                + "player_uuid VARCHAR(36) NOT NULL, "
+                + "player_name VARCHAR(16) NOT NULL, "
+                + "ip_address VARCHAR(45) NOT NULL, "
+                + "last_seen BIGINT NOT NULL, "
+                + "UNIQUE(player_uuid, ip_address)"
+                + ")");
+
+        execute(connection, "CREATE TABLE IF NOT EXISTS punishment_templates ("
+                + "id " + dialect.autoIncrementKey() + ", "
+                + "name VARCHAR(32) NOT NULL UNIQUE, "
+                + "type VARCHAR(16) NOT NULL, "
+                + "reason TEXT NOT NULL, "
+                + "duration BIGINT NOT NULL"
+                + ")");
+    }
+}
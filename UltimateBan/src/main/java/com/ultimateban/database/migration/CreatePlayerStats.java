@@ -0,0 +1,62 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A summary row per punished player with their punishment counts by type, when they were last
+ * punished and whether they have an active ban or mute, kept up to date as punishments are written.
+ * Filled from the existing punishments one batch of players at a time.
+ */
+class CreatePlayerStats extends Migration {
+
+    CreatePlayerStats() {
+        super(6, "Create player punishment summaries");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        execute(connection, "CREATE TABLE IF NOT EXISTS player_stats ("
+                + "player_uuid VARCHAR(36) NOT NULL PRIMARY KEY, "
+                + "ban_count INTEGER NOT NULL DEFAULT 0, "
+                + "temp_ban_count INTEGER NOT NULL DEFAULT 0, "
+                + "mute_count INTEGER NOT NULL DEFAULT 0, "
+                + "temp_mute_count INTEGER NOT NULL DEFAULT 0, "
+                + "kick_count INTEGER NOT NULL DEFAULT 0, "
+                + "warn_count INTEGER NOT NULL DEFAULT 0, "
+                + "last_punishment BIGINT NOT NULL DEFAULT 0, "
+                + "active_ban BOOLEAN NOT NULL DEFAULT 0, "
+                + "active_mute BOOLEAN NOT NULL DEFAULT 0"
+                + ")");
+
+        // Rows are written whole, so a rerun after an interruption overwrites instead of adding twice
+        backfill(connection,
+                "SELECT player_uuid, "
+                        + "SUM(CASE WHEN type = 'BAN' THEN 1 ELSE 0 END) AS ban_count, "
+                        + "SUM(CASE WHEN type = 'TEMP_BAN' THEN 1 ELSE 0 END) AS temp_ban_count, "
+                        + "SUM(CASE WHEN type = 'MUTE' THEN 1 ELSE 0 END) AS mute_count, "
+                        + "SUM(CASE WHEN type = 'TEMP_MUTE' THEN 1 ELSE 0 END) AS temp_mute_count, "
+                        + "SUM(CASE WHEN type = 'KICK' THEN 1 ELSE 0 END) AS kick_count, "
+                        + "SUM(CASE WHEN type = 'WARN' THEN 1 ELSE 0 END) AS warn_count, "
+                        + "MAX(start_time) AS last_punishment, "
+                        + "MAX(CASE WHEN active = 1 AND type IN ('BAN', 'TEMP_BAN') THEN 1 ELSE 0 END) AS active_ban, "
+                        + "MAX(CASE WHEN active = 1 AND type IN ('MUTE', 'TEMP_MUTE') THEN 1 ELSE 0 END) AS active_mute "
+                        + "FROM punishments WHERE player_uuid > ? GROUP BY player_uuid ORDER BY player_uuid LIMIT " + BACKFILL_BATCH_SIZE,
+                "player_uuid", "",
+                "REPLACE INTO player_stats (player_uuid, ban_count, temp_ban_count, mute_count, temp_mute_count, "
+                        + "kick_count, warn_count, last_punishment, active_ban, active_mute) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                (row, update) -> {
+                    update.setString(1, row.getString("player_uuid"));
+                    update.setInt(2, row.getInt("ban_count"));
+                    update.setInt(3, row.getInt("temp_ban_count"));
+                    update.setInt(4, row.getInt("mute_count"));
+                    update.setInt(5, row.getInt("temp_mute_count"));
+                    update.setInt(6, row.getInt("kick_count"));
+                    update.setInt(7, row.getInt("warn_count"));
+                    update.setLong(8, row.getLong("last_punishment"));
+                    update.setBoolean(9, row.getInt("active_ban") == 1);
+                    update.setBoolean(10, row.getInt("active_mute") == 1);
+                    return true;
+                });
+    }
+}
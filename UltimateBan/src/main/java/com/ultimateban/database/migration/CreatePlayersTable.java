@@ -0,0 +1,41 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * One row per known player with their latest name, so a name resolves to a UUID with a single index lookup.
+ * Filled from player_ips, which already records every name a player joined with.
+ */
+class CreatePlayersTable extends Migration {
+
+    CreatePlayersTable() {
+        super(4, "Create players table");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        // name_lower keeps lookups case insensitive on both databases without relying on collations
+        execute(connection, "CREATE TABLE IF NOT EXISTS players ("
+                + "uuid VARCHAR(36) NOT NULL PRIMARY KEY, "
+                + "name VARCHAR(16) NOT NULL, "
+                + "name_lower VARCHAR(16) NOT NULL, "
+                + "last_seen BIGINT NOT NULL"
+                + ")");
+        createIndexIfMissing(connection, "players", "idx_players_name_lower", "name_lower, last_seen", null);
+
+        // The upsert keeps the most recent name, so rows can be copied in id order
+        backfill(connection,
+                "SELECT id, player_uuid, player_name, last_seen FROM player_ips WHERE id > ? ORDER BY id LIMIT " + BACKFILL_BATCH_SIZE,
+                dialect.upsertPlayers(1),
+                (row, update) -> {
+                    String name = row.getString("player_name");
+                    update.setString(1, row.getString("player_uuid"));
+                    update.setString(2, name);
+                    update.setString(3, name.toLowerCase(Locale.ROOT));
+                    update.setLong(4, row.getLong("last_seen"));
+                    return true;
+                });
+    }
+}
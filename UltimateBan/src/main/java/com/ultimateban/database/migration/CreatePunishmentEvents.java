@@ -0,0 +1,29 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The change log servers sharing a database read to follow each other's punishment, IP ban and appeal changes.
+ * Rows are only appended, each server remembers the last sequence number it has read, and old rows are deleted.
+ */
+class CreatePunishmentEvents extends Migration {
+
+    CreatePunishmentEvents() {
+        super(8, "Create punishment_events table");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        execute(connection, "CREATE TABLE IF NOT EXISTS punishment_events ("
+                + "seq " + dialect.sequenceKey() + ", "
+                + "entity VARCHAR(16) NOT NULL, "
+                + "action VARCHAR(16) NOT NULL, "
+                + "entity_id INTEGER NOT NULL, "
+                + "player_uuid VARCHAR(36), "
+                + "server_id VARCHAR(36) NOT NULL, "
+                + "created_at BIGINT NOT NULL"
+                + ")");
+        createIndexIfMissing(connection, "punishment_events", "idx_punishment_events_created", "created_at", null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * VPN lookup results, kept across restarts so regular players' addresses are not sent to the API again
+ * every time the server starts. Rows are only useful until they expire and are deleted after that.
+ */
+class CreateVpnVerdicts extends Migration {
+
+    CreateVpnVerdicts() {
+        super(7, "Create vpn_verdicts table");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        execute(connection, "CREATE TABLE IF NOT EXISTS vpn_verdicts ("
+                + "ip_address VARCHAR(45) NOT NULL PRIMARY KEY, "
+                + "vpn BOOLEAN NOT NULL, "
+                + "checked_at BIGINT NOT NULL, "
+                + "expires_at BIGINT NOT NULL"
+                + ")");
+        createIndexIfMissing(connection, "vpn_verdicts", "idx_vpn_verdicts_expires", "expires_at", null);
+    }
+}
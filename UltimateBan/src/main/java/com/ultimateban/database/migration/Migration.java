@@ -0,0 +1,216 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A single versioned change to the database schema.
+ * MySQL commits DDL as it runs, so a migration can be interrupted half way and is then run again
+ * from the start. Every migration must therefore be safe to repeat, which the helpers here take care of.
+ */
+public abstract class Migration {
+
+    /**
+     * Rows per transaction when filling new columns, small enough that the server keeps serving queries
+     */
+    protected static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final int version;
+    private final String description;
+
+    /**
+     * Constructor
+     *
+     * @param version     The schema version this migration brings the database to
+     * @param description What the migration changes
+     */
+    protected Migration(int version, String description) {
+        this.version = version;
+        this.description = description;
+    }
+
+    /**
+     * Apply the migration
+     *
+     * @param connection The connection to use, in auto-commit mode
+     * @param dialect    The dialect of the database
+     * @throws SQLException if the schema could not be updated
+     */
+    public abstract void migrate(Connection connection, SqlDialect dialect) throws SQLException;
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Execute a statement
+     *
+     * @param connection The connection to use
+     * @param sql        The statement
+     * @throws SQLException if a database error occurs
+     */
+    protected void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Add a column to a table if it does not exist yet
+     *
+     * @param connection The connection to use
+     * @param table      The table name
+     * @param column     The column name
+     * @param definition The column type and constraints
+     * @throws SQLException if a database error occurs
+     */
+    protected void addColumnIfMissing(Connection connection, String table, String column, String definition) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, column)) {
+            if (columns.next()) {
+                return;
+            }
+        }
+
+        execute(connection, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+    }
+
+    /**
+     * Create an index if it does not exist yet. MySQL has no CREATE INDEX IF NOT EXISTS.
+     *
+     * @param connection The connection to use
+     * @param table      The table name
+     * @param index      The index name
+     * @param columns    The indexed columns
+     * @param where      The condition of a partial index, or null to index every row
+     * @throws SQLException if a database error occurs
+     */
+    protected void createIndexIfMissing(Connection connection, String table, String index, String columns, String where) throws SQLException {
+        if (!indexExists(connection, table, index)) {
+            execute(connection, "CREATE INDEX " + index + " ON " + table + " (" + columns + ")"
+                    + (where != null ? " WHERE " + where : ""));
+        }
+    }
+
+    /**
+     * Drop an index if it exists
+     *
+     * @param connection The connection to use
+     * @param dialect    The dialect of the database
+     * @param table      The table name
+     * @param index      The index name
+     * @throws SQLException if a database error occurs
+     */
+    protected void dropIndexIfExists(Connection connection, SqlDialect dialect, String table, String index) throws SQLException {
+        if (indexExists(connection, table, index)) {
+            execute(connection, dialect.dropIndex(table, index));
+        }
+    }
+
+    private boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walk a table by id in batches and write the rows each batch produces, one transaction per batch,
+     * so a large table is converted without holding locks for the whole run
+     *
+     * @param connection The connection to use
+     * @param selectSql  The query reading a batch, taking the last id seen as its only parameter and
+     *                   returning at most {@link #BACKFILL_BATCH_SIZE} rows ordered by an id column
+     * @param updateSql  The statement writing one row
+     * @param binder     Binds the update for a row, or skips the row
+     * @return The number of rows written
+     * @throws SQLException if a database error occurs, batches written before it stay committed
+     */
+    protected int backfill(Connection connection, String selectSql, String updateSql, RowBinder binder) throws SQLException {
+        return backfill(connection, selectSql, "id", 0, updateSql, binder);
+    }
+
+    /**
+     * Walk a table in batches by any unique, ordered key and write the rows each batch produces,
+     * one transaction per batch
+     *
+     * @param connection The connection to use
+     * @param selectSql  The query reading a batch, taking the last key seen as its only parameter and
+     *                   returning at most {@link #BACKFILL_BATCH_SIZE} rows ordered by the key
+     * @param keyColumn  The column holding the key in the query results
+     * @param firstKey   A value below every key, where the walk starts
+     * @param updateSql  The statement writing one row
+     * @param binder     Binds the update for a row, or skips the row
+     * @return The number of rows written
+     * @throws SQLException if a database error occurs, batches written before it stay committed
+     */
+    protected int backfill(Connection connection, String selectSql, String keyColumn, Object firstKey,
+                           String updateSql, RowBinder binder) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        Object lastKey = firstKey;
+        int written = 0;
+        try (PreparedStatement select = connection.prepareStatement(selectSql);
+             PreparedStatement update = connection.prepareStatement(updateSql)) {
+            while (true) {
+                int rows = 0;
+                int batchSize = 0;
+                select.setObject(1, lastKey);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows++;
+                        lastKey = resultSet.getObject(keyColumn);
+                        if (binder.bind(resultSet, update)) {
+                            update.addBatch();
+                            batchSize++;
+                        }
+                    }
+                }
+
+                if (rows == 0) {
+                    break;
+                }
+                if (batchSize > 0) {
+                    update.executeBatch();
+                }
+                connection.commit();
+                written += batchSize;
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return written;
+    }
+
+    /**
+     * Binds the update statement of a backfill for one source row
+     */
+    @FunctionalInterface
+    protected interface RowBinder {
+        /**
+         * Bind the update for a row
+         *
+         * @param row    The source row
+         * @param update The update statement
+         * @return true if the update was bound and should be written, false to skip the row
+         * @throws SQLException if a database error occurs
+         */
+        boolean bind(ResultSet row, PreparedStatement update) throws SQLException;
+    }
+}
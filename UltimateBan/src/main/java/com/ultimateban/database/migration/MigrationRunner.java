@@ -0,0 +1,145 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Brings the database schema up to date.
+ * The applied version is kept in schema_version, one row per migration, and only the migrations
+ * above it run, in order. Databases from before versioning start at version 0 and run everything,
+ * which is harmless since migrations only create what is missing.
+ */
+public class MigrationRunner {
+
+    private static final String LOCK_NAME = "ultimateban_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private final Logger logger;
+    private final SqlDialect dialect;
+    private final List<Migration> migrations;
+
+    /**
+     * Constructor
+     *
+     * @param logger  The logger applied migrations are reported to
+     * @param dialect The dialect of the database
+     */
+    public MigrationRunner(Logger logger, SqlDialect dialect) {
+        this.logger = logger;
+        this.dialect = dialect;
+        this.migrations = new ArrayList<>(Arrays.asList(
+                new CreateBaseTables(),
+                new AddBinaryAddresses(),
+                new TuneIndexes(),
+                new CreatePlayersTable(),
+                new AddPunishmentCategory(),
+                new CreatePlayerStats(),
+                new CreateVpnVerdicts(),
+                new CreatePunishmentEvents()
+        ));
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+
+    /**
+     * Apply every migration the database has not seen yet
+     *
+     * @param connection The connection to use
+     * @return The number of migrations applied
+     * @throws SQLException if a migration failed, the migrations before it stay applied
+     */
+    public int migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INTEGER NOT NULL PRIMARY KEY, "
+                    + "description VARCHAR(128) NOT NULL, "
+                    + "installed_at BIGINT NOT NULL"
+                    + ")");
+        }
+
+        // Several servers can share a MySQL database and start at the same time
+        if (dialect == SqlDialect.MYSQL) {
+            lock(connection);
+        }
+        try {
+            int current = getVersion(connection);
+            int latest = migrations.get(migrations.size() - 1).getVersion();
+            if (current > latest) {
+                logger.warning("Database schema version " + current + " is newer than this version of the plugin ("
+                        + latest + "), it may have been used by a newer release");
+                return 0;
+            }
+
+            int applied = 0;
+            for (Migration migration : migrations) {
+                if (migration.getVersion() <= current) {
+                    continue;
+                }
+
+                long start = System.currentTimeMillis();
+                migration.migrate(connection, dialect);
+                record(connection, migration);
+                applied++;
+                logger.info("Applied schema migration " + migration.getVersion() + " (" + migration.getDescription()
+                        + ") in " + (System.currentTimeMillis() - start) + "ms");
+            }
+            return applied;
+        } finally {
+            if (dialect == SqlDialect.MYSQL) {
+                unlock(connection);
+            }
+        }
+    }
+
+    /**
+     * Get the schema version of the database
+     *
+     * @param connection The connection to use
+     * @return The highest applied version, or 0 if none was recorded
+     * @throws SQLException if a database error occurs
+     */
+    public int getVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MAX(version) AS version FROM schema_version")) {
+            return resultSet.next() ? resultSet.getInt("version") : 0;
+        }
+    }
+
+    private void record(Connection connection, Migration migration) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description, installed_at) VALUES (?, ?, ?)")) {
+            statement.setInt(1, migration.getVersion());
+            statement.setString(2, migration.getDescription());
+            statement.setLong(3, System.currentTimeMillis());
+            statement.executeUpdate();
+        }
+    }
+
+    private void lock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another server to finish migrating the database");
+                }
+            }
+        }
+    }
+
+    private void unlock(Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            logger.warning("Error releasing the migration lock: " + e.getMessage());
+        }
+    }
+}
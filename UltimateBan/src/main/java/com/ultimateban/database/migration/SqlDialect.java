@@ -0,0 +1,129 @@
+package com.ultimateban.database.migration;
+
+/**
+ * The SQL differences between the supported databases that schema changes have to care about
+ */
+public enum SqlDialect {
+
+    MYSQL,
+    SQLITE;
+
+    /**
+     * Get the dialect for a configured database type
+     *
+     * @param databaseType The database.type setting
+     * @return MYSQL for "MySQL", SQLITE for anything else
+     */
+    public static SqlDialect of(String databaseType) {
+        return "MySQL".equalsIgnoreCase(databaseType) ? MYSQL : SQLITE;
+    }
+
+    /**
+     * Get the definition of an auto incrementing integer primary key
+     *
+     * @return The column definition
+     */
+    public String autoIncrementKey() {
+        return this == MYSQL ? "INTEGER PRIMARY KEY AUTO_INCREMENT" : "INTEGER PRIMARY KEY AUTOINCREMENT";
+    }
+
+    /**
+     * Get the definition of an auto incrementing 64 bit primary key, for tables that only grow
+     *
+     * @return The column definition
+     */
+    public String sequenceKey() {
+        // SQLite integers are already 64 bit
+        return this == MYSQL ? "BIGINT PRIMARY KEY AUTO_INCREMENT" : "INTEGER PRIMARY KEY AUTOINCREMENT";
+    }
+
+    /**
+     * Get the column type of a packed 16 byte address
+     *
+     * @return The column type
+     */
+    public String binaryType() {
+        return this == MYSQL ? "VARBINARY(16)" : "BLOB";
+    }
+
+    /**
+     * Check whether indexes can be limited to the rows matching a condition
+     *
+     * @return true if CREATE INDEX ... WHERE is supported
+     */
+    public boolean supportsPartialIndexes() {
+        return this == SQLITE;
+    }
+
+    /**
+     * Get the statement that drops an index
+     *
+     * @param table The table of the index
+     * @param index The index name
+     * @return The statement
+     */
+    public String dropIndex(String table, String index) {
+        return this == MYSQL ? "DROP INDEX " + index + " ON " + table : "DROP INDEX " + index;
+    }
+
+    /**
+     * Get the multi-row upsert into players. Every row binds uuid, name, name_lower and last_seen,
+     * and an existing row is only replaced by a sighting at least as recent, so rows may arrive in any order.
+     *
+     * @param rows The number of rows in the statement
+     * @return The statement
+     */
+    public String upsertPlayers(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO players (uuid, name, name_lower, last_seen) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+
+        if (this == MYSQL) {
+            // Assignments run left to right, so the name has to be compared before last_seen changes
+            sql.append(" ON DUPLICATE KEY UPDATE"
+                    + " name = IF(VALUES(last_seen) >= last_seen, VALUES(name), name),"
+                    + " name_lower = IF(VALUES(last_seen) >= last_seen, VALUES(name_lower), name_lower),"
+                    + " last_seen = GREATEST(last_seen, VALUES(last_seen))");
+        } else {
+            sql.append(" ON CONFLICT(uuid) DO UPDATE SET"
+                    + " name = excluded.name, name_lower = excluded.name_lower, last_seen = excluded.last_seen"
+                    + " WHERE excluded.last_seen >= players.last_seen");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Get a single row upsert that adds to some columns of an existing row and raises others to the new value
+     *
+     * @param table     The table
+     * @param key       The primary key column, bound first
+     * @param added     Columns whose new value is added to the existing one, bound after the key
+     * @param maximized Columns that keep the larger of the existing and new value, bound last
+     * @return The statement
+     */
+    public String upsertAccumulating(String table, String key, String[] added, String[] maximized) {
+        StringBuilder columns = new StringBuilder(key);
+        StringBuilder values = new StringBuilder("?");
+        StringBuilder updates = new StringBuilder();
+        String newValue = this == MYSQL ? "VALUES(%s)" : "excluded.%s";
+        String larger = this == MYSQL ? "GREATEST" : "MAX";
+
+        for (String column : added) {
+            columns.append(", ").append(column);
+            values.append(", ?");
+            updates.append(updates.length() > 0 ? ", " : "")
+                    .append(column).append(" = ").append(column).append(" + ").append(String.format(newValue, column));
+        }
+        for (String column : maximized) {
+            columns.append(", ").append(column);
+            values.append(", ?");
+            updates.append(updates.length() > 0 ? ", " : "")
+                    .append(column).append(" = ").append(larger).append("(").append(column).append(", ")
+                    .append(String.format(newValue, column)).append(")");
+        }
+
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ")"
+                + (this == MYSQL ? " ON DUPLICATE KEY UPDATE " : " ON CONFLICT(" + key + ") DO UPDATE SET ") + updates;
+    }
+}
@@ -0,0 +1,62 @@
+package com.ultimateban.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Composite indexes matching the lookups of the plugin, replacing the original single column ones.
+ * Lookups of active rows use partial indexes on SQLite, MySQL has none so active becomes a key column instead.
+ */
+class TuneIndexes extends Migration {
+
+    TuneIndexes() {
+        super(3, "Replace single column indexes with composite ones");
+    }
+
+    @Override
+    public void migrate(Connection connection, SqlDialect dialect) throws SQLException {
+        boolean partial = dialect.supportsPartialIndexes();
+
+        // Single column indexes replaced by the composite ones below. active has two values and
+        // was never selective, ip_address lookups moved to the binary address columns
+        dropIndexIfExists(connection, dialect, "punishments", "idx_punishments_player_uuid");
+        dropIndexIfExists(connection, dialect, "punishments", "idx_punishments_active");
+        dropIndexIfExists(connection, dialect, "punishments", "idx_punishments_ip_address");
+        dropIndexIfExists(connection, dialect, "ip_bans", "idx_ip_bans_ip_address");
+        dropIndexIfExists(connection, dialect, "ip_bans", "idx_ip_bans_active");
+        dropIndexIfExists(connection, dialect, "ip_bans", "idx_ip_bans_ip_bin");
+        dropIndexIfExists(connection, dialect, "ip_bans", "idx_ip_bans_range");
+        dropIndexIfExists(connection, dialect, "player_ips", "idx_player_ips_ip_address");
+        dropIndexIfExists(connection, dialect, "player_ips", "idx_player_ips_player_uuid");
+
+        // player_uuid = ? AND active = 1 AND type IN (...), the active ban and mute lookups
+        createIndexIfMissing(connection, "punishments", "idx_punishments_player_active",
+                partial ? "player_uuid, type" : "player_uuid, active, type", partial ? "active = 1" : null);
+        // player_uuid = ? ORDER BY start_time and player_uuid = ? AND start_time > ?, history and escalation
+        createIndexIfMissing(connection, "punishments", "idx_punishments_player_time", "player_uuid, start_time", null);
+        // active = 1 AND type IN (...) AND end_time ..., startup loads and the expiry service
+        createIndexIfMissing(connection, "punishments", "idx_punishments_active_type",
+                partial ? "type, end_time" : "active, type, end_time", partial ? "active = 1" : null);
+
+        createIndexIfMissing(connection, "appeals", "idx_appeals_punishment_id", "punishment_id", null);
+        createIndexIfMissing(connection, "appeals", "idx_appeals_player_uuid", "player_uuid", null);
+        createIndexIfMissing(connection, "appeals", "idx_appeals_status", "status", null);
+
+        // ip_bin = ? AND active = 1, exact IP bans at login
+        createIndexIfMissing(connection, "ip_bans", "idx_ip_bans_active_ip_bin",
+                partial ? "ip_bin" : "ip_bin, active", partial ? "active = 1" : null);
+        // active = 1 AND range_start <= ? AND range_end >= ?, IP and subnet ban lookups by address
+        createIndexIfMissing(connection, "ip_bans", "idx_ip_bans_active_range",
+                partial ? "range_start, range_end" : "active, range_start, range_end", partial ? "active = 1" : null);
+        // is_subnet = 1 AND active = 1, the subnet ban index loaded at startup
+        createIndexIfMissing(connection, "ip_bans", "idx_ip_bans_active_subnet",
+                partial ? "is_subnet" : "is_subnet, active", partial ? "active = 1" : null);
+
+        // The UNIQUE(player_uuid, ip_address) key already covers lookups by player
+        createIndexIfMissing(connection, "player_ips", "idx_player_ips_ip_bin", "ip_bin", null);
+        // player_uuid = ? ORDER BY last_seen DESC, the latest name of a player
+        createIndexIfMissing(connection, "player_ips", "idx_player_ips_player_seen", "player_uuid, last_seen", null);
+        // last_seen > ?, recently seen players
+        createIndexIfMissing(connection, "player_ips", "idx_player_ips_last_seen", "last_seen", null);
+    }
+}
@@ -2,6 +2,7 @@ package com.ultimateban.listeners;
 
 import com.ultimateban.UltimateBan;
 import com.ultimateban.models.IpBan;
+import com.ultimateban.models.LoginVerdict;
 import com.ultimateban.models.Punishment;
 import com.ultimateban.models.PunishmentType;
 import com.ultimateban.util.MessageUtil;
@@ -14,11 +15,15 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.net.InetAddress;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
 
 /**
  * Listener for player connection events
@@ -47,34 +52,56 @@ public class PlayerConnectionListener implements Listener {
         String playerName = event.getName();
         String ipAddress = event.getAddress().getHostAddress();
         
-        // Save player's IP for alt tracking
-        plugin.getDatabaseManager().savePlayerIp(playerUUID, playerName, ipAddress);
+        // Save player's IP for alt tracking without holding up the login
+        plugin.getDatabaseManager().recordPlayerIp(playerUUID, playerName, ipAddress);
+        plugin.getAltDetectionService().recordName(playerUUID, playerName);
         
-        // Check for VPN/Proxy if enabled
-        boolean vpnCheckEnabled = plugin.getConfig().getBoolean("vpn-detection.enabled", true);
-        if (vpnCheckEnabled) {
-            // Create a player object for VPN check (since we're in pre-login)
-            Player mockPlayer = Bukkit.getPlayer(playerUUID);  // Will be null usually
-            
-            try {
-                // We have to block here since we're in an async event and need a result before player joins
-                boolean isVpn = plugin.getVpnDetectionService().checkPlayerVPN(mockPlayer != null ? mockPlayer : new MockPlayer(playerUUID, playerName), ipAddress).get();
-                
-                if (isVpn) {
-                    boolean blockVpns = plugin.getConfig().getBoolean("vpn-detection.block", true);
-                    if (blockVpns && !hasVpnBypassPermission(playerUUID)) {
-                        String message = plugin.getVpnDetectionService().getVpnBlockMessage();
-                        event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, MessageUtil.color(message));
-                        return;
-                    }
-                }
-            } catch (Exception e) {
-                plugin.getLogger().warning("Error checking for VPN: " + e.getMessage());
-            }
+        // Resolve player, IP, subnet and linked-account bans in one go
+        LoginVerdict verdict;
+        try {
+            verdict = plugin.getDatabaseManager().getLoginVerdict(playerUUID, ipAddress);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error checking bans for " + playerName + ": " + e.getMessage(), e);
+            verdict = new LoginVerdict(null, null, null);
+        }
+        
+        // Check if player is banned
+        Punishment ban = verdict.getPlayerBan();
+        if (ban != null) {
+            // Format ban message
+            String message = plugin.getConfig().getString(
+                ban.getType() == PunishmentType.BAN ? 
+                    "messages.ban.player_message" : 
+                    "messages.tempban.player_message",
+                "&c&l⚠ &" + (ban.getType() == PunishmentType.BAN ? "4" : "6") + 
+                "&lYOU HAVE BEEN " + (ban.getType() == PunishmentType.BAN ? "" : "TEMPORARILY ") + 
+                "BANNED &c&l⚠\n\n" +
+                "&r&7Reason: &c%reason%\n" +
+                "&7Banned by: &c%staff%\n" +
+                (ban.getType() == PunishmentType.TEMP_BAN ? "&7Duration: &c%duration%\n" : "") +
+                (ban.getType() == PunishmentType.TEMP_BAN ? "&7Expires: &c%expires%\n" : "") +
+                "&7Date: &c%date%\n\n" +
+                "&7Appeal at: &b&nminecraft.example.com/appeal"
+            );
+        
+            String expires = ban.isPermanent() ? "Never" : TimeUtil.formatTimestamp(ban.getEndTime());
+            String duration = ban.isPermanent() ? "Permanent" : TimeUtil.formatDuration(ban.getEndTime() - ban.getStartTime());
+        
+            message = message
+                .replace("%reason%", ban.getReason())
+                .replace("%staff%", ban.getPunisherName())
+                .replace("%expires%", expires)
+                .replace("%duration%", duration)
+                .replace("%date%", TimeUtil.formatTimestamp(ban.getStartTime()));
+
+            // Deny login
+            event.setLoginResult(AsyncPlayerPreLoginEvent.Result.KICK_BANNED);
+            event.setKickMessage(MessageUtil.color(message));
+            return;
         }
         
         // Check for IP bans
-        IpBan ipBan = plugin.getDatabaseManager().getActiveIpBan(ipAddress);
+        IpBan ipBan = verdict.getIpBan();
         if (ipBan != null) {
             // Check if player has permission to bypass IP bans
             if (hasIpBanBypassPermission(playerUUID)) {
@@ -102,66 +129,75 @@ public class PlayerConnectionListener implements Listener {
         }
         
         // Check for alt accounts of banned players
-        try {
-            // Create a mock player for alt detection
+        Punishment linkedBan = verdict.getLinkedBan();
+        if (linkedBan != null && plugin.getAltDetectionService().shouldBlockLinkedBans()) {
+            plugin.getAltDetectionService().notifyLinkedBanBlocked(playerName, linkedBan);
+            String message = plugin.getAltDetectionService().getAltBlockMessage();
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, MessageUtil.color(message));
+            return;
+        }
+        
+        // Check for VPN/Proxy if enabled
+        boolean vpnCheckEnabled = plugin.getConfig().getBoolean("vpn-detection.enabled", true);
+        if (vpnCheckEnabled) {
+            // Create a player object for VPN check (since we're in pre-login)
             Player mockPlayer = Bukkit.getPlayer(playerUUID);  // Will be null usually
             
-            // We have to block here since we're in an async event and need a result before player joins
-            boolean shouldBlock = plugin.getAltDetectionService()
-                .shouldBlockPlayer(mockPlayer != null ? mockPlayer : new MockPlayer(playerUUID, playerName), ipAddress).get();
+            try {
+                // We have to block here since we're in an async event and need a result before player joins
+                boolean isVpn = plugin.getVpnDetectionService().checkPlayerVPN(mockPlayer != null ? mockPlayer : new MockPlayer(playerUUID, playerName), ipAddress).get();
                 
-            if (shouldBlock) {
-                String message = plugin.getAltDetectionService().getAltBlockMessage();
-                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, MessageUtil.color(message));
-                return;
+                if (isVpn) {
+                    boolean blockVpns = plugin.getConfig().getBoolean("vpn-detection.block", true);
+                    if (blockVpns && !hasVpnBypassPermission(playerUUID)) {
+                        String message = plugin.getVpnDetectionService().getVpnBlockMessage();
+                        event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, MessageUtil.color(message));
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error checking for VPN: " + e.getMessage());
             }
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error checking for alt accounts: " + e.getMessage());
         }
         
-        // Check if player is banned
-        Punishment ban = plugin.getDatabaseManager().getActiveBan(event.getUniqueId());
-        
-        if (ban != null) {
-            // Check if ban has expired
-            if (ban.hasExpired()) {
-                // Deactivate the ban
-                plugin.getDatabaseManager().deactivatePunishment(ban.getId());
-                return;
-            }
-            
-            // Format ban message
-            String message = plugin.getConfig().getString(
-                ban.getType() == PunishmentType.BAN ? 
-                    "messages.ban.player_message" : 
-                    "messages.tempban.player_message",
-                "&c&l⚠ &" + (ban.getType() == PunishmentType.BAN ? "4" : "6") + 
-                "&lYOU HAVE BEEN " + (ban.getType() == PunishmentType.BAN ? "" : "TEMPORARILY ") + 
-                "BANNED &c&l⚠\n\n" +
-                "&r&7Reason: &c%reason%\n" +
-                "&7Banned by: &c%staff%\n" +
-                (ban.getType() == PunishmentType.TEMP_BAN ? "&7Duration: &c%duration%\n" : "") +
-                (ban.getType() == PunishmentType.TEMP_BAN ? "&7Expires: &c%expires%\n" : "") +
-                "&7Date: &c%date%\n\n" +
-                "&7Appeal at: &b&nminecraft.example.com/appeal"
-            );
-            
-            String expires = ban.isPermanent() ? "Never" : TimeUtil.formatTimestamp(ban.getEndTime());
-            String duration = ban.isPermanent() ? "Permanent" : TimeUtil.formatDuration(ban.getEndTime() - ban.getStartTime());
-            
-            message = message
-                .replace("%reason%", ban.getReason())
-                .replace("%staff%", ban.getPunisherName())
-                .replace("%expires%", expires)
-                .replace("%duration%", duration)
-                .replace("%date%", TimeUtil.formatTimestamp(ban.getStartTime()));
+        // Player is allowed in, cache their mute while we are still off the main thread
+        plugin.getMuteManager().loadLoginMute(playerUUID);
+    }
 
-            // Deny login
-            event.setLoginResult(AsyncPlayerPreLoginEvent.Result.KICK_BANNED);
-            event.setKickMessage(MessageUtil.color(message));
+    /**
+     * Drop the cached mute if a later listener denied the login
+     *
+     * @param event The pre-login event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLoginMonitor(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            plugin.getMuteManager().unloadMute(event.getUniqueId());
+        }
+    }
+
+    /**
+     * Drop the cached mute if the login is denied after the pre-login stage
+     *
+     * @param event The login event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            plugin.getMuteManager().unloadMute(event.getPlayer().getUniqueId());
         }
     }
 
+    /**
+     * Handle player leaving the server
+     *
+     * @param event The quit event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getMuteManager().unloadMute(event.getPlayer().getUniqueId());
+    }
+
     /**
      * Check if a player has permission to bypass IP bans
      * 
@@ -205,37 +241,31 @@ public class PlayerConnectionListener implements Listener {
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
+        plugin.getMuteManager().completeLogin(player.getUniqueId());
         
-        // Track player IP address
-        String ipAddress = player.getAddress().getAddress().getHostAddress();
-        plugin.getDatabaseManager().savePlayerIp(player.getUniqueId(), player.getName(), ipAddress);
+        // The player's IP was already recorded during pre-login
         
-        // Check if player has an active mute
-        Punishment mute = plugin.getDatabaseManager().getActiveMute(player.getUniqueId());
+        // Check if player has an active mute (loaded during pre-login)
+        Punishment mute = plugin.getMuteManager().getActiveMute(player.getUniqueId());
         
         if (mute != null) {
-            if (!mute.hasExpired()) {
-                // Notify player about mute
-                String muteMessage = plugin.getConfig().getString(
-                    "messages.mute.chat_blocked", 
-                    "&c&l⚠ &4&lYOU ARE MUTED &c&l⚠\n" +
-                    "&r&7Reason: &c%reason%\n" +
-                    "&7Muted by: &c%staff%\n" +
-                    "&7Expires: &c%expires%"
-                );
-                
-                String expires = mute.isPermanent() ? "Never" : TimeUtil.formatTimestamp(mute.getEndTime());
-                
-                muteMessage = muteMessage
-                    .replace("%reason%", mute.getReason())
-                    .replace("%staff%", mute.getPunisherName())
-                    .replace("%expires%", expires);
-                
-                player.sendMessage(MessageUtil.color(muteMessage));
-            } else {
-                // Deactivate expired mute
-                plugin.getDatabaseManager().deactivatePunishment(mute.getId());
-            }
+            // Notify player about mute
+            String muteMessage = plugin.getConfig().getString(
+                "messages.mute.chat_blocked", 
+                "&c&l⚠ &4&lYOU ARE MUTED &c&l⚠\n" +
+                "&r&7Reason: &c%reason%\n" +
+                "&7Muted by: &c%staff%\n" +
+                "&7Expires: &c%expires%"
+            );
+            
+            String expires = mute.isPermanent() ? "Never" : TimeUtil.formatTimestamp(mute.getEndTime());
+            
+            muteMessage = muteMessage
+                .replace("%reason%", mute.getReason())
+                .replace("%staff%", mute.getPunisherName())
+                .replace("%expires%", expires);
+            
+            player.sendMessage(MessageUtil.color(muteMessage));
         }
         
         // Run VPN check asynchronously for better performance
@@ -297,17 +327,10 @@ public class PlayerConnectionListener implements Listener {
             return;
         }
 
-        // Get active mute directly
-        Punishment mute = plugin.getDatabaseManager().getActiveMute(playerUUID);
+        // Get active mute from the cache, expired mutes are already filtered out
+        Punishment mute = plugin.getMuteManager().getActiveMute(playerUUID);
         
         if (mute != null) {
-            // Check if temporary mute has expired
-            if (mute.hasExpired()) {
-                mute.setActive(false);
-                plugin.getDatabaseManager().updatePunishment(mute);
-                return;
-            }
-
             // Format mute message
             String message = plugin.getConfig().getString("messages.mute.chat_blocked", 
                 "&c&l⚠ &4&lYOU ARE MUTED &c&l⚠\n" +
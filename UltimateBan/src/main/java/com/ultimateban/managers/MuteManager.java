@@ -0,0 +1,170 @@
+package com.ultimateban.managers;
+
+import com.ultimateban.UltimateBan;
+import com.ultimateban.database.DatabaseListener;
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the active mutes of online players in memory so chat checks never touch the database
+ */
+public class MuteManager implements DatabaseListener {
+
+    private final UltimateBan plugin;
+    private final Map<UUID, Punishment> activeMutes = new ConcurrentHashMap<>();
+    // Players past the pre-login check who have not joined yet
+    private final Set<UUID> pendingLogins = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor
+     *
+     * @param plugin The UltimateBan plugin instance
+     */
+    public MuteManager(UltimateBan plugin) {
+        this.plugin = plugin;
+        plugin.getDatabaseManager().addListener(this);
+    }
+
+    /**
+     * Load the active mute of a player from the database.
+     * This performs a blocking query and must not be called from the main thread.
+     *
+     * @param playerUUID The player's UUID
+     */
+    public void loadMute(UUID playerUUID) {
+        Punishment mute = plugin.getDatabaseManager().getActiveMute(playerUUID);
+        if (mute != null) {
+            activeMutes.put(playerUUID, mute);
+        } else {
+            activeMutes.remove(playerUUID);
+        }
+    }
+
+    /**
+     * Load the active mute of a player who passed the pre-login checks.
+     * The player counts as logging in before the query runs, so a mute issued before they join is cached too.
+     * This performs a blocking query and must not be called from the main thread.
+     *
+     * @param playerUUID The player's UUID
+     */
+    public void loadLoginMute(UUID playerUUID) {
+        pendingLogins.add(playerUUID);
+        Punishment mute = plugin.getDatabaseManager().getActiveMute(playerUUID);
+        if (mute != null) {
+            activeMutes.put(playerUUID, mute);
+        }
+    }
+
+    /**
+     * Mark a player who was logging in as online, called when they join
+     *
+     * @param playerUUID The player's UUID
+     */
+    public void completeLogin(UUID playerUUID) {
+        pendingLogins.remove(playerUUID);
+    }
+
+    /**
+     * Load the active mutes of every online player asynchronously, used when the plugin
+     * is enabled while players are already connected
+     */
+    public void loadOnlinePlayers() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            UUID playerUUID = player.getUniqueId();
+            plugin.getDatabaseManager().getExecutor().execute(() -> loadMute(playerUUID));
+        }
+    }
+
+    /**
+     * Forget the mute of a player, called when they leave the server or their login is denied
+     *
+     * @param playerUUID The player's UUID
+     */
+    public void unloadMute(UUID playerUUID) {
+        pendingLogins.remove(playerUUID);
+        activeMutes.remove(playerUUID);
+    }
+
+    /**
+     * Cache a newly issued mute if the muted player is online or logging in.
+     * Whether the player is online is checked on the main thread, where joins and quits happen.
+     *
+     * @param mute The mute punishment
+     */
+    public void cacheMute(Punishment mute) {
+        Runnable cache = () -> {
+            UUID playerUUID = mute.getPlayerUUID();
+            if (pendingLogins.contains(playerUUID) || Bukkit.getPlayer(playerUUID) != null) {
+                activeMutes.put(playerUUID, mute);
+            }
+        };
+
+        if (Bukkit.isPrimaryThread()) {
+            cache.run();
+        } else if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, cache);
+        }
+    }
+
+    /**
+     * Remove the cached mute of a player after they have been unmuted
+     *
+     * @param playerUUID The player's UUID
+     */
+    public void removeMute(UUID playerUUID) {
+        activeMutes.remove(playerUUID);
+    }
+
+    /**
+     * Cache new mutes, whoever issued them
+     *
+     * @param punishment The saved punishment
+     */
+    @Override
+    public void onPunishmentSaved(Punishment punishment) {
+        if (punishment.isActive()
+                && (punishment.getType() == PunishmentType.MUTE || punishment.getType() == PunishmentType.TEMP_MUTE)) {
+            cacheMute(punishment);
+        }
+    }
+
+    /**
+     * Reload the mute of an online player after their punishments changed, for example when a mute ran out
+     *
+     * @param playerUUID The player's UUID
+     */
+    @Override
+    public void onPunishmentsChanged(UUID playerUUID) {
+        if (activeMutes.containsKey(playerUUID) || pendingLogins.contains(playerUUID)) {
+            plugin.getDatabaseManager().getExecutor().execute(() -> loadMute(playerUUID));
+        }
+    }
+
+    /**
+     * Get the cached active mute of an online player.
+     * Expired mutes are dropped from the cache, the expiry service deactivates them in the database.
+     *
+     * @param playerUUID The player's UUID
+     * @return The active mute, or null if the player is not muted
+     */
+    public Punishment getActiveMute(UUID playerUUID) {
+        Punishment mute = activeMutes.get(playerUUID);
+        if (mute == null) {
+            return null;
+        }
+
+        if (mute.hasExpired()) {
+            activeMutes.remove(playerUUID, mute);
+            return null;
+        }
+
+        return mute;
+    }
+}
@@ -0,0 +1,54 @@
+package com.ultimateban.models;
+
+/**
+ * Represents a position in a player's punishment history, which is ordered newest first by start time and ID
+ */
+public class HistoryCursor {
+
+    /**
+     * The position before the newest punishment
+     */
+    public static final HistoryCursor START = new HistoryCursor(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final long startTime;
+    private final int id;
+
+    /**
+     * Constructor
+     *
+     * @param startTime The start time of the last punishment before the position
+     * @param id        The ID of the last punishment before the position
+     */
+    public HistoryCursor(long startTime, int id) {
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    /**
+     * Get the position right after a punishment
+     *
+     * @param punishment The punishment
+     * @return The cursor
+     */
+    public static HistoryCursor after(Punishment punishment) {
+        return new HistoryCursor(punishment.getStartTime(), punishment.getId());
+    }
+
+    /**
+     * Get the start time of the last punishment before the position
+     *
+     * @return The start time
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Get the ID of the last punishment before the position
+     *
+     * @return The ID
+     */
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,59 @@
+package com.ultimateban.models;
+
+/**
+ * Represents the bans that apply to a player logging in
+ */
+public class LoginVerdict {
+    private final Punishment playerBan;
+    private final IpBan ipBan;
+    private final Punishment linkedBan;
+
+    /**
+     * Constructor
+     *
+     * @param playerBan The active ban of the player, or null
+     * @param ipBan     The active IP or subnet ban matching the login address, or null
+     * @param linkedBan The active ban of another account seen on the login address, or null
+     */
+    public LoginVerdict(Punishment playerBan, IpBan ipBan, Punishment linkedBan) {
+        this.playerBan = playerBan;
+        this.ipBan = ipBan;
+        this.linkedBan = linkedBan;
+    }
+
+    /**
+     * Get the active ban of the player
+     *
+     * @return The player's ban, or null if the player is not banned
+     */
+    public Punishment getPlayerBan() {
+        return playerBan;
+    }
+
+    /**
+     * Get the active IP or subnet ban matching the login address
+     *
+     * @return The IP ban, or null if the address is not banned
+     */
+    public IpBan getIpBan() {
+        return ipBan;
+    }
+
+    /**
+     * Get the active ban of another account that has used the login address
+     *
+     * @return The linked account's ban, or null if there is none
+     */
+    public Punishment getLinkedBan() {
+        return linkedBan;
+    }
+
+    /**
+     * Check if no ban applies to the login
+     *
+     * @return true if the player may join
+     */
+    public boolean isAllowed() {
+        return playerBan == null && ipBan == null && linkedBan == null;
+    }
+}
@@ -0,0 +1,38 @@
+package com.ultimateban.models;
+
+/**
+ * Represents the number of offenses a player committed in one escalation category
+ */
+public class OffenseCount {
+    private final int count;
+    private final long firstOffense;
+
+    /**
+     * Constructor
+     *
+     * @param count        The number of offenses
+     * @param firstOffense When the earliest counted offense started
+     */
+    public OffenseCount(int count, long firstOffense) {
+        this.count = count;
+        this.firstOffense = firstOffense;
+    }
+
+    /**
+     * Get the number of offenses
+     *
+     * @return The count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get when the earliest counted offense started
+     *
+     * @return The start time
+     */
+    public long getFirstOffense() {
+        return firstOffense;
+    }
+}
@@ -0,0 +1,64 @@
+package com.ultimateban.models;
+
+import java.util.UUID;
+
+/**
+ * Represents a player's use of an IP address
+ */
+public class PlayerIp {
+    private final UUID playerUUID;
+    private final String playerName;
+    private final String ipAddress;
+    private final long lastSeen;
+
+    /**
+     * Constructor
+     *
+     * @param playerUUID The player's UUID
+     * @param playerName The player's name
+     * @param ipAddress  The IP address
+     * @param lastSeen   When the player was last seen on the address
+     */
+    public PlayerIp(UUID playerUUID, String playerName, String ipAddress, long lastSeen) {
+        this.playerUUID = playerUUID;
+        this.playerName = playerName;
+        this.ipAddress = ipAddress;
+        this.lastSeen = lastSeen;
+    }
+
+    /**
+     * Get the player's UUID
+     *
+     * @return The UUID
+     */
+    public UUID getPlayerUUID() {
+        return playerUUID;
+    }
+
+    /**
+     * Get the player's name
+     *
+     * @return The name
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * Get the IP address
+     *
+     * @return The IP address
+     */
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    /**
+     * Get when the player was last seen on the address
+     *
+     * @return The time in milliseconds
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+}
@@ -0,0 +1,97 @@
+package com.ultimateban.models;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Represents the punishment summary of a player
+ */
+public class PlayerStats {
+    private final Map<PunishmentType, Integer> counts;
+    private final long lastPunishment;
+    private final boolean activeBan;
+    private final boolean activeMute;
+
+    /**
+     * Constructor
+     *
+     * @param counts         The number of punishments by type
+     * @param lastPunishment When the latest punishment started, or 0 if there is none
+     * @param activeBan      Whether the player has an active ban
+     * @param activeMute     Whether the player has an active mute
+     */
+    public PlayerStats(Map<PunishmentType, Integer> counts, long lastPunishment, boolean activeBan, boolean activeMute) {
+        this.counts = counts.isEmpty() ? new EnumMap<>(PunishmentType.class) : new EnumMap<>(counts);
+        this.lastPunishment = lastPunishment;
+        this.activeBan = activeBan;
+        this.activeMute = activeMute;
+    }
+
+    /**
+     * Get the number of punishments of a type
+     *
+     * @param type The punishment type
+     * @return The count
+     */
+    public int getCount(PunishmentType type) {
+        return counts.getOrDefault(type, 0);
+    }
+
+    /**
+     * Get the number of punishments of every type
+     *
+     * @return The count
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of bans, permanent and temporary
+     *
+     * @return The count
+     */
+    public int getBanCount() {
+        return getCount(PunishmentType.BAN) + getCount(PunishmentType.TEMP_BAN);
+    }
+
+    /**
+     * Get the number of mutes, permanent and temporary
+     *
+     * @return The count
+     */
+    public int getMuteCount() {
+        return getCount(PunishmentType.MUTE) + getCount(PunishmentType.TEMP_MUTE);
+    }
+
+    /**
+     * Get when the latest punishment started
+     *
+     * @return The start time, or 0 if the player was never punished
+     */
+    public long getLastPunishment() {
+        return lastPunishment;
+    }
+
+    /**
+     * Check whether the player has an active ban. A temporary ban that ran out moments ago may still count.
+     *
+     * @return true if a ban is active
+     */
+    public boolean hasActiveBan() {
+        return activeBan;
+    }
+
+    /**
+     * Check whether the player has an active mute. A temporary mute that ran out moments ago may still count.
+     *
+     * @return true if a mute is active
+     */
+    public boolean hasActiveMute() {
+        return activeMute;
+    }
+}
@@ -205,6 +205,16 @@ public class Punishment {
         metadata.put(key, value);
     }
 
+    /**
+     * Get the offense category this punishment counts towards for escalation
+     *
+     * @return The category, or null if the punishment has none
+     */
+    public String getCategory() {
+        String category = getMetadata("category");
+        return category != null ? category : getMetadata("escalation_category");
+    }
+
     /**
      * Get all metadata
      *
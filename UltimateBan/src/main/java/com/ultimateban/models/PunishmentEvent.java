@@ -0,0 +1,122 @@
+package com.ultimateban.models;
+
+import java.util.UUID;
+
+/**
+ * Represents one entry of the punishment change log, written in the same transaction as the change it describes
+ */
+public class PunishmentEvent {
+
+    /**
+     * What kind of row was changed
+     */
+    public enum Entity {
+        PUNISHMENT,
+        IP_BAN,
+        APPEAL,
+        // A player was seen on one or more addresses, the entity ID is not used
+        PLAYER_IP
+    }
+
+    /**
+     * How the row was changed
+     */
+    public enum Action {
+        CREATED,
+        UPDATED,
+        DEACTIVATED
+    }
+
+    private final long seq;
+    private final Entity entity;
+    private final Action action;
+    private final int entityId;
+    private final UUID playerUUID;
+    private final String serverId;
+    private final long createdAt;
+
+    /**
+     * Constructor
+     *
+     * @param seq        The position of the event in the log
+     * @param entity     What kind of row was changed
+     * @param action     How the row was changed
+     * @param entityId   The ID of the changed row, 0 for player addresses
+     * @param playerUUID The player the row belongs to, or null for IP bans
+     * @param serverId   The server that made the change
+     * @param createdAt  When the change was made
+     */
+    public PunishmentEvent(long seq, Entity entity, Action action, int entityId, UUID playerUUID,
+                           String serverId, long createdAt) {
+        this.seq = seq;
+        this.entity = entity;
+        this.action = action;
+        this.entityId = entityId;
+        this.playerUUID = playerUUID;
+        this.serverId = serverId;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Get the position of the event in the log
+     *
+     * @return The sequence number
+     */
+    public long getSeq() {
+        return seq;
+    }
+
+    /**
+     * Get what kind of row was changed
+     *
+     * @return The entity
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * Get how the row was changed
+     *
+     * @return The action
+     */
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Get the ID of the changed punishment, IP ban or appeal
+     *
+     * @return The ID
+     */
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Get the player the changed row belongs to
+     *
+     * @return The player's UUID, or null for IP bans
+     */
+    public UUID getPlayerUUID() {
+        return playerUUID;
+    }
+
+    /**
+     * Get the server that made the change
+     *
+     * @return The server ID
+     */
+    public String getServerId() {
+        return serverId;
+    }
+
+    /**
+     * Get when the change was made
+     *
+     * @return The time in milliseconds
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
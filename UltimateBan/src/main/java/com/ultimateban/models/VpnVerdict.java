@@ -0,0 +1,72 @@
+package com.ultimateban.models;
+
+/**
+ * Represents the result of looking up whether an IP address belongs to a VPN, proxy or TOR exit
+ */
+public class VpnVerdict {
+    private final String ipAddress;
+    private final boolean vpn;
+    private final long checkedAt;
+    private final long expiresAt;
+
+    /**
+     * Constructor
+     *
+     * @param ipAddress The IP address
+     * @param vpn       Whether the address is a VPN, proxy or TOR exit
+     * @param checkedAt When the address was looked up
+     * @param expiresAt When the result should be looked up again
+     */
+    public VpnVerdict(String ipAddress, boolean vpn, long checkedAt, long expiresAt) {
+        this.ipAddress = ipAddress;
+        this.vpn = vpn;
+        this.checkedAt = checkedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Get the IP address
+     *
+     * @return The IP address
+     */
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    /**
+     * Check whether the address is a VPN, proxy or TOR exit
+     *
+     * @return true if it is
+     */
+    public boolean isVpn() {
+        return vpn;
+    }
+
+    /**
+     * Get when the address was looked up
+     *
+     * @return The lookup time
+     */
+    public long getCheckedAt() {
+        return checkedAt;
+    }
+
+    /**
+     * Get when the result should be looked up again
+     *
+     * @return The expiry time
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Check whether the result should be looked up again
+     *
+     * @param now The current time
+     * @return true if expired
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
@@ -0,0 +1,365 @@
+package com.ultimateban.services;
+
+import com.ultimateban.models.PlayerIp;
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+import com.ultimateban.services.AccountLinkService.LinkedAccount;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The in-memory graph behind {@link AccountLinkService}: the addresses each account used, with accounts that
+ * shared an address joined in a disjoint set. Every method is safe to call from any thread.
+ */
+class AccountGraph {
+
+    // End times use the punishment encoding, -1 for permanent, and 0 for no punishment
+    private static final long PERMANENT = -1;
+    private static final long NONE = 0;
+
+    private final int maxAccountsPerIp;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Account> accounts = new HashMap<>();
+    private final Map<String, List<Account>> addresses = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param maxAccountsPerIp Addresses shared by more accounts than this do not link them
+     */
+    AccountGraph(int maxAccountsPerIp) {
+        this.maxAccountsPerIp = maxAccountsPerIp;
+    }
+
+    /**
+     * Record a player's use of an address
+     *
+     * @param playerIp The address use
+     * @param link     Whether to link the player to the other accounts on the address now,
+     *                 false while loading so {@link #linkAll()} sees the final counts
+     */
+    void recordIp(PlayerIp playerIp, boolean link) {
+        lock.writeLock().lock();
+        try {
+            Account account = getOrCreate(playerIp.getPlayerUUID(), playerIp.getPlayerName());
+            Long previous = account.ips.get(playerIp.getIpAddress());
+            if (previous != null) {
+                account.ips.put(playerIp.getIpAddress(), Math.max(previous, playerIp.getLastSeen()));
+                if (playerIp.getLastSeen() >= previous) {
+                    account.name = playerIp.getPlayerName();
+                }
+                return;
+            }
+
+            account.ips.put(playerIp.getIpAddress(), playerIp.getLastSeen());
+            account.name = playerIp.getPlayerName();
+            List<Account> sharing = addresses.computeIfAbsent(playerIp.getIpAddress(), ip -> new ArrayList<>(2));
+            sharing.add(account);
+
+            // Links made before an address reached the limit stay until the next restart
+            if (link && sharing.size() <= maxAccountsPerIp) {
+                union(sharing.get(0), account);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Link the accounts on every address, unless too many accounts share it
+     */
+    void linkAll() {
+        lock.writeLock().lock();
+        try {
+            for (List<Account> sharing : addresses.values()) {
+                if (sharing.size() > maxAccountsPerIp) {
+                    continue;
+                }
+                for (int i = 1; i < sharing.size(); i++) {
+                    union(sharing.get(0), sharing.get(i));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add an active ban or mute to a player's flags
+     *
+     * @param punishment The punishment, other types are ignored
+     */
+    void addPunishment(Punishment punishment) {
+        boolean ban = isBan(punishment.getType());
+        if (!ban && !isMute(punishment.getType())) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Account account = getOrCreate(punishment.getPlayerUUID(), punishment.getPlayerName());
+            if (ban) {
+                account.banEnd = laterEnd(account.banEnd, punishment.getEndTime());
+            } else {
+                account.muteEnd = laterEnd(account.muteEnd, punishment.getEndTime());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace a player's ban and mute flags
+     *
+     * @param playerUUID The player's UUID
+     * @param active     Every active ban and mute of the player
+     */
+    void setPunishments(UUID playerUUID, List<Punishment> active) {
+        lock.writeLock().lock();
+        try {
+            Account account = accounts.get(playerUUID);
+            if (account == null) {
+                if (active.isEmpty()) {
+                    return;
+                }
+                account = getOrCreate(playerUUID, active.get(0).getPlayerName());
+            }
+            account.banEnd = NONE;
+            account.muteEnd = NONE;
+            for (Punishment punishment : active) {
+                if (isBan(punishment.getType())) {
+                    account.banEnd = laterEnd(account.banEnd, punishment.getEndTime());
+                } else if (isMute(punishment.getType())) {
+                    account.muteEnd = laterEnd(account.muteEnd, punishment.getEndTime());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get every account linked to a player through shared addresses, directly or through other accounts
+     *
+     * @param playerUUID The player's UUID
+     * @param now        The current time, for the ban and mute flags
+     * @return The linked accounts in no particular order, or null if no address is known for the player
+     */
+    List<LinkedAccount> getLinkedAccounts(UUID playerUUID, long now) {
+        lock.readLock().lock();
+        try {
+            Account account = accounts.get(playerUUID);
+            if (account == null || account.ips.isEmpty()) {
+                return null;
+            }
+
+            List<Account> members = find(account).members;
+            List<LinkedAccount> linked = new ArrayList<>(members.size() - 1);
+            for (Account member : members) {
+                if (member == account) {
+                    continue;
+                }
+
+                // The edge to the player, weighted by how many addresses they shared and when they last did
+                int sharedIps = 0;
+                long lastShared = 0;
+                for (Map.Entry<String, Long> entry : account.ips.entrySet()) {
+                    Long memberSeen = member.ips.get(entry.getKey());
+                    if (memberSeen != null) {
+                        sharedIps++;
+                        lastShared = Math.max(lastShared, Math.min(memberSeen, entry.getValue()));
+                    }
+                }
+                linked.add(toLinkedAccount(member, sharedIps, lastShared, now));
+            }
+            return linked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get every account that has used an address
+     *
+     * @param ipAddress The IP address
+     * @param now       The current time, for the ban and mute flags
+     * @return The accounts, each with its last use of the address
+     */
+    List<LinkedAccount> getAccountsOnIp(String ipAddress, long now) {
+        lock.readLock().lock();
+        try {
+            List<Account> sharing = addresses.get(ipAddress);
+            if (sharing == null) {
+                return new ArrayList<>();
+            }
+
+            List<LinkedAccount> result = new ArrayList<>(sharing.size());
+            for (Account account : sharing) {
+                result.add(toLinkedAccount(account, 1, account.ips.get(ipAddress), now));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the last name recorded for a player
+     *
+     * @param playerUUID The player's UUID
+     * @return The name, or null if the player is unknown
+     */
+    String getName(UUID playerUUID) {
+        lock.readLock().lock();
+        try {
+            Account account = accounts.get(playerUUID);
+            return account != null ? account.name : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check if a player has an active ban
+     *
+     * @param playerUUID The player's UUID
+     * @param now        The current time
+     * @return true if the player is banned
+     */
+    boolean isBanned(UUID playerUUID, long now) {
+        lock.readLock().lock();
+        try {
+            Account account = accounts.get(playerUUID);
+            return account != null && isActive(account.banEnd, now);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of accounts in the graph
+     *
+     * @return The number of accounts
+     */
+    int getAccountCount() {
+        lock.readLock().lock();
+        try {
+            return accounts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of addresses in the graph
+     *
+     * @return The number of addresses
+     */
+    int getAddressCount() {
+        lock.readLock().lock();
+        try {
+            return addresses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Account getOrCreate(UUID uuid, String name) {
+        return accounts.computeIfAbsent(uuid, key -> new Account(key, name));
+    }
+
+    /**
+     * Find the representative of an account's set, must hold at least the read lock
+     */
+    private static Account find(Account account) {
+        while (account.parent != account) {
+            account = account.parent;
+        }
+        return account;
+    }
+
+    /**
+     * Merge the sets of two accounts, must hold the write lock
+     */
+    private static void union(Account a, Account b) {
+        Account rootA = compress(a);
+        Account rootB = compress(b);
+        if (rootA == rootB) {
+            return;
+        }
+
+        // Attach the smaller set below the larger one, which keeps every path logarithmic
+        if (rootA.members.size() < rootB.members.size()) {
+            Account swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        rootB.parent = rootA;
+        rootA.members.addAll(rootB.members);
+        rootB.members = null;
+    }
+
+    /**
+     * Find the representative of an account's set and point the path at it, must hold the write lock
+     */
+    private static Account compress(Account account) {
+        Account root = find(account);
+        while (account.parent != root) {
+            Account next = account.parent;
+            account.parent = root;
+            account = next;
+        }
+        return root;
+    }
+
+    private static LinkedAccount toLinkedAccount(Account account, int sharedIps, long lastShared, long now) {
+        return new LinkedAccount(account.uuid, account.name, sharedIps, lastShared,
+                isActive(account.banEnd, now), isActive(account.muteEnd, now));
+    }
+
+    private static boolean isBan(PunishmentType type) {
+        return type == PunishmentType.BAN || type == PunishmentType.TEMP_BAN;
+    }
+
+    private static boolean isMute(PunishmentType type) {
+        return type == PunishmentType.MUTE || type == PunishmentType.TEMP_MUTE;
+    }
+
+    private static long laterEnd(long current, long end) {
+        if (current == PERMANENT || end == PERMANENT) {
+            return PERMANENT;
+        }
+        return Math.max(current, end);
+    }
+
+    private static boolean isActive(long end, long now) {
+        return end == PERMANENT || end > now;
+    }
+
+    /**
+     * A node of the account graph
+     */
+    private static class Account {
+        private final UUID uuid;
+        private String name;
+        // Addresses used by the account and when it was last seen on each
+        private final Map<String, Long> ips = new HashMap<>(4);
+        private Account parent = this;
+        // Only kept on the representative of a set
+        private List<Account> members = new ArrayList<>(1);
+        private long banEnd = NONE;
+        private long muteEnd = NONE;
+
+        Account(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+            members.add(this);
+        }
+    }
+}
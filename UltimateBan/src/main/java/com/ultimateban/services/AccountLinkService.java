@@ -0,0 +1,268 @@
+package com.ultimateban.services;
+
+import com.ultimateban.UltimateBan;
+import com.ultimateban.database.DatabaseListener;
+import com.ultimateban.database.DatabaseManager;
+import com.ultimateban.models.PlayerIp;
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps an in-memory {@link AccountGraph} of which accounts have shared an IP address.
+ * Accounts that shared an address are joined in a disjoint set, so every account linked to a player,
+ * directly or through other accounts, is found without touching the database. The graph is loaded once
+ * at startup and then follows the database through {@link DatabaseListener} callbacks, which include the
+ * addresses other servers record when their change log is followed. On a shared database without the
+ * change log those addresses would never arrive, so no graph is kept and links are read from the database.
+ */
+public class AccountLinkService implements DatabaseListener {
+
+    private static final Comparator<LinkedAccount> STRONGEST_LINK_FIRST =
+            Comparator.comparingInt(LinkedAccount::getSharedIps).reversed()
+                    .thenComparing(Comparator.comparingLong(LinkedAccount::getLastShared).reversed())
+                    .thenComparing(LinkedAccount::getName, String.CASE_INSENSITIVE_ORDER);
+
+    private final UltimateBan plugin;
+    private final boolean enabled;
+    private final AccountGraph graph;
+    private volatile boolean loaded;
+
+    /**
+     * Constructor
+     *
+     * @param plugin The UltimateBan plugin instance
+     */
+    public AccountLinkService(UltimateBan plugin) {
+        this.plugin = plugin;
+        // Addresses shared by more accounts than this (public wifi, carrier NAT) would merge unrelated players
+        this.graph = new AccountGraph(plugin.getConfig().getInt("alt-detection.max-accounts-per-ip", 25));
+        this.enabled = plugin.getDatabaseManager().seesAllChanges();
+        if (!enabled) {
+            plugin.getLogger().info("Account links are read from the database, enable database.change-log to keep them in memory");
+            return;
+        }
+
+        plugin.getDatabaseManager().addListener(this);
+        plugin.getDatabaseManager().getExecutor().execute(this::load);
+    }
+
+    /**
+     * Build the graph from every recorded address and active ban or mute
+     */
+    private void load() {
+        long start = System.currentTimeMillis();
+
+        // Record addresses first and link afterwards, so the shared address limit sees the final counts
+        if (!plugin.getDatabaseManager().forEachPlayerIp(playerIp -> graph.recordIp(playerIp, false))) {
+            return;
+        }
+        graph.linkAll();
+
+        for (Punishment punishment : plugin.getDatabaseManager().getAllActivePunishments(
+                PunishmentType.BAN, PunishmentType.TEMP_BAN, PunishmentType.MUTE, PunishmentType.TEMP_MUTE)) {
+            onPunishmentSaved(punishment);
+        }
+
+        loaded = true;
+        plugin.getLogger().info("Linked " + graph.getAccountCount() + " accounts over " + graph.getAddressCount()
+                + " IP addresses in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Check if the graph is kept in memory
+     *
+     * @return false if this server does not see every change to the database, lookups then go to the database
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Check if the graph has finished loading
+     *
+     * @return true if lookups reflect the whole database, always false if the graph is not kept
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public void onPlayerIpSaved(PlayerIp playerIp) {
+        graph.recordIp(playerIp, true);
+    }
+
+    @Override
+    public void onPunishmentSaved(Punishment punishment) {
+        if (punishment.isActive() && (punishment.isPermanent() || !punishment.hasExpired())) {
+            graph.addPunishment(punishment);
+        }
+    }
+
+    @Override
+    public void onPunishmentsChanged(UUID playerUUID) {
+        // A deactivation does not say what is left, so ask the database
+        plugin.getDatabaseManager().getExecutor().execute(() -> {
+            List<Punishment> active = plugin.getDatabaseManager().getActivePunishments(Collections.singleton(playerUUID),
+                    PunishmentType.BAN, PunishmentType.TEMP_BAN, PunishmentType.MUTE, PunishmentType.TEMP_MUTE)
+                    .getOrDefault(playerUUID, Collections.emptyList());
+            graph.setPunishments(playerUUID, active);
+        });
+    }
+
+    /**
+     * Get every account linked to a player through shared IP addresses, directly or through other accounts
+     *
+     * @param playerUUID The player's UUID
+     * @return The linked accounts, those sharing the most addresses with the player first,
+     *         or null if no address is known for the player
+     */
+    public List<LinkedAccount> getLinkedAccounts(UUID playerUUID) {
+        if (!enabled) {
+            return getLinkedAccountsFromDatabase(playerUUID);
+        }
+        List<LinkedAccount> linked = graph.getLinkedAccounts(playerUUID, System.currentTimeMillis());
+        if (linked != null) {
+            linked.sort(STRONGEST_LINK_FIRST);
+        }
+        return linked;
+    }
+
+    /**
+     * Get the accounts that shared an address with a player straight from the database.
+     * Only direct links are found, as they were before the graph.
+     *
+     * @param playerUUID The player's UUID
+     * @return The linked accounts in the same order as {@link #getLinkedAccounts(UUID)}, or null if no address is known
+     */
+    private List<LinkedAccount> getLinkedAccountsFromDatabase(UUID playerUUID) {
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        if (databaseManager.getPlayerIps(playerUUID).isEmpty()) {
+            return null;
+        }
+
+        Map<UUID, Integer> sharedIps = new LinkedHashMap<>();
+        Map<UUID, Long> lastShared = new HashMap<>();
+        Map<UUID, String> names = new HashMap<>();
+        for (PlayerIp playerIp : databaseManager.getSharedPlayerIps(playerUUID)) {
+            UUID uuid = playerIp.getPlayerUUID();
+            sharedIps.merge(uuid, 1, Integer::sum);
+            lastShared.merge(uuid, playerIp.getLastSeen(), Math::max);
+            names.putIfAbsent(uuid, playerIp.getPlayerName());
+        }
+        if (sharedIps.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        names.putAll(databaseManager.getPlayerNames(sharedIps.keySet()));
+        Set<UUID> banned = databaseManager.getActiveBans(sharedIps.keySet()).keySet();
+        Set<UUID> muted = databaseManager.getActiveMutes(sharedIps.keySet()).keySet();
+
+        List<LinkedAccount> linked = new ArrayList<>(sharedIps.size());
+        for (Map.Entry<UUID, Integer> entry : sharedIps.entrySet()) {
+            UUID uuid = entry.getKey();
+            linked.add(new LinkedAccount(uuid, names.get(uuid), entry.getValue(), lastShared.get(uuid),
+                    banned.contains(uuid), muted.contains(uuid)));
+        }
+        linked.sort(STRONGEST_LINK_FIRST);
+        return linked;
+    }
+
+    /**
+     * Get every account that has used an IP address
+     *
+     * @param ipAddress The IP address
+     * @return The accounts, each with its last use of the address
+     */
+    public List<LinkedAccount> getAccountsOnIp(String ipAddress) {
+        return graph.getAccountsOnIp(ipAddress, System.currentTimeMillis());
+    }
+
+    /**
+     * Get the last name recorded for a player
+     *
+     * @param playerUUID The player's UUID
+     * @return The name, or null if the player is unknown
+     */
+    public String getName(UUID playerUUID) {
+        if (!enabled) {
+            return plugin.getDatabaseManager().getPlayerName(playerUUID);
+        }
+
+        return graph.getName(playerUUID);
+    }
+
+    /**
+     * Check if a player has an active ban
+     *
+     * @param playerUUID The player's UUID
+     * @return true if the player is banned
+     */
+    public boolean isBanned(UUID playerUUID) {
+        return graph.isBanned(playerUUID, System.currentTimeMillis());
+    }
+
+    /**
+     * An account linked to a player
+     */
+    public static class LinkedAccount {
+        private final UUID uuid;
+        private final String name;
+        private final int sharedIps;
+        private final long lastShared;
+        private final boolean banned;
+        private final boolean muted;
+
+        LinkedAccount(UUID uuid, String name, int sharedIps, long lastShared, boolean banned, boolean muted) {
+            this.uuid = uuid;
+            this.name = name;
+            this.sharedIps = sharedIps;
+            this.lastShared = lastShared;
+            this.banned = banned;
+            this.muted = muted;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the number of addresses the account shared with the player
+         *
+         * @return The number of shared addresses, 0 if the account is only linked through other accounts
+         */
+        public int getSharedIps() {
+            return sharedIps;
+        }
+
+        /**
+         * Get when both accounts were last seen on a shared address
+         *
+         * @return The time in milliseconds, 0 if the account is only linked through other accounts
+         */
+        public long getLastShared() {
+            return lastShared;
+        }
+
+        public boolean isBanned() {
+            return banned;
+        }
+
+        public boolean isMuted() {
+            return muted;
+        }
+    }
+}
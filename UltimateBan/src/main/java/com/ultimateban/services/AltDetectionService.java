@@ -3,6 +3,8 @@ package com.ultimateban.services;
 import com.ultimateban.UltimateBan;
 import com.ultimateban.models.Punishment;
 import com.ultimateban.models.PunishmentType;
+import com.ultimateban.util.BKTree;
+import com.ultimateban.util.Levenshtein;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
@@ -27,6 +29,9 @@ public class AltDetectionService {
     private final boolean useNameSimilarity;
     private final boolean useJoinPattern;
     
+    // Every name seen on the server, searched by edit distance instead of scanning all names on each join
+    private final BKTree<KnownName> nameIndex = new BKTree<>(Levenshtein::distance);
+    
     public AltDetectionService(UltimateBan plugin) {
         this.plugin = plugin;
         this.enabled = plugin.getConfig().getBoolean("alt-detection.enabled", false);
@@ -39,6 +44,34 @@ public class AltDetectionService {
         this.useUuidPattern = plugin.getConfig().getBoolean("alt-detection.detection-methods.uuid-pattern", true);
         this.useNameSimilarity = plugin.getConfig().getBoolean("alt-detection.detection-methods.name-similarity", true);
         this.useJoinPattern = plugin.getConfig().getBoolean("alt-detection.detection-methods.join-pattern", true);
+        
+        if (enabled && useNameSimilarity) {
+            plugin.getDatabaseManager().getExecutor().execute(this::loadNameIndex);
+        }
+    }
+    
+    /**
+     * Build the name similarity index from every name in the database
+     */
+    private void loadNameIndex() {
+        long start = System.currentTimeMillis();
+        Map<String, UUID> names = plugin.getDatabaseManager().getKnownPlayerNames();
+        for (Map.Entry<String, UUID> entry : names.entrySet()) {
+            recordName(entry.getValue(), entry.getKey());
+        }
+        plugin.getLogger().info("Indexed " + nameIndex.size() + " player names for alt detection in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+    
+    /**
+     * Add a player's name to the name similarity index, called when a player logs in
+     * @param playerUUID The player's UUID
+     * @param playerName The player's name
+     */
+    public void recordName(UUID playerUUID, String playerName) {
+        if (enabled && useNameSimilarity) {
+            nameIndex.put(playerName.toLowerCase(), new KnownName(playerUUID, playerName));
+        }
     }
     
     /**
@@ -57,22 +90,27 @@ public class AltDetectionService {
             return CompletableFuture.completedFuture(Collections.emptyList());
         }
         
-        return CompletableFuture.supplyAsync(() -> {
+        return plugin.getDatabaseManager().getExecutor().supply(() -> {
             List<PotentialAlt> potentialAlts = new ArrayList<>();
             
             // Method 1: IP Address matching
             if (useIpMatch) {
                 try {
-                    // Get players with the same IP
-                    List<UUID> playersWithSameIp = plugin.getDatabaseManager().getPlayersByIp(ip);
-                    for (UUID uuid : playersWithSameIp) {
-                        if (!uuid.equals(player.getUniqueId())) {
-                            String altName = plugin.getDatabaseManager().getPlayerName(uuid);
-                            if (altName != null) {
-                                PotentialAlt alt = new PotentialAlt(uuid, altName, "IP Match", 90);
-                                potentialAlts.add(alt);
+                    // Get players with the same IP, from the account graph once it has loaded
+                    AccountLinkService linkService = plugin.getAccountLinkService();
+                    if (linkService.isLoaded()) {
+                        for (AccountLinkService.LinkedAccount account : linkService.getAccountsOnIp(ip)) {
+                            if (!account.getUuid().equals(player.getUniqueId())) {
+                                potentialAlts.add(new PotentialAlt(account.getUuid(), account.getName(), "IP Match", 90));
                             }
                         }
+                    } else {
+                        List<UUID> playersWithSameIp = plugin.getDatabaseManager().getPlayersByIp(ip);
+                        playersWithSameIp.remove(player.getUniqueId());
+                        Map<UUID, String> names = plugin.getDatabaseManager().getPlayerNames(playersWithSameIp);
+                        for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                            potentialAlts.add(new PotentialAlt(entry.getKey(), entry.getValue(), "IP Match", 90));
+                        }
                     }
                 } catch (Exception e) {
                     plugin.getLogger().severe("Error checking for IP-based alts: " + e.getMessage());
@@ -87,19 +125,21 @@ public class AltDetectionService {
                 try {
                     // Get recent players and check if their UUIDs are close to the current player's
                     List<UUID> recentPlayers = plugin.getDatabaseManager().getRecentPlayers(30);
+                    List<UUID> similarUuids = new ArrayList<>();
                     for (UUID uuid : recentPlayers) {
                         if (!uuid.equals(player.getUniqueId())) {
                             // Check if UUIDs have similar characteristics
                             // This is a very simplistic check, a real implementation would be more sophisticated
                             if (uuidSimilarity(player.getUniqueId(), uuid) > 0.7) {
-                                String altName = plugin.getDatabaseManager().getPlayerName(uuid);
-                                if (altName != null) {
-                                    PotentialAlt alt = new PotentialAlt(uuid, altName, "UUID Pattern", 60);
-                                    potentialAlts.add(alt);
-                                }
+                                similarUuids.add(uuid);
                             }
                         }
                     }
+                    
+                    Map<UUID, String> names = plugin.getDatabaseManager().getPlayerNames(similarUuids);
+                    for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                        potentialAlts.add(new PotentialAlt(entry.getKey(), entry.getValue(), "UUID Pattern", 60));
+                    }
                 } catch (Exception e) {
                     plugin.getLogger().severe("Error checking for UUID-based alts: " + e.getMessage());
                 }
@@ -108,19 +148,21 @@ public class AltDetectionService {
             // Method 3: Name similarity
             if (useNameSimilarity) {
                 try {
-                    // Get players with similar names
-                    List<String> playerNames = plugin.getDatabaseManager().getAllPlayerNames();
-                    for (String otherName : playerNames) {
-                        if (!otherName.equalsIgnoreCase(player.getName())) {
-                            double similarity = calculateNameSimilarity(player.getName(), otherName);
-                            if (similarity > 0.7) {
-                                UUID uuid = plugin.getDatabaseManager().getPlayerUUID(otherName);
-                                if (uuid != null) {
-                                    PotentialAlt alt = new PotentialAlt(uuid, otherName, "Name Similarity", 
-                                            (int) (similarity * 100));
-                                    potentialAlts.add(alt);
-                                }
-                            }
+                    // Similarity above 0.7 means distance < 0.3 * max(length), and since the other name is at most
+                    // distance characters longer, distance < 3 * length / 7
+                    String name = player.getName().toLowerCase();
+                    int radius = (3 * name.length() - 1) / 7;
+                    for (BKTree.Match<KnownName> match : nameIndex.search(name, radius)) {
+                        KnownName known = match.getValue();
+                        if (match.getDistance() == 0 || known.uuid.equals(player.getUniqueId())) {
+                            continue;
+                        }
+                        
+                        double similarity = 1.0 - (match.getDistance() / (double) Math.max(name.length(), match.getKey().length()));
+                        if (similarity > 0.7) {
+                            PotentialAlt alt = new PotentialAlt(known.uuid, known.name, "Name Similarity", 
+                                    (int) (similarity * 100));
+                            potentialAlts.add(alt);
                         }
                     }
                 } catch (Exception e) {
@@ -134,19 +176,20 @@ public class AltDetectionService {
                     // Get players who joined within a short time after another player left
                     // This is a simplistic implementation, a real one would check actual login/logout times
                     List<Map<String, Object>> suspiciousPatterns = plugin.getDatabaseManager().getJoinPatterns();
+                    List<UUID> patternUuids = new ArrayList<>();
                     for (Map<String, Object> pattern : suspiciousPatterns) {
                         UUID uuid1 = (UUID) pattern.get("player1");
                         UUID uuid2 = (UUID) pattern.get("player2");
                         
                         if (uuid1.equals(player.getUniqueId()) || uuid2.equals(player.getUniqueId())) {
-                            UUID altUuid = uuid1.equals(player.getUniqueId()) ? uuid2 : uuid1;
-                            String altName = plugin.getDatabaseManager().getPlayerName(altUuid);
-                            if (altName != null) {
-                                PotentialAlt alt = new PotentialAlt(altUuid, altName, "Join Pattern", 70);
-                                potentialAlts.add(alt);
-                            }
+                            patternUuids.add(uuid1.equals(player.getUniqueId()) ? uuid2 : uuid1);
                         }
                     }
+                    
+                    Map<UUID, String> names = plugin.getDatabaseManager().getPlayerNames(patternUuids);
+                    for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                        potentialAlts.add(new PotentialAlt(entry.getKey(), entry.getValue(), "Join Pattern", 70));
+                    }
                 } catch (Exception e) {
                     plugin.getLogger().severe("Error checking for join pattern-based alts: " + e.getMessage());
                 }
@@ -180,28 +223,38 @@ public class AltDetectionService {
                 return false;
             }
             
+            // Only block if the confidence is high enough (IP match or 90%+ confidence)
+            List<PotentialAlt> candidates = alts.stream()
+                    .filter(alt -> alt.getDetectionMethod().equals("IP Match") || alt.getConfidence() >= 90)
+                    .collect(Collectors.toList());
+            
             // Check if any of the alts have active bans
-            for (PotentialAlt alt : alts) {
-                try {
-                    List<Punishment> punishments = plugin.getDatabaseManager().getPlayerPunishments(alt.getUuid());
-                    for (Punishment punishment : punishments) {
-                        if (punishment.isActive() && 
-                                (punishment.getType() == PunishmentType.BAN || 
-                                 punishment.getType() == PunishmentType.TEMP_BAN)) {
-                            // Only block if the confidence is high enough (IP match or 90%+ confidence)
-                            if (alt.getDetectionMethod().equals("IP Match") || alt.getConfidence() >= 90) {
-                                plugin.getLogger().info("Blocking alt account " + player.getName() + 
-                                        " associated with banned player " + alt.getName());
-                                
-                                // Notify staff
-                                notifyStaffAboutAlt(player, alt, true);
-                                return true;
-                            }
-                        }
+            try {
+                AccountLinkService linkService = plugin.getAccountLinkService();
+                Set<UUID> banned;
+                if (linkService.isLoaded()) {
+                    banned = candidates.stream()
+                            .map(PotentialAlt::getUuid)
+                            .filter(linkService::isBanned)
+                            .collect(Collectors.toSet());
+                } else {
+                    banned = plugin.getDatabaseManager().getActiveBans(candidates.stream()
+                            .map(PotentialAlt::getUuid)
+                            .collect(Collectors.toList())).keySet();
+                }
+                
+                for (PotentialAlt alt : candidates) {
+                    if (banned.contains(alt.getUuid())) {
+                        plugin.getLogger().info("Blocking alt account " + player.getName() + 
+                                " associated with banned player " + alt.getName());
+                        
+                        // Notify staff
+                        notifyStaffAboutAlt(player, alt, true);
+                        return true;
                     }
-                } catch (Exception e) {
-                    plugin.getLogger().severe("Error checking punishments for alt " + alt.getName() + ": " + e.getMessage());
                 }
+            } catch (Exception e) {
+                plugin.getLogger().severe("Error checking punishments for alts of " + player.getName() + ": " + e.getMessage());
             }
             
             // Notify staff about potential alts even if not blocked
@@ -213,6 +266,25 @@ public class AltDetectionService {
         });
     }
     
+    /**
+     * Check if logins should be blocked when another account on the same IP is banned
+     * @return true if linked-account bans should block the login
+     */
+    public boolean shouldBlockLinkedBans() {
+        return enabled && blockAlts && useIpMatch;
+    }
+    
+    /**
+     * Notify staff that a login was blocked because another account on the same IP is banned
+     * @param playerName The name of the player who was blocked
+     * @param linkedBan The ban of the linked account
+     */
+    public void notifyLinkedBanBlocked(String playerName, Punishment linkedBan) {
+        plugin.getLogger().info("Blocking alt account " + playerName + 
+                " associated with banned player " + linkedBan.getPlayerName());
+        sendAltNotification(playerName, linkedBan.getPlayerName(), "IP Match", 90, true);
+    }
+    
     /**
      * Get the kick message for alt accounts
      * @return The configured kick message
@@ -229,15 +301,27 @@ public class AltDetectionService {
      * @param blocked Whether the player was blocked
      */
     private void notifyStaffAboutAlt(Player player, PotentialAlt alt, boolean blocked) {
+        sendAltNotification(player.getName(), alt.getName(), alt.getDetectionMethod(), alt.getConfidence(), blocked);
+    }
+    
+    /**
+     * Notify staff about a potential alt account
+     * @param playerName The name of the player who might be an alt
+     * @param altName The name of the other account
+     * @param detectionMethod How the accounts were linked
+     * @param confidence The confidence of the match
+     * @param blocked Whether the player was blocked
+     */
+    private void sendAltNotification(String playerName, String altName, String detectionMethod, int confidence, boolean blocked) {
         if (!notifyStaff) {
             return;
         }
         
         String message = ChatColor.RED + "⚠ " + 
-                ChatColor.YELLOW + player.getName() + 
+                ChatColor.YELLOW + playerName + 
                 ChatColor.GRAY + " might be an alt of " + 
-                ChatColor.YELLOW + alt.getName() + 
-                ChatColor.GRAY + " (" + alt.getDetectionMethod() + ", " + alt.getConfidence() + "% confidence)";
+                ChatColor.YELLOW + altName + 
+                ChatColor.GRAY + " (" + detectionMethod + ", " + confidence + "% confidence)";
         
         if (blocked) {
             message += ChatColor.RED + " - BLOCKED";
@@ -282,48 +366,16 @@ public class AltDetectionService {
     }
     
     /**
-     * Calculate the similarity between two player names
-     * @param name1 First name
-     * @param name2 Second name
-     * @return Similarity score between 0 and 1
+     * A name in the name similarity index
      */
-    private double calculateNameSimilarity(String name1, String name2) {
-        // Use normalized Levenshtein distance
-        int distance = levenshteinDistance(name1.toLowerCase(), name2.toLowerCase());
-        int maxLength = Math.max(name1.length(), name2.length());
-        
-        // Convert to similarity (0 distance = 1.0 similarity)
-        return 1.0 - (distance / (double) maxLength);
-    }
-    
-    /**
-     * Calculate the Levenshtein distance between two strings
-     * @param s1 First string
-     * @param s2 Second string
-     * @return The edit distance between the strings
-     */
-    private int levenshteinDistance(String s1, String s2) {
-        int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-        
-        for (int i = 0; i <= s1.length(); i++) {
-            dp[i][0] = i;
-        }
-        
-        for (int j = 0; j <= s2.length(); j++) {
-            dp[0][j] = j;
-        }
+    private static class KnownName {
+        private final UUID uuid;
+        private final String name;
         
-        for (int i = 1; i <= s1.length(); i++) {
-            for (int j = 1; j <= s2.length(); j++) {
-                int cost = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
-                dp[i][j] = Math.min(
-                        Math.min(dp[i - 1][j] + 1, dp[i][j - 1] + 1),
-                        dp[i - 1][j - 1] + cost
-                );
-            }
+        KnownName(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
         }
-        
-        return dp[s1.length()][s2.length()];
     }
     
     /**
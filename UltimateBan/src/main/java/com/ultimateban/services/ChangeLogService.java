@@ -0,0 +1,291 @@
+package com.ultimateban.services;
+
+import com.ultimateban.UltimateBan;
+import com.ultimateban.database.DatabaseManager;
+import com.ultimateban.models.IpBan;
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentEvent;
+import com.ultimateban.models.PunishmentType;
+import com.ultimateban.util.IPUtil;
+import com.ultimateban.util.MessageUtil;
+import com.ultimateban.util.TimeUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Follows the changes other servers sharing the database make, through the punishment_events change log.
+ * The log is polled for entries after the last one read, the in-memory state of the database manager and
+ * the listeners are brought up to date, and online players who were banned elsewhere are kicked.
+ * Sequence numbers are handed out when a row is inserted, not when it commits, so a number can show up
+ * after higher ones. A missing number holds the read position back until it appears or, if its
+ * transaction was rolled back, until it has been missing for the gap timeout.
+ */
+public class ChangeLogService {
+
+    private static final long PRUNE_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private final UltimateBan plugin;
+    private final int batchSize;
+    private final long gapTimeout;
+    private final long retention;
+    private final BukkitTask task;
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final AtomicLong applied = new AtomicLong();
+
+    // Every entry up to here has been read, or given up on
+    private volatile long position;
+    // Entries above the position that have been read already
+    private final Set<Long> readAhead = new HashSet<>();
+    // Missing sequence numbers and when they were first missed
+    private final Map<Long, Long> gaps = new HashMap<>();
+    private long lastPrune;
+
+    /**
+     * Constructor
+     *
+     * @param plugin The UltimateBan plugin instance
+     */
+    public ChangeLogService(UltimateBan plugin) {
+        this.plugin = plugin;
+        this.batchSize = plugin.getConfigManager().getInt("database.change-log.batch-size", 500);
+        this.gapTimeout = plugin.getConfigManager().getInt("database.change-log.gap-timeout", 5000);
+        this.retention = TimeUnit.HOURS.toMillis(plugin.getConfigManager().getInt("database.change-log.retention-hours", 24));
+        this.position = plugin.getDatabaseManager().getChangeLogStart();
+        this.lastPrune = System.currentTimeMillis();
+
+        if (!plugin.getDatabaseManager().isChangeLogEnabled()) {
+            this.task = null;
+            return;
+        }
+
+        long interval = Math.max(1L, plugin.getConfigManager().getInt("database.change-log.poll-interval", 500) / 50L);
+        this.task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::schedulePoll, interval, interval);
+    }
+
+    /**
+     * Stop polling the change log
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Check if changes from other servers are being followed
+     *
+     * @return true if the change log is polled
+     */
+    public boolean isRunning() {
+        return task != null;
+    }
+
+    /**
+     * Get the sequence number every change log entry up to has been read
+     *
+     * @return The read position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Get the number of changes from other servers applied since startup
+     *
+     * @return The number of change log entries
+     */
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    /**
+     * Queue a poll on the database executor, unless the last one is still running
+     */
+    private void schedulePoll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            plugin.getDatabaseManager().getExecutor().execute(() -> {
+                try {
+                    poll();
+                } finally {
+                    polling.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            polling.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Read the next batch of entries and apply the ones other servers wrote
+     */
+    private void poll() {
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        List<PunishmentEvent> remote = new ArrayList<>();
+        List<Long> read = new ArrayList<>();
+
+        try {
+            for (PunishmentEvent event : databaseManager.getEventsAfter(position, batchSize)) {
+                if (readAhead.contains(event.getSeq())) {
+                    continue;
+                }
+                read.add(event.getSeq());
+                if (!event.getServerId().equals(databaseManager.getServerId())) {
+                    remote.add(event);
+                }
+            }
+
+            if (!remote.isEmpty()) {
+                databaseManager.applyRemoteEvents(remote);
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            // Nothing is marked as read, so the same entries are tried again on the next poll
+            plugin.getLogger().log(Level.SEVERE, "Error reading changes from other servers: " + e.getMessage(), e);
+            return;
+        }
+
+        readAhead.addAll(read);
+        advance();
+        applied.addAndGet(remote.size());
+        if (!remote.isEmpty()) {
+            kickBanned(remote);
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastPrune >= PRUNE_INTERVAL) {
+            lastPrune = now;
+            databaseManager.deleteEventsBefore(now - retention);
+        }
+    }
+
+    /**
+     * Move the read position past every entry that has been read, stopping at a missing entry
+     * until it has been missing for longer than the gap timeout
+     */
+    private void advance() {
+        long now = System.currentTimeMillis();
+        long next = position;
+        while (!readAhead.isEmpty()) {
+            next++;
+            if (readAhead.remove(next)) {
+                gaps.remove(next);
+                continue;
+            }
+
+            Long missingSince = gaps.putIfAbsent(next, now);
+            if (missingSince == null || now - missingSince < gapTimeout) {
+                next--;
+                break;
+            }
+            gaps.remove(next);
+        }
+        position = next;
+    }
+
+    /**
+     * Kick online players who were banned on another server. Bans are read here,
+     * whether the players are online is checked on the main thread.
+     *
+     * @param events The entries written by other servers
+     */
+    private void kickBanned(List<PunishmentEvent> events) {
+        List<IpBan> ipBans = new ArrayList<>();
+        Set<UUID> players = new LinkedHashSet<>();
+
+        for (PunishmentEvent event : events) {
+            if (event.getEntity() == PunishmentEvent.Entity.PUNISHMENT && event.getAction() == PunishmentEvent.Action.CREATED
+                    && event.getPlayerUUID() != null) {
+                players.add(event.getPlayerUUID());
+            } else if (event.getEntity() == PunishmentEvent.Entity.IP_BAN && event.getAction() == PunishmentEvent.Action.CREATED) {
+                IpBan ipBan = plugin.getDatabaseManager().getIpBan(event.getEntityId());
+                if (ipBan != null && ipBan.isActive() && !ipBan.hasExpired()) {
+                    ipBans.add(ipBan);
+                }
+            }
+        }
+        // One query for every player, most events are for players on other servers
+        Map<UUID, Punishment> bans = plugin.getDatabaseManager().getActiveBans(players);
+        if (bans.isEmpty() && ipBans.isEmpty()) {
+            return;
+        }
+
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            for (Map.Entry<UUID, Punishment> entry : bans.entrySet()) {
+                Player player = Bukkit.getPlayer(entry.getKey());
+                if (player != null && player.isOnline()) {
+                    player.kickPlayer(MessageUtil.color(banMessage(entry.getValue())));
+                }
+            }
+
+            for (IpBan ipBan : ipBans) {
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    String playerIp = player.getAddress().getAddress().getHostAddress();
+                    boolean matches = ipBan.isSubnet() ? IPUtil.cidrContains(ipBan.getIpAddress(), playerIp)
+                            : playerIp.equals(ipBan.getIpAddress());
+                    if (matches && !player.hasPermission("ultimateban.bypass.ipban")) {
+                        player.kickPlayer(MessageUtil.color(ipBanMessage(ipBan)));
+                    }
+                }
+            }
+        });
+    }
+
+    private String banMessage(Punishment ban) {
+        boolean temporary = ban.getType() == PunishmentType.TEMP_BAN;
+        String message = plugin.getConfig().getString(
+            temporary ? "messages.tempban.player_message" : "messages.ban.player_message",
+            "&c&l⚠ &" + (temporary ? "6" : "4") + "&lYOU HAVE BEEN " + (temporary ? "TEMPORARILY " : "") +
+            "BANNED &c&l⚠\n\n" +
+            "&r&7Reason: &c%reason%\n" +
+            "&7Banned by: &c%staff%\n" +
+            (temporary ? "&7Duration: &c%duration%\n" : "") +
+            (temporary ? "&7Expires: &c%expires%\n" : "") +
+            "&7Date: &c%date%\n\n" +
+            "&7Appeal at: &b&nminecraft.example.com/appeal"
+        );
+
+        return message
+            .replace("%reason%", ban.getReason())
+            .replace("%staff%", ban.getPunisherName())
+            .replace("%expires%", ban.isPermanent() ? "Never" : TimeUtil.formatTimestamp(ban.getEndTime()))
+            .replace("%duration%", ban.isPermanent() ? "Permanent" : TimeUtil.formatDuration(ban.getEndTime() - ban.getStartTime()))
+            .replace("%date%", TimeUtil.formatTimestamp(ban.getStartTime()));
+    }
+
+    private String ipBanMessage(IpBan ipBan) {
+        String message = plugin.getConfig().getString(
+            "messages.ipban.player-message",
+            "&c&l⚠ &4&lYOUR IP IS BANNED &c&l⚠\n\n" +
+            "&r&7Reason: &c%reason%\n" +
+            "&7Banned by: &c%staff%\n" +
+            (ipBan.isPermanent() ? "" : "&7Expires: &c%expires%\n") +
+            "&7Date: &c%date%\n\n" +
+            "&7Appeal at: &b&nminecraft.example.com/appeal"
+        );
+
+        return message
+            .replace("%reason%", ipBan.getReason())
+            .replace("%staff%", ipBan.getPunisherName())
+            .replace("%expires%", ipBan.isPermanent() ? "Never" : TimeUtil.formatTimestamp(ipBan.getEndTime()))
+            .replace("%date%", TimeUtil.formatTimestamp(ipBan.getStartTime()));
+    }
+}
@@ -0,0 +1,251 @@
+package com.ultimateban.services;
+
+import com.ultimateban.UltimateBan;
+import com.ultimateban.database.DatabaseListener;
+import com.ultimateban.models.Appeal;
+import com.ultimateban.models.IpBan;
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+import com.ultimateban.util.TimeUtil;
+
+import java.io.File;
+import java.time.Instant;
+
+/**
+ * Posts punishments, IP bans and appeals to the Discord webhooks configured for their type.
+ * Embeds are built on the thread that saved the change and handed to a {@link WebhookDispatcher},
+ * which does all network work on its own thread. Only the server that made a change posts it.
+ */
+public class DiscordWebhookService implements DatabaseListener {
+
+    private static final int DEFAULT_COLOR = 0xFF0000;
+
+    private final UltimateBan plugin;
+    private final WebhookDispatcher dispatcher;
+
+    /**
+     * Constructor
+     *
+     * @param plugin The UltimateBan plugin instance
+     */
+    public DiscordWebhookService(UltimateBan plugin) {
+        this.plugin = plugin;
+        if (!plugin.getConfigManager().isDiscordEnabled()) {
+            this.dispatcher = null;
+            return;
+        }
+
+        this.dispatcher = new WebhookDispatcher(
+                plugin.getLogger(),
+                new File(plugin.getDataFolder(), "discord-spool.txt"),
+                plugin.getConfigManager().getInt("discord.delivery.batch-delay", 1000),
+                plugin.getConfigManager().getInt("discord.delivery.queue-size", 500),
+                plugin.getConfigManager().getInt("discord.delivery.spool-size-kib", 1024) * 1024L,
+                plugin.getConfigManager().getInt("discord.delivery.timeout", 5000));
+        plugin.getDatabaseManager().addListener(this);
+    }
+
+    /**
+     * Stop the dispatcher, embeds that were not sent yet are kept in the spool for the next start
+     */
+    public void shutdown() {
+        if (dispatcher != null) {
+            plugin.getDatabaseManager().removeListener(this);
+            dispatcher.close();
+        }
+    }
+
+    /**
+     * Get the dispatcher that sends the embeds
+     *
+     * @return The dispatcher, or null if Discord is disabled
+     */
+    public WebhookDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public boolean followsOtherServers() {
+        // The server that made a change posts it, so every change is posted once
+        return false;
+    }
+
+    @Override
+    public void onPunishmentSaved(Punishment punishment) {
+        if (!plugin.getConfigManager().isSendPunishmentsEnabled()) {
+            return;
+        }
+
+        PunishmentType type = punishment.getType();
+        Embed embed = new Embed(titleOf(type), colorOf(type.getName()))
+                .field("Player", punishment.getPlayerName(), true)
+                .field("Staff", punishment.getPunisherName(), true)
+                .field("Reason", punishment.getReason(), false);
+        if ((type == PunishmentType.TEMP_BAN || type == PunishmentType.TEMP_MUTE) && !punishment.isPermanent()) {
+            embed.field("Duration", TimeUtil.formatDuration(punishment.getEndTime() - punishment.getStartTime()), true)
+                    .field("Expires", TimeUtil.formatTimestamp(punishment.getEndTime()), true);
+        }
+        send(type.getName(), embed.footer("Punishment #" + punishment.getId()).timestamp(punishment.getStartTime()));
+    }
+
+    @Override
+    public void onIpBanSaved(IpBan ipBan) {
+        if (!plugin.getConfigManager().isSendPunishmentsEnabled()) {
+            return;
+        }
+
+        Embed embed = new Embed(ipBan.isSubnet() ? "Subnet Banned" : "IP Banned", colorOf("ipban"))
+                .field(ipBan.isSubnet() ? "Range" : "IP", ipBan.getIpAddress(), true)
+                .field("Staff", ipBan.getPunisherName(), true)
+                .field("Reason", ipBan.getReason(), false);
+        if (!ipBan.isPermanent()) {
+            embed.field("Expires", TimeUtil.formatTimestamp(ipBan.getEndTime()), true);
+        }
+        send("ipban", embed.footer("IP ban #" + ipBan.getId()).timestamp(ipBan.getStartTime()));
+    }
+
+    @Override
+    public void onAppealSaved(Appeal appeal) {
+        if (!plugin.getConfigManager().isSendAppealsEnabled()) {
+            return;
+        }
+
+        send("appeal", new Embed("Appeal Submitted", colorOf("appeal"))
+                .field("Player", appeal.getPlayerName(), true)
+                .field("Punishment", "#" + appeal.getPunishmentId(), true)
+                .field("Appeal", appeal.getReason(), false)
+                .footer("Appeal #" + appeal.getId())
+                .timestamp(appeal.getSubmissionTime()));
+    }
+
+    @Override
+    public void onAppealUpdated(Appeal appeal) {
+        if (!plugin.getConfigManager().isSendAppealsEnabled() || appeal.isPending()) {
+            return;
+        }
+
+        send("appeal", new Embed(appeal.isAccepted() ? "Appeal Accepted" : "Appeal Rejected", colorOf("appeal"))
+                .field("Player", appeal.getPlayerName(), true)
+                .field("Punishment", "#" + appeal.getPunishmentId(), true)
+                .field("Reviewed by", appeal.getResponderName(), true)
+                .field("Response", appeal.getResponse(), false)
+                .footer("Appeal #" + appeal.getId())
+                .timestamp(appeal.getResponseTime() > 0 ? appeal.getResponseTime() : System.currentTimeMillis()));
+    }
+
+    private void send(String webhook, Embed embed) {
+        String url = plugin.getConfigManager().getString("discord.webhooks." + webhook, "");
+        if (url.isEmpty()) {
+            return;
+        }
+        dispatcher.enqueue(url, embed.toJson());
+    }
+
+    private static String titleOf(PunishmentType type) {
+        switch (type) {
+            case BAN:
+                return "Player Banned";
+            case TEMP_BAN:
+                return "Player Temporarily Banned";
+            case MUTE:
+                return "Player Muted";
+            case TEMP_MUTE:
+                return "Player Temporarily Muted";
+            case KICK:
+                return "Player Kicked";
+            default:
+                return "Player Warned";
+        }
+    }
+
+    private int colorOf(String type) {
+        String color = plugin.getConfigManager().getDiscordEmbedColor(type);
+        try {
+            return Integer.parseInt(color.startsWith("#") ? color.substring(1) : color, 16);
+        } catch (NumberFormatException e) {
+            return DEFAULT_COLOR;
+        }
+    }
+
+    /**
+     * A Discord embed, written out as JSON
+     */
+    private static class Embed {
+        // Discord's limit for the value of a field
+        private static final int MAX_VALUE_LENGTH = 1024;
+
+        private final StringBuilder fields = new StringBuilder();
+        private final String title;
+        private final int color;
+        private String footer;
+        private long timestamp;
+
+        private Embed(String title, int color) {
+            this.title = title;
+            this.color = color;
+        }
+
+        private Embed field(String name, String value, boolean inline) {
+            if (fields.length() > 0) {
+                fields.append(',');
+            }
+            String text = value == null || value.isEmpty() ? "-" : value;
+            if (text.length() > MAX_VALUE_LENGTH) {
+                text = text.substring(0, MAX_VALUE_LENGTH - 3) + "...";
+            }
+            fields.append("{\"name\":").append(quote(name))
+                    .append(",\"value\":").append(quote(text))
+                    .append(",\"inline\":").append(inline).append('}');
+            return this;
+        }
+
+        private Embed footer(String footer) {
+            this.footer = footer;
+            return this;
+        }
+
+        private Embed timestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        private String toJson() {
+            return "{\"title\":" + quote(title)
+                    + ",\"color\":" + color
+                    + ",\"fields\":[" + fields + "]"
+                    + ",\"footer\":{\"text\":" + quote("UltimateBan | " + footer) + "}"
+                    + ",\"timestamp\":" + quote(Instant.ofEpochMilli(timestamp).toString()) + "}";
+        }
+
+        private static String quote(String text) {
+            StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        json.append("\\\"");
+                        break;
+                    case '\\':
+                        json.append("\\\\");
+                        break;
+                    case '\n':
+                        json.append("\\n");
+                        break;
+                    case '\r':
+                        json.append("\\r");
+                        break;
+                    case '\t':
+                        json.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            return json.append('"').toString();
+        }
+    }
+}
@@ -1,25 +1,39 @@
 package com.ultimateban.services;
 
 import com.ultimateban.UltimateBan;
+import com.ultimateban.database.DatabaseListener;
+import com.ultimateban.models.OffenseCount;
 import com.ultimateban.models.Punishment;
 import com.ultimateban.models.PunishmentType;
 import com.ultimateban.util.TimeUtil;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.bukkit.configuration.ConfigurationSection;
 
 /**
  * Service for handling punishment escalation
  */
-public class PunishmentEscalationService {
+public class PunishmentEscalationService implements DatabaseListener {
+    private static final int MAX_CACHED_PLAYERS = 1000;
+    // Bounds how long punishments saved by other servers on a shared database go unnoticed
+    private static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(10);
+
     private final UltimateBan plugin;
     private final boolean enabled;
     private final int resetDays;
     private final Map<String, Map<Integer, EscalationStep>> escalationSteps = new HashMap<>();
+    private final Map<UUID, CachedOffenses> offenseCache = Collections.synchronizedMap(
+            new LinkedHashMap<UUID, CachedOffenses>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, CachedOffenses> eldest) {
+                    return size() > MAX_CACHED_PLAYERS;
+                }
+            });
     
     /**
      * Constructor
@@ -30,6 +44,7 @@ public class PunishmentEscalationService {
         this.enabled = plugin.getConfig().getBoolean("punishment-escalation.enabled", true);
         this.resetDays = plugin.getConfig().getInt("punishment-escalation.reset-days", 30);
         loadEscalationSteps();
+        plugin.getDatabaseManager().addListener(this);
     }
     
     /**
@@ -124,26 +139,34 @@ public class PunishmentEscalationService {
      * @return The number of offenses
      */
     private int countOffenses(UUID playerUUID, String category) {
-        long resetTime = System.currentTimeMillis() - (resetDays * 24 * 60 * 60 * 1000L);
+        long now = System.currentTimeMillis();
+        long resetMillis = TimeUnit.DAYS.toMillis(resetDays);
         
-        try {
-            // Get all punishments for this player after the reset time
-            List<Punishment> punishments = plugin.getDatabaseManager().getPlayerPunishmentsAfter(playerUUID, resetTime);
-            
-            // Count punishments in this category
-            int count = 0;
-            for (Punishment punishment : punishments) {
-                // Check if the punishment has a category metadata
-                String punishmentCategory = punishment.getMetadata("category");
-                if (punishmentCategory != null && punishmentCategory.equals(category)) {
-                    count++;
-                }
+        CachedOffenses cached = offenseCache.get(playerUUID);
+        if (cached == null || now >= cached.validUntil) {
+            Map<String, OffenseCount> counts = plugin.getDatabaseManager().getOffenseCounts(playerUUID, now - resetMillis);
+            if (counts == null) {
+                return 0;
             }
             
-            return count;
-        } catch (Exception e) {
-            plugin.getLogger().severe("Error counting player offenses: " + e.getMessage());
-            return 0;
+            // The counts stay exact until the earliest offense falls out of the reset window
+            long validUntil = now + CACHE_TTL;
+            for (OffenseCount count : counts.values()) {
+                validUntil = Math.min(validUntil, count.getFirstOffense() + resetMillis);
+            }
+            cached = new CachedOffenses(counts, validUntil);
+            offenseCache.put(playerUUID, cached);
+        }
+        
+        OffenseCount count = cached.counts.get(category);
+        return count != null ? count.getCount() : 0;
+    }
+    
+    @Override
+    public void onPunishmentSaved(Punishment punishment) {
+        if (punishment.getCategory() != null) {
+            // Recounting is a single index lookup, cheaper to get right than patching the cached counts
+            offenseCache.remove(punishment.getPlayerUUID());
         }
     }
     
@@ -204,6 +227,19 @@ public class PunishmentEscalationService {
         return null;
     }
     
+    /**
+     * Offense counts of a player, valid until the window they were counted over changes
+     */
+    private static class CachedOffenses {
+        private final Map<String, OffenseCount> counts;
+        private final long validUntil;
+        
+        CachedOffenses(Map<String, OffenseCount> counts, long validUntil) {
+            this.counts = counts;
+            this.validUntil = validUntil;
+        }
+    }
+    
     /**
      * Class representing an escalation step
      */
@@ -0,0 +1,129 @@
+package com.ultimateban.services;
+
+import com.ultimateban.UltimateBan;
+import com.ultimateban.database.DatabaseListener;
+import com.ultimateban.models.IpBan;
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+import com.ultimateban.util.HierarchicalTimingWheel;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deactivates temporary bans, mutes and IP bans when they run out.
+ * End times are kept in timing wheels, filled from the database at startup and from every new
+ * punishment, and the wheels are advanced once a second. Expired rows are deactivated in batches,
+ * so logins and chat never have to clean up after a punishment that has run out.
+ */
+public class PunishmentExpiryService implements DatabaseListener {
+
+    private static final long TICK_MILLIS = 1000L;
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private final UltimateBan plugin;
+    private final HierarchicalTimingWheel<Integer> punishments;
+    private final HierarchicalTimingWheel<Integer> ipBans;
+    private final BukkitTask task;
+
+    /**
+     * Constructor
+     *
+     * @param plugin The UltimateBan plugin instance
+     */
+    public PunishmentExpiryService(UltimateBan plugin) {
+        this.plugin = plugin;
+        long now = System.currentTimeMillis();
+        this.punishments = new HierarchicalTimingWheel<>(TICK_MILLIS, now);
+        this.ipBans = new HierarchicalTimingWheel<>(TICK_MILLIS, now);
+
+        plugin.getDatabaseManager().addListener(this);
+        plugin.getDatabaseManager().getExecutor().execute(this::load);
+        this.task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::tick, 20L, 20L);
+    }
+
+    /**
+     * Schedule every temporary punishment and IP ban that is still active
+     */
+    private void load() {
+        for (Punishment punishment : plugin.getDatabaseManager().getExpiringPunishments()) {
+            schedule(punishments, punishment.getEndTime(), punishment.getId());
+        }
+        for (IpBan ipBan : plugin.getDatabaseManager().getExpiringIpBans()) {
+            schedule(ipBans, ipBan.getEndTime(), ipBan.getId());
+        }
+
+        plugin.getLogger().info("Scheduled expiry of " + punishments.size() + " punishment(s) and "
+                + ipBans.size() + " IP ban(s)");
+    }
+
+    @Override
+    public void onPunishmentSaved(Punishment punishment) {
+        PunishmentType type = punishment.getType();
+        boolean expires = type == PunishmentType.BAN || type == PunishmentType.TEMP_BAN
+                || type == PunishmentType.MUTE || type == PunishmentType.TEMP_MUTE;
+        if (expires && punishment.isActive() && punishment.getEndTime() > 0 && punishment.getEndTime() < Long.MAX_VALUE) {
+            schedule(punishments, punishment.getEndTime(), punishment.getId());
+        }
+    }
+
+    @Override
+    public void onIpBanSaved(IpBan ipBan) {
+        if (ipBan.isActive() && !ipBan.isPermanent()) {
+            schedule(ipBans, ipBan.getEndTime(), ipBan.getId());
+        }
+    }
+
+    /**
+     * Stop advancing the wheels
+     */
+    public void shutdown() {
+        task.cancel();
+    }
+
+    /**
+     * Get the number of punishments and IP bans waiting to expire
+     *
+     * @return The number of scheduled expiries
+     */
+    public int getScheduledCount() {
+        return punishments.size() + ipBans.size();
+    }
+
+    private void schedule(HierarchicalTimingWheel<Integer> wheel, long endTime, int id) {
+        // A punishment ends once the current time is past its end time, so fire a tick later
+        wheel.schedule(endTime + TICK_MILLIS, id);
+    }
+
+    /**
+     * Advance the wheels and deactivate whatever ran out
+     */
+    private void tick() {
+        long now = System.currentTimeMillis();
+        List<Integer> expiredPunishments = punishments.advance(now);
+        List<Integer> expiredIpBans = ipBans.advance(now);
+        if (expiredPunishments.isEmpty() && expiredIpBans.isEmpty()) {
+            return;
+        }
+
+        plugin.getDatabaseManager().getExecutor().execute(() -> {
+            if (!expiredPunishments.isEmpty()
+                    && plugin.getDatabaseManager().deactivateExpiredPunishments(expiredPunishments) < 0) {
+                retry(punishments, expiredPunishments);
+            }
+            if (!expiredIpBans.isEmpty()
+                    && plugin.getDatabaseManager().deactivateExpiredIpBans(expiredIpBans) < 0) {
+                retry(ipBans, expiredIpBans);
+            }
+        });
+    }
+
+    private void retry(HierarchicalTimingWheel<Integer> wheel, List<Integer> ids) {
+        long retryAt = System.currentTimeMillis() + RETRY_DELAY;
+        for (int id : ids) {
+            wheel.schedule(retryAt, id);
+        }
+    }
+}
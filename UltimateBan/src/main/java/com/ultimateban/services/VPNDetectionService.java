@@ -1,6 +1,8 @@
 package com.ultimateban.services;
 
 import com.ultimateban.UltimateBan;
+import com.ultimateban.models.VpnVerdict;
+import com.ultimateban.util.BoundedExecutor;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
@@ -11,9 +13,8 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -27,9 +28,15 @@ public class VPNDetectionService {
     private final boolean enabled;
     private final boolean blockVpns;
     private final long cacheTime;
+    private final boolean persistCache;
     
-    // Cache results to reduce API calls
-    private final Map<String, CachedResult> resultCache = new ConcurrentHashMap<>();
+    // Cache results to reduce API calls, shared with IPUtil
+    private final VPNVerdictCache verdictCache;
+    // Lookups in progress, so concurrent logins from one address make a single API request
+    private final Map<String, CompletableFuture<Boolean>> pendingLookups = new ConcurrentHashMap<>();
+    
+    // API requests get their own threads so slow lookups never hold up database work
+    private final BoundedExecutor executor;
     
     public VPNDetectionService(UltimateBan plugin) {
         this.plugin = plugin;
@@ -37,6 +44,14 @@ public class VPNDetectionService {
         this.enabled = plugin.getConfig().getBoolean("vpn-detection.enabled", false);
         this.blockVpns = plugin.getConfig().getBoolean("vpn-detection.block", false);
         this.cacheTime = plugin.getConfig().getLong("vpn-detection.cache-time", 1440);
+        this.persistCache = plugin.getConfig().getBoolean("vpn-detection.persist-cache", true);
+        this.verdictCache = new VPNVerdictCache(plugin.getConfig().getInt("vpn-detection.cache-size", 10000));
+        this.executor = new BoundedExecutor(plugin.getLogger(), "UltimateBan-VPN", 2, 100);
+        
+        // Start with the results saved before the last restart
+        if (enabled && persistCache) {
+            plugin.getDatabaseManager().getExecutor().execute(this::loadSavedVerdicts);
+        }
         
         // Clean up old cache entries every 30 minutes
         Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::cleanupCache, 36000L, 36000L);
@@ -59,62 +74,97 @@ public class VPNDetectionService {
             return CompletableFuture.completedFuture(false);
         }
         
+        return checkIp(ip);
+    }
+    
+    /**
+     * Check if an IP address is a VPN, proxy or TOR exit, from the cache when possible
+     * @param ip The IP address to check
+     * @return A CompletableFuture that will resolve to true if the IP is a VPN, false otherwise or if the lookup failed
+     */
+    public CompletableFuture<Boolean> checkIp(String ip) {
+        if (!enabled || apiKey.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        
         // Check cache first
-        if (resultCache.containsKey(ip)) {
-            CachedResult cachedResult = resultCache.get(ip);
-            if (!cachedResult.isExpired()) {
-                plugin.getLogger().info("Using cached VPN result for " + ip);
-                return CompletableFuture.completedFuture(cachedResult.isVpn());
-            } else {
-                resultCache.remove(ip);
-            }
+        VpnVerdict cached = verdictCache.get(ip);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.isVpn());
+        }
+        
+        // Join a lookup of the same address that is already running
+        CompletableFuture<Boolean> lookup = new CompletableFuture<>();
+        CompletableFuture<Boolean> pending = pendingLookups.putIfAbsent(ip, lookup);
+        if (pending != null) {
+            return pending;
         }
         
         // Make API request asynchronously
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                plugin.getLogger().info("Checking if " + ip + " is a VPN...");
-                String apiUrl = "https://ipqualityscore.com/api/json/ip/" + URLEncoder.encode(apiKey, StandardCharsets.UTF_8.toString()) 
-                        + "/" + URLEncoder.encode(ip, StandardCharsets.UTF_8.toString());
+        executor.supply(() -> queryApi(ip)).whenComplete((isVpn, error) -> {
+            pendingLookups.remove(ip, lookup);
+            if (error != null) {
+                lookup.completeExceptionally(error);
+            } else {
+                lookup.complete(isVpn);
+            }
+        });
+        return lookup;
+    }
+    
+    /**
+     * Ask the API about an address and cache the answer, on a VPN lookup thread
+     * @param ip The IP address to check
+     * @return true if the IP is a VPN, false otherwise or if the request failed
+     */
+    private boolean queryApi(String ip) {
+        try {
+            plugin.getLogger().info("Checking if " + ip + " is a VPN...");
+            String apiUrl = "https://ipqualityscore.com/api/json/ip/" + URLEncoder.encode(apiKey, StandardCharsets.UTF_8.toString()) 
+                    + "/" + URLEncoder.encode(ip, StandardCharsets.UTF_8.toString());
+            
+            URL url = new URL(apiUrl);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(5000);
+            
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                in.close();
                 
-                URL url = new URL(apiUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(5000);
-                connection.setReadTimeout(5000);
+                // Simple JSON parsing without dependencies
+                String jsonResponse = response.toString();
+                boolean isVpn = jsonResponse.contains("\"proxy\":true") || 
+                                jsonResponse.contains("\"vpn\":true") || 
+                                jsonResponse.contains("\"tor\":true");
                 
-                int responseCode = connection.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    String inputLine;
-                    StringBuilder response = new StringBuilder();
-                    
-                    while ((inputLine = in.readLine()) != null) {
-                        response.append(inputLine);
-                    }
-                    in.close();
-                    
-                    // Simple JSON parsing without dependencies
-                    String jsonResponse = response.toString();
-                    boolean isVpn = jsonResponse.contains("\"proxy\":true") || 
-                                    jsonResponse.contains("\"vpn\":true") || 
-                                    jsonResponse.contains("\"tor\":true");
-                    
-                    // Cache the result
-                    resultCache.put(ip, new CachedResult(isVpn, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(cacheTime)));
-                    
-                    plugin.getLogger().info("IP " + ip + " VPN check result: " + isVpn);
-                    return isVpn;
-                } else {
-                    plugin.getLogger().warning("Failed to check VPN: HTTP error code " + responseCode);
+                // Cache the result, failed requests are not cached so they are tried again
+                long now = System.currentTimeMillis();
+                VpnVerdict verdict = new VpnVerdict(ip, isVpn, now, now + TimeUnit.MINUTES.toMillis(cacheTime));
+                verdictCache.put(verdict);
+                if (persistCache) {
+                    plugin.getDatabaseManager().getExecutor().execute(() -> plugin.getDatabaseManager().saveVpnVerdict(verdict));
                 }
-            } catch (Exception e) {
-                plugin.getLogger().severe("Error checking VPN: " + e.getMessage());
-                e.printStackTrace();
+                
+                plugin.getLogger().info("IP " + ip + " VPN check result: " + isVpn);
+                return isVpn;
+            } else {
+                plugin.getLogger().warning("Failed to check VPN: HTTP error code " + responseCode);
             }
-            
-            return false;
-        });
+        } catch (Exception e) {
+            plugin.getLogger().severe("Error checking VPN: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return false;
     }
     
     /**
@@ -142,35 +192,46 @@ public class VPNDetectionService {
     }
     
     /**
-     * Remove expired cache entries
+     * Get the executor used for API requests
+     * @return The VPN lookup executor
      */
-    private void cleanupCache() {
-        long now = System.currentTimeMillis();
-        resultCache.entrySet().removeIf(entry -> entry.getValue().getExpiry() < now);
+    public BoundedExecutor getExecutor() {
+        return executor;
     }
     
     /**
-     * Class to store cached VPN check results
+     * Get the cache of VPN lookup results
+     * @return The VPN verdict cache
      */
-    private static class CachedResult {
-        private final boolean vpn;
-        private final long expiry;
-        
-        public CachedResult(boolean vpn, long expiry) {
-            this.vpn = vpn;
-            this.expiry = expiry;
-        }
-        
-        public boolean isVpn() {
-            return vpn;
-        }
-        
-        public long getExpiry() {
-            return expiry;
+    public VPNVerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+    
+    /**
+     * Stop the API request threads
+     */
+    public void shutdown() {
+        executor.shutdown(5000L);
+    }
+    
+    /**
+     * Fill the cache with the saved results that have not expired yet, on a database thread
+     */
+    private void loadSavedVerdicts() {
+        List<VpnVerdict> verdicts = plugin.getDatabaseManager().getVpnVerdicts(verdictCache.getMaximumSize());
+        verdicts.forEach(verdictCache::put);
+        if (!verdicts.isEmpty()) {
+            plugin.getLogger().info("Loaded " + verdicts.size() + " saved VPN check results");
         }
-        
-        public boolean isExpired() {
-            return System.currentTimeMillis() > expiry;
+    }
+    
+    /**
+     * Remove expired cache entries
+     */
+    private void cleanupCache() {
+        verdictCache.removeExpired();
+        if (persistCache) {
+            plugin.getDatabaseManager().getExecutor().execute(plugin.getDatabaseManager()::deleteExpiredVpnVerdicts);
         }
     }
 } 
\ No newline at end of file
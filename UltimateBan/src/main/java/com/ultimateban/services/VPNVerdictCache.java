@@ -0,0 +1,106 @@
+package com.ultimateban.services;
+
+import com.ultimateban.models.VpnVerdict;
+import com.ultimateban.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The VPN lookup results of recently seen addresses. Results expire after their own lifetime,
+ * and when the cache is full the least recently used result is dropped. Safe to use from any thread.
+ */
+public class VPNVerdictCache {
+
+    private final LruCache<String, VpnVerdict> verdicts;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize The number of addresses kept
+     */
+    public VPNVerdictCache(int maximumSize) {
+        this.verdicts = new LruCache<>(Math.max(16, maximumSize));
+    }
+
+    /**
+     * Get the result for an address
+     *
+     * @param ipAddress The IP address
+     * @return The result, or null if the address is not cached or its result expired
+     */
+    public VpnVerdict get(String ipAddress) {
+        VpnVerdict verdict = verdicts.get(ipAddress);
+        if (verdict == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (verdict.isExpired(System.currentTimeMillis())) {
+            if (verdicts.remove(ipAddress, verdict)) {
+                expirations.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return verdict;
+    }
+
+    /**
+     * Store a result, replacing an older result for the same address
+     *
+     * @param verdict The result
+     */
+    public void put(VpnVerdict verdict) {
+        verdicts.merge(verdict.getIpAddress(), verdict, (existing, added) ->
+                existing.getCheckedAt() > added.getCheckedAt() ? existing : added);
+    }
+
+    /**
+     * Drop every expired result
+     *
+     * @return The number of results dropped
+     */
+    public int removeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = verdicts.removeIf(verdict -> verdict.isExpired(now));
+        expirations.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * Forget every result
+     */
+    public void clear() {
+        verdicts.clear();
+    }
+
+    public int getSize() {
+        return verdicts.size();
+    }
+
+    public int getMaximumSize() {
+        return verdicts.getMaximumSize();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    public long getEvictions() {
+        return verdicts.getEvictions();
+    }
+}
@@ -0,0 +1,590 @@
+package com.ultimateban.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Delivers Discord embeds to webhooks from one background thread, so code that queues an embed never waits on the network.
+ * Every webhook has its own queue. Embeds queued within the batch delay of each other go out as one message of up to
+ * ten embeds, the rate limit headers Discord sends back are followed, and failed messages are retried with exponential
+ * backoff. Embeds that do not fit in memory, and those still queued at shutdown, are kept in a size-limited spool file
+ * and sent once their webhook has caught up. Nothing here depends on the server, so it can be pointed at any HTTP endpoint.
+ */
+public class WebhookDispatcher {
+
+    // Discord accepts at most 10 embeds and 6000 characters of embed text per message
+    private static final int MAX_EMBEDS = 10;
+    private static final int MAX_MESSAGE_CHARS = 6000;
+    private static final int INBOX_SIZE = 10000;
+    private static final long BASE_BACKOFF = 1000L;
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
+    private static final long IDLE_WAIT = TimeUnit.MINUTES.toMillis(1);
+    private static final Pattern RETRY_AFTER = Pattern.compile("\"retry_after\"\\s*:\\s*([0-9.]+)");
+
+    private final Logger logger;
+    private final File spoolFile;
+    private final long batchDelay;
+    private final int queueSize;
+    private final long spoolLimit;
+    private final int timeout;
+
+    // Embeds handed over by other threads, everything below is only used by the dispatcher thread
+    private final BlockingQueue<Entry> inbox = new LinkedBlockingQueue<>(INBOX_SIZE);
+    private final Map<String, Webhook> webhooks = new LinkedHashMap<>();
+    private final Map<String, Integer> spooledByUrl = new HashMap<>();
+    private long spoolBytes;
+    private boolean spoolFullWarned;
+
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong embedsSent = new AtomicLong();
+    private final AtomicLong embedsDropped = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private volatile int spooledCount;
+
+    /**
+     * Constructor, starts the dispatcher thread
+     *
+     * @param logger     The logger failures are reported to
+     * @param spoolFile  The file embeds are kept in while they cannot be sent
+     * @param batchDelay How long to wait for more embeds before sending, in milliseconds
+     * @param queueSize  The number of embeds kept in memory per webhook, more go to the spool
+     * @param spoolLimit The maximum size of the spool file in bytes
+     * @param timeout    The connect and read timeout of requests, in milliseconds
+     */
+    public WebhookDispatcher(Logger logger, File spoolFile, long batchDelay, int queueSize, long spoolLimit, int timeout) {
+        this.logger = logger;
+        this.spoolFile = spoolFile;
+        this.batchDelay = batchDelay;
+        this.queueSize = Math.max(MAX_EMBEDS, queueSize);
+        this.spoolLimit = spoolLimit;
+        this.timeout = timeout;
+
+        this.thread = new Thread(this::run, "UltimateBan-Discord");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue an embed, without blocking
+     *
+     * @param url   The webhook URL
+     * @param embed The embed as a JSON object
+     * @return false if the embed was dropped because the dispatcher is closed or too far behind
+     */
+    public boolean enqueue(String url, String embed) {
+        if (closed || !inbox.offer(new Entry(url, embed, System.currentTimeMillis()))) {
+            embedsDropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stop sending and write whatever is still queued to the spool, waiting for a request in progress to finish
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(timeout * 2L + 1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        loadSpool();
+        while (!closed) {
+            try {
+                long wait = dispatch();
+                Entry entry = inbox.poll(wait, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    List<Entry> entries = new ArrayList<>();
+                    entries.add(entry);
+                    inbox.drainTo(entries);
+                    route(entries);
+                }
+            } catch (InterruptedException e) {
+                // Closing, the loop condition ends it
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Error sending Discord webhooks: " + e.getMessage(), e);
+            }
+        }
+
+        // The spool is written with plain streams, which an interrupt does not close, but clear it all the same
+        Thread.interrupted();
+        spoolRemaining();
+    }
+
+    /**
+     * Add new embeds to their webhook queues, spooling those that do not fit
+     */
+    private void route(List<Entry> entries) {
+        List<Entry> overflow = new ArrayList<>();
+        for (Entry entry : entries) {
+            Webhook webhook = webhooks.computeIfAbsent(entry.url, Webhook::new);
+            // Spooled embeds are older, new ones wait behind them to keep the order
+            if (webhook.queue.size() >= queueSize || spooledByUrl.containsKey(entry.url)) {
+                overflow.add(entry);
+            } else {
+                webhook.queue.addLast(entry);
+            }
+        }
+        spool(overflow);
+    }
+
+    /**
+     * Send every webhook that is due
+     *
+     * @return How long until the next webhook is due, in milliseconds
+     */
+    private long dispatch() {
+        long wait = IDLE_WAIT;
+        for (Webhook webhook : webhooks.values()) {
+            refill(webhook);
+            if (webhook.queue.isEmpty()) {
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            long dueAt = webhook.queue.size() >= MAX_EMBEDS ? 0L : webhook.queue.peekFirst().queuedAt + batchDelay;
+            dueAt = Math.max(dueAt, webhook.blockedUntil);
+            if (dueAt > now) {
+                wait = Math.min(wait, dueAt - now);
+                continue;
+            }
+
+            send(webhook);
+            // Spooled embeds are refilled on the next round, which must not wait for a new embed to arrive
+            if (!webhook.queue.isEmpty() || spooledByUrl.containsKey(webhook.url)) {
+                wait = Math.min(wait, Math.max(0L, webhook.blockedUntil - System.currentTimeMillis()));
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Send the next message of a webhook and handle the response
+     */
+    private void send(Webhook webhook) {
+        List<Entry> batch = new ArrayList<>();
+        StringBuilder payload = new StringBuilder("{\"embeds\":[");
+        int chars = 0;
+        while (!webhook.queue.isEmpty() && batch.size() < MAX_EMBEDS) {
+            Entry entry = webhook.queue.peekFirst();
+            if (!batch.isEmpty() && chars + entry.embed.length() > MAX_MESSAGE_CHARS) {
+                break;
+            }
+            if (!batch.isEmpty()) {
+                payload.append(',');
+            }
+            payload.append(entry.embed);
+            chars += entry.embed.length();
+            batch.add(webhook.queue.pollFirst());
+        }
+        payload.append("]}");
+
+        Response response;
+        try {
+            response = post(webhook.url, payload.toString());
+        } catch (IOException e) {
+            retry(webhook, batch, e.getMessage());
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (response.status >= 200 && response.status < 300) {
+            webhook.failures = 0;
+            messagesSent.incrementAndGet();
+            embedsSent.addAndGet(batch.size());
+            // Wait out the bucket instead of running into a 429
+            if (response.remaining == 0 && response.resetAfter > 0) {
+                webhook.blockedUntil = now + response.resetAfter;
+            }
+        } else if (response.status == 429) {
+            rateLimited.incrementAndGet();
+            requeue(webhook, batch);
+            webhook.blockedUntil = now + (response.retryAfter > 0 ? response.retryAfter : BASE_BACKOFF);
+        } else if (response.status >= 500) {
+            retry(webhook, batch, "HTTP " + response.status);
+        } else {
+            // Bad requests and deleted webhooks will not succeed later either
+            embedsDropped.addAndGet(batch.size());
+            logger.warning("Discord rejected a webhook message with HTTP " + response.status + ", dropped "
+                    + batch.size() + " embed(s)");
+        }
+    }
+
+    private void retry(Webhook webhook, List<Entry> batch, String error) {
+        requeue(webhook, batch);
+        webhook.failures++;
+        long backoff = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(webhook.failures - 1, 16));
+        backoff += ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+        webhook.blockedUntil = System.currentTimeMillis() + backoff;
+        if (webhook.failures == 1 || webhook.failures % 10 == 0) {
+            logger.warning("Could not reach Discord (" + error + "), retrying in " + backoff / 1000 + "s, "
+                    + webhook.queue.size() + " embed(s) waiting");
+        }
+    }
+
+    private void requeue(Webhook webhook, List<Entry> batch) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            webhook.queue.addFirst(batch.get(i));
+        }
+        // Keep the memory bound while a webhook is down, the newest embeds wait on disk
+        List<Entry> overflow = new ArrayList<>();
+        while (webhook.queue.size() > queueSize) {
+            overflow.add(0, webhook.queue.pollLast());
+        }
+        spool(overflow);
+    }
+
+    private Response post(String url, String payload) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("User-Agent", "UltimateBan");
+
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        response.remaining = parseInt(connection.getHeaderField("X-RateLimit-Remaining"), -1);
+        response.resetAfter = parseSeconds(connection.getHeaderField("X-RateLimit-Reset-After"));
+        response.retryAfter = parseSeconds(connection.getHeaderField("Retry-After"));
+
+        // Read the body to the end so the connection can be reused
+        String responseBody = readBody(response.status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        if (response.status == 429 && response.retryAfter <= 0) {
+            Matcher matcher = RETRY_AFTER.matcher(responseBody);
+            if (matcher.find()) {
+                response.retryAfter = parseSeconds(matcher.group(1));
+            }
+        }
+        return response;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (InputStream stream = in) {
+            StringBuilder body = new StringBuilder();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                // Only the retry time is looked for, the start of the body is enough
+                if (body.length() < 4096) {
+                    body.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+                }
+            }
+            return body.toString();
+        }
+    }
+
+    private static int parseInt(String value, int fallback) {
+        try {
+            return value != null ? Integer.parseInt(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return value != null ? (long) Math.ceil(Double.parseDouble(value.trim()) * 1000.0) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Append embeds to the spool file, dropping what does not fit
+     */
+    private void spool(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        int written = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spoolFile, true), StandardCharsets.UTF_8))) {
+            for (Entry entry : entries) {
+                String line = entry.url + '\t' + entry.embed + '\n';
+                long bytes = line.getBytes(StandardCharsets.UTF_8).length;
+                if (spoolBytes + bytes > spoolLimit) {
+                    break;
+                }
+                writer.write(line);
+                spoolBytes += bytes;
+                spooledByUrl.merge(entry.url, 1, Integer::sum);
+                written++;
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error writing the Discord spool: " + e.getMessage(), e);
+        }
+        updateSpooledCount();
+
+        int dropped = entries.size() - written;
+        if (dropped > 0) {
+            embedsDropped.addAndGet(dropped);
+            if (!spoolFullWarned) {
+                spoolFullWarned = true;
+                logger.warning("The Discord spool is full, embeds are being dropped until Discord catches up");
+            }
+        }
+    }
+
+    /**
+     * Write everything still queued to the spool at shutdown. Queued embeds are older than the spooled ones and
+     * go in front of them, embeds that were never routed go last.
+     */
+    private void spoolRemaining() {
+        List<String> lines = new ArrayList<>();
+        for (Webhook webhook : webhooks.values()) {
+            for (Entry entry : webhook.queue) {
+                lines.add(entry.url + '\t' + entry.embed);
+            }
+            webhook.queue.clear();
+        }
+        try {
+            if (spoolFile.isFile()) {
+                lines.addAll(readSpool());
+            }
+            List<Entry> unrouted = new ArrayList<>();
+            inbox.drainTo(unrouted);
+            for (Entry entry : unrouted) {
+                lines.add(entry.url + '\t' + entry.embed);
+            }
+
+            int written = writeSpool(lines);
+            if (written < lines.size()) {
+                embedsDropped.addAndGet(lines.size() - written);
+                logger.warning("The Discord spool is full, dropped " + (lines.size() - written) + " embed(s) at shutdown");
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error writing the Discord spool: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Count what an earlier run left in the spool file, it is sent before anything new
+     */
+    private void loadSpool() {
+        if (!spoolFile.isFile()) {
+            return;
+        }
+        try {
+            for (String line : readSpool()) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    String url = line.substring(0, tab);
+                    spooledByUrl.merge(url, 1, Integer::sum);
+                    webhooks.computeIfAbsent(url, Webhook::new);
+                }
+            }
+            spoolBytes = spoolFile.length();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error reading the Discord spool: " + e.getMessage(), e);
+        }
+        updateSpooledCount();
+        if (spooledCount > 0) {
+            logger.info("Resending " + spooledCount + " Discord embed(s) left from before the restart");
+        }
+    }
+
+    /**
+     * Move spooled embeds of a webhook back into memory once its queue has drained, rewriting the spool without them
+     */
+    private void refill(Webhook webhook) {
+        if (!spooledByUrl.containsKey(webhook.url) || webhook.queue.size() > queueSize / 2) {
+            return;
+        }
+
+        List<String> kept = new ArrayList<>();
+        try {
+            for (String line : readSpool()) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                if (webhook.queue.size() < queueSize && line.substring(0, tab).equals(webhook.url)) {
+                    webhook.queue.addLast(new Entry(webhook.url, line.substring(tab + 1), 0L));
+                } else {
+                    kept.add(line);
+                }
+            }
+            writeSpool(kept);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error reading the Discord spool: " + e.getMessage(), e);
+            return;
+        }
+        spoolFullWarned = false;
+    }
+
+    /**
+     * Replace the spool file with the given lines, as many as fit
+     *
+     * @return The number of lines written
+     */
+    private int writeSpool(List<String> lines) throws IOException {
+        spooledByUrl.clear();
+        spoolBytes = 0L;
+        int written = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spoolFile, false), StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                long bytes = line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (spoolBytes + bytes > spoolLimit) {
+                    break;
+                }
+                writer.write(line);
+                writer.write('\n');
+                spoolBytes += bytes;
+                spooledByUrl.merge(line.substring(0, line.indexOf('\t')), 1, Integer::sum);
+                written++;
+            }
+        }
+        updateSpooledCount();
+        return written;
+    }
+
+    private List<String> readSpool() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(spoolFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private void updateSpooledCount() {
+        int count = 0;
+        for (int spooled : spooledByUrl.values()) {
+            count += spooled;
+        }
+        spooledCount = count;
+    }
+
+    /**
+     * Get the number of messages delivered since startup
+     *
+     * @return The number of messages
+     */
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * Get the number of embeds delivered since startup
+     *
+     * @return The number of embeds
+     */
+    public long getEmbedsSent() {
+        return embedsSent.get();
+    }
+
+    /**
+     * Get the number of embeds given up on since startup
+     *
+     * @return The number of embeds
+     */
+    public long getEmbedsDropped() {
+        return embedsDropped.get();
+    }
+
+    /**
+     * Get the number of times Discord answered with a rate limit since startup
+     *
+     * @return The number of 429 responses
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    /**
+     * Get the number of embeds waiting in the spool file
+     *
+     * @return The number of embeds
+     */
+    public int getSpooledCount() {
+        return spooledCount;
+    }
+
+    /**
+     * An embed waiting to be sent
+     */
+    private static class Entry {
+        private final String url;
+        private final String embed;
+        private final long queuedAt;
+
+        private Entry(String url, String embed, long queuedAt) {
+            this.url = url;
+            this.embed = embed;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * The queue and rate limit state of one webhook URL
+     */
+    private static class Webhook {
+        private final String url;
+        private final Deque<Entry> queue = new ArrayDeque<>();
+        private long blockedUntil;
+        private int failures;
+
+        private Webhook(String url) {
+            this.url = url;
+        }
+    }
+
+    /**
+     * The parts of a webhook response that decide what happens next
+     */
+    private static class Response {
+        private int status;
+        private int remaining;
+        private long resetAfter;
+        private long retryAfter;
+    }
+}
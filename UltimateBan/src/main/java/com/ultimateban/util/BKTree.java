@@ -0,0 +1,208 @@
+package com.ultimateban.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A BK-tree of strings under an edit distance metric.
+ * A search only visits subtrees that can hold keys within the search radius, so near matches
+ * are found without comparing against every key. Keys are kept as char arrays so the metric
+ * can compare them without copying.
+ *
+ * @param <V> The type of value stored for each key
+ */
+public class BKTree<V> {
+
+    private final Metric metric;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node<V> root;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param metric The distance function, which must be a metric (for example {@link Levenshtein#distance(char[], char[], int)})
+     */
+    public BKTree(Metric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Add a key, or replace the value of an existing key
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    public void put(String key, V value) {
+        char[] chars = key.toCharArray();
+
+        lock.writeLock().lock();
+        try {
+            if (root == null) {
+                root = new Node<>(chars, value);
+                size++;
+                return;
+            }
+
+            Node<V> node = root;
+            while (true) {
+                // Tree placement needs the exact distance
+                int distance = metric.distance(chars, node.key, Integer.MAX_VALUE);
+                if (distance == 0) {
+                    node.value = value;
+                    return;
+                }
+
+                Node<V> child = node.getChild(distance);
+                if (child == null) {
+                    node.setChild(distance, new Node<>(chars, value));
+                    size++;
+                    return;
+                }
+                node = child;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find every key within a distance of the query
+     *
+     * @param query  The query string
+     * @param radius The maximum distance, inclusive
+     * @return The matches, in no particular order
+     */
+    public List<Match<V>> search(String query, int radius) {
+        List<Match<V>> matches = new ArrayList<>();
+        char[] chars = query.toCharArray();
+
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return matches;
+            }
+
+            Deque<Node<V>> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node<V> node = pending.pop();
+                Node<V>[] children = node.children;
+
+                // Beyond this distance the node is no match and none of its children can be,
+                // so the metric is allowed to stop early
+                int bound = radius + (children != null ? children.length - 1 : 0);
+                int distance = metric.distance(chars, node.key, bound);
+                if (distance <= radius) {
+                    matches.add(new Match<>(new String(node.key), node.value, distance));
+                }
+
+                // By the triangle inequality only children at distance - radius .. distance + radius can match
+                if (children == null || distance > bound) {
+                    continue;
+                }
+                int from = Math.max(1, distance - radius);
+                int to = Math.min(children.length - 1, distance + radius);
+                for (int i = from; i <= to; i++) {
+                    if (children[i] != null) {
+                        pending.push(children[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return matches;
+    }
+
+    /**
+     * Get the number of keys in the tree
+     *
+     * @return The number of keys
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A distance function between strings
+     */
+    @FunctionalInterface
+    public interface Metric {
+        /**
+         * Calculate the distance between two strings
+         *
+         * @param a     The first string
+         * @param b     The second string
+         * @param bound The largest distance the caller needs exactly
+         * @return The distance, or any value greater than {@code bound} if the distance exceeds it
+         */
+        int distance(char[] a, char[] b, int bound);
+    }
+
+    /**
+     * A key found by a search
+     *
+     * @param <V> The value type
+     */
+    public static class Match<V> {
+        private final String key;
+        private final V value;
+        private final int distance;
+
+        private Match(String key, V value, int distance) {
+            this.key = key;
+            this.value = value;
+            this.distance = distance;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private static class Node<V> {
+        private final char[] key;
+        private V value;
+        // Indexed by distance to this node, edit distances between names are small
+        private Node<V>[] children;
+
+        Node(char[] key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        Node<V> getChild(int distance) {
+            return children != null && distance < children.length ? children[distance] : null;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void setChild(int distance, Node<V> child) {
+            if (children == null) {
+                children = (Node<V>[]) new Node[Math.max(distance + 1, 8)];
+            } else if (distance >= children.length) {
+                children = Arrays.copyOf(children, Math.max(distance + 1, children.length * 2));
+            }
+            children[distance] = child;
+        }
+    }
+}
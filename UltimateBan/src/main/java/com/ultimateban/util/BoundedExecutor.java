@@ -0,0 +1,253 @@
+package com.ultimateban.util;
+
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A fixed size executor with a bounded queue, owned by the plugin.
+ * When the queue is full, tasks submitted from the main thread are rejected while tasks
+ * submitted from any other thread run on the submitting thread, slowing the producer down.
+ */
+public class BoundedExecutor {
+
+    private static final long REJECTION_WARNING_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    private final Logger logger;
+    private final String name;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submittedTasks = new AtomicLong();
+    private final AtomicLong rejectedTasks = new AtomicLong();
+    private final AtomicLong callerRunsTasks = new AtomicLong();
+    private final AtomicInteger peakQueueSize = new AtomicInteger();
+    private volatile long lastRejectionWarning;
+
+    /**
+     * Constructor
+     *
+     * @param logger The logger used for warnings
+     * @param name The executor name, used for thread names and log messages
+     * @param threads The number of worker threads
+     * @param queueCapacity The maximum number of queued tasks
+     */
+    public BoundedExecutor(Logger logger, String name, int threads, int queueCapacity) {
+        this.logger = logger;
+        this.name = name;
+        this.queueCapacity = Math.max(1, queueCapacity);
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity), threadFactory, this::onSaturated);
+    }
+
+    /**
+     * Run a task and complete the returned future with its result
+     *
+     * @param supplier The task to run
+     * @param <T> The result type
+     * @return A future completed with the result, or exceptionally if the task failed or was rejected
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            submit(() -> {
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Run a task without waiting for its result.
+     * Failures and rejections are logged.
+     *
+     * @param task The task to run
+     */
+    public void execute(Runnable task) {
+        try {
+            submit(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, "Uncaught error in " + name + " task: " + t.getMessage(), t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warning(e.getMessage());
+        }
+    }
+
+    /**
+     * Stop accepting tasks and wait for the queued ones to finish
+     *
+     * @param timeoutMillis How long to wait before abandoning the remaining tasks
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                int dropped = executor.shutdownNow().size();
+                logger.warning(name + " did not finish in time, " + dropped + " queued task(s) were dropped");
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the executor name
+     *
+     * @return The executor name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of worker threads
+     *
+     * @return The number of worker threads
+     */
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Get the number of threads currently running a task
+     *
+     * @return The number of busy threads
+     */
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Get the number of tasks waiting in the queue
+     *
+     * @return The queue depth
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Get the maximum number of queued tasks
+     *
+     * @return The queue capacity
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Get the deepest the queue has been since startup
+     *
+     * @return The peak queue depth
+     */
+    public int getPeakQueueSize() {
+        return peakQueueSize.get();
+    }
+
+    /**
+     * Get the number of tasks submitted since startup
+     *
+     * @return The number of submitted tasks
+     */
+    public long getSubmittedTasks() {
+        return submittedTasks.get();
+    }
+
+    /**
+     * Get the number of tasks completed by the worker threads
+     *
+     * @return The number of completed tasks
+     */
+    public long getCompletedTasks() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Get the number of tasks rejected because the queue was full or the executor was stopped
+     *
+     * @return The number of rejected tasks
+     */
+    public long getRejectedTasks() {
+        return rejectedTasks.get();
+    }
+
+    /**
+     * Get the number of tasks that ran on the submitting thread because the queue was full
+     *
+     * @return The number of tasks run by their caller
+     */
+    public long getCallerRunsTasks() {
+        return callerRunsTasks.get();
+    }
+
+    private void submit(Runnable task) {
+        submittedTasks.incrementAndGet();
+        executor.execute(task);
+
+        int queueSize = executor.getQueue().size();
+        peakQueueSize.accumulateAndGet(queueSize, Math::max);
+    }
+
+    /**
+     * Handle a task that does not fit in the queue
+     *
+     * @param task The task
+     * @param pool The saturated executor
+     */
+    private void onSaturated(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            rejectedTasks.incrementAndGet();
+            throw new RejectedExecutionException(name + " is shut down");
+        }
+
+        // Never block the main thread, fail the task instead
+        if (Bukkit.isPrimaryThread()) {
+            rejectedTasks.incrementAndGet();
+            warnSaturated("rejecting tasks from the main thread");
+            throw new RejectedExecutionException(name + " queue is full (" + queueCapacity + " tasks)");
+        }
+
+        callerRunsTasks.incrementAndGet();
+        warnSaturated("running tasks on the calling thread");
+        task.run();
+    }
+
+    private void warnSaturated(String action) {
+        long now = System.currentTimeMillis();
+        if (now - lastRejectionWarning > REJECTION_WARNING_INTERVAL) {
+            lastRejectionWarning = now;
+            logger.warning(name + " queue is full, " + action + " (rejected=" + rejectedTasks.get()
+                    + ", caller-runs=" + callerRunsTasks.get() + ")");
+        }
+    }
+}
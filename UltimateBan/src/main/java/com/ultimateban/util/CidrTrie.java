@@ -0,0 +1,145 @@
+package com.ultimateban.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A binary prefix trie of CIDR ranges over the 128-bit address space used by {@link IPUtil#toAddressBytes(String)}.
+ * Lookups walk at most one node per prefix bit and never take a lock, writers are serialized.
+ *
+ * @param <V> The type of value stored for each range
+ */
+public class CidrTrie<V> {
+
+    private final Node<V> root = new Node<>();
+    private int size;
+
+    /**
+     * Add a value for a CIDR range
+     *
+     * @param cidr  The CIDR range, for example 10.0.0.0/8
+     * @param value The value
+     * @return true if the range was valid and the value was added
+     */
+    public synchronized boolean put(String cidr, V value) {
+        Node<V> node = findNode(cidr, true);
+        if (node == null) {
+            return false;
+        }
+
+        List<V> values = new ArrayList<>(node.values);
+        values.add(value);
+        node.values = values;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove a value for a CIDR range
+     *
+     * @param cidr  The CIDR range
+     * @param value The value to remove
+     * @return true if the value was found and removed
+     */
+    public synchronized boolean remove(String cidr, V value) {
+        Node<V> node = findNode(cidr, false);
+        if (node == null || !node.values.contains(value)) {
+            return false;
+        }
+
+        List<V> values = new ArrayList<>(node.values);
+        values.remove(value);
+        node.values = values.isEmpty() ? Collections.emptyList() : values;
+        size--;
+        // Empty branches are left in place, they are cheap and ranges tend to be re-added
+        return true;
+    }
+
+    /**
+     * Find the values of every range containing an address
+     *
+     * @param ip The IP address
+     * @return The matching values, most specific range first
+     */
+    public List<V> findAll(String ip) {
+        byte[] address = IPUtil.toAddressBytes(ip);
+        if (address == null) {
+            return Collections.emptyList();
+        }
+
+        List<V> matches = null;
+        Node<V> node = root;
+        for (int bit = 0; node != null; bit++) {
+            List<V> values = node.values;
+            if (!values.isEmpty()) {
+                if (matches == null) {
+                    matches = new ArrayList<>();
+                }
+                matches.addAll(0, values);
+            }
+
+            if (bit == 128) {
+                break;
+            }
+            node = isSet(address, bit) ? node.one : node.zero;
+        }
+
+        return matches != null ? matches : Collections.emptyList();
+    }
+
+    /**
+     * Check if the trie is empty
+     *
+     * @return true if no ranges are stored
+     */
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of stored values
+     *
+     * @return The number of values
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private Node<V> findNode(String cidr, boolean create) {
+        int prefixLength = IPUtil.getCidrPrefixLength(cidr);
+        if (prefixLength < 0) {
+            return null;
+        }
+
+        byte[] address = IPUtil.toAddressBytes(cidr.substring(0, cidr.indexOf('/')));
+        Node<V> node = root;
+        for (int bit = 0; bit < prefixLength; bit++) {
+            boolean one = isSet(address, bit);
+            Node<V> next = one ? node.one : node.zero;
+            if (next == null) {
+                if (!create) {
+                    return null;
+                }
+                next = new Node<>();
+                if (one) {
+                    node.one = next;
+                } else {
+                    node.zero = next;
+                }
+            }
+            node = next;
+        }
+        return node;
+    }
+
+    private static boolean isSet(byte[] address, int bit) {
+        return (address[bit >>> 3] & (0x80 >>> (bit & 7))) != 0;
+    }
+
+    private static class Node<V> {
+        private volatile Node<V> zero;
+        private volatile Node<V> one;
+        private volatile List<V> values = Collections.emptyList();
+    }
+}
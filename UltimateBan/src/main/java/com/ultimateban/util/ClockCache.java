@@ -0,0 +1,218 @@
+package com.ultimateban.util;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * A map holding about a fixed number of entries, for caches that are read far more often than written.
+ * Reads are a lock-free {@link ConcurrentHashMap} lookup that only sets a flag on the entry. Eviction
+ * follows the CLOCK policy: writers walk a queue of entries in insertion order, give flagged entries a
+ * second chance and drop the first unflagged one, which costs amortised constant time per write.
+ * This only approximates least recently used order, and the cache can briefly hold a few entries over
+ * the limit while another thread is evicting. Use {@link LruCache} when the exact order matters.
+ *
+ * @param <K> The type of key
+ * @param <V> The type of value
+ */
+public class ClockCache<K, V> {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+    // Every node added and not yet passed by the clock hand, including ones since removed from the map
+    private final Queue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize The number of entries kept
+     */
+    public ClockCache(int maximumSize) {
+        this.maximumSize = Math.max(1, maximumSize);
+    }
+
+    /**
+     * Get a value and mark it as recently used, without taking a lock
+     *
+     * @param key The key
+     * @return The value, or null if the key is not cached
+     */
+    public V get(K key) {
+        Node<K, V> node = entries.get(key);
+        if (node == null) {
+            return null;
+        }
+
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    /**
+     * Store a value, or combine it with the value already stored
+     *
+     * @param key       The key
+     * @param value     The value
+     * @param remapping Picks the value to keep from the stored and the new value, or null to remove it
+     * @return The value now stored, or null if there is none
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        Objects.requireNonNull(value);
+        return compute(key, (k, old) -> old == null ? value : remapping.apply(old, value));
+    }
+
+    /**
+     * Compute the value of a key from its current value
+     *
+     * @param key       The key
+     * @param remapping Computes the new value from the key and the current value, or null if there is none
+     * @return The value now stored, or null if there is none
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<K, V>[] added = new Node[1];
+        Node<K, V> current = entries.compute(key, (k, node) -> {
+            V value = remapping.apply(k, node == null ? null : node.value);
+            if (value == null) {
+                return null;
+            }
+            if (node == null) {
+                node = new Node<>(k, value);
+                added[0] = node;
+            } else {
+                node.value = value;
+                node.referenced = true;
+            }
+            return node;
+        });
+
+        if (added[0] != null) {
+            clock.offer(added[0]);
+            queued.incrementAndGet();
+            evict();
+        }
+        return current == null ? null : current.value;
+    }
+
+    /**
+     * Remove a key if it still maps to a value
+     *
+     * @param key   The key
+     * @param value The expected value
+     * @return true if the entry was removed
+     */
+    public boolean remove(K key, V value) {
+        boolean[] removed = new boolean[1];
+        entries.computeIfPresent(key, (k, node) -> {
+            if (Objects.equals(node.value, value)) {
+                removed[0] = true;
+                return null;
+            }
+            return node;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Remove every entry whose value matches
+     *
+     * @param filter Selects the values to remove
+     * @return The number of entries removed
+     */
+    public int removeIf(Predicate<? super V> filter) {
+        int removed = 0;
+        for (Map.Entry<K, Node<K, V>> entry : entries.entrySet()) {
+            Node<K, V> node = entry.getValue();
+            if (filter.test(node.value) && entries.remove(entry.getKey(), node)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            entries.clear();
+            while (clock.poll() != null) {
+                queued.decrementAndGet();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Get the number of entries dropped to make room
+     *
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Move the clock hand until the queue fits again. Nodes removed from the map are dropped as they are passed,
+     * so the queue never grows much past the maximum size either. Only one writer evicts at a time, the others
+     * leave the work to it.
+     */
+    private void evict() {
+        while (queued.get() > maximumSize && evictionLock.tryLock()) {
+            try {
+                while (queued.get() > maximumSize) {
+                    Node<K, V> node = clock.poll();
+                    if (node == null) {
+                        break;
+                    }
+
+                    if (entries.get(node.key) != node) {
+                        queued.decrementAndGet();
+                    } else if (node.referenced) {
+                        node.referenced = false;
+                        clock.offer(node);
+                    } else {
+                        queued.decrementAndGet();
+                        if (entries.remove(node.key, node)) {
+                            evictions.incrementAndGet();
+                        }
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private volatile boolean referenced;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.ultimateban.util;
+
+/**
+ * A Bloom filter with a small counter per slot instead of a bit, so keys can be removed again.
+ * A negative answer is always right, a positive answer is wrong at roughly the configured rate
+ * while the filter holds no more than its expected number of keys. Counters that reach their
+ * maximum stay there, so a crowded slot can never be removed from under a key still in the filter.
+ * A key must only be removed as many times as it was added. Not thread-safe, callers serialize access.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 0xFF;
+
+    private final byte[] counters;
+    private final int hashCount;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param expectedKeys      The number of keys the filter is sized for
+     * @param falsePositiveRate The rate of wrong positive answers at that size, for example 0.01
+     */
+    public CountingBloomFilter(int expectedKeys, double falsePositiveRate) {
+        int keys = Math.max(1, expectedKeys);
+        double rate = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        double slots = Math.ceil(-keys * Math.log(rate) / (Math.log(2) * Math.log(2)));
+
+        this.counters = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, slots))];
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round(counters.length / (double) keys * Math.log(2))));
+    }
+
+    /**
+     * Add a key
+     *
+     * @param key The key
+     */
+    public void add(byte[] key) {
+        long hash = hash(key);
+        long step = step(hash);
+        for (int i = 0; i < hashCount; i++) {
+            int slot = slot(hash, step, i);
+            int count = counters[slot] & MAX_COUNT;
+            if (count < MAX_COUNT) {
+                counters[slot] = (byte) (count + 1);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Remove a key that was added before
+     *
+     * @param key The key
+     */
+    public void remove(byte[] key) {
+        long hash = hash(key);
+        long step = step(hash);
+        for (int i = 0; i < hashCount; i++) {
+            int slot = slot(hash, step, i);
+            int count = counters[slot] & MAX_COUNT;
+            if (count > 0 && count < MAX_COUNT) {
+                counters[slot] = (byte) (count - 1);
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Check if a key may have been added
+     *
+     * @param key The key
+     * @return false if the key is definitely not in the filter
+     */
+    public boolean mightContain(byte[] key) {
+        long hash = hash(key);
+        long step = step(hash);
+        for (int i = 0; i < hashCount; i++) {
+            if (counters[slot(hash, step, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of keys in the filter
+     *
+     * @return The number of keys
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of counters
+     *
+     * @return The number of counters, one byte each
+     */
+    public int getCapacity() {
+        return counters.length;
+    }
+
+    private int slot(long hash, long step, int i) {
+        return (int) Long.remainderUnsigned(hash + i * step, counters.length);
+    }
+
+    // The slots of a key are derived from two hashes, the second one always odd
+    private static long step(long hash) {
+        return mix(hash ^ 0x9E3779B97F4A7C15L) | 1L;
+    }
+
+    private static long hash(byte[] key) {
+        // FNV-1a, then mixed so every bit depends on every input byte
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,174 @@
+package com.ultimateban.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel holding items until a deadline.
+ * Four wheels of 64 slots each cover 64, 64^2, 64^3 and 64^4 ticks ahead. An item lands in the wheel
+ * matching how far away its deadline is, and moves down a wheel each time the coarser slot it sits in
+ * comes round, so scheduling and expiry cost constant time per item regardless of how many are waiting.
+ * Deadlines beyond the last wheel wait in an overflow list until they come within range.
+ *
+ * @param <T> The type of scheduled item
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final List<Entry<T>>[][] wheels;
+    private final int[] wheelSizes = new int[LEVELS];
+    private List<Entry<T>> overflow = new ArrayList<>();
+    private List<Entry<T>> due = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param tickMillis The resolution of the wheel, items expire at most this late
+     * @param nowMillis  The current time
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HierarchicalTimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.wheels = (List<Entry<T>>[][]) new List[LEVELS][WHEEL_SIZE];
+        this.currentTick = nowMillis / this.tickMillis;
+    }
+
+    /**
+     * Schedule an item, an item whose deadline has already passed expires on the next advance
+     *
+     * @param deadlineMillis When the item expires
+     * @param item           The item
+     */
+    public synchronized void schedule(long deadlineMillis, T item) {
+        place(new Entry<>(deadlineMillis / tickMillis, item));
+        size++;
+    }
+
+    /**
+     * Move the wheel forward to the current time
+     *
+     * @param nowMillis The current time
+     * @return The items whose deadline has passed, in no particular order
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        collect(due, expired);
+        due = new ArrayList<>();
+
+        long targetTick = nowMillis / tickMillis;
+        if (size == 0) {
+            // Nothing can expire, skip the empty ticks
+            currentTick = Math.max(currentTick, targetTick);
+            return expired;
+        }
+
+        while (currentTick < targetTick) {
+            // Nothing happens before the next slot of the finest non-empty wheel, jump straight there
+            int finest = 0;
+            while (finest < LEVELS && wheelSizes[finest] == 0) {
+                finest++;
+            }
+            if (finest > 0) {
+                long span = 1L << (WHEEL_BITS * finest);
+                long nextSlot = (currentTick | (span - 1)) + 1;
+                currentTick = Math.min(targetTick, nextSlot) - 1;
+            }
+            currentTick++;
+
+            // Entering a new slot of a coarser wheel spreads its items over the finer ones
+            if ((currentTick & ((1L << (WHEEL_BITS * LEVELS)) - 1)) == 0) {
+                List<Entry<T>> waiting = overflow;
+                overflow = new ArrayList<>();
+                waiting.forEach(this::place);
+            }
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                }
+            }
+
+            int slot = (int) currentTick & WHEEL_MASK;
+            List<Entry<T>> entries = wheels[0][slot];
+            if (entries != null) {
+                wheels[0][slot] = null;
+                wheelSizes[0] -= entries.size();
+                collect(entries, expired);
+            }
+        }
+
+        // Anything cascaded onto the current tick is due as well
+        collect(due, expired);
+        due = new ArrayList<>();
+        return expired;
+    }
+
+    /**
+     * Get the number of scheduled items
+     *
+     * @return The number of items
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        List<Entry<T>> entries = wheels[level][slot];
+        if (entries != null) {
+            wheels[level][slot] = null;
+            wheelSizes[level] -= entries.size();
+            entries.forEach(this::place);
+        }
+    }
+
+    /**
+     * Put an entry in the finest wheel whose range still covers its deadline.
+     * The wheel is picked by the most significant group of bits in which the deadline differs from
+     * the current tick, so the entry is moved down exactly when that group comes round.
+     */
+    private void place(Entry<T> entry) {
+        if (entry.tick <= currentTick) {
+            due.add(entry);
+            return;
+        }
+
+        long difference = entry.tick ^ currentTick;
+        int level = (63 - Long.numberOfLeadingZeros(difference)) / WHEEL_BITS;
+        if (level >= LEVELS) {
+            overflow.add(entry);
+            return;
+        }
+
+        int slot = (int) (entry.tick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+        List<Entry<T>> entries = wheels[level][slot];
+        if (entries == null) {
+            entries = new ArrayList<>(4);
+            wheels[level][slot] = entries;
+        }
+        entries.add(entry);
+        wheelSizes[level]++;
+    }
+
+    private void collect(List<Entry<T>> entries, List<T> expired) {
+        for (Entry<T> entry : entries) {
+            expired.add(entry.item);
+        }
+        size -= entries.size();
+    }
+
+    private static class Entry<T> {
+        private final long tick;
+        private final T item;
+
+        Entry(long tick, T item) {
+            this.tick = tick;
+            this.item = item;
+        }
+    }
+}
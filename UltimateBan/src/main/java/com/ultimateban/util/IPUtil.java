@@ -2,27 +2,23 @@ package com.ultimateban.util;
 
 import com.ultimateban.UltimateBan;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.concurrent.CompletableFuture;
-import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 /**
  * Utility class for IP-related operations
  */
 public class IPUtil {
-    private static final Map<String, Boolean> vpnCache = new HashMap<>();
     private static final Pattern IP_PATTERN = Pattern.compile(
             "^([01]?\\d\\d?|2[0-4]\\d|25[0-5])\\." +
             "([01]?\\d\\d?|2[0-4]\\d|25[0-5])\\." +
             "([01]?\\d\\d?|2[0-4]\\d|25[0-5])\\." +
             "([01]?\\d\\d?|2[0-4]\\d|25[0-5])$");
+    // Only hex digits, colons and dots, so InetAddress never falls back to a DNS lookup
+    private static final Pattern IPV6_PATTERN = Pattern.compile("^[0-9a-fA-F:.]*:[0-9a-fA-F:.]*$");
     
     private final UltimateBan plugin;
     
@@ -38,72 +34,193 @@ public class IPUtil {
      * @return CompletableFuture that resolves to true if IP is a VPN/Proxy
      */
     public CompletableFuture<Boolean> isVpnOrProxy(String ip) {
-        // Return cached result if available
-        if (vpnCache.containsKey(ip)) {
-            return CompletableFuture.completedFuture(vpnCache.get(ip));
+        // One lookup path and one cache for the whole plugin, running on the VPN lookup threads
+        return plugin.getVpnDetectionService().checkIp(ip);
+    }
+    
+    /**
+     * Check if a string is a valid IP address
+     * 
+     * @param ip The string to check
+     * @return true if the string is a valid IP address
+     */
+    public static boolean isValidIp(String ip) {
+        return toAddressBytes(ip) != null;
+    }
+    
+    /**
+     * Check if a string is a valid CIDR range, for example 10.0.0.0/8 or 2001:db8::/32
+     * 
+     * @param cidr The string to check
+     * @return true if the string is a valid CIDR range
+     */
+    public static boolean isValidCidr(String cidr) {
+        return getCidrPrefixLength(cidr) >= 0;
+    }
+    
+    /**
+     * Convert an IPv4 or IPv6 address to 16 bytes.
+     * IPv4 addresses are mapped into the IPv6 space as ::ffff:a.b.c.d so both families share one key space.
+     * 
+     * @param ip The IP address
+     * @return The address bytes, or null if the string is not an IP address
+     */
+    public static byte[] toAddressBytes(String ip) {
+        if (ip == null) {
+            return null;
         }
         
-        // Check if VPN checking is enabled
-        if (!plugin.getConfigManager().getConfig().getBoolean("vpn-detection.enabled", true)) {
-            return CompletableFuture.completedFuture(false);
+        if (IP_PATTERN.matcher(ip).matches()) {
+            String[] parts = ip.split("\\.");
+            byte[] bytes = new byte[16];
+            bytes[10] = (byte) 0xFF;
+            bytes[11] = (byte) 0xFF;
+            for (int i = 0; i < 4; i++) {
+                bytes[12 + i] = (byte) Integer.parseInt(parts[i]);
+            }
+            return bytes;
         }
         
-        // Get API key from config
-        String apiKey = plugin.getConfigManager().getConfig().getString("vpn-detection.api-key", "");
-        if (apiKey.isEmpty()) {
-            plugin.getLogger().warning("VPN detection is enabled but no API key is configured. Disabling VPN checks.");
-            return CompletableFuture.completedFuture(false);
+        if (!IPV6_PATTERN.matcher(ip).matches()) {
+            return null;
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Use ipqualityscore.com API to check if IP is a VPN/Proxy
-                String urlString = "https://ipqualityscore.com/api/json/ip/" + apiKey + "/" + ip + 
-                                    "?strictness=1&allow_public_access_points=true";
-                URL url = new URL(urlString);
-                
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(5000);
-                connection.setReadTimeout(5000);
-                
-                int responseCode = connection.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    String inputLine;
-                    StringBuilder response = new StringBuilder();
-                    
-                    while ((inputLine = in.readLine()) != null) {
-                        response.append(inputLine);
-                    }
-                    in.close();
-                    
-                    // Simple JSON parsing without dependencies
-                    String jsonResponse = response.toString();
-                    boolean isProxy = jsonResponse.contains("\"proxy\":true") || 
-                                      jsonResponse.contains("\"vpn\":true") || 
-                                      jsonResponse.contains("\"tor\":true");
-                    
-                    // Cache the result
-                    vpnCache.put(ip, isProxy);
-                    return isProxy;
-                }
-            } catch (IOException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to check if IP is a VPN/Proxy: " + e.getMessage(), e);
+        try {
+            InetAddress address = InetAddress.getByName(ip);
+            if (address instanceof Inet4Address) {
+                // IPv4-mapped IPv6 literal
+                return toAddressBytes(address.getHostAddress());
             }
-            
-            return false;
-        });
+            return address.getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
     }
     
     /**
-     * Check if a string is a valid IP address
+     * Get the prefix length of a CIDR range in the 128-bit space used by {@link #toAddressBytes(String)}.
+     * IPv4 prefixes are offset by 96 bits.
      * 
-     * @param ip The string to check
-     * @return true if the string is a valid IP address
+     * @param cidr The CIDR range
+     * @return The prefix length, or -1 if the string is not a valid CIDR range
      */
-    public static boolean isValidIp(String ip) {
-        return ip != null && IP_PATTERN.matcher(ip).matches();
+    public static int getCidrPrefixLength(String cidr) {
+        if (cidr == null) {
+            return -1;
+        }
+        
+        int slash = cidr.indexOf('/');
+        if (slash <= 0 || slash == cidr.length() - 1) {
+            return -1;
+        }
+        
+        String address = cidr.substring(0, slash);
+        if (toAddressBytes(address) == null) {
+            return -1;
+        }
+        
+        int prefix;
+        try {
+            prefix = Integer.parseInt(cidr.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        
+        boolean ipv4 = IP_PATTERN.matcher(address).matches();
+        int maxPrefix = ipv4 ? 32 : 128;
+        if (prefix < 0 || prefix > maxPrefix) {
+            return -1;
+        }
+        
+        return ipv4 ? prefix + 96 : prefix;
+    }
+    
+    /**
+     * Get the first and last address of an IP address or CIDR range, as 16 bytes each.
+     * A single address is a range of one.
+     * 
+     * @param ipOrCidr The IP address or CIDR range
+     * @return The start and end address, or null if the string is neither
+     */
+    public static byte[][] toAddressRange(String ipOrCidr) {
+        byte[] address = toAddressBytes(ipOrCidr);
+        if (address != null) {
+            return new byte[][]{address, address};
+        }
+        
+        int prefixLength = getCidrPrefixLength(ipOrCidr);
+        if (prefixLength < 0) {
+            return null;
+        }
+        
+        byte[] start = toAddressBytes(ipOrCidr.substring(0, ipOrCidr.indexOf('/')));
+        byte[] end = start.clone();
+        for (int bit = prefixLength; bit < 128; bit++) {
+            int mask = 0x80 >>> (bit & 7);
+            start[bit >>> 3] &= (byte) ~mask;
+            end[bit >>> 3] |= (byte) mask;
+        }
+        return new byte[][]{start, end};
+    }
+    
+    /**
+     * Clear the host bits of a CIDR range, for example 10.1.2.3/8 -> 10.0.0.0/8
+     * 
+     * @param cidr The CIDR range
+     * @return The normalized range, or null if the string is not a valid CIDR range
+     */
+    public static String normalizeCidr(String cidr) {
+        int prefixLength = getCidrPrefixLength(cidr);
+        if (prefixLength < 0) {
+            return null;
+        }
+        
+        int slash = cidr.indexOf('/');
+        String address = cidr.substring(0, slash);
+        byte[] bytes = toAddressBytes(address);
+        for (int bit = prefixLength; bit < 128; bit++) {
+            bytes[bit >>> 3] &= (byte) ~(0x80 >>> (bit & 7));
+        }
+        
+        if (IP_PATTERN.matcher(address).matches()) {
+            return (bytes[12] & 0xFF) + "." + (bytes[13] & 0xFF) + "." + (bytes[14] & 0xFF) + "." + (bytes[15] & 0xFF)
+                    + "/" + (prefixLength - 96);
+        }
+        
+        try {
+            InetAddress normalized = InetAddress.getByAddress(bytes);
+            if (normalized instanceof Inet4Address) {
+                // An IPv4-mapped range, written as plain IPv4
+                return normalized.getHostAddress() + "/" + (prefixLength - 96);
+            }
+            return normalized.getHostAddress() + "/" + prefixLength;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Check if an IP address falls within a CIDR range
+     * 
+     * @param cidr The CIDR range
+     * @param ip The IP address
+     * @return true if the address is in the range
+     */
+    public static boolean cidrContains(String cidr, String ip) {
+        int prefixLength = getCidrPrefixLength(cidr);
+        byte[] address = toAddressBytes(ip);
+        if (prefixLength < 0 || address == null) {
+            return false;
+        }
+        
+        byte[] network = toAddressBytes(cidr.substring(0, cidr.indexOf('/')));
+        for (int bit = 0; bit < prefixLength; bit++) {
+            int mask = 0x80 >>> (bit & 7);
+            if ((address[bit >>> 3] & mask) != (network[bit >>> 3] & mask)) {
+                return false;
+            }
+        }
+        return true;
     }
     
     /**
@@ -114,7 +231,7 @@ public class IPUtil {
      * @return The CIDR subnet
      */
     public static String getSubnet(String ip) {
-        if (!isValidIp(ip)) {
+        if (ip == null || !IP_PATTERN.matcher(ip).matches()) {
             return null;
         }
         
@@ -125,7 +242,7 @@ public class IPUtil {
     /**
      * Clear the VPN/Proxy cache
      */
-    public static void clearCache() {
-        vpnCache.clear();
+    public void clearCache() {
+        plugin.getVpnDetectionService().getVerdictCache().clear();
     }
 } 
\ No newline at end of file
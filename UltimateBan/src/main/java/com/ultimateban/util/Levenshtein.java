@@ -0,0 +1,109 @@
+package com.ultimateban.util;
+
+/**
+ * Bounded Levenshtein edit distance.
+ * Only the diagonal band that can stay within the bound is computed, using two reusable rows per thread,
+ * and the computation stops as soon as every cell in a row exceeds the bound.
+ */
+public final class Levenshtein {
+
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[2][32]);
+
+    private Levenshtein() {
+    }
+
+    /**
+     * Calculate the edit distance between two strings, giving up once it exceeds a bound.
+     * Callers are expected to normalize case beforehand.
+     *
+     * @param a     The first string
+     * @param b     The second string
+     * @param bound The largest distance the caller is interested in
+     * @return The edit distance, or any value greater than {@code bound} if the distance exceeds it
+     */
+    public static int distance(char[] a, char[] b, int bound) {
+        // Keep the rows as short as possible
+        if (a.length < b.length) {
+            char[] swap = a;
+            a = b;
+            b = swap;
+        }
+
+        int n = a.length;
+        int m = b.length;
+        if (n - m > bound) {
+            return bound + 1;
+        }
+        if (m == 0) {
+            return n;
+        }
+
+        // The distance never exceeds the longer length, which also keeps bound + 1 from overflowing
+        bound = Math.min(bound, n);
+        int outside = bound + 1;
+
+        int[][] rows = ROWS.get();
+        if (rows[0].length < m + 2) {
+            rows = new int[2][Math.max(m + 2, rows[0].length * 2)];
+            ROWS.set(rows);
+        }
+        int[] previous = rows[0];
+        int[] current = rows[1];
+
+        int firstHigh = Math.min(m, bound);
+        for (int j = 0; j <= firstHigh; j++) {
+            previous[j] = j;
+        }
+        previous[firstHigh + 1] = outside;
+
+        for (int i = 1; i <= n; i++) {
+            int low = Math.max(1, i - bound);
+            int high = Math.min(m, i + bound);
+            if (low > high) {
+                return outside;
+            }
+
+            current[low - 1] = low == 1 ? i : outside;
+            int rowMin = current[low - 1];
+            char ca = a[i - 1];
+
+            for (int j = low; j <= high; j++) {
+                int substitution = previous[j - 1] + (ca == b[j - 1] ? 0 : 1);
+                int deletion = previous[j] + 1;
+                int insertion = current[j - 1] + 1;
+                int value = Math.min(substitution, Math.min(deletion, insertion));
+                if (value > outside) {
+                    value = outside;
+                }
+                current[j] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+            if (high < m) {
+                current[high + 1] = outside;
+            }
+
+            if (rowMin > bound) {
+                return outside;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[m];
+    }
+
+    /**
+     * Calculate the exact edit distance between two strings
+     *
+     * @param a The first string
+     * @param b The second string
+     * @return The edit distance
+     */
+    public static int distance(char[] a, char[] b) {
+        return distance(a, b, Math.max(a.length, b.length));
+    }
+}
@@ -0,0 +1,126 @@
+package com.ultimateban.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * A map holding at most a fixed number of entries, dropping the least recently used one when it is full.
+ * Backed by a {@link LinkedHashMap} in access order, so every read, write and eviction costs constant time.
+ * Safe to use from any thread, every method holds the lock only for a single map operation.
+ *
+ * @param <K> The type of key
+ * @param <V> The type of value
+ */
+public class LruCache<K, V> {
+
+    private final int maximumSize;
+    private final Map<K, V> entries;
+    private long evictions;
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize The number of entries kept
+     */
+    public LruCache(int maximumSize) {
+        this.maximumSize = Math.max(1, maximumSize);
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get a value and mark it as recently used
+     *
+     * @param key The key
+     * @return The value, or null if the key is not cached
+     */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Store a value, or combine it with the value already stored
+     *
+     * @param key       The key
+     * @param value     The value
+     * @param remapping Picks the value to keep from the stored and the new value
+     * @return The value now stored
+     */
+    public synchronized V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        return entries.merge(key, value, remapping);
+    }
+
+    /**
+     * Compute the value of a key from its current value
+     *
+     * @param key       The key
+     * @param remapping Computes the new value from the key and the current value, or null if there is none
+     * @return The value now stored, or null if there is none
+     */
+    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return entries.compute(key, remapping);
+    }
+
+    /**
+     * Remove a key if it still maps to a value
+     *
+     * @param key   The key
+     * @param value The expected value
+     * @return true if the entry was removed
+     */
+    public synchronized boolean remove(K key, V value) {
+        return entries.remove(key, value);
+    }
+
+    /**
+     * Remove every entry whose value matches
+     *
+     * @param filter Selects the values to remove
+     * @return The number of entries removed
+     */
+    public synchronized int removeIf(Predicate<? super V> filter) {
+        int removed = 0;
+        for (Iterator<V> it = entries.values().iterator(); it.hasNext(); ) {
+            if (filter.test(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove every entry
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Get the number of entries dropped to make room
+     *
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
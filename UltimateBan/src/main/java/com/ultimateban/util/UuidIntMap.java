@@ -0,0 +1,193 @@
+package com.ultimateban.util;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A hash map from UUIDs to non-negative ints that stores each UUID as its two longs, with open addressing.
+ * Entries cost 20 bytes per slot and no objects, where a HashMap would hold a UUID, an Integer and a node
+ * for every entry. The table doubles once it is three quarters full. Not thread-safe, callers serialize access.
+ */
+public class UuidIntMap {
+
+    private static final int EMPTY = -1;
+    private static final int MINIMUM_CAPACITY = 16;
+
+    // Slot i holds its key in keys[2 * i] and keys[2 * i + 1], and is free when values[i] is EMPTY
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param expectedSize The number of entries to make room for
+     */
+    public UuidIntMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Get the value of a UUID
+     *
+     * @param uuid The UUID
+     * @return The value, or -1 if the UUID is not in the map
+     */
+    public int get(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        for (int slot = slot(most, least); ; slot = (slot + 1) & mask) {
+            if (values[slot] == EMPTY) {
+                return EMPTY;
+            }
+            if (keys[2 * slot] == most && keys[2 * slot + 1] == least) {
+                return values[slot];
+            }
+        }
+    }
+
+    /**
+     * Set the value of a UUID
+     *
+     * @param uuid  The UUID
+     * @param value The value, must not be negative
+     * @return The previous value, or -1 if the UUID was not in the map
+     */
+    public int put(UUID uuid, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        for (int slot = slot(most, least); ; slot = (slot + 1) & mask) {
+            if (values[slot] == EMPTY) {
+                keys[2 * slot] = most;
+                keys[2 * slot + 1] = least;
+                values[slot] = value;
+                if (++size > values.length / 4 * 3) {
+                    resize(values.length * 2);
+                }
+                return EMPTY;
+            }
+            if (keys[2 * slot] == most && keys[2 * slot + 1] == least) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Remove a UUID
+     *
+     * @param uuid The UUID
+     * @return The removed value, or -1 if the UUID was not in the map
+     */
+    public int remove(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        for (int slot = slot(most, least); ; slot = (slot + 1) & mask) {
+            if (values[slot] == EMPTY) {
+                return EMPTY;
+            }
+            if (keys[2 * slot] == most && keys[2 * slot + 1] == least) {
+                int previous = values[slot];
+                closeGap(slot);
+                size--;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Remove every entry and shrink back to the minimum size
+     */
+    public void clear() {
+        allocate(MINIMUM_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Get the number of entries
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of slots
+     *
+     * @return The number of slots
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Free a slot without tombstones, moving later entries of the same probe run back into the gap
+     */
+    private void closeGap(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == EMPTY) {
+                break;
+            }
+
+            // An entry can only move back if the gap lies between its home slot and where it is now
+            int home = slot(keys[2 * slot], keys[2 * slot + 1]);
+            boolean movable = gap <= slot ? home <= gap || home > slot : home <= gap && home > slot;
+            if (movable) {
+                keys[2 * gap] = keys[2 * slot];
+                keys[2 * gap + 1] = keys[2 * slot + 1];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = EMPTY;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == EMPTY) {
+                continue;
+            }
+            int slot = slot(oldKeys[2 * i], oldKeys[2 * i + 1]);
+            while (values[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[2 * slot] = oldKeys[2 * i];
+            keys[2 * slot + 1] = oldKeys[2 * i + 1];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * 2];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private int slot(long most, long least) {
+        // Random UUIDs are already well mixed, other versions and hand-made ones may not be
+        long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity / 4 * 3 < expectedSize && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
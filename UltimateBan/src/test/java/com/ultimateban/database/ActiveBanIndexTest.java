@@ -0,0 +1,60 @@
+package com.ultimateban.database;
+
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that {@link ActiveBanIndex} builds bans with the fields they were added with
+ */
+public class ActiveBanIndexTest {
+
+    @Test
+    public void keepsPlayerNameAndLongestBan() {
+        ActiveBanIndex index = new ActiveBanIndex();
+        UUID player = UUID.randomUUID();
+        UUID staff = UUID.randomUUID();
+        index.startLoad(2);
+        index.add(player, "Notch", 1, PunishmentType.TEMP_BAN, 1000L, 5000L, staff, "Admin", "spam");
+        index.add(player, "Notch", 2, PunishmentType.BAN, 2000L, -1L, null, "Console", null);
+        index.add(player, "Notch", 3, PunishmentType.TEMP_BAN, 3000L, 9000L, staff, "Admin", "spam");
+        index.finishLoad();
+
+        Punishment ban = index.getBan(player);
+        assertEquals(2, ban.getId());
+        assertEquals("Notch", ban.getPlayerName());
+        assertEquals(PunishmentType.BAN, ban.getType());
+        assertNull(ban.getPunisherUUID());
+        assertEquals("Console", ban.getPunisherName());
+        assertEquals("", ban.getReason());
+        assertEquals(1, index.getSize());
+    }
+
+    @Test
+    public void replaceSwapsPlayersBans() {
+        ActiveBanIndex index = new ActiveBanIndex();
+        UUID player = UUID.randomUUID();
+        index.startLoad(1);
+        index.add(player, "jeb_", 1, PunishmentType.BAN, 1000L, -1L, UUID.randomUUID(), "Admin", "griefing");
+        index.finishLoad();
+
+        Punishment renamed = new Punishment(player, "jeb", UUID.randomUUID(), "Mod", PunishmentType.TEMP_BAN,
+                "alt", 2000L, 8000L);
+        renamed.setId(7);
+        index.replace(player, Collections.singletonList(renamed));
+        Punishment ban = index.getBan(player);
+        assertEquals(7, ban.getId());
+        assertEquals("jeb", ban.getPlayerName());
+        assertEquals("Mod", ban.getPunisherName());
+
+        index.replace(player, Collections.emptyList());
+        assertNull(index.getBan(player));
+        assertEquals(0, index.getSize());
+    }
+}
@@ -0,0 +1,103 @@
+package com.ultimateban.database;
+
+import com.ultimateban.database.migration.MigrationRunner;
+import com.ultimateban.database.migration.SqlDialect;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Explains the lookups of {@link DatabaseManager} on a freshly migrated SQLite database,
+ * so a query that would read a whole table fails the build instead of slowing down logins
+ */
+public class QueryPlanTest {
+
+    private static Connection connection;
+
+    @BeforeClass
+    public static void migrate() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Logger logger = Logger.getLogger(QueryPlanTest.class.getName());
+        logger.setLevel(Level.WARNING);
+        new MigrationRunner(logger, SqlDialect.of("SQLite")).migrate(connection);
+    }
+
+    @AfterClass
+    public static void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void loginVerdictUsesIndexes() throws SQLException {
+        assertIndexed(DatabaseManager.LOGIN_PUNISHMENTS_SQL);
+        assertIndexed(DatabaseManager.LINKED_PLAYERS_SQL);
+        assertIndexed(DatabaseManager.IP_BAN_SQL);
+        assertIndexed(DatabaseManager.IP_BANS_COVERING_SQL);
+        assertIndexed(DatabaseManager.SUBNET_BAN_SQL);
+        assertIndexed(DatabaseManager.SUBNET_BANS_COVERING_SQL);
+    }
+
+    @Test
+    public void playerStatsIsPrimaryKeyRead() throws SQLException {
+        List<String> plan = assertIndexed(DatabaseManager.PLAYER_STATS_SQL);
+        assertEquals(1, plan.size());
+        assertTrue(plan.get(0), plan.get(0).contains("PRIMARY KEY") || plan.get(0).contains("INDEX"));
+    }
+
+    @Test
+    public void historyPagesSeekWithoutSorting() throws SQLException {
+        for (String sql : new String[]{DatabaseManager.PUNISHMENT_PAGE_SQL, DatabaseManager.PUNISHMENT_SKIP_SQL}) {
+            for (String step : assertIndexed(sql)) {
+                assertFalse(sql + ": " + step, step.contains("TEMP B-TREE"));
+            }
+        }
+    }
+
+    @Test
+    public void playerLookupsUseIndexes() throws SQLException {
+        assertIndexed(DatabaseManager.ACTIVE_PUNISHMENT_SQL);
+        assertIndexed(DatabaseManager.RECENT_PUNISHMENTS_SQL);
+        assertIndexed(DatabaseManager.OFFENSE_COUNTS_SQL);
+        assertIndexed(DatabaseManager.EXPIRING_PUNISHMENTS_SQL);
+        assertIndexed(DatabaseManager.PLAYER_ADDRESSES_SQL);
+        assertIndexed(DatabaseManager.PLAYER_NAME_SQL);
+        assertIndexed(DatabaseManager.PLAYER_UUID_SQL);
+    }
+
+    /**
+     * Explain a query and fail if any step reads a whole table.
+     * "SEARCH" seeks an index, "SCAN table" without an index reads every row.
+     *
+     * @return The steps of the plan
+     */
+    private static List<String> assertIndexed(String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        // Parameters are left unbound, the plan only depends on which columns they are compared with
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (resultSet.next()) {
+                plan.add(resultSet.getString("detail"));
+            }
+        }
+
+        assertFalse(sql, plan.isEmpty());
+        for (String step : plan) {
+            assertFalse("Full table scan in " + sql + ": " + plan, step.startsWith("SCAN") && !step.contains("INDEX"));
+        }
+        return plan;
+    }
+}
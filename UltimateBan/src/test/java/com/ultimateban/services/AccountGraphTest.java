@@ -0,0 +1,174 @@
+package com.ultimateban.services;
+
+import com.ultimateban.models.PlayerIp;
+import com.ultimateban.models.Punishment;
+import com.ultimateban.models.PunishmentType;
+import com.ultimateban.services.AccountLinkService.LinkedAccount;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the disjoint sets of {@link AccountGraph} against a breadth-first search over the same sightings
+ */
+public class AccountGraphTest {
+
+    private static final int MAX_ACCOUNTS_PER_IP = 6;
+
+    @Test
+    public void linksMatchBreadthFirstSearchWhenLinkingAsSeen() {
+        checkAgainstSearch(new Random(9), true);
+    }
+
+    @Test
+    public void linksMatchBreadthFirstSearchWhenLoadedInBulk() {
+        checkAgainstSearch(new Random(99), false);
+    }
+
+    @Test
+    public void banAndMuteFlagsFollowPunishments() {
+        AccountGraph graph = new AccountGraph(MAX_ACCOUNTS_PER_IP);
+        UUID player = UUID.randomUUID();
+        UUID alt = UUID.randomUUID();
+        graph.recordIp(new PlayerIp(player, "Player", "10.0.0.1", 1000L), true);
+        graph.recordIp(new PlayerIp(alt, "Alt", "10.0.0.1", 2000L), true);
+
+        long now = System.currentTimeMillis();
+        graph.addPunishment(punishment(alt, PunishmentType.TEMP_BAN, now + 60000L));
+        graph.addPunishment(punishment(alt, PunishmentType.KICK, -1));
+        assertTrue(graph.isBanned(alt, now));
+        assertFalse(graph.isBanned(alt, now + 120000L));
+        assertFalse(graph.isBanned(player, now));
+
+        // A permanent ban outlasts every temporary one
+        graph.addPunishment(punishment(alt, PunishmentType.BAN, -1));
+        graph.addPunishment(punishment(alt, PunishmentType.TEMP_BAN, now + 1000L));
+        assertTrue(graph.isBanned(alt, Long.MAX_VALUE));
+
+        LinkedAccount linked = graph.getLinkedAccounts(player, now).get(0);
+        assertEquals(alt, linked.getUuid());
+        assertTrue(linked.isBanned());
+        assertFalse(linked.isMuted());
+
+        graph.setPunishments(alt, Collections.singletonList(punishment(alt, PunishmentType.MUTE, -1)));
+        linked = graph.getLinkedAccounts(player, now).get(0);
+        assertFalse(linked.isBanned());
+        assertTrue(linked.isMuted());
+
+        assertNull(graph.getLinkedAccounts(UUID.randomUUID(), now));
+        assertEquals("Alt", graph.getName(alt));
+    }
+
+    private static void checkAgainstSearch(Random random, boolean linkAsSeen) {
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            players.add(UUID.randomUUID());
+        }
+
+        AccountGraph graph = new AccountGraph(MAX_ACCOUNTS_PER_IP);
+        // Accounts on each address in the order they first appeared, and each account's last sighting per address
+        Map<String, List<UUID>> accountsOnIp = new LinkedHashMap<>();
+        Map<UUID, Map<String, Long>> seen = new HashMap<>();
+        for (int i = 0; i < 1200; i++) {
+            UUID player = players.get(random.nextInt(players.size()));
+            String ip = "10.0." + random.nextInt(4) + "." + random.nextInt(100);
+            long lastSeen = random.nextInt(1000000);
+            graph.recordIp(new PlayerIp(player, "p" + players.indexOf(player), ip, lastSeen), linkAsSeen);
+
+            List<UUID> sharing = accountsOnIp.computeIfAbsent(ip, key -> new ArrayList<>());
+            if (!sharing.contains(player)) {
+                sharing.add(player);
+            }
+            seen.computeIfAbsent(player, key -> new HashMap<>()).merge(ip, lastSeen, Math::max);
+        }
+        if (!linkAsSeen) {
+            graph.linkAll();
+        }
+
+        // Linking as seen keeps the links made before an address went over the limit, a bulk load skips the address
+        Map<UUID, Set<UUID>> edges = new HashMap<>();
+        for (List<UUID> sharing : accountsOnIp.values()) {
+            if (!linkAsSeen && sharing.size() > MAX_ACCOUNTS_PER_IP) {
+                continue;
+            }
+            List<UUID> linked = sharing.subList(0, Math.min(sharing.size(), MAX_ACCOUNTS_PER_IP));
+            for (UUID a : linked) {
+                for (UUID b : linked) {
+                    if (a != b) {
+                        edges.computeIfAbsent(a, key -> new HashSet<>()).add(b);
+                    }
+                }
+            }
+        }
+
+        assertEquals(seen.size(), graph.getAccountCount());
+        assertEquals(accountsOnIp.size(), graph.getAddressCount());
+        for (UUID player : seen.keySet()) {
+            Set<UUID> expected = reachable(edges, player);
+            Map<UUID, LinkedAccount> actual = new HashMap<>();
+            for (LinkedAccount linked : graph.getLinkedAccounts(player, 0L)) {
+                actual.put(linked.getUuid(), linked);
+            }
+            assertEquals(expected, actual.keySet());
+
+            for (LinkedAccount linked : actual.values()) {
+                int sharedIps = 0;
+                long lastShared = 0;
+                for (Map.Entry<String, Long> entry : seen.get(player).entrySet()) {
+                    Long otherSeen = seen.get(linked.getUuid()).get(entry.getKey());
+                    if (otherSeen != null) {
+                        sharedIps++;
+                        lastShared = Math.max(lastShared, Math.min(otherSeen, entry.getValue()));
+                    }
+                }
+                assertEquals(sharedIps, linked.getSharedIps());
+                assertEquals(lastShared, linked.getLastShared());
+            }
+        }
+
+        for (Map.Entry<String, List<UUID>> entry : accountsOnIp.entrySet()) {
+            Set<UUID> actual = new HashSet<>();
+            for (LinkedAccount account : graph.getAccountsOnIp(entry.getKey(), 0L)) {
+                actual.add(account.getUuid());
+                assertEquals(seen.get(account.getUuid()).get(entry.getKey()).longValue(), account.getLastShared());
+            }
+            assertEquals(new HashSet<>(entry.getValue()), actual);
+        }
+        assertTrue(graph.getAccountsOnIp("192.168.0.1", 0L).isEmpty());
+    }
+
+    private static Set<UUID> reachable(Map<UUID, Set<UUID>> edges, UUID start) {
+        Set<UUID> visited = new HashSet<>(Arrays.asList(start));
+        Deque<UUID> pending = new ArrayDeque<>(visited);
+        while (!pending.isEmpty()) {
+            for (UUID next : edges.getOrDefault(pending.pop(), Collections.emptySet())) {
+                if (visited.add(next)) {
+                    pending.push(next);
+                }
+            }
+        }
+        visited.remove(start);
+        return visited;
+    }
+
+    private static Punishment punishment(UUID player, PunishmentType type, long endTime) {
+        return new Punishment(player, "Alt", UUID.randomUUID(), "Staff", type, "test", System.currentTimeMillis(), endTime);
+    }
+}
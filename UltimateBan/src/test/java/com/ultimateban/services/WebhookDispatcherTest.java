@@ -0,0 +1,249 @@
+package com.ultimateban.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link WebhookDispatcher} against a local HTTP server that answers with scripted responses
+ */
+public class WebhookDispatcherTest {
+
+    private static final Pattern EMBED_ID = Pattern.compile("\"id\":(\\d+)");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Logger logger = Logger.getLogger(WebhookDispatcherTest.class.getName());
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    // Responses for the next requests, a 204 once they run out
+    private final ConcurrentLinkedQueue<Reply> replies = new ConcurrentLinkedQueue<>();
+    private volatile boolean failing;
+    private HttpServer server;
+    private String url;
+    private File spoolFile;
+
+    @Before
+    public void startServer() throws IOException {
+        logger.setLevel(Level.SEVERE);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/webhook", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/webhook";
+        spoolFile = new File(folder.getRoot(), "discord-spool.txt");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void batchesTwentyFiveEmbedsIntoTenTenFive() throws InterruptedException {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(logger, spoolFile, 500L, 100, 1 << 20, 2000);
+        try {
+            enqueue(dispatcher, 0, 25);
+
+            List<Integer> sent = new ArrayList<>();
+            List<Integer> sizes = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                List<Integer> ids = next().ids;
+                sizes.add(ids.size());
+                sent.addAll(ids);
+            }
+            assertEquals(Arrays.asList(10, 10, 5), sizes);
+            assertEquals(range(0, 25), sent);
+            assertNull(requests.poll(700, TimeUnit.MILLISECONDS));
+            assertEquals(3, dispatcher.getMessagesSent());
+            assertEquals(25, dispatcher.getEmbedsSent());
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void rateLimitedMessageWaitsForRetryAfter() throws InterruptedException {
+        replies.add(new Reply(429, "Retry-After", "0.6"));
+        WebhookDispatcher dispatcher = new WebhookDispatcher(logger, spoolFile, 100L, 100, 1 << 20, 2000);
+        try {
+            enqueue(dispatcher, 0, 3);
+
+            Request limited = next();
+            Request retried = next();
+            assertEquals(range(0, 3), limited.ids);
+            assertEquals(limited.ids, retried.ids);
+            assertTrue("retried after " + (retried.time - limited.time) + "ms", retried.time - limited.time >= 600);
+            assertEquals(1, dispatcher.getRateLimitedCount());
+            awaitSent(dispatcher, 3);
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void serverErrorsBackOffExponentially() throws InterruptedException {
+        replies.add(new Reply(503));
+        replies.add(new Reply(502));
+        WebhookDispatcher dispatcher = new WebhookDispatcher(logger, spoolFile, 100L, 100, 1 << 20, 2000);
+        try {
+            enqueue(dispatcher, 0, 2);
+
+            Request first = next();
+            Request second = next();
+            Request third = next();
+            // One second, then two, each with up to a quarter more of jitter
+            long firstWait = second.time - first.time;
+            long secondWait = third.time - second.time;
+            assertTrue("first retry after " + firstWait + "ms", firstWait >= 1000 && firstWait < 2000);
+            assertTrue("second retry after " + secondWait + "ms", secondWait >= 2000 && secondWait < 3500);
+            assertEquals(range(0, 2), third.ids);
+            awaitSent(dispatcher, 2);
+            assertEquals(1, dispatcher.getMessagesSent());
+            assertEquals(0, dispatcher.getEmbedsDropped());
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void spoolIsReplayedInOrderAfterRestart() throws InterruptedException {
+        failing = true;
+        // Ten embeds fit in memory, the rest go to the spool while the webhook is down
+        WebhookDispatcher dispatcher = new WebhookDispatcher(logger, spoolFile, 60000L, 10, 1 << 20, 2000);
+        enqueue(dispatcher, 0, 25);
+        assertNotNull(next());
+        dispatcher.close();
+        assertTrue(spoolFile.isFile());
+        requests.clear();
+
+        failing = false;
+        WebhookDispatcher restarted = new WebhookDispatcher(logger, spoolFile, 100L, 10, 1 << 20, 2000);
+        try {
+            enqueue(restarted, 25, 30);
+
+            List<Integer> sent = new ArrayList<>();
+            while (sent.size() < 30) {
+                sent.addAll(next().ids);
+            }
+            assertEquals(range(0, 30), sent);
+            awaitSent(restarted, 30);
+            assertEquals(0, restarted.getSpooledCount());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        List<Integer> ids = new ArrayList<>();
+        Matcher matcher = EMBED_ID.matcher(body);
+        while (matcher.find()) {
+            ids.add(Integer.parseInt(matcher.group(1)));
+        }
+        requests.add(new Request(System.currentTimeMillis(), ids));
+
+        Reply reply = failing ? new Reply(503) : replies.poll();
+        if (reply == null) {
+            reply = new Reply(204);
+        }
+        if (reply.header != null) {
+            exchange.getResponseHeaders().add(reply.header, reply.value);
+        }
+        exchange.sendResponseHeaders(reply.status, -1);
+        exchange.close();
+    }
+
+    private void enqueue(WebhookDispatcher dispatcher, int from, int to) {
+        for (int id = from; id < to; id++) {
+            assertTrue(dispatcher.enqueue(url, "{\"id\":" + id + "}"));
+        }
+    }
+
+    private Request next() throws InterruptedException {
+        Request request = requests.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no request within 10s", request);
+        return request;
+    }
+
+    /**
+     * Wait for the dispatcher to count the responses, which it reads after the server has seen the request
+     */
+    private static void awaitSent(WebhookDispatcher dispatcher, long embeds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (dispatcher.getEmbedsSent() < embeds && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(embeds, dispatcher.getEmbedsSent());
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = from; id < to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static class Request {
+        private final long time;
+        private final List<Integer> ids;
+
+        Request(long time, List<Integer> ids) {
+            this.time = time;
+            this.ids = ids;
+        }
+    }
+
+    private static class Reply {
+        private final int status;
+        private final String header;
+        private final String value;
+
+        Reply(int status) {
+            this(status, null, null);
+        }
+
+        Reply(int status, String header, String value) {
+            this.status = status;
+            this.header = header;
+            this.value = value;
+        }
+    }
+}
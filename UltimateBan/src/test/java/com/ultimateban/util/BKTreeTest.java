@@ -0,0 +1,93 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link BKTree} searches against a linear scan over every key
+ */
+public class BKTreeTest {
+
+    @Test
+    public void searchMatchesLinearScan() {
+        Random random = new Random(7);
+        BKTree<String> tree = new BKTree<>(Levenshtein::distance);
+        Map<String, String> keys = new HashMap<>();
+
+        for (int i = 0; i < 2000; i++) {
+            // A small alphabet keeps plenty of keys within a few edits of each other
+            String key = randomName(random);
+            tree.put(key, key.toUpperCase());
+            keys.put(key, key.toUpperCase());
+        }
+        assertEquals(keys.size(), tree.size());
+
+        for (int i = 0; i < 300; i++) {
+            String query = randomName(random);
+            int radius = random.nextInt(4);
+
+            Map<String, Integer> expected = new HashMap<>();
+            for (String key : keys.keySet()) {
+                int distance = editDistance(query, key);
+                if (distance <= radius) {
+                    expected.put(key, distance);
+                }
+            }
+
+            Map<String, Integer> actual = new HashMap<>();
+            for (BKTree.Match<String> match : tree.search(query, radius)) {
+                assertEquals(keys.get(match.getKey()), match.getValue());
+                assertTrue("duplicate match " + match.getKey(), actual.put(match.getKey(), match.getDistance()) == null);
+            }
+            assertEquals(query + " within " + radius, expected, actual);
+        }
+    }
+
+    @Test
+    public void putReplacesValueOfExistingKey() {
+        BKTree<Integer> tree = new BKTree<>(Levenshtein::distance);
+        tree.put("notch", 1);
+        tree.put("notch", 2);
+        tree.put("jeb_", 3);
+
+        assertEquals(2, tree.size());
+        assertEquals(1, tree.search("notch", 0).size());
+        assertEquals(Integer.valueOf(2), tree.search("notch", 0).get(0).getValue());
+        assertTrue(tree.search("dinnerbone", 2).isEmpty());
+        assertTrue(new BKTree<Integer>(Levenshtein::distance).search("notch", 3).isEmpty());
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[3 + random.nextInt(8)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = "abcde_1".charAt(random.nextInt(7));
+        }
+        return new String(name);
+    }
+
+    /**
+     * Textbook full-matrix Levenshtein distance
+     */
+    static int editDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1));
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,135 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link CidrTrie} lookups against a linear scan over every stored range
+ */
+public class CidrTrieTest {
+
+    @Test
+    public void findAllMatchesLinearScanForIpv4() {
+        Random random = new Random(5);
+        CidrTrie<String> trie = new CidrTrie<>();
+        List<String> ranges = new ArrayList<>();
+
+        for (int i = 0; i < 500; i++) {
+            // Few distinct prefixes so ranges overlap and nest
+            String cidr = toIp(random.nextInt() & 0xFFF00000 | random.nextInt(4) << 16) + "/" + (8 + random.nextInt(25));
+            if (ranges.contains(cidr)) {
+                continue;
+            }
+            assertTrue(trie.put(cidr, cidr));
+            ranges.add(cidr);
+        }
+        assertEquals(ranges.size(), trie.size());
+
+        for (int i = 0; i < 5000; i++) {
+            String ip = toIp(random.nextInt() & 0xFFF3FFFF);
+            assertMatches(ranges, trie, ip);
+        }
+        for (String cidr : ranges) {
+            assertMatches(ranges, trie, cidr.substring(0, cidr.indexOf('/')));
+        }
+    }
+
+    @Test
+    public void removeOnlyDropsThatValue() {
+        Random random = new Random(55);
+        CidrTrie<String> trie = new CidrTrie<>();
+        List<String> ranges = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String cidr = toIp(random.nextInt() & 0xFF000000) + "/" + (4 + random.nextInt(5));
+            if (!ranges.contains(cidr)) {
+                trie.put(cidr, cidr);
+                ranges.add(cidr);
+            }
+        }
+
+        for (int i = 0; i < ranges.size(); i += 2) {
+            assertTrue(trie.remove(ranges.get(i), ranges.get(i)));
+            assertFalse(trie.remove(ranges.get(i), ranges.get(i)));
+        }
+        List<String> remaining = new ArrayList<>();
+        for (int i = 1; i < ranges.size(); i += 2) {
+            remaining.add(ranges.get(i));
+        }
+        assertEquals(remaining.size(), trie.size());
+
+        for (int i = 0; i < 2000; i++) {
+            assertMatches(remaining, trie, toIp(random.nextInt()));
+        }
+    }
+
+    @Test
+    public void ipv6AndMappedIpv4ShareOneKeySpace() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        assertTrue(trie.put("2001:db8::/32", "doc"));
+        assertTrue(trie.put("2001:db8:1::/48", "doc-1"));
+        assertTrue(trie.put("10.0.0.0/8", "ten"));
+        assertFalse(trie.put("10.0.0.0/33", "invalid"));
+        assertFalse(trie.put("not-an-ip/8", "invalid"));
+
+        assertEquals(listOf("doc-1", "doc"), trie.findAll("2001:db8:1::5"));
+        assertEquals(listOf("doc"), trie.findAll("2001:db8:2::5"));
+        assertEquals(listOf("ten"), trie.findAll("::ffff:10.1.2.3"));
+        assertTrue(trie.findAll("2001:db9::1").isEmpty());
+        assertTrue(trie.findAll("garbage").isEmpty());
+    }
+
+    private static void assertMatches(List<String> ranges, CidrTrie<String> trie, String ip) {
+        Set<String> expected = new HashSet<>();
+        for (String cidr : ranges) {
+            if (contains(cidr, ip)) {
+                expected.add(cidr);
+            }
+        }
+
+        List<String> actual = trie.findAll(ip);
+        assertEquals(ip, expected, new HashSet<>(actual));
+        assertEquals(ip, expected.size(), actual.size());
+        for (int i = 1; i < actual.size(); i++) {
+            assertTrue("most specific range first for " + ip, prefixOf(actual.get(i - 1)) >= prefixOf(actual.get(i)));
+        }
+    }
+
+    private static boolean contains(String cidr, String ip) {
+        int prefix = prefixOf(cidr);
+        int mask = prefix == 0 ? 0 : -1 << (32 - prefix);
+        return (toInt(cidr.substring(0, cidr.indexOf('/'))) & mask) == (toInt(ip) & mask);
+    }
+
+    private static int prefixOf(String cidr) {
+        return Integer.parseInt(cidr.substring(cidr.indexOf('/') + 1));
+    }
+
+    private static int toInt(String ip) {
+        int value = 0;
+        for (String part : ip.split("\\.")) {
+            value = value << 8 | Integer.parseInt(part);
+        }
+        return value;
+    }
+
+    private static String toIp(int value) {
+        return (value >>> 24) + "." + (value >>> 16 & 0xFF) + "." + (value >>> 8 & 0xFF) + "." + (value & 0xFF);
+    }
+
+    private static List<String> listOf(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
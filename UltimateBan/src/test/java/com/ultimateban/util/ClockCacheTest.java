@@ -0,0 +1,143 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link ClockCache} against a plain CLOCK model that keeps every slot in a deque
+ */
+public class ClockCacheTest {
+
+    @Test
+    public void evictsSameKeysAsClockModel() {
+        Random random = new Random(21);
+        int maximumSize = 50;
+        ClockCache<Integer, Integer> cache = new ClockCache<>(maximumSize);
+        Map<Integer, Slot> live = new HashMap<>();
+        // Clock hand at the front, slots of removed keys stay until the hand passes them
+        Deque<Slot> clock = new ArrayDeque<>();
+        long evictions = 0;
+
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(120);
+            Slot slot = live.get(key);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(slot == null ? null : slot.value, cache.get(key));
+                    if (slot != null) {
+                        slot.referenced = true;
+                    }
+                    break;
+                case 1:
+                    if (slot != null && cache.remove(key, slot.value)) {
+                        live.remove(key);
+                    }
+                    break;
+                default:
+                    int value = random.nextInt(1000);
+                    if (slot != null) {
+                        slot.value = Math.max(slot.value, value);
+                        slot.referenced = true;
+                        assertEquals(slot.value, (int) cache.merge(key, value, Math::max));
+                        break;
+                    }
+                    assertEquals(value, (int) cache.merge(key, value, Math::max));
+                    slot = new Slot(key, value);
+                    live.put(key, slot);
+                    clock.addLast(slot);
+                    while (clock.size() > maximumSize) {
+                        Slot hand = clock.removeFirst();
+                        if (live.get(hand.key) != hand) {
+                            continue;
+                        }
+                        if (hand.referenced) {
+                            hand.referenced = false;
+                            clock.addLast(hand);
+                        } else {
+                            live.remove(hand.key);
+                            evictions++;
+                        }
+                    }
+            }
+            assertEquals(live.size(), cache.size());
+        }
+
+        for (Slot slot : live.values()) {
+            assertEquals(slot.value, (int) cache.get(slot.key));
+        }
+        assertEquals(evictions, cache.getEvictions());
+
+        int odd = (int) live.values().stream().filter(slot -> slot.value % 2 == 1).count();
+        assertEquals(odd, cache.removeIf(value -> value % 2 == 1));
+        assertEquals(live.size() - odd, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(live.keySet().iterator().next()));
+    }
+
+    @Test
+    public void staysNearMaximumSizeUnderConcurrentUse() throws InterruptedException {
+        int maximumSize = 100;
+        int threads = 4;
+        ClockCache<Integer, Integer> cache = new ClockCache<>(maximumSize);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 200000; i++) {
+                        int key = random.nextInt(1000);
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                Integer value = cache.get(key);
+                                assertTrue(value == null || value == key);
+                                break;
+                            case 1:
+                                cache.remove(key, key);
+                                break;
+                            default:
+                                cache.merge(key, key, (a, b) -> a);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertNull(failure.get());
+        // Once every writer is done, the last one to evict has brought the cache back to size
+        assertTrue("size " + cache.size(), cache.size() <= maximumSize);
+    }
+
+    private static class Slot {
+        private final int key;
+        private int value;
+        private boolean referenced;
+
+        Slot(int key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link CountingBloomFilter} against a multiset of the keys it holds
+ */
+public class CountingBloomFilterTest {
+
+    @Test
+    public void neverMissesKeyStillHeld() {
+        Random random = new Random(22);
+        int expectedKeys = 2000;
+        CountingBloomFilter filter = new CountingBloomFilter(expectedKeys, 0.01);
+        Map<Integer, Integer> held = new HashMap<>();
+        int size = 0;
+
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(expectedKeys * 2);
+            Integer count = held.get(key);
+            // Keys are added more than once and removed as often as they were added, never more
+            if (count != null && (size >= expectedKeys || random.nextBoolean())) {
+                filter.remove(key(key));
+                size--;
+                if (count == 1) {
+                    held.remove(key);
+                } else {
+                    held.put(key, count - 1);
+                }
+            } else {
+                filter.add(key(key));
+                size++;
+                held.merge(key, 1, Integer::sum);
+            }
+
+            assertEquals(size, filter.getSize());
+            if (i % 100 == 0) {
+                for (int heldKey : held.keySet()) {
+                    assertTrue("lost key " + heldKey, filter.mightContain(key(heldKey)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysNearTarget() {
+        Random random = new Random(222);
+        int expectedKeys = 10000;
+        CountingBloomFilter filter = new CountingBloomFilter(expectedKeys, 0.01);
+        for (int i = 0; i < expectedKeys; i++) {
+            filter.add(key(random.nextInt(Integer.MAX_VALUE)));
+        }
+
+        // Negative keys never collide with the positive ones above
+        int falsePositives = 0;
+        int probes = 100000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(key(-1 - random.nextInt(Integer.MAX_VALUE)))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positive rate " + falsePositives / (double) probes, falsePositives < probes * 0.02);
+    }
+
+    @Test
+    public void removingEveryKeyEmptiesFilter() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        for (int i = 0; i < 100; i++) {
+            filter.add(key(i));
+        }
+        for (int i = 0; i < 100; i++) {
+            filter.remove(key(i));
+        }
+        assertEquals(0, filter.getSize());
+        for (int i = 0; i < 100; i++) {
+            assertFalse(filter.mightContain(key(i)));
+        }
+    }
+
+    private static byte[] key(int value) {
+        return ByteBuffer.allocate(16).putInt(12, value).array();
+    }
+}
@@ -0,0 +1,92 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link HierarchicalTimingWheel} against a plain list of deadlines scanned on every advance
+ */
+public class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 10L;
+
+    @Test
+    public void expiresSameItemsAsScan() {
+        Random random = new Random(12);
+        long now = 1_000_000L + random.nextInt(1000);
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK, now);
+        Map<Integer, Long> pending = new HashMap<>();
+        int next = 0;
+
+        for (int round = 0; round < 3000; round++) {
+            for (int i = random.nextInt(20); i > 0; i--) {
+                long deadline = now + randomDelay(random);
+                wheel.schedule(deadline, next);
+                pending.put(next++, deadline);
+            }
+            assertEquals(pending.size(), wheel.size());
+
+            now += Math.max(0, randomDelay(random) / 4);
+            List<Integer> expected = new ArrayList<>();
+            for (Iterator<Map.Entry<Integer, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Integer, Long> entry = it.next();
+                if (entry.getValue() / TICK <= now / TICK) {
+                    expected.add(entry.getKey());
+                    it.remove();
+                }
+            }
+
+            List<Integer> actual = wheel.advance(now);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals("round " + round, expected, actual);
+            assertEquals(pending.size(), wheel.size());
+        }
+    }
+
+    @Test
+    public void pastDeadlinesExpireOnNextAdvance() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 5000L);
+        wheel.schedule(1000L, "past");
+        wheel.schedule(5000L, "now");
+        wheel.schedule(5010L, "next");
+
+        List<String> expired = wheel.advance(5000L);
+        Collections.sort(expired);
+        assertEquals(2, expired.size());
+        assertEquals("now", expired.get(0));
+        assertEquals("past", expired.get(1));
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.singletonList("next"), wheel.advance(5010L));
+        assertTrue(wheel.advance(1_000_000_000L).isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Delays spread over every wheel and past the last one into the overflow list
+     */
+    private static long randomDelay(Random random) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return random.nextInt(64) * TICK - 5 * TICK;
+            case 1:
+                return random.nextInt(64 * 64) * TICK;
+            case 2:
+                return random.nextInt(64 * 64 * 64) * TICK;
+            case 3:
+                return (long) random.nextInt(64 * 64 * 64 * 64) * TICK;
+            default:
+                return (long) (random.nextDouble() * 4 * 64 * 64 * 64 * 64) * TICK;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the bounded {@link Levenshtein} kernel against the full-matrix edit distance
+ */
+public class LevenshteinTest {
+
+    @Test
+    public void boundedDistanceMatchesFullMatrix() {
+        Random random = new Random(8);
+        for (int i = 0; i < 20000; i++) {
+            String a = randomString(random, 20);
+            String b = random.nextBoolean() ? randomString(random, 20) : mutate(random, a);
+            int expected = BKTreeTest.editDistance(a, b);
+            int bound = random.nextInt(8);
+
+            int distance = Levenshtein.distance(a.toCharArray(), b.toCharArray(), bound);
+            if (expected <= bound) {
+                assertEquals(a + " / " + b + " bound " + bound, expected, distance);
+            } else {
+                assertTrue(a + " / " + b + " bound " + bound, distance > bound);
+            }
+            assertEquals(a + " / " + b, expected, Levenshtein.distance(a.toCharArray(), b.toCharArray()));
+        }
+    }
+
+    @Test
+    public void longStringsGrowTheRows() {
+        Random random = new Random(88);
+        String a = randomString(random, 200);
+        String b = mutate(random, a);
+        assertEquals(BKTreeTest.editDistance(a, b), Levenshtein.distance(a.toCharArray(), b.toCharArray()));
+        assertEquals(0, Levenshtein.distance(new char[0], new char[0], 0));
+        assertEquals(5, Levenshtein.distance("notch".toCharArray(), new char[0], 10));
+        assertTrue(Levenshtein.distance("notch".toCharArray(), new char[0], 2) > 2);
+        assertEquals(1, Levenshtein.distance("a".toCharArray(), "b".toCharArray(), Integer.MAX_VALUE));
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(chars);
+    }
+
+    private static String mutate(Random random, String text) {
+        StringBuilder builder = new StringBuilder(text);
+        for (int edits = random.nextInt(6); edits > 0; edits--) {
+            int position = builder.length() == 0 ? 0 : random.nextInt(builder.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    builder.insert(position, (char) ('a' + random.nextInt(4)));
+                    break;
+                case 1:
+                    if (builder.length() > 0) {
+                        builder.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    if (builder.length() > 0) {
+                        builder.setCharAt(position, (char) ('a' + random.nextInt(4)));
+                    }
+            }
+        }
+        return builder.toString();
+    }
+}
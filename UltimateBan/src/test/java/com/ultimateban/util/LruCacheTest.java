@@ -0,0 +1,66 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link LruCache} against a list kept in order of use and scanned on every operation
+ */
+public class LruCacheTest {
+
+    @Test
+    public void evictsSameKeysAsUseOrderedList() {
+        Random random = new Random(20);
+        int maximumSize = 50;
+        LruCache<Integer, Integer> cache = new LruCache<>(maximumSize);
+        // Least recently used first
+        List<Integer> order = new ArrayList<>();
+        Map<Integer, Integer> values = new HashMap<>();
+        long evictions = 0;
+
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(120);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(values.get(key), cache.get(key));
+                    if (values.containsKey(key)) {
+                        order.remove(Integer.valueOf(key));
+                        order.add(key);
+                    }
+                    break;
+                case 1:
+                    if (values.containsKey(key) && cache.remove(key, values.get(key))) {
+                        values.remove(key);
+                        order.remove(Integer.valueOf(key));
+                    }
+                    break;
+                default:
+                    int value = random.nextInt(1000);
+                    assertEquals(values.merge(key, value, Math::max), cache.merge(key, value, Math::max));
+                    order.remove(Integer.valueOf(key));
+                    order.add(key);
+                    if (order.size() > maximumSize) {
+                        values.remove(order.remove(0));
+                        evictions++;
+                    }
+            }
+            assertEquals(values.size(), cache.size());
+        }
+
+        for (Map.Entry<Integer, Integer> entry : values.entrySet()) {
+            assertEquals(entry.getValue(), cache.get(entry.getKey()));
+        }
+        assertEquals(evictions, cache.getEvictions());
+
+        int odd = (int) values.values().stream().filter(value -> value % 2 == 1).count();
+        assertEquals(odd, cache.removeIf(value -> value % 2 == 1));
+        assertEquals(values.size() - odd, cache.size());
+    }
+}
@@ -0,0 +1,60 @@
+package com.ultimateban.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link UuidIntMap} against a {@link HashMap} through random puts, gets and removes
+ */
+public class UuidIntMapTest {
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(23);
+        // Few distinct bits crowd the keys into long probe runs, which is where removal can go wrong
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            keys.add(i % 2 == 0 ? UUID.randomUUID() : new UUID(random.nextInt(16), random.nextInt(256)));
+        }
+
+        UuidIntMap map = new UuidIntMap(0);
+        Map<UUID, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    int value = random.nextInt(Integer.MAX_VALUE);
+                    assertEquals(expected.getOrDefault(key, -1).intValue(), map.put(key, value));
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    Integer removed = expected.remove(key);
+                    assertEquals(removed != null ? removed : -1, map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (UUID key : keys) {
+            assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(keys.get(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeValues() {
+        new UuidIntMap(4).put(UUID.randomUUID(), -1);
+    }
+}